@@ -0,0 +1,130 @@
+package org.neo4j.graphdatabases.benchmarks;
+
+import static org.neo4j.graphdatabases.benchmarks.SampleCursor.NUMBER_OF_SAMPLES;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphdatabases.AccessControlConfig;
+import org.neo4j.graphdatabases.queries.AccessControlQueries;
+import org.neo4j.graphdatabases.queries.helpers.DbUtils;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.ResourceIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The AccessControlQueries performance tests as JMH benchmarks, against the Access Control dataset.
+ */
+@BenchmarkMode( Mode.SampleTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 5 )
+@Measurement( iterations = 10, time = 5 )
+@Fork( value = 2, jvmArgs = {"-Xms2g", "-Xmx2g"} )
+@State( Scope.Benchmark )
+public class AccessControlBenchmark
+{
+    private GraphDatabaseService db;
+    private AccessControlQueries queries;
+    private String[] admins;
+    private String[] companies;
+    private String[] resources;
+
+    @Setup( Level.Trial )
+    public void setup()
+    {
+        db = DbUtils.existingDB( AccessControlConfig.STORE_DIR );
+        queries = new AccessControlQueries( new BenchmarkExecutionEngine( db ) );
+        int numberOfAccounts = DbUtils.numberOfItemsWithLabel( db, "Account" );
+        int numberOfEmployees = DbUtils.numberOfItemsWithLabel( db, "Employee" );
+
+        Random random = new Random( 42 );
+        admins = new String[NUMBER_OF_SAMPLES];
+        companies = new String[NUMBER_OF_SAMPLES];
+        resources = new String[NUMBER_OF_SAMPLES];
+        for ( int i = 0; i < NUMBER_OF_SAMPLES; i++ )
+        {
+            admins[i] = String.format( "Administrator-%s",
+                    random.nextInt( AccessControlConfig.NUMBER_OF_ADMINS ) + 1 );
+            if ( random.nextInt( 2 ) < 1 )
+            {
+                resources[i] = String.format( "Account-%s", random.nextInt( numberOfAccounts ) + 1 );
+            }
+            else
+            {
+                resources[i] = String.format( "Customer-%s", random.nextInt( numberOfEmployees ) + 1 );
+            }
+
+            ResourceIterator<Map<String, Object>> results = queries.findAccessibleCompanies( admins[i] ).iterator();
+            companies[i] = (String) results.next().get( "company" );
+            results.close();
+        }
+    }
+
+    @TearDown( Level.Trial )
+    public void teardown()
+    {
+        db.shutdown();
+    }
+
+    @Benchmark
+    public int findAccessibleResources( SampleCursor cursor, Blackhole blackhole )
+    {
+        int i = cursor.next();
+        return Results.consume( queries.findAccessibleResources( admins[i] ), blackhole );
+    }
+
+    @Benchmark
+    public int findAccessibleCompanies( SampleCursor cursor, Blackhole blackhole )
+    {
+        int i = cursor.next();
+        return Results.consume( queries.findAccessibleCompanies( admins[i] ), blackhole );
+    }
+
+    @Benchmark
+    public int findAccessibleAccountsForCompany( SampleCursor cursor, Blackhole blackhole )
+    {
+        int i = cursor.next();
+        return Results.consume( queries.findAccessibleAccountsForCompany( admins[i], companies[i] ), blackhole );
+    }
+
+    @Benchmark
+    public int findAdminForCompany( SampleCursor cursor, Blackhole blackhole )
+    {
+        int i = cursor.next();
+        return Results.consume( queries.findAdminForCompany( companies[i] ), blackhole );
+    }
+
+    @Benchmark
+    public int findAdminForResource( SampleCursor cursor, Blackhole blackhole )
+    {
+        int i = cursor.next();
+        return Results.consume( queries.findAdminForResource( resources[i] ), blackhole );
+    }
+
+    @Benchmark
+    public int hasAccessToResource( SampleCursor cursor, Blackhole blackhole )
+    {
+        int i = cursor.next();
+        return Results.consume( queries.hasAccessToResource( admins[i], resources[i] ), blackhole );
+    }
+
+    @Benchmark
+    public int hasAccessToIndexedResource( SampleCursor cursor, Blackhole blackhole )
+    {
+        int i = cursor.next();
+        return Results.consume( queries.hasAccessToIndexedResource( admins[i], resources[i] ), blackhole );
+    }
+}
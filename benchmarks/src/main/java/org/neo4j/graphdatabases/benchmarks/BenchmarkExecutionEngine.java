@@ -0,0 +1,34 @@
+package org.neo4j.graphdatabases.benchmarks;
+
+import java.util.Map;
+
+import org.neo4j.cypher.javacompat.ExecutionEngine;
+import org.neo4j.cypher.javacompat.ExecutionResult;
+import org.neo4j.graphdatabases.queries.helpers.ExecutionEngineWrapper;
+import org.neo4j.graphdb.GraphDatabaseService;
+
+/**
+ * Runs every query of a benchmark through one Cypher engine, so that measurements see its cached
+ * plans rather than planning.
+ */
+final class BenchmarkExecutionEngine implements ExecutionEngineWrapper
+{
+    private final ExecutionEngine executionEngine;
+
+    BenchmarkExecutionEngine( GraphDatabaseService db )
+    {
+        this.executionEngine = new ExecutionEngine( db );
+    }
+
+    @Override
+    public ExecutionResult execute( String query, Map<String, Object> params )
+    {
+        return executionEngine.execute( query, params );
+    }
+
+    @Override
+    public ExecutionResult execute( String query, Map<String, Object> params, int index )
+    {
+        return execute( query, params );
+    }
+}
@@ -0,0 +1,224 @@
+package org.neo4j.graphdatabases.benchmarks;
+
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+import org.neo4j.graphalgo.CommonEvaluators;
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.GraphAlgoFactory;
+import org.neo4j.graphdatabases.LogisticsConfig;
+import org.neo4j.graphdatabases.queries.helpers.DbUtils;
+import org.neo4j.graphdatabases.queries.traversals.IntervalExpander;
+import org.neo4j.graphdatabases.queries.traversals.ValidityWindows;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.traversal.BranchState;
+import org.neo4j.graphdb.traversal.InitialBranchState;
+import org.neo4j.kernel.impl.util.SingleNodePath;
+import org.neo4j.tooling.GlobalGraphOperations;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the legacy interval expander with IntervalExpander, reading dates from the store
+ * ("shared") and from a ValidityWindows snapshot ("cached"), against the Logistics dataset.
+ * expandNode measures one expansion of a delivery base or delivery area; routeBetweenDeliveryBases
+ * measures a Dijkstra search between two delivery bases. Run with -prof gc to see the bytes
+ * allocated per operation (gc.alloc.rate.norm):
+ * <p/>
+ * java -jar target/benchmarks.jar IntervalExpansionBenchmark -prof gc
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 2 )
+@Measurement( iterations = 10, time = 2 )
+@Fork( value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"} )
+@State( Scope.Benchmark )
+public class IntervalExpansionBenchmark
+{
+    private static final RelationshipType CONNECTED_TO = withName( "CONNECTED_TO" );
+    private static final RelationshipType DELIVERY_ROUTE = withName( "DELIVERY_ROUTE" );
+    private static final CostEvaluator<Double> COST_EVALUATOR = CommonEvaluators.doubleCostEvaluator( "cost" );
+    private static final int NUMBER_OF_SAMPLES = 4096;
+
+    @Param( {"legacy", "shared", "cached"} )
+    public String expander;
+
+    private GraphDatabaseService db;
+    private ValidityWindows validityWindows;
+    private Path[] nodes;
+    private Node[][] routes;
+    private Interval[] intervals;
+    private FixedState[] states;
+
+    @Setup( Level.Trial )
+    public void setup()
+    {
+        db = DbUtils.existingDB( LogisticsConfig.STORE_DIR );
+        Random random = new Random( 42 );
+
+        try ( Transaction tx = db.beginTx() )
+        {
+            List<Node> deliveryBases = nodesWithLabel( "DeliveryBase" );
+            List<Node> expandable = new ArrayList<>( deliveryBases );
+            expandable.addAll( nodesWithLabel( "DeliveryArea" ) );
+
+            nodes = new Path[NUMBER_OF_SAMPLES];
+            routes = new Node[NUMBER_OF_SAMPLES][];
+            intervals = new Interval[NUMBER_OF_SAMPLES];
+            states = new FixedState[NUMBER_OF_SAMPLES];
+            for ( int i = 0; i < NUMBER_OF_SAMPLES; i++ )
+            {
+                nodes[i] = new SingleNodePath( expandable.get( random.nextInt( expandable.size() ) ) );
+                routes[i] = new Node[]{deliveryBases.get( random.nextInt( deliveryBases.size() ) ),
+                        deliveryBases.get( random.nextInt( deliveryBases.size() ) )};
+                DateTime startDtm = LogisticsConfig.START_DATE.plusDays( random.nextInt( 6 ) );
+                intervals[i] = new Interval( startDtm, startDtm.plusDays( 1 ) );
+                states[i] = new FixedState( intervals[i] );
+            }
+            tx.success();
+        }
+
+        if ( expander.equals( "cached" ) )
+        {
+            validityWindows = new ValidityWindows( db, CONNECTED_TO, DELIVERY_ROUTE );
+            validityWindows.snapshot();
+        }
+    }
+
+    @TearDown( Level.Trial )
+    public void teardown()
+    {
+        if ( validityWindows != null )
+        {
+            validityWindows.stopMaintaining();
+        }
+        db.shutdown();
+    }
+
+    @State( Scope.Thread )
+    public static class Sample
+    {
+        private Transaction tx;
+        private int next;
+
+        @Setup( Level.Iteration )
+        public void beginTx( IntervalExpansionBenchmark benchmark )
+        {
+            tx = benchmark.db.beginTx();
+        }
+
+        @TearDown( Level.Iteration )
+        public void closeTx()
+        {
+            tx.success();
+            tx.close();
+        }
+
+        int next()
+        {
+            next = (next + 1) % NUMBER_OF_SAMPLES;
+            return next;
+        }
+    }
+
+    @Benchmark
+    @SuppressWarnings( "unchecked" )
+    public void expandNode( Sample sample, Blackhole blackhole )
+    {
+        int i = sample.next();
+        Iterable<Relationship> relationships;
+        if ( expander.equals( "legacy" ) )
+        {
+            relationships = new LegacyIntervalPathExpander( Direction.BOTH, CONNECTED_TO, DELIVERY_ROUTE )
+                    .expand( nodes[i], states[i] );
+        }
+        else
+        {
+            relationships = intervalExpander( intervals[i], CONNECTED_TO, DELIVERY_ROUTE )
+                    .expand( nodes[i], BranchState.NO_STATE );
+        }
+        for ( Relationship relationship : relationships )
+        {
+            blackhole.consume( relationship );
+        }
+    }
+
+    @Benchmark
+    public Path routeBetweenDeliveryBases( Sample sample )
+    {
+        int i = sample.next();
+        Interval interval = intervals[i];
+        if ( expander.equals( "legacy" ) )
+        {
+            return GraphAlgoFactory.dijkstra( new LegacyIntervalPathExpander( Direction.BOTH, CONNECTED_TO ),
+                    new InitialBranchState.State<Interval>( interval, interval ), COST_EVALUATOR )
+                    .findSinglePath( routes[i][0], routes[i][1] );
+        }
+        PathExpander<Object> pathExpander = intervalExpander( interval, CONNECTED_TO );
+        return GraphAlgoFactory.dijkstra( pathExpander, COST_EVALUATOR ).findSinglePath( routes[i][0], routes[i][1] );
+    }
+
+    private IntervalExpander intervalExpander( Interval interval, RelationshipType... types )
+    {
+        return new IntervalExpander( interval, Direction.BOTH,
+                validityWindows == null ? null : validityWindows.snapshot(), types );
+    }
+
+    private List<Node> nodesWithLabel( String label )
+    {
+        List<Node> results = new ArrayList<>();
+        for ( Node node : GlobalGraphOperations.at( db ).getAllNodesWithLabel( DynamicLabel.label( label ) ) )
+        {
+            results.add( node );
+        }
+        return results;
+    }
+
+    private static class FixedState implements BranchState<Interval>
+    {
+        private final Interval interval;
+
+        FixedState( Interval interval )
+        {
+            this.interval = interval;
+        }
+
+        @Override
+        public Interval getState()
+        {
+            return interval;
+        }
+
+        @Override
+        public void setState( Interval state )
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.neo4j.graphdatabases.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.joda.time.Interval;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.traversal.BranchState;
+
+/**
+ * The interval expander the route calculators used before IntervalExpander, kept as a baseline:
+ * it boxes both dates and creates an Interval for every relationship, and collects the valid
+ * relationships into a new list for every expansion.
+ */
+class LegacyIntervalPathExpander implements PathExpander<Interval>
+{
+    private final Direction direction;
+    private final RelationshipType[] types;
+
+    LegacyIntervalPathExpander( Direction direction, RelationshipType... types )
+    {
+        this.direction = direction;
+        this.types = types;
+    }
+
+    @Override
+    public Iterable<Relationship> expand( Path path, BranchState<Interval> deliveryInterval )
+    {
+        List<Relationship> results = new ArrayList<Relationship>();
+        for ( Relationship r : path.endNode().getRelationships( direction, types ) )
+        {
+            Interval relationshipInterval = new Interval(
+                    (Long) r.getProperty( "start_date" ),
+                    (Long) r.getProperty( "end_date" ) );
+            if ( relationshipInterval.contains( deliveryInterval.getState() ) )
+            {
+                results.add( r );
+            }
+        }
+
+        return results;
+    }
+
+    @Override
+    public PathExpander<Interval> reverse()
+    {
+        return null;
+    }
+}
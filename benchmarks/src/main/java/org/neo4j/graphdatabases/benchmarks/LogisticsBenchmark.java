@@ -0,0 +1,138 @@
+package org.neo4j.graphdatabases.benchmarks;
+
+import static org.neo4j.graphdatabases.benchmarks.SampleCursor.NUMBER_OF_SAMPLES;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+import org.neo4j.graphdatabases.LogisticsConfig;
+import org.neo4j.graphdatabases.queries.LogisticsQueries;
+import org.neo4j.graphdatabases.queries.helpers.DbUtils;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The LogisticsQueries route calculations as JMH benchmarks, against the Logistics dataset. Only
+ * routes that exist are sampled, so that no benchmark measures failures.
+ */
+@BenchmarkMode( Mode.SampleTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 5 )
+@Measurement( iterations = 10, time = 5 )
+@Fork( value = 2, jvmArgs = {"-Xms2g", "-Xmx2g"} )
+@State( Scope.Benchmark )
+public class LogisticsBenchmark
+{
+    private GraphDatabaseService db;
+    private LogisticsQueries queries;
+    private String[] starts;
+    private String[] ends;
+    private Interval[] intervals;
+
+    @Setup( Level.Trial )
+    public void setup()
+    {
+        db = DbUtils.existingDB( LogisticsConfig.STORE_DIR );
+        queries = new LogisticsQueries( db, new BenchmarkExecutionEngine( db ) );
+        int numberOfDeliveryAreas = DbUtils.numberOfItemsWithLabel( db, "DeliveryArea" );
+        int numberOfDeliverySegments = DbUtils.numberOfItemsWithLabel( db, "DeliverySegment" );
+
+        Random random = new Random( 42 );
+        starts = new String[NUMBER_OF_SAMPLES];
+        ends = new String[NUMBER_OF_SAMPLES];
+        intervals = new Interval[NUMBER_OF_SAMPLES];
+        int i = 0;
+        while ( i < NUMBER_OF_SAMPLES )
+        {
+            if ( random.nextInt( 2 ) < 1 )
+            {
+                starts[i] = String.format( "DeliverySegment-%s", random.nextInt( numberOfDeliverySegments ) + 1 );
+            }
+            else
+            {
+                starts[i] = String.format( "DeliveryArea-%s", random.nextInt( numberOfDeliveryAreas ) + 1 );
+            }
+            ends[i] = String.format( "DeliverySegment-%s", random.nextInt( numberOfDeliverySegments ) + 1 );
+            DateTime startDtm = LogisticsConfig.START_DATE.plusDays( random.nextInt( 6 ) );
+            intervals[i] = new Interval( startDtm, startDtm.plusDays( 1 ) );
+
+            // Also builds the routing index
+            try
+            {
+                queries.findShortestPathWithRoutingIndex( starts[i], ends[i], intervals[i] );
+                i++;
+            }
+            catch ( IllegalStateException e )
+            {
+                // No route, so sample another one
+            }
+        }
+    }
+
+    @TearDown( Level.Trial )
+    public void teardown()
+    {
+        queries.shutdown();
+        db.shutdown();
+    }
+
+    @Benchmark
+    public int cypherReduce( SampleCursor cursor, Blackhole blackhole )
+    {
+        int i = cursor.next();
+        return Results.consume( queries.findShortestPathWithCypherReduce( starts[i], ends[i], intervals[i] ),
+                blackhole );
+    }
+
+    @Benchmark
+    public int hubLabelParcelRouteCalculator( SampleCursor cursor, Blackhole blackhole )
+    {
+        int i = cursor.next();
+        return Results.consume( queries.findShortestPathWithHubLabelParcelRouteCalculator( starts[i], ends[i],
+                intervals[i] ), blackhole );
+    }
+
+    @Benchmark
+    public int parcelRouteCalculator( SampleCursor cursor, Blackhole blackhole )
+    {
+        int i = cursor.next();
+        return Results.consume( queries.findShortestPathWithParcelRouteCalculator( starts[i], ends[i],
+                intervals[i] ), blackhole );
+    }
+
+    @Benchmark
+    public int simpleParcelRouteCalculator( SampleCursor cursor, Blackhole blackhole )
+    {
+        int i = cursor.next();
+        try ( Transaction tx = db.beginTx() )
+        {
+            int count = Results.consume( queries.findShortestPathWithSimpleParcelRouteCalculator( starts[i],
+                    ends[i], intervals[i] ), blackhole );
+            tx.success();
+            return count;
+        }
+    }
+
+    @Benchmark
+    public int routingIndex( SampleCursor cursor, Blackhole blackhole )
+    {
+        int i = cursor.next();
+        return Results.consume( queries.findShortestPathWithRoutingIndex( starts[i], ends[i], intervals[i] ),
+                blackhole );
+    }
+}
@@ -0,0 +1,25 @@
+package org.neo4j.graphdatabases.benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Query results are evaluated lazily, so benchmarks consume every row to make sure the whole
+ * query runs inside the measurement.
+ */
+final class Results
+{
+    private Results()
+    {
+    }
+
+    static int consume( Iterable<?> results, Blackhole blackhole )
+    {
+        int count = 0;
+        for ( Object result : results )
+        {
+            blackhole.consume( result );
+            count++;
+        }
+        return count;
+    }
+}
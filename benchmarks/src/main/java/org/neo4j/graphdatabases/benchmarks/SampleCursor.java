@@ -0,0 +1,21 @@
+package org.neo4j.graphdatabases.benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cycles through a benchmark's pre-generated parameters, so that generating them isn't measured.
+ */
+@State( Scope.Thread )
+public class SampleCursor
+{
+    static final int NUMBER_OF_SAMPLES = 1024;
+
+    private int next;
+
+    int next()
+    {
+        next = (next + 1) % NUMBER_OF_SAMPLES;
+        return next;
+    }
+}
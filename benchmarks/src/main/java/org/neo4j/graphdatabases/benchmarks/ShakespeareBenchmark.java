@@ -0,0 +1,135 @@
+package org.neo4j.graphdatabases.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.cypher.javacompat.ExecutionEngine;
+import org.neo4j.graphdatabases.queries.ShakespeareQueries;
+import org.neo4j.graphdatabases.queries.testing.IndexParam;
+import org.neo4j.graphdatabases.queries.testing.IndexParams;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.kernel.impl.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The ShakespeareQueries as JMH benchmarks. There is no Shakespeare dataset, so each trial creates
+ * the graph from ShakespeareQueriesTest in a temporary store. The graph is tiny, so these
+ * benchmarks mostly measure the cost of running a cached Cypher query.
+ */
+@BenchmarkMode( Mode.SampleTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 5 )
+@Measurement( iterations = 10, time = 5 )
+@Fork( value = 2, jvmArgs = {"-Xms2g", "-Xmx2g"} )
+@State( Scope.Benchmark )
+public class ShakespeareBenchmark
+{
+    private static final String CREATE_GRAPH =
+            "CREATE (shakespeare:Author { firstname: 'William', lastname: 'Shakespeare' }),\n" +
+                    "       (juliusCaesar:Play { title: 'Julius Caesar' }),\n" +
+                    "       (shakespeare)-[:WROTE_PLAY { year: 1599 }]->(juliusCaesar),\n" +
+                    "       (theTempest:Play { title: 'The Tempest' }),\n" +
+                    "       (shakespeare)-[:WROTE_PLAY { year: 1610}]->(theTempest),\n" +
+                    "       (rsc:Company { name: 'RSC' }),\n" +
+                    "       (production1:Production { name: 'Julius Caesar' }),\n" +
+                    "       (rsc)-[:PRODUCED]->(production1),\n" +
+                    "       (production1)-[:PRODUCTION_OF]->(juliusCaesar),\n" +
+                    "       (performance1:Performance { date: 20120729 }),\n" +
+                    "       (performance1)-[:PERFORMANCE_OF]->(production1),\n" +
+                    "       (production2:Production { name: 'The Tempest' }),\n" +
+                    "       (rsc)-[:PRODUCED]->(production2),\n" +
+                    "       (production2)-[:PRODUCTION_OF]->(theTempest),\n" +
+                    "       (performance2:Performance { date: 20061121 }),\n" +
+                    "       (performance2)-[:PERFORMANCE_OF]->(production2),\n" +
+                    "       (performance3:Performance { date: 20120730 }),\n" +
+                    "       (performance3)-[:PERFORMANCE_OF]->(production1),\n" +
+                    "       (billy:User { name: 'Billy' }),\n" +
+                    "       (review:Review { rating: 5, review: 'This was awesome!' }),\n" +
+                    "       (billy)-[:WROTE_REVIEW]->(review),\n" +
+                    "       (review)-[:RATED]->(performance1),\n" +
+                    "       (theatreRoyal:Venue { name: 'Theatre Royal' }),\n" +
+                    "       (performance1)-[:VENUE]->(theatreRoyal),\n" +
+                    "       (performance2)-[:VENUE]->(theatreRoyal),\n" +
+                    "       (performance3)-[:VENUE]->(theatreRoyal),\n" +
+                    "       (greyStreet:Street { name: 'Grey Street' }),\n" +
+                    "       (theatreRoyal)-[:STREET]->(greyStreet),\n" +
+                    "       (newcastle:City { name: 'Newcastle' }),\n" +
+                    "       (greyStreet)-[:CITY]->(newcastle),\n" +
+                    "       (tyneAndWear:County { name: 'Tyne and Wear' }),\n" +
+                    "       (newcastle)-[:COUNTY]->(tyneAndWear),\n" +
+                    "       (england:Country { name: 'England' }),\n" +
+                    "       (tyneAndWear)-[:COUNTRY]->(england),\n" +
+                    "       (stratford:City { name: 'Stratford upon Avon' }),\n" +
+                    "       (stratford)-[:COUNTRY]->(england),\n" +
+                    "       (rsc)-[:BASED_IN]->(stratford),\n" +
+                    "       (shakespeare)-[:BORN_IN]->stratford";
+
+    private File storeDir;
+    private GraphDatabaseService db;
+    private ShakespeareQueries queries;
+
+    @Setup( Level.Trial )
+    public void setup() throws IOException
+    {
+        storeDir = File.createTempFile( "shakespeare-", "-db" );
+        FileUtils.deleteFile( storeDir );
+        db = new GraphDatabaseFactory().newEmbeddedDatabase( storeDir.getAbsolutePath() );
+        new ExecutionEngine( db ).execute( CREATE_GRAPH );
+        new IndexParams(
+                IndexParam.indexParam( "Venue", "name" ),
+                IndexParam.indexParam( "Author", "lastname" ),
+                IndexParam.indexParam( "City", "name" ) ).index( db );
+        queries = new ShakespeareQueries( new BenchmarkExecutionEngine( db ) );
+    }
+
+    @TearDown( Level.Trial )
+    public void teardown() throws IOException
+    {
+        db.shutdown();
+        FileUtils.deleteRecursively( storeDir );
+    }
+
+    @Benchmark
+    public int theatreCityBard( Blackhole blackhole )
+    {
+        return Results.consume( queries.theatreCityBard(), blackhole );
+    }
+
+    @Benchmark
+    public int allPlays( Blackhole blackhole )
+    {
+        return Results.consume( queries.allPlays(), blackhole );
+    }
+
+    @Benchmark
+    public int latePeriodPlays( Blackhole blackhole )
+    {
+        return Results.consume( queries.latePeriodPlays(), blackhole );
+    }
+
+    @Benchmark
+    public int orderedByPerformance( Blackhole blackhole )
+    {
+        return Results.consume( queries.orderedByPerformance(), blackhole );
+    }
+
+    @Benchmark
+    public int exampleOfWith( Blackhole blackhole )
+    {
+        return Results.consume( queries.exampleOfWith(), blackhole );
+    }
+}
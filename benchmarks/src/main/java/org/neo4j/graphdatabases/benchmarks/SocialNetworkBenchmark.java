@@ -0,0 +1,137 @@
+package org.neo4j.graphdatabases.benchmarks;
+
+import static org.neo4j.graphdatabases.benchmarks.SampleCursor.NUMBER_OF_SAMPLES;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphdatabases.SocialNetworkConfig;
+import org.neo4j.graphdatabases.queries.SocialNetworkQueries;
+import org.neo4j.graphdatabases.queries.helpers.DbUtils;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The SocialNetworkQueries performance tests as JMH benchmarks, against the Social Network dataset.
+ */
+@BenchmarkMode( Mode.SampleTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 5 )
+@Measurement( iterations = 10, time = 5 )
+@Fork( value = 2, jvmArgs = {"-Xms2g", "-Xmx2g"} )
+@State( Scope.Benchmark )
+public class SocialNetworkBenchmark
+{
+    private static final int NUMBER_OF_RESULTS = 5;
+    private static final int NUMBER_OF_TOPICS = 5;
+
+    private GraphDatabaseService db;
+    private SocialNetworkQueries queries;
+    private String[] users;
+    private String[][] topics;
+
+    @Setup( Level.Trial )
+    public void setup()
+    {
+        db = DbUtils.existingDB( SocialNetworkConfig.STORE_DIR );
+        queries = new SocialNetworkQueries( db, new BenchmarkExecutionEngine( db ) );
+
+        Random random = new Random( 42 );
+        List<Integer> topicIds = new ArrayList<>();
+        for ( int topicId = 1; topicId <= SocialNetworkConfig.NUMBER_TOPICS; topicId++ )
+        {
+            topicIds.add( topicId );
+        }
+        users = new String[NUMBER_OF_SAMPLES];
+        topics = new String[NUMBER_OF_SAMPLES][NUMBER_OF_TOPICS];
+        for ( int i = 0; i < NUMBER_OF_SAMPLES; i++ )
+        {
+            users[i] = String.format( "User-%s", random.nextInt( SocialNetworkConfig.NUMBER_USERS ) + 1 );
+            Collections.shuffle( topicIds, random );
+            for ( int j = 0; j < NUMBER_OF_TOPICS; j++ )
+            {
+                topics[i][j] = String.format( "Topic-%s", topicIds.get( j ) );
+            }
+        }
+    }
+
+    @TearDown( Level.Trial )
+    public void teardown()
+    {
+        db.shutdown();
+    }
+
+    @Benchmark
+    public int sharedInterestsSameCompany( SampleCursor cursor, Blackhole blackhole )
+    {
+        int i = cursor.next();
+        return Results.consume( queries.sharedInterestsSameCompany( users[i] ), blackhole );
+    }
+
+    @Benchmark
+    public int sharedInterestsAllCompanies( SampleCursor cursor, Blackhole blackhole )
+    {
+        int i = cursor.next();
+        return Results.consume( queries.sharedInterestsAllCompanies( users[i], NUMBER_OF_RESULTS ), blackhole );
+    }
+
+    @Benchmark
+    public int sharedInterestsAlsoInterestedInTopic( SampleCursor cursor, Blackhole blackhole )
+    {
+        int i = cursor.next();
+        return Results.consume( queries.sharedInterestsAlsoInterestedInTopic( users[i], topics[i][0] ), blackhole );
+    }
+
+    @Benchmark
+    public int friendOfAFriendWithInterest( SampleCursor cursor, Blackhole blackhole )
+    {
+        int i = cursor.next();
+        return Results.consume( queries.friendOfAFriendWithInterest( users[i], topics[i][0], NUMBER_OF_RESULTS ),
+                blackhole );
+    }
+
+    @Benchmark
+    public int friendOfAFriendWithInterestTraversalFramework( SampleCursor cursor, Blackhole blackhole )
+    {
+        int i = cursor.next();
+        try ( Transaction tx = db.beginTx() )
+        {
+            int count = Results.consume( queries.friendOfAFriendWithInterestTraversalFramework( users[i],
+                    topics[i][0], NUMBER_OF_RESULTS ), blackhole );
+            tx.success();
+            return count;
+        }
+    }
+
+    @Benchmark
+    public int friendOfAFriendWithMultipleInterest( SampleCursor cursor, Blackhole blackhole )
+    {
+        int i = cursor.next();
+        return Results.consume( queries.friendOfAFriendWithMultipleInterest( users[i], NUMBER_OF_RESULTS,
+                topics[i] ), blackhole );
+    }
+
+    @Benchmark
+    public int friendWorkedWithFriendWithInterests( SampleCursor cursor, Blackhole blackhole )
+    {
+        int i = cursor.next();
+        return Results.consume( queries.friendWorkedWithFriendWithInterests( users[i], NUMBER_OF_RESULTS,
+                topics[i] ), blackhole );
+    }
+}
@@ -2,9 +2,11 @@ package org.neo4j.graphdatabases;
 
 public class AccessControlWithRelationshipPropertiesConfig
 {
-    public static final String STORE_DIR = "../datasets/access-control/";
+    public static final String DATASET = "access-control";
+    public static final String STORE_DIR = ScaleFactor.storeDir( DATASET );
     public static final String TITLE = "Access Control";
-    public static final int NUMBER_OF_ADMINS = 1000;
-    public static final int NUMBER_OF_GROUPS = 2000;
-    public static final int NUMBER_OF_COMPANIES = 30000;
+    public static final int NUMBER_OF_ADMINS = ScaleFactor.count( 1000, 10 );
+    public static final int NUMBER_OF_GROUPS = ScaleFactor.count( 2000, 20 );
+    // Groups pick up to 50 allowed companies from pools of 25% of the companies
+    public static final int NUMBER_OF_COMPANIES = ScaleFactor.count( 30000, 400 );
 }
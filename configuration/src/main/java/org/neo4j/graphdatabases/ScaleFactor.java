@@ -0,0 +1,113 @@
+package org.neo4j.graphdatabases;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * The scale of the sample datasets, from SF0.01 to SF100. SF1 is the size the datasets have always had.
+ * The scale factor is taken from the scale.factor system property or, failing that, from the scale.factor
+ * entry of the properties file named by scale.config (../scale.properties by default).
+ * <p/>
+ * Node counts grow linearly with the scale factor, down to a floor below which a dataset would no longer
+ * have enough nodes for its fan-outs. Fan-outs, such as the number of friends of a user, are the same at
+ * every scale, so that queries see the same neighbourhoods in a bigger graph. Each scale has its own store
+ * directory; SF1 keeps the original one.
+ */
+public class ScaleFactor
+{
+    public static final String DATASETS_DIR = "../datasets";
+    public static final double SCALE_FACTOR = load();
+    public static final String NAME = name( SCALE_FACTOR );
+
+    /**
+     * Scales a count, rounding to the nearest whole number and keeping to the given minimum.
+     */
+    public static int count( int countAtScaleOne, int minimum )
+    {
+        return (int) Math.max( minimum, Math.round( countAtScaleOne * SCALE_FACTOR ) );
+    }
+
+    /**
+     * Returns the name of the dataset at the current scale.
+     */
+    public static String dataset( String dataset )
+    {
+        return dataset( dataset, SCALE_FACTOR );
+    }
+
+    /**
+     * Returns the name of the dataset at the given scale: the dataset itself at SF1, otherwise the
+     * dataset followed by the name of the scale, as in social-network-sf0.1.
+     */
+    public static String dataset( String dataset, double scaleFactor )
+    {
+        return scaleFactor == 1.0 ? dataset : dataset + "-" + name( scaleFactor );
+    }
+
+    public static String storeDir( String dataset )
+    {
+        return DATASETS_DIR + "/" + dataset( dataset );
+    }
+
+    /**
+     * Returns the name of a scale, as in sf0.01 or sf100.
+     */
+    public static String name( double scaleFactor )
+    {
+        return "sf" + BigDecimal.valueOf( scaleFactor ).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Parses a scale factor, given either as a number or as the name of a scale.
+     */
+    public static double parse( String value )
+    {
+        String number = value.trim().toLowerCase( Locale.ROOT );
+        if ( number.startsWith( "sf" ) )
+        {
+            number = number.substring( 2 );
+        }
+        double scaleFactor;
+        try
+        {
+            scaleFactor = Double.parseDouble( number );
+        }
+        catch ( NumberFormatException e )
+        {
+            throw new IllegalArgumentException( "Invalid scale factor: " + value, e );
+        }
+        if ( !(scaleFactor > 0.0) || Double.isInfinite( scaleFactor ) )
+        {
+            throw new IllegalArgumentException( "Scale factor must be a positive number: " + value );
+        }
+        return scaleFactor;
+    }
+
+    private static double load()
+    {
+        String value = System.getProperty( "scale.factor" );
+        if ( value == null )
+        {
+            File file = new File( System.getProperty( "scale.config", "../scale.properties" ) );
+            if ( file.isFile() )
+            {
+                Properties properties = new Properties();
+                try ( InputStream in = new FileInputStream( file ) )
+                {
+                    properties.load( in );
+                }
+                catch ( IOException e )
+                {
+                    throw new IllegalStateException( "Unable to read " + file, e );
+                }
+                value = properties.getProperty( "scale.factor" );
+            }
+        }
+        return value == null ? 1.0 : parse( value );
+    }
+}
@@ -2,9 +2,11 @@ package org.neo4j.graphdatabases;
 
 public class SimpleSocialNetworkConfig
 {
-    public static final String STORE_DIR = "../datasets/simple-social-network/";
+    public static final String DATASET = "simple-social-network";
+    public static final String STORE_DIR = ScaleFactor.storeDir( DATASET );
     public static final String TITLE = "Simple Social Network";
-    public static final int NUMBER_USERS = 20900;
+    // Users pick up to 100 friends from the other users
+    public static final int NUMBER_USERS = ScaleFactor.count( 20900, 200 );
     public static final int MIN_NUMBER_OF_FRIENDS = 50;
     public static final int MAX_NUMBER_OF_FRIENDS = 100;
 }
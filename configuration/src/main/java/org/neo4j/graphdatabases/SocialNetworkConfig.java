@@ -2,9 +2,11 @@ package org.neo4j.graphdatabases;
 
 public class SocialNetworkConfig
 {
-    public static final String STORE_DIR = "../datasets/social-network";
+    public static final String DATASET = "social-network";
+    public static final String STORE_DIR = ScaleFactor.storeDir( DATASET );
     public static final String TITLE = "Social Network";
-    public static final int NUMBER_USERS = 1000000;
-    public static final int NUMBER_COMPANIES = 10000;
+    public static final int NUMBER_USERS = ScaleFactor.count( 1000000, 1000 );
+    public static final int NUMBER_COMPANIES = ScaleFactor.count( 10000, 10 );
+    // Users are interested in up to 3 topics; the topic count is part of the fan-out, so it does not scale
     public static final int NUMBER_TOPICS = 100;
 }
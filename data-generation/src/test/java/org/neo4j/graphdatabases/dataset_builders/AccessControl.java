@@ -5,6 +5,8 @@ import java.io.File;
 import org.junit.Test;
 
 import org.neo4j.graphdatabases.AccessControlConfig;
+import org.neo4j.graphdatabases.dataset_builders.helpers.DatasetFingerprint;
+import org.neo4j.graphdatabases.dataset_builders.helpers.Seeds;
 import org.neo4j.graphdatabases.queries.helpers.DbUtils;
 import org.neo4j.graphdatabases.queries.traversals.IndexResources;
 import org.neo4j.graphdb.Direction;
@@ -149,6 +151,8 @@ public class AccessControl
 
         GraphStatistics.create( db, AccessControlConfig.TITLE )
                 .describeTo( new AsciiDocFormatter( SysOutLog.INSTANCE ) );
+        DatasetFingerprint.record( db, AccessControlConfig.STORE_DIR, AccessControlConfig.TITLE,
+                Seeds.datasetSeed(), System.out );
 
         db.shutdown();
     }
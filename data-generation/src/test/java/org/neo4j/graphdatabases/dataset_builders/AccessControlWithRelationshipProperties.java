@@ -6,6 +6,8 @@ import java.util.Random;
 import org.junit.Test;
 
 import org.neo4j.graphdatabases.AccessControlWithRelationshipPropertiesConfig;
+import org.neo4j.graphdatabases.dataset_builders.helpers.DatasetFingerprint;
+import org.neo4j.graphdatabases.dataset_builders.helpers.Seeds;
 import org.neo4j.graphdatabases.queries.helpers.DbUtils;
 import org.neo4j.graphdatabases.queries.traversals.IndexResources;
 import org.neo4j.graphdb.Direction;
@@ -51,6 +53,7 @@ public class AccessControlWithRelationshipProperties
                 .setConfig( DbUtils.dbConfig() )
                 .newGraphDatabase();
         DatasetManager dsm = new DatasetManager( db, SysOutLog.INSTANCE );
+        final long seed = Seeds.datasetSeed();
 
         NodeSpecification adminSpec = dsm.nodeSpecification( "Administrator", indexableProperty( db, "Administrator", "name" ) );
         NodeSpecification groupSpec = dsm.nodeSpecification( "Group", property( "name" ) );
@@ -60,7 +63,7 @@ public class AccessControlWithRelationshipProperties
 
         Property inheritProperty = new Property()
         {
-            private final Random random = new Random();
+            private final Random random = Seeds.stream( seed, "inherit" );
 
             @Override
             public void setProperty( PropertyContainer propertyContainer, GraphDatabaseService graphDatabaseService,
@@ -154,6 +157,8 @@ public class AccessControlWithRelationshipProperties
 
         GraphStatistics.create( db, AccessControlWithRelationshipPropertiesConfig.TITLE )
                 .describeTo( new AsciiDocFormatter( SysOutLog.INSTANCE ) );
+        DatasetFingerprint.record( db, AccessControlWithRelationshipPropertiesConfig.STORE_DIR,
+                AccessControlWithRelationshipPropertiesConfig.TITLE, seed, System.out );
 
         db.shutdown();
 
@@ -1,153 +1,309 @@
 package org.neo4j.graphdatabases.dataset_builders;
 
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
+
+import static org.neo4j.helpers.collection.MapUtil.map;
+
 import java.io.File;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.NoSuchElementException;
 import java.util.Random;
 
 import org.joda.time.Interval;
 import org.junit.Test;
 
 import org.neo4j.graphdatabases.LogisticsConfig;
+import org.neo4j.graphdatabases.dataset_builders.helpers.BulkStore;
+import org.neo4j.graphdatabases.dataset_builders.helpers.CsvGraphWriter;
+import org.neo4j.graphdatabases.dataset_builders.helpers.DatasetFingerprint;
+import org.neo4j.graphdatabases.dataset_builders.helpers.EmbeddedGraphWriter;
+import org.neo4j.graphdatabases.dataset_builders.helpers.GraphWriter;
+import org.neo4j.graphdatabases.dataset_builders.helpers.ParallelStages;
+import org.neo4j.graphdatabases.dataset_builders.helpers.RandomRanges;
+import org.neo4j.graphdatabases.dataset_builders.helpers.Seeds;
 import org.neo4j.graphdatabases.dataset_builders.helpers.SevenDays;
 import org.neo4j.graphdatabases.queries.helpers.DbUtils;
+import org.neo4j.graphdb.DynamicLabel;
 import org.neo4j.graphdb.GraphDatabaseService;
-import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.factory.GraphDatabaseFactory;
 import org.neo4j.kernel.impl.util.FileUtils;
-import org.neo4j.neode.Dataset;
-import org.neo4j.neode.DatasetManager;
-import org.neo4j.neode.NodeCollection;
-import org.neo4j.neode.NodeSpecification;
 import org.neo4j.neode.logging.SysOutLog;
-import org.neo4j.neode.properties.Property;
 import org.neo4j.neode.statistics.AsciiDocFormatter;
 import org.neo4j.neode.statistics.GraphStatistics;
 
-import static org.neo4j.neode.Range.exactly;
-import static org.neo4j.neode.Range.minMax;
-import static org.neo4j.neode.TargetNodesStrategy.create;
-import static org.neo4j.neode.TargetNodesStrategy.getOrCreate;
-import static org.neo4j.neode.properties.Property.indexableProperty;
-
+/**
+ * Builds the logistics network: parcel centres connected to a shared pool of delivery bases, each
+ * delivery base routing to its own delivery areas, and each area to its own delivery segments. Every
+ * connection is made of two or three relationships whose intervals split one week between them.
+ * <p/>
+ * Choices are made in memory first, from seeded per-batch random streams, and nodes and
+ * relationships are then written in batches on all cores. With the dataset.bulk system property set,
+ * the network is streamed to CSV files instead, and the store is built from them in one pass by
+ * {@link BulkStore}.
+ */
 public class Logistics
 {
+    public static final int BATCH_SIZE = 100;
+
+    private static final Label LOCATION = DynamicLabel.label( "Location" );
+    private static final Label PARCEL_CENTRE = DynamicLabel.label( "ParcelCentre" );
+    private static final Label DELIVERY_BASE = DynamicLabel.label( "DeliveryBase" );
+    private static final Label DELIVERY_AREA = DynamicLabel.label( "DeliveryArea" );
+    private static final Label DELIVERY_SEGMENT = DynamicLabel.label( "DeliverySegment" );
+    private static final RelationshipType CONNECTED_TO = withName( "CONNECTED_TO" );
+    private static final RelationshipType DELIVERY_ROUTE = withName( "DELIVERY_ROUTE" );
+
+    private static final int CONNECTED_TO_INTERVALS = 2;
+    private static final int DELIVERY_ROUTE_INTERVALS = 3;
+    private static final int NONE = -1;
+
     @Test
     public void buildLogistics() throws Exception
     {
         File dir = new File( LogisticsConfig.STORE_DIR );
         FileUtils.deleteRecursively( dir );
 
-        GraphDatabaseService db = new GraphDatabaseFactory()
-                .newEmbeddedDatabaseBuilder( LogisticsConfig.STORE_DIR )
-                .setConfig( DbUtils.dbConfig() )
-                .newGraphDatabase();
-        DatasetManager dsm = new DatasetManager( db, SysOutLog.INSTANCE );
-
-        NodeSpecification parcelCentreSpec = dsm.nodeSpecification( "ParcelCentre",
-                indexableProperty( db, "ParcelCentre", "name", "Location" ) );
-        NodeSpecification deliveryBaseSpec = dsm.nodeSpecification( "DeliveryBase",
-                indexableProperty( db, "DeliveryBase","name", "Location" ) );
-        NodeSpecification deliveryAreaSpec = dsm.nodeSpecification( "DeliveryArea",
-                indexableProperty( db, "DeliveryArea", "name", "Location" ) );
-        NodeSpecification deliverySegmentSpec = dsm.nodeSpecification( "DeliverySegment",
-                indexableProperty( db, "DeliverySegment", "name", "Location" ) );
-
-        Property costProperty = new CostProperty();
-
-        Dataset dataset = dsm.newDataset( LogisticsConfig.TITLE );
-
-        NodeCollection parcelCentres = parcelCentreSpec.create( LogisticsConfig.NUMBER_OF_PARCEL_CENTRES ).update(
-                dataset );
-
-        NodeCollection deliveryBases = parcelCentres.createRelationshipsTo(
-                getOrCreate( deliveryBaseSpec, 400 )
-                        .numberOfTargetNodes( minMax(
-                                LogisticsConfig.MIN_NUMBER_OF_DELIVERY_BASES_PER_PARCEL_CENTRE,
-                                LogisticsConfig.MAX_NUMBER_OF_DELIVERY_BASES_PER_PARCEL_CENTRE ) )
-                        .relationship( dsm.relationshipSpecification( "CONNECTED_TO",
-                                new IntervalProperty( 2 ),
-                                costProperty ) )
-                        .relationshipConstraints( exactly( 2 ) ) )
-                .update( dataset );
-
-        NodeCollection deliveryAreas = deliveryBases.createRelationshipsTo(
-                create( deliveryAreaSpec )
-                        .numberOfTargetNodes( minMax(
-                                LogisticsConfig.MIN_NUMBER_OF_DELIVERY_AREAS_PER_DELIVERY_BASE,
-                                LogisticsConfig.MAX_NUMBER_OF_DELIVERY_AREAS_PER_DELIVERY_BASE ) )
-                        .relationship( dsm.relationshipSpecification( "DELIVERY_ROUTE",
-                                new IntervalProperty( 3 ),
-                                costProperty ) )
-                        .relationshipConstraints( exactly( 3 ) ) )
-                .update( dataset );
-        deliveryAreas.createRelationshipsTo(
-                create( deliverySegmentSpec )
-                        .numberOfTargetNodes( minMax(
-                                LogisticsConfig.MIN_NUMBER_OF_DELIVERY_SEGMENTS_PER_DELIVERY_AREA,
-                                LogisticsConfig.MAX_NUMBER_OF_DELIVERY_SEGMENTS_PER_DELIVERY_AREA ) )
-                        .relationship( dsm.relationshipSpecification( "DELIVERY_ROUTE",
-                                new IntervalProperty( 3 ),
-                                costProperty ) )
-                        .relationshipConstraints( exactly( 3 ) ) )
-                .updateNoReturn( dataset, 1000 );
-
-        dataset.end();
+        long seed = Seeds.datasetSeed();
+        int numberOfThreads = Runtime.getRuntime().availableProcessors();
+        boolean bulk = Boolean.getBoolean( "dataset.bulk" );
+        System.out.println( String.format( "Building %s with seed %s on %s threads%s", LogisticsConfig.TITLE,
+                seed, numberOfThreads, bulk ? " in bulk" : "" ) );
+
+        if ( bulk )
+        {
+            File csvDir = new File( LogisticsConfig.STORE_DIR + "-csv" );
+            FileUtils.deleteRecursively( csvDir );
+            try ( CsvGraphWriter csv = new CsvGraphWriter( csvDir ) )
+            {
+                generate( new ParallelStages( seed, numberOfThreads, BATCH_SIZE, System.out ), csv );
+            }
+            BulkStore.build( csvDir, LogisticsConfig.STORE_DIR, System.out );
+            FileUtils.deleteRecursively( csvDir );
+        }
+        else
+        {
+            GraphDatabaseService db = new GraphDatabaseFactory()
+                    .newEmbeddedDatabaseBuilder( LogisticsConfig.STORE_DIR )
+                    .setConfig( DbUtils.dbConfig() )
+                    .newGraphDatabase();
+            generate( new ParallelStages( db, seed, numberOfThreads, BATCH_SIZE, System.out ),
+                    new EmbeddedGraphWriter( db ) );
+            db.shutdown();
+        }
 
+        GraphDatabaseService db = DbUtils.existingDB( LogisticsConfig.STORE_DIR );
         GraphStatistics.create( db, LogisticsConfig.TITLE )
                 .describeTo( new AsciiDocFormatter( SysOutLog.INSTANCE ) );
-
+        DatasetFingerprint.record( db, LogisticsConfig.STORE_DIR, LogisticsConfig.TITLE, seed, System.out );
         db.shutdown();
+    }
 
+    private static void generate( ParallelStages stages, GraphWriter graph )
+    {
+        for ( Label label : Arrays.asList( LOCATION, PARCEL_CENTRE, DELIVERY_BASE, DELIVERY_AREA,
+                DELIVERY_SEGMENT ) )
+        {
+            graph.index( label, "name" );
+        }
+        new Generation( stages, graph ).run();
     }
 
-    private static class IntervalProperty extends Property
+    private static class Generation
     {
-        private final int numberOfIntervals;
-        private final SevenDays sevenDays = new SevenDays( LogisticsConfig.START_DATE );
+        private final ParallelStages stages;
+        private final GraphWriter graph;
+        private final int numberOfParcelCentres = LogisticsConfig.NUMBER_OF_PARCEL_CENTRES;
+        private final int maxDeliveryBases = LogisticsConfig.MAX_NUMBER_OF_DELIVERY_BASES_PER_PARCEL_CENTRE;
+
+        private final int[] centreBases;
+        private int[] baseAreas;
+        private int[] areaSegments;
 
-        private Iterator<Interval> intervals;
-        private int counter;
+        private final long[] centreNodes;
+        private long[] baseNodes;
+        private long[] areaNodes;
 
-        private IntervalProperty( int numberOfIntervals )
+        Generation( ParallelStages stages, GraphWriter graph )
         {
-            this.numberOfIntervals = numberOfIntervals;
-            this.counter = numberOfIntervals;
+            this.stages = stages;
+            this.graph = graph;
+            centreBases = new int[numberOfParcelCentres * maxDeliveryBases];
+            Arrays.fill( centreBases, NONE );
+            centreNodes = new long[numberOfParcelCentres];
         }
 
-        @Override
-        public void setProperty( PropertyContainer propertyContainer, GraphDatabaseService graphDatabaseService,
-                                 String label, int iteration )
+        void run()
         {
-            if ( counter++ >= numberOfIntervals )
+            chooseDeliveryBases();
+            baseAreas = chooseCounts( "Choose delivery areas", baseNodes.length,
+                    LogisticsConfig.MIN_NUMBER_OF_DELIVERY_AREAS_PER_DELIVERY_BASE,
+                    LogisticsConfig.MAX_NUMBER_OF_DELIVERY_AREAS_PER_DELIVERY_BASE );
+            areaNodes = new long[baseAreas[baseNodes.length]];
+            areaSegments = chooseCounts( "Choose delivery segments", areaNodes.length,
+                    LogisticsConfig.MIN_NUMBER_OF_DELIVERY_SEGMENTS_PER_DELIVERY_AREA,
+                    LogisticsConfig.MAX_NUMBER_OF_DELIVERY_SEGMENTS_PER_DELIVERY_AREA );
+
+            writeNodes( "Parcel centres", PARCEL_CENTRE, centreNodes );
+            writeNodes( "Delivery bases", DELIVERY_BASE, baseNodes );
+            writeConnections();
+            writeDeliveryAreas();
+            writeDeliverySegments();
+        }
+
+        /**
+         * Picks each parcel centre's delivery bases from the pool, and numbers the bases that were
+         * picked in the order they were first picked, as getting or creating them would.
+         */
+        private void chooseDeliveryBases()
+        {
+            final int poolSize = LogisticsConfig.NUMBER_OF_DELIVERY_BASES;
+            stages.generate( "Choose delivery bases", numberOfParcelCentres, new ParallelStages.Generator()
             {
-                intervals = sevenDays.calculateIntervals( numberOfIntervals ).iterator();
-                counter = 1;
-            }
+                @Override
+                public void generate( int centre, Random random )
+                {
+                    int count = RandomRanges.flat( random,
+                            LogisticsConfig.MIN_NUMBER_OF_DELIVERY_BASES_PER_PARCEL_CENTRE, maxDeliveryBases );
+                    int[] bases = RandomRanges.distinctFlat( random, 0, poolSize - 1, count );
+                    System.arraycopy( bases, 0, centreBases, centre * maxDeliveryBases, bases.length );
+                }
+            } );
 
-            try
+            int[] numbers = new int[poolSize];
+            Arrays.fill( numbers, NONE );
+            int numberOfBases = 0;
+            for ( int slot = 0; slot < centreBases.length; slot++ )
             {
-                Interval nextInterval = intervals.next();
-                propertyContainer.setProperty( "start_date", nextInterval.getStartMillis() );
-                propertyContainer.setProperty( "end_date", nextInterval.getEndMillis() );
+                int base = centreBases[slot];
+                if ( base != NONE )
+                {
+                    if ( numbers[base] == NONE )
+                    {
+                        numbers[base] = numberOfBases++;
+                    }
+                    centreBases[slot] = numbers[base];
+                }
             }
-            catch ( NoSuchElementException e )
+            baseNodes = new long[numberOfBases];
+        }
+
+        /**
+         * Chooses a count for every item, and returns them as offsets: item i has the children
+         * offsets[i] to offsets[i + 1] - 1.
+         */
+        private int[] chooseCounts( String stage, int numberOfItems, final int min, final int max )
+        {
+            final int[] offsets = new int[numberOfItems + 1];
+            stages.generate( stage, numberOfItems, new ParallelStages.Generator()
             {
-                throw new IllegalStateException( String.format( "counter: %s, numberOfIntervals: %s, iteration: %s",
-                        counter, numberOfIntervals, iteration ) );
+                @Override
+                public void generate( int item, Random random )
+                {
+                    offsets[item + 1] = RandomRanges.flat( random, min, max );
+                }
+            } );
+            for ( int item = 0; item < numberOfItems; item++ )
+            {
+                offsets[item + 1] += offsets[item];
             }
+            return offsets;
         }
-    }
 
-    private static class CostProperty extends Property
-    {
-        private final Random random = new Random();
+        private void writeNodes( String stage, final Label label, final long[] nodeIds )
+        {
+            stages.write( stage, nodeIds.length, new ParallelStages.Writer()
+            {
+                @Override
+                public void write( int item, Random random, ParallelStages.Counts counts )
+                {
+                    nodeIds[item] = createLocation( label, item );
+                    counts.node();
+                }
+            } );
+        }
+
+        /**
+         * Parcel centres share delivery bases, so their connections are written one batch at a time.
+         */
+        private void writeConnections()
+        {
+            stages.writeSerially( "CONNECTED_TO", numberOfParcelCentres, new ParallelStages.Writer()
+            {
+                @Override
+                public void write( int centre, Random random, ParallelStages.Counts counts )
+                {
+                    for ( int slot = centre * maxDeliveryBases; slot < (centre + 1) * maxDeliveryBases; slot++ )
+                    {
+                        if ( centreBases[slot] != NONE )
+                        {
+                            connect( centreNodes[centre], baseNodes[centreBases[slot]], CONNECTED_TO,
+                                    CONNECTED_TO_INTERVALS, random, counts );
+                        }
+                    }
+                }
+            } );
+        }
 
-        @Override
-        public void setProperty( PropertyContainer propertyContainer, GraphDatabaseService graphDatabaseService,
-                                 String s, int i )
+        private void writeDeliveryAreas()
         {
-            propertyContainer.setProperty( "cost", random.nextInt( 10 ) + 1 );
+            stages.write( "Delivery areas", baseNodes.length, new ParallelStages.Writer()
+            {
+                @Override
+                public void write( int base, Random random, ParallelStages.Counts counts )
+                {
+                    for ( int area = baseAreas[base]; area < baseAreas[base + 1]; area++ )
+                    {
+                        areaNodes[area] = createLocation( DELIVERY_AREA, area );
+                        counts.node();
+                        connect( baseNodes[base], areaNodes[area], DELIVERY_ROUTE, DELIVERY_ROUTE_INTERVALS,
+                                random, counts );
+                    }
+                }
+            } );
+        }
+
+        private void writeDeliverySegments()
+        {
+            stages.write( "Delivery segments", areaNodes.length, new ParallelStages.Writer()
+            {
+                @Override
+                public void write( int area, Random random, ParallelStages.Counts counts )
+                {
+                    for ( int segment = areaSegments[area]; segment < areaSegments[area + 1]; segment++ )
+                    {
+                        long segmentNode = createLocation( DELIVERY_SEGMENT, segment );
+                        counts.node();
+                        connect( areaNodes[area], segmentNode, DELIVERY_ROUTE, DELIVERY_ROUTE_INTERVALS,
+                                random, counts );
+                    }
+                }
+            } );
+        }
+
+        private long createLocation( Label label, int item )
+        {
+            return graph.createNode( map( "name", label.name() + "-" + (item + 1) ), label, LOCATION );
+        }
+
+        /**
+         * Connects the nodes with one relationship per interval of a week, each with its own cost.
+         */
+        private void connect( long from, long to, RelationshipType type, int numberOfIntervals, Random random,
+                              ParallelStages.Counts counts )
+        {
+            Iterator<Interval> intervals = new SevenDays( LogisticsConfig.START_DATE, random )
+                    .calculateIntervals( numberOfIntervals ).iterator();
+            while ( intervals.hasNext() )
+            {
+                Interval interval = intervals.next();
+                graph.createRelationship( from, to, type, map(
+                        "start_date", interval.getStartMillis(),
+                        "end_date", interval.getEndMillis(),
+                        "cost", random.nextInt( 10 ) + 1 ) );
+                counts.relationship();
+            }
         }
     }
 }
@@ -0,0 +1,414 @@
+package org.neo4j.graphdatabases.dataset_builders;
+
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
+
+import static org.neo4j.helpers.collection.MapUtil.map;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.neo4j.graphdatabases.SocialNetworkConfig;
+import org.neo4j.graphdatabases.dataset_builders.helpers.BulkStore;
+import org.neo4j.graphdatabases.dataset_builders.helpers.CsvGraphWriter;
+import org.neo4j.graphdatabases.dataset_builders.helpers.DatasetFingerprint;
+import org.neo4j.graphdatabases.dataset_builders.helpers.EmbeddedGraphWriter;
+import org.neo4j.graphdatabases.dataset_builders.helpers.GraphWriter;
+import org.neo4j.graphdatabases.dataset_builders.helpers.ParallelStages;
+import org.neo4j.graphdatabases.dataset_builders.helpers.RandomRanges;
+import org.neo4j.graphdatabases.dataset_builders.helpers.Seeds;
+import org.neo4j.graphdatabases.dataset_builders.properties.ProjectDuration;
+import org.neo4j.graphdatabases.dataset_builders.properties.ProjectDurationGenerator;
+import org.neo4j.graphdatabases.queries.helpers.DbUtils;
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.kernel.impl.util.FileUtils;
+
+/**
+ * Builds the same shape of dataset as {@link SocialNetwork}, on all cores. Users are partitioned
+ * into batches: their companies, topics, projects and colleagues are chosen in memory first, from
+ * seeded per-batch random streams, and then written in large, independently committed
+ * transactions.
+ * <p/>
+ * Relationships to topics, companies and projects are written grouped by the node they point to,
+ * so that no two transactions contend for the same hub. WORKED_WITH relationships join users of
+ * any two batches, so they are written one batch at a time. Where {@link SocialNetwork} creates
+ * projects on demand, each company here gets enough projects for about five members each, and
+ * each user gets one WORKED_WITH relationship to a user they share a project with.
+ * <p/>
+ * With the dataset.bulk system property set, the same dataset is streamed to CSV files instead, with
+ * no transactions or locks, and the store is then built from them in one pass by {@link BulkStore}.
+ */
+public class ParallelSocialNetwork
+{
+    public static final int BATCH_SIZE = 50000;
+
+    private static final Label USER = DynamicLabel.label( "User" );
+    private static final Label TOPIC = DynamicLabel.label( "Topic" );
+    private static final Label COMPANY = DynamicLabel.label( "Company" );
+    private static final Label PROJECT = DynamicLabel.label( "Project" );
+    private static final RelationshipType INTERESTED_IN = withName( "INTERESTED_IN" );
+    private static final RelationshipType WORKS_FOR = withName( "WORKS_FOR" );
+    private static final RelationshipType WORKED_ON = withName( "WORKED_ON" );
+    private static final RelationshipType WORKED_WITH = withName( "WORKED_WITH" );
+
+    private static final int MAX_TOPICS = 3;
+    private static final int MAX_COMPANY_PROJECTS = 5;
+    private static final int MAX_OTHER_PROJECTS = 2;
+    private static final int MAX_PROJECTS = MAX_COMPANY_PROJECTS + MAX_OTHER_PROJECTS;
+    private static final double MEMBERS_PER_PROJECT = 5.0;
+    private static final int NONE = -1;
+    private static final Map<String, Object> NO_PROPERTIES = Collections.emptyMap();
+
+    @Test
+    public void buildSocialNetwork() throws Exception
+    {
+        File dir = new File( SocialNetworkConfig.STORE_DIR );
+        FileUtils.deleteRecursively( dir );
+
+        long seed = Seeds.datasetSeed();
+        int numberOfThreads = Runtime.getRuntime().availableProcessors();
+        boolean bulk = Boolean.getBoolean( "dataset.bulk" );
+        System.out.println( String.format( "Building %s with seed %s on %s threads%s", SocialNetworkConfig.TITLE,
+                seed, numberOfThreads, bulk ? " in bulk" : "" ) );
+
+        if ( bulk )
+        {
+            File csvDir = new File( SocialNetworkConfig.STORE_DIR + "-csv" );
+            FileUtils.deleteRecursively( csvDir );
+            try ( CsvGraphWriter csv = new CsvGraphWriter( csvDir ) )
+            {
+                generate( new ParallelStages( seed, numberOfThreads, BATCH_SIZE, System.out ), csv );
+            }
+            BulkStore.build( csvDir, SocialNetworkConfig.STORE_DIR, System.out );
+            FileUtils.deleteRecursively( csvDir );
+        }
+        else
+        {
+            GraphDatabaseService db = new GraphDatabaseFactory()
+                    .newEmbeddedDatabaseBuilder( SocialNetworkConfig.STORE_DIR )
+                    .setConfig( DbUtils.dbConfig() )
+                    .newGraphDatabase();
+            generate( new ParallelStages( db, seed, numberOfThreads, BATCH_SIZE, System.out ),
+                    new EmbeddedGraphWriter( db ) );
+            db.shutdown();
+        }
+
+        GraphDatabaseService db = DbUtils.existingDB( SocialNetworkConfig.STORE_DIR );
+        DatasetFingerprint.record( db, SocialNetworkConfig.STORE_DIR, SocialNetworkConfig.TITLE, seed, System.out );
+        db.shutdown();
+    }
+
+    private static void generate( ParallelStages stages, GraphWriter graph )
+    {
+        for ( Label label : Arrays.asList( USER, TOPIC, COMPANY ) )
+        {
+            graph.index( label, "name" );
+        }
+        new Generation( stages,
+                graph,
+                SocialNetworkConfig.NUMBER_USERS,
+                SocialNetworkConfig.NUMBER_TOPICS,
+                SocialNetworkConfig.NUMBER_COMPANIES ).run();
+    }
+
+    private static class Generation
+    {
+        private final ParallelStages stages;
+        private final GraphWriter graph;
+        private final int numberOfUsers;
+        private final int numberOfTopics;
+        private final int numberOfCompanies;
+
+        private final int[] userCompany;
+        private final int[] userTopics;
+        private final int[] userProjects;
+        private final int[] userColleague;
+        private int[] companyProjects;
+        private long[] projectStart;
+        private long[] projectEnd;
+
+        private final long[] userNodes;
+        private final long[] topicNodes;
+        private final long[] companyNodes;
+        private long[] projectNodes;
+
+        Generation( ParallelStages stages, GraphWriter graph, int numberOfUsers, int numberOfTopics,
+                    int numberOfCompanies )
+        {
+            this.stages = stages;
+            this.graph = graph;
+            this.numberOfUsers = numberOfUsers;
+            this.numberOfTopics = numberOfTopics;
+            this.numberOfCompanies = numberOfCompanies;
+            userCompany = new int[numberOfUsers];
+            userTopics = filled( numberOfUsers * MAX_TOPICS );
+            userProjects = filled( numberOfUsers * MAX_PROJECTS );
+            userColleague = filled( numberOfUsers );
+            userNodes = new long[numberOfUsers];
+            topicNodes = new long[numberOfTopics];
+            companyNodes = new long[numberOfCompanies];
+        }
+
+        void run()
+        {
+            chooseCompaniesAndTopics();
+            createProjects();
+            chooseProjects();
+            writeNodes();
+
+            writeGrouped( "INTERESTED_IN", INTERESTED_IN, userTopics, MAX_TOPICS, topicNodes, false );
+            writeGrouped( "WORKS_FOR", WORKS_FOR, userCompany, 1, companyNodes, false );
+            int[][] projectMembers = writeGrouped( "WORKED_ON", WORKED_ON, userProjects, MAX_PROJECTS,
+                    projectNodes, true );
+
+            chooseColleagues( projectMembers[0], projectMembers[1] );
+            writeColleagues();
+        }
+
+        private void chooseCompaniesAndTopics()
+        {
+            stages.generate( "Choose companies and topics", numberOfUsers, new ParallelStages.Generator()
+            {
+                @Override
+                public void generate( int user, Random random )
+                {
+                    userCompany[user] = random.nextInt( numberOfCompanies );
+                    int[] topics = RandomRanges.distinctNormal( random, 0, numberOfTopics - 1,
+                            RandomRanges.normal( random, 1, MAX_TOPICS ) );
+                    System.arraycopy( topics, 0, userTopics, user * MAX_TOPICS, topics.length );
+                }
+            } );
+        }
+
+        private void createProjects()
+        {
+            int[] employees = new int[numberOfCompanies];
+            for ( int company : userCompany )
+            {
+                employees[company]++;
+            }
+            double averageProjectsPerUser = (1 + MAX_COMPANY_PROJECTS) / 2.0;
+            companyProjects = new int[numberOfCompanies + 1];
+            for ( int company = 0; company < numberOfCompanies; company++ )
+            {
+                int projects = (int) Math.max( 1,
+                        Math.round( employees[company] * averageProjectsPerUser / MEMBERS_PER_PROJECT ) );
+                companyProjects[company + 1] = companyProjects[company] + projects;
+            }
+
+            int numberOfProjects = companyProjects[numberOfCompanies];
+            projectStart = new long[numberOfProjects];
+            projectEnd = new long[numberOfProjects];
+            projectNodes = new long[numberOfProjects];
+            stages.generate( "Choose project durations", numberOfProjects, new ParallelStages.Generator()
+            {
+                @Override
+                public void generate( int project, Random random )
+                {
+                    ProjectDuration duration = new ProjectDurationGenerator( random ).getNextProjectDuration();
+                    projectStart[project] = duration.getStartDateMs();
+                    projectEnd[project] = duration.getEndDateMs();
+                }
+            } );
+        }
+
+        private void chooseProjects()
+        {
+            final int numberOfProjects = projectNodes.length;
+            stages.generate( "Choose projects", numberOfUsers, new ParallelStages.Generator()
+            {
+                @Override
+                public void generate( int user, Random random )
+                {
+                    int company = userCompany[user];
+                    int first = companyProjects[company];
+                    int last = companyProjects[company + 1] - 1;
+                    int[] projects = RandomRanges.distinctNormal( random, first, last,
+                            RandomRanges.normal( random, 1, MAX_COMPANY_PROJECTS ) );
+                    int slot = user * MAX_PROJECTS;
+                    System.arraycopy( projects, 0, userProjects, slot, projects.length );
+                    slot += projects.length;
+
+                    // As in SocialNetwork, about 30% of users also worked on other projects
+                    if ( random.nextInt( 100 ) < 30 )
+                    {
+                        int others = RandomRanges.normal( random, 1, MAX_OTHER_PROJECTS );
+                        for ( int i = 0; i < others; i++ )
+                        {
+                            int project = RandomRanges.normal( random, 0, numberOfProjects - 1 );
+                            if ( !contains( userProjects, user * MAX_PROJECTS, slot, project ) )
+                            {
+                                userProjects[slot++] = project;
+                            }
+                        }
+                    }
+                }
+            } );
+        }
+
+        private void writeNodes()
+        {
+            writeNodes( "Topics", TOPIC, "Topic", topicNodes );
+            writeNodes( "Companies", COMPANY, "Company", companyNodes );
+            writeNodes( "Users", USER, "User", userNodes );
+            stages.write( "Projects", projectNodes.length, new ParallelStages.Writer()
+            {
+                @Override
+                public void write( int project, Random random, ParallelStages.Counts counts )
+                {
+                    ProjectDuration duration = new ProjectDuration( projectStart[project], projectEnd[project] );
+                    projectNodes[project] = graph.createNode( map(
+                            "name", "Project-" + (project + 1),
+                            "duration", duration.toString(),
+                            "start_date", duration.getStartDateMs(),
+                            "end_date", duration.getEndDateMs() ), PROJECT );
+                    counts.node();
+                }
+            } );
+        }
+
+        private void writeNodes( String stage, final Label label, final String prefix, final long[] nodeIds )
+        {
+            stages.write( stage, nodeIds.length, new ParallelStages.Writer()
+            {
+                @Override
+                public void write( int item, Random random, ParallelStages.Counts counts )
+                {
+                    nodeIds[item] = graph.createNode( map( "name", prefix + "-" + (item + 1) ), label );
+                    counts.node();
+                }
+            } );
+        }
+
+        /**
+         * Writes the relationships from every user to the targets in its slots, grouped by target,
+         * and returns the users of each target as offsets and members arrays.
+         */
+        private int[][] writeGrouped( String stage, final RelationshipType type, int[] userTargets,
+                                      int slotsPerUser, final long[] targetNodes, final boolean onProject )
+        {
+            final int[] offsets = new int[targetNodes.length + 1];
+            for ( int target : userTargets )
+            {
+                if ( target != NONE )
+                {
+                    offsets[target + 1]++;
+                }
+            }
+            for ( int target = 0; target < targetNodes.length; target++ )
+            {
+                offsets[target + 1] += offsets[target];
+            }
+            final int[] members = new int[offsets[targetNodes.length]];
+            final int[] targets = new int[members.length];
+            int[] positions = Arrays.copyOf( offsets, targetNodes.length );
+            for ( int slot = 0; slot < userTargets.length; slot++ )
+            {
+                int target = userTargets[slot];
+                if ( target != NONE )
+                {
+                    int position = positions[target]++;
+                    members[position] = slot / slotsPerUser;
+                    targets[position] = target;
+                }
+            }
+
+            stages.writeGroups( stage, offsets, members, new ParallelStages.Writer()
+            {
+                @Override
+                public void write( int item, Random random, ParallelStages.Counts counts )
+                {
+                    int target = targets[item];
+                    Map<String, Object> properties = NO_PROPERTIES;
+                    if ( onProject )
+                    {
+                        ProjectDuration duration = new ProjectDuration( projectStart[target], projectEnd[target] )
+                                .getSubDuration( random );
+                        properties = map(
+                                "duration", duration.toString(),
+                                "start_date", duration.getStartDateMs(),
+                                "end_date", duration.getEndDateMs() );
+                    }
+                    graph.createRelationship( userNodes[members[item]], targetNodes[target], type, properties );
+                    counts.relationship();
+                }
+            } );
+            return new int[][]{offsets, members};
+        }
+
+        private void chooseColleagues( final int[] projectOffsets, final int[] projectMembers )
+        {
+            stages.generate( "Choose colleagues", numberOfUsers, new ParallelStages.Generator()
+            {
+                @Override
+                public void generate( int user, Random random )
+                {
+                    int slot = user * MAX_PROJECTS;
+                    int numberOfProjects = 0;
+                    while ( numberOfProjects < MAX_PROJECTS && userProjects[slot + numberOfProjects] != NONE )
+                    {
+                        numberOfProjects++;
+                    }
+                    int project = userProjects[slot + random.nextInt( numberOfProjects )];
+                    int size = projectOffsets[project + 1] - projectOffsets[project];
+                    if ( size > 1 )
+                    {
+                        int colleague = projectMembers[projectOffsets[project] + random.nextInt( size - 1 )];
+                        // Skip the user's own place in the project
+                        if ( colleague == user )
+                        {
+                            colleague = projectMembers[projectOffsets[project + 1] - 1];
+                        }
+                        userColleague[user] = colleague;
+                    }
+                }
+            } );
+        }
+
+        private void writeColleagues()
+        {
+            stages.writeSerially( "WORKED_WITH", numberOfUsers, new ParallelStages.Writer()
+            {
+                @Override
+                public void write( int user, Random random, ParallelStages.Counts counts )
+                {
+                    int colleague = userColleague[user];
+                    // Each pair once: a user chosen back by a lower colleague leaves it to that colleague
+                    if ( colleague == NONE || (colleague < user && userColleague[colleague] == user) )
+                    {
+                        return;
+                    }
+                    graph.createRelationship( userNodes[user], userNodes[colleague], WORKED_WITH, NO_PROPERTIES );
+                    counts.relationship();
+                }
+            } );
+        }
+
+        private static boolean contains( int[] values, int from, int to, int value )
+        {
+            for ( int i = from; i < to; i++ )
+            {
+                if ( values[i] == value )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static int[] filled( int length )
+        {
+            int[] values = new int[length];
+            Arrays.fill( values, NONE );
+            return values;
+        }
+    }
+}
@@ -1,80 +1,201 @@
 package org.neo4j.graphdatabases.dataset_builders;
 
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
+
+import static org.neo4j.helpers.collection.MapUtil.map;
+
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
 
 import org.junit.Test;
 
 import org.neo4j.graphdatabases.SimpleSocialNetworkConfig;
+import org.neo4j.graphdatabases.dataset_builders.helpers.BulkStore;
+import org.neo4j.graphdatabases.dataset_builders.helpers.CsvGraphWriter;
+import org.neo4j.graphdatabases.dataset_builders.helpers.DatasetFingerprint;
+import org.neo4j.graphdatabases.dataset_builders.helpers.EmbeddedGraphWriter;
+import org.neo4j.graphdatabases.dataset_builders.helpers.GraphWriter;
+import org.neo4j.graphdatabases.dataset_builders.helpers.ParallelStages;
+import org.neo4j.graphdatabases.dataset_builders.helpers.RandomRanges;
+import org.neo4j.graphdatabases.dataset_builders.helpers.Seeds;
 import org.neo4j.graphdatabases.queries.helpers.DbUtils;
+import org.neo4j.graphdb.DynamicLabel;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.factory.GraphDatabaseFactory;
 import org.neo4j.kernel.impl.util.FileUtils;
-import org.neo4j.neode.Dataset;
-import org.neo4j.neode.DatasetManager;
-import org.neo4j.neode.NodeCollection;
-import org.neo4j.neode.NodeSpecification;
-import org.neo4j.neode.RelationshipSpecification;
-import org.neo4j.neode.logging.Log;
 import org.neo4j.neode.logging.SysOutLog;
 import org.neo4j.neode.statistics.AsciiDocFormatter;
 import org.neo4j.neode.statistics.GraphStatistics;
 
-import static org.neo4j.neode.Range.minMax;
-import static org.neo4j.neode.RelationshipUniqueness.BOTH_DIRECTIONS;
-import static org.neo4j.neode.TargetNodesStrategy.getExisting;
-import static org.neo4j.neode.properties.Property.indexableProperty;
-
+/**
+ * Builds a network of users, each of whom picks between the minimum and maximum number of friends
+ * from the other users. A pair of users is joined by at most one FRIEND relationship, whichever of
+ * them picked the other.
+ * <p/>
+ * Friends are chosen in memory first, from seeded per-batch random streams, and the users and their
+ * friendships are then written in batches. With the dataset.bulk system property set, the network is
+ * streamed to CSV files instead, and the store is built from them in one pass by {@link BulkStore}.
+ */
 public class SimpleSocialNetwork
 {
+    public static final int BATCH_SIZE = 1000;
+
+    private static final Label USER = DynamicLabel.label( "User" );
+    private static final RelationshipType FRIEND = withName( "FRIEND" );
+    private static final Map<String, Object> NO_PROPERTIES = Collections.emptyMap();
+    private static final int NONE = -1;
+
     @Test
     public void buildSocialNetwork() throws Exception
     {
         File dir = new File( SimpleSocialNetworkConfig.STORE_DIR );
         FileUtils.deleteRecursively( dir );
 
-        GraphDatabaseService db = new GraphDatabaseFactory()
-                .newEmbeddedDatabaseBuilder( SimpleSocialNetworkConfig.STORE_DIR )
-                .setConfig( DbUtils.dbConfig() )
-                .newGraphDatabase();
-        createSampleDataset( db );
+        long seed = Seeds.datasetSeed();
+        int numberOfThreads = Runtime.getRuntime().availableProcessors();
+        boolean bulk = Boolean.getBoolean( "dataset.bulk" );
+        System.out.println( String.format( "Building %s with seed %s on %s threads%s",
+                SimpleSocialNetworkConfig.TITLE, seed, numberOfThreads, bulk ? " in bulk" : "" ) );
+
+        if ( bulk )
+        {
+            File csvDir = new File( SimpleSocialNetworkConfig.STORE_DIR + "-csv" );
+            FileUtils.deleteRecursively( csvDir );
+            try ( CsvGraphWriter csv = new CsvGraphWriter( csvDir ) )
+            {
+                generate( new ParallelStages( seed, numberOfThreads, BATCH_SIZE, System.out ), csv );
+            }
+            BulkStore.build( csvDir, SimpleSocialNetworkConfig.STORE_DIR, System.out );
+            FileUtils.deleteRecursively( csvDir );
+        }
+        else
+        {
+            GraphDatabaseService db = new GraphDatabaseFactory()
+                    .newEmbeddedDatabaseBuilder( SimpleSocialNetworkConfig.STORE_DIR )
+                    .setConfig( DbUtils.dbConfig() )
+                    .newGraphDatabase();
+            generate( new ParallelStages( db, seed, numberOfThreads, BATCH_SIZE, System.out ),
+                    new EmbeddedGraphWriter( db ) );
+            db.shutdown();
+        }
 
+        GraphDatabaseService db = DbUtils.existingDB( SimpleSocialNetworkConfig.STORE_DIR );
         GraphStatistics.create( db, SimpleSocialNetworkConfig.TITLE )
                 .describeTo( new AsciiDocFormatter( SysOutLog.INSTANCE ) );
-
+        DatasetFingerprint.record( db, SimpleSocialNetworkConfig.STORE_DIR, SimpleSocialNetworkConfig.TITLE,
+                seed, System.out );
         db.shutdown();
     }
 
-    private void createSampleDataset( GraphDatabaseService db )
+    private static void generate( ParallelStages stages, GraphWriter graph )
+    {
+        graph.index( USER, "name" );
+        new Generation( stages, graph, SimpleSocialNetworkConfig.NUMBER_USERS,
+                SimpleSocialNetworkConfig.MIN_NUMBER_OF_FRIENDS,
+                SimpleSocialNetworkConfig.MAX_NUMBER_OF_FRIENDS ).run();
+    }
+
+    private static class Generation
     {
-        DatasetManager dsm = new DatasetManager( db, new Log()
+        private final ParallelStages stages;
+        private final GraphWriter graph;
+        private final int numberOfUsers;
+        private final int minFriends;
+        private final int maxFriends;
+
+        private final int[] userFriends;
+        private final long[] userNodes;
+
+        Generation( ParallelStages stages, GraphWriter graph, int numberOfUsers, int minFriends, int maxFriends )
         {
-            @Override
-            public void write( String value )
-            {
-                System.out.println( value );
-            }
-        } );
+            this.stages = stages;
+            this.graph = graph;
+            this.numberOfUsers = numberOfUsers;
+            this.minFriends = minFriends;
+            this.maxFriends = maxFriends;
+            userFriends = new int[numberOfUsers * maxFriends];
+            Arrays.fill( userFriends, NONE );
+            userNodes = new long[numberOfUsers];
+        }
 
-        NodeSpecification userSpec = dsm.nodeSpecification(
-                "User", indexableProperty( db, "User", "name" ) );
-        RelationshipSpecification friend =
-                dsm.relationshipSpecification( "FRIEND" );
+        void run()
+        {
+            chooseFriends();
+            writeUsers();
+            writeFriends();
+        }
 
-        Dataset dataset =
-                dsm.newDataset( "Simple social network example" );
+        private void chooseFriends()
+        {
+            stages.generate( "Choose friends", numberOfUsers, new ParallelStages.Generator()
+            {
+                @Override
+                public void generate( int user, Random random )
+                {
+                    // Picks from the other users, by skipping over the user's own position
+                    int[] friends = RandomRanges.distinctFlat( random, 0, numberOfUsers - 2,
+                            RandomRanges.flat( random, minFriends, maxFriends ) );
+                    for ( int i = 0; i < friends.length; i++ )
+                    {
+                        userFriends[user * maxFriends + i] = friends[i] < user ? friends[i] : friends[i] + 1;
+                    }
+                }
+            } );
+        }
 
-        NodeCollection users =
-                userSpec.create( SimpleSocialNetworkConfig.NUMBER_USERS )
-                        .update( dataset );
+        private void writeUsers()
+        {
+            stages.write( "Users", numberOfUsers, new ParallelStages.Writer()
+            {
+                @Override
+                public void write( int user, Random random, ParallelStages.Counts counts )
+                {
+                    userNodes[user] = graph.createNode( map( "name", "User-" + (user + 1) ), USER );
+                    counts.node();
+                }
+            } );
+        }
 
-        users.createRelationshipsTo(
-                getExisting( users )
-                        .numberOfTargetNodes( minMax( SimpleSocialNetworkConfig.MIN_NUMBER_OF_FRIENDS,
-                                SimpleSocialNetworkConfig.MAX_NUMBER_OF_FRIENDS ) )
-                        .relationship( friend )
-                        .relationshipConstraints( BOTH_DIRECTIONS ) )
-                .updateNoReturn( dataset, 20000 );
+        /**
+         * Friendships join users of any two batches, so they are written one batch at a time.
+         */
+        private void writeFriends()
+        {
+            stages.writeSerially( "FRIEND", numberOfUsers, new ParallelStages.Writer()
+            {
+                @Override
+                public void write( int user, Random random, ParallelStages.Counts counts )
+                {
+                    for ( int slot = user * maxFriends; slot < (user + 1) * maxFriends; slot++ )
+                    {
+                        int friend = userFriends[slot];
+                        // Each pair once: a user picked back by a lower friend leaves it to that friend
+                        if ( friend == NONE || (friend < user && picked( friend, user )) )
+                        {
+                            continue;
+                        }
+                        graph.createRelationship( userNodes[user], userNodes[friend], FRIEND, NO_PROPERTIES );
+                        counts.relationship();
+                    }
+                }
+            } );
+        }
 
-        dataset.end();
+        private boolean picked( int user, int friend )
+        {
+            for ( int slot = user * maxFriends; slot < (user + 1) * maxFriends; slot++ )
+            {
+                if ( userFriends[slot] == friend )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 }
@@ -5,6 +5,8 @@ import java.io.File;
 import org.junit.Test;
 
 import org.neo4j.graphdatabases.SocialNetworkConfig;
+import org.neo4j.graphdatabases.dataset_builders.helpers.DatasetFingerprint;
+import org.neo4j.graphdatabases.dataset_builders.helpers.Seeds;
 import org.neo4j.graphdatabases.dataset_builders.properties.DurationOnProjectProperty;
 import org.neo4j.graphdatabases.dataset_builders.properties.ProjectDurationProperty;
 import org.neo4j.graphdatabases.dataset_builders.traversers.FindAllColleagues;
@@ -52,10 +54,11 @@ public class SocialNetwork
                 .setConfig( DbUtils.dbConfig() )
                 .newGraphDatabase();
         DatasetManager dsm = new DatasetManager( db, SysOutLog.INSTANCE );
+        long seed = Seeds.datasetSeed();
 
         TraversalDescription findCompanyProjects = createFindCompanyProjectsTraversalDescription();
-        Property projectDuration = new ProjectDurationProperty();
-        Property durationOnProject = new DurationOnProjectProperty();
+        Property projectDuration = new ProjectDurationProperty( Seeds.stream( seed, "project durations" ) );
+        Property durationOnProject = new DurationOnProjectProperty( Seeds.stream( seed, "durations on projects" ) );
 
         NodeSpecification userSpec = dsm.nodeSpecification( "User", indexableProperty(db, "User", "name" ) );
         NodeSpecification topicSpec = dsm.nodeSpecification( "Topic", indexableProperty(db, "Topic", "name" ) );
@@ -113,6 +116,7 @@ public class SocialNetwork
 
         GraphStatistics.create( db, SocialNetworkConfig.TITLE ).describeTo(
                 new AsciiDocFormatter( SysOutLog.INSTANCE ) );
+        DatasetFingerprint.record( db, SocialNetworkConfig.STORE_DIR, SocialNetworkConfig.TITLE, seed, System.out );
 
         db.shutdown();
     }
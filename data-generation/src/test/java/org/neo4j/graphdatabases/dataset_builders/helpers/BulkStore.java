@@ -0,0 +1,252 @@
+package org.neo4j.graphdatabases.dataset_builders.helpers;
+
+import static org.neo4j.graphdb.DynamicLabel.label;
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphdatabases.queries.helpers.DbUtils;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+
+/**
+ * Builds a store from the files written by {@link CsvGraphWriter} in a single pass of the
+ * {@link BatchInserter}, which writes records straight to the store files, without transactions.
+ * Nodes keep the ids they were given in the CSV. Indexes are populated by starting the database once
+ * at the end, so the store is ready for {@link DbUtils#existingDB(String)}.
+ */
+public class BulkStore
+{
+    private static final int REPORT_EVERY = 1000000;
+
+    public static void build( File csvDir, String storeDir, PrintStream out )
+    {
+        long startTime = System.nanoTime();
+        BatchInserter inserter = BatchInserters.inserter( storeDir, DbUtils.dbConfig() );
+        try
+        {
+            for ( List<String> record : records( new File( csvDir, CsvGraphWriter.INDEXES ) ) )
+            {
+                inserter.createDeferredSchemaIndex( label( record.get( 0 ) ) ).on( record.get( 1 ) ).create();
+            }
+
+            Map<String, Label[]> labels = new HashMap<>();
+            long numberOfNodes = 0;
+            for ( List<String> record : records( new File( csvDir, CsvGraphWriter.NODES ) ) )
+            {
+                inserter.createNode( Long.parseLong( record.get( 0 ) ), properties( record, 2 ),
+                        labels( labels, record.get( 1 ) ) );
+                report( out, "Nodes", ++numberOfNodes, startTime );
+            }
+
+            Map<String, RelationshipType> types = new HashMap<>();
+            long numberOfRelationships = 0;
+            for ( List<String> record : records( new File( csvDir, CsvGraphWriter.RELATIONSHIPS ) ) )
+            {
+                RelationshipType type = types.get( record.get( 2 ) );
+                if ( type == null )
+                {
+                    type = withName( record.get( 2 ) );
+                    types.put( type.name(), type );
+                }
+                inserter.createRelationship( Long.parseLong( record.get( 0 ) ), Long.parseLong( record.get( 1 ) ),
+                        type, properties( record, 3 ) );
+                report( out, "Relationships", ++numberOfRelationships, startTime );
+            }
+            out.println( String.format( "Inserted %s nodes and %s relationships in %.1f s", numberOfNodes,
+                    numberOfRelationships, seconds( startTime ) ) );
+        }
+        finally
+        {
+            inserter.shutdown();
+        }
+
+        GraphDatabaseService db = new GraphDatabaseFactory()
+                .newEmbeddedDatabaseBuilder( storeDir )
+                .setConfig( DbUtils.dbConfig() )
+                .newGraphDatabase();
+        try ( Transaction tx = db.beginTx() )
+        {
+            db.schema().awaitIndexesOnline( 1, TimeUnit.HOURS );
+            tx.success();
+        }
+        finally
+        {
+            db.shutdown();
+        }
+        out.println( String.format( "Built %s in %.1f s", storeDir, seconds( startTime ) ) );
+    }
+
+    private static Label[] labels( Map<String, Label[]> labels, String names )
+    {
+        Label[] nodeLabels = labels.get( names );
+        if ( nodeLabels == null )
+        {
+            String[] split = names.isEmpty() ? new String[0] : names.split( ";" );
+            nodeLabels = new Label[split.length];
+            for ( int i = 0; i < split.length; i++ )
+            {
+                nodeLabels[i] = label( split[i] );
+            }
+            labels.put( names, nodeLabels );
+        }
+        return nodeLabels;
+    }
+
+    private static Map<String, Object> properties( List<String> record, int from )
+    {
+        Map<String, Object> properties = new HashMap<>();
+        for ( int i = from; i + 2 < record.size(); i += 3 )
+        {
+            properties.put( record.get( i ), CsvGraphWriter.decode( record.get( i + 1 ), record.get( i + 2 ) ) );
+        }
+        return properties;
+    }
+
+    private static void report( PrintStream out, String what, long count, long startTime )
+    {
+        if ( count % REPORT_EVERY == 0 )
+        {
+            out.println( String.format( "%s: %s in %.1f s", what, count, seconds( startTime ) ) );
+        }
+    }
+
+    private static double seconds( long startTime )
+    {
+        return (System.nanoTime() - startTime) / 1e9;
+    }
+
+    private static Iterable<List<String>> records( final File file )
+    {
+        return new Iterable<List<String>>()
+        {
+            @Override
+            public Iterator<List<String>> iterator()
+            {
+                return new Records( file );
+            }
+        };
+    }
+
+    /**
+     * Reads the records of a CSV file, as written by {@link CsvGraphWriter}.
+     */
+    private static class Records implements Iterator<List<String>>
+    {
+        private final File file;
+        private final Reader in;
+        private List<String> next;
+
+        Records( File file )
+        {
+            this.file = file;
+            try
+            {
+                in = new BufferedReader( new InputStreamReader( new FileInputStream( file ),
+                        StandardCharsets.UTF_8 ) );
+            }
+            catch ( IOException e )
+            {
+                throw new RuntimeException( "Unable to open " + file, e );
+            }
+            next = read();
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return next != null;
+        }
+
+        @Override
+        public List<String> next()
+        {
+            List<String> record = next;
+            next = read();
+            return record;
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        private List<String> read()
+        {
+            try
+            {
+                int c = in.read();
+                if ( c == -1 )
+                {
+                    in.close();
+                    return null;
+                }
+                List<String> fields = new ArrayList<>();
+                StringBuilder field = new StringBuilder();
+                boolean quoted = false;
+                while ( true )
+                {
+                    if ( quoted )
+                    {
+                        if ( c == -1 )
+                        {
+                            throw new IllegalStateException( "Unterminated quoted field in " + file );
+                        }
+                        if ( c == '"' )
+                        {
+                            c = in.read();
+                            if ( c != '"' )
+                            {
+                                quoted = false;
+                                continue;
+                            }
+                        }
+                        field.append( (char) c );
+                    }
+                    else if ( c == '"' )
+                    {
+                        quoted = true;
+                    }
+                    else if ( c == ',' )
+                    {
+                        fields.add( field.toString() );
+                        field.setLength( 0 );
+                    }
+                    else if ( c == '\n' || c == -1 )
+                    {
+                        fields.add( field.toString() );
+                        return fields;
+                    }
+                    else
+                    {
+                        field.append( (char) c );
+                    }
+                    c = in.read();
+                }
+            }
+            catch ( IOException e )
+            {
+                throw new RuntimeException( "Unable to read " + file, e );
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package org.neo4j.graphdatabases.dataset_builders.helpers;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+
+/**
+ * Streams nodes and relationships to CSV files in a directory, for {@link BulkStore} to load. Node ids
+ * are allocated densely from 0, in the order nodes are created. Safe for use by several threads.
+ * <p/>
+ * Each line of nodes.csv holds a node's id and its labels, separated by semicolons; each line of
+ * relationships.csv holds the ids of the start and end nodes and the relationship type. Both are followed
+ * by a name, type and value field for each property. indexes.csv holds a label and property per line.
+ * Fields containing commas, quotes or line breaks are quoted, with quotes doubled.
+ */
+public class CsvGraphWriter implements GraphWriter, AutoCloseable
+{
+    public static final String NODES = "nodes.csv";
+    public static final String RELATIONSHIPS = "relationships.csv";
+    public static final String INDEXES = "indexes.csv";
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Writer nodes;
+    private final Writer relationships;
+    private final Writer indexes;
+    private long nextNodeId;
+
+    public CsvGraphWriter( File dir )
+    {
+        if ( !dir.isDirectory() && !dir.mkdirs() )
+        {
+            throw new IllegalStateException( "Unable to create directory " + dir );
+        }
+        nodes = open( new File( dir, NODES ) );
+        relationships = open( new File( dir, RELATIONSHIPS ) );
+        indexes = open( new File( dir, INDEXES ) );
+    }
+
+    @Override
+    public long createNode( Map<String, Object> properties, Label... labels )
+    {
+        StringBuilder record = new StringBuilder();
+        for ( int i = 0; i < labels.length; i++ )
+        {
+            record.append( i == 0 ? "" : ";" ).append( labels[i].name() );
+        }
+        appendProperties( record, properties );
+        synchronized ( nodes )
+        {
+            long id = nextNodeId++;
+            write( nodes, id + "," + record );
+            return id;
+        }
+    }
+
+    @Override
+    public void createRelationship( long startNode, long endNode, RelationshipType type,
+                                    Map<String, Object> properties )
+    {
+        StringBuilder record = new StringBuilder();
+        record.append( startNode ).append( ',' ).append( endNode ).append( ',' );
+        appendField( record, type.name() );
+        appendProperties( record, properties );
+        synchronized ( relationships )
+        {
+            write( relationships, record.toString() );
+        }
+    }
+
+    @Override
+    public void index( Label label, String property )
+    {
+        StringBuilder record = new StringBuilder();
+        appendField( record, label.name() );
+        record.append( ',' );
+        appendField( record, property );
+        synchronized ( indexes )
+        {
+            write( indexes, record.toString() );
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        try
+        {
+            nodes.close();
+            relationships.close();
+            indexes.close();
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "Unable to close CSV files", e );
+        }
+    }
+
+    static Object decode( String type, String value )
+    {
+        switch ( type )
+        {
+            case "s":
+                return value;
+            case "l":
+                return Long.parseLong( value );
+            case "i":
+                return Integer.parseInt( value );
+            case "d":
+                return Double.parseDouble( value );
+            case "f":
+                return Float.parseFloat( value );
+            case "b":
+                return Boolean.parseBoolean( value );
+            default:
+                throw new IllegalArgumentException( "Unknown property type: " + type );
+        }
+    }
+
+    private static String typeOf( Object value )
+    {
+        if ( value instanceof String )
+        {
+            return "s";
+        }
+        if ( value instanceof Long )
+        {
+            return "l";
+        }
+        if ( value instanceof Integer )
+        {
+            return "i";
+        }
+        if ( value instanceof Double )
+        {
+            return "d";
+        }
+        if ( value instanceof Float )
+        {
+            return "f";
+        }
+        if ( value instanceof Boolean )
+        {
+            return "b";
+        }
+        throw new IllegalArgumentException( "Unsupported property value: " + value );
+    }
+
+    private static void appendProperties( StringBuilder record, Map<String, Object> properties )
+    {
+        for ( Map.Entry<String, Object> property : properties.entrySet() )
+        {
+            Object value = property.getValue();
+            record.append( ',' );
+            appendField( record, property.getKey() );
+            record.append( ',' ).append( typeOf( value ) ).append( ',' );
+            appendField( record, value.toString() );
+        }
+    }
+
+    private static void appendField( StringBuilder record, String field )
+    {
+        if ( field.indexOf( ',' ) < 0 && field.indexOf( '"' ) < 0 && field.indexOf( '\n' ) < 0
+                && field.indexOf( '\r' ) < 0 )
+        {
+            record.append( field );
+            return;
+        }
+        record.append( '"' ).append( field.replace( "\"", "\"\"" ) ).append( '"' );
+    }
+
+    private static Writer open( File file )
+    {
+        try
+        {
+            return new BufferedWriter(
+                    new OutputStreamWriter( new FileOutputStream( file ), StandardCharsets.UTF_8 ), BUFFER_SIZE );
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "Unable to open " + file, e );
+        }
+    }
+
+    private static void write( Writer writer, String record )
+    {
+        try
+        {
+            writer.write( record );
+            writer.write( '\n' );
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "Unable to write CSV record", e );
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package org.neo4j.graphdatabases.dataset_builders.helpers;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.neo4j.graphdatabases.ScaleFactor;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+/**
+ * A fingerprint of a dataset's content: its nodes' labels and properties, and its relationships' types,
+ * properties and end nodes. Node ids don't contribute, so two builds that create the same graph in a
+ * different order, as parallel builds do, have the same fingerprint.
+ * <p/>
+ * {@link #record(GraphDatabaseService, String, String, long, PrintStream)} writes the fingerprint, the size
+ * of the dataset, and the seed and scale factor it was built with to dataset.properties in the store
+ * directory.
+ */
+public class DatasetFingerprint
+{
+    public static final String FILE_NAME = "dataset.properties";
+
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private final long fingerprint;
+    private final long numberOfNodes;
+    private final long numberOfRelationships;
+
+    private DatasetFingerprint( long fingerprint, long numberOfNodes, long numberOfRelationships )
+    {
+        this.fingerprint = fingerprint;
+        this.numberOfNodes = numberOfNodes;
+        this.numberOfRelationships = numberOfRelationships;
+    }
+
+    public static DatasetFingerprint of( GraphDatabaseService db )
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            GlobalGraphOperations operations = GlobalGraphOperations.at( db );
+            long[] nodeHashes = new long[1024];
+            long fingerprint = 0;
+            long numberOfNodes = 0;
+            for ( Node node : operations.getAllNodes() )
+            {
+                long hash = hash( hash( FNV_OFFSET_BASIS, labels( node ) ), node );
+                if ( node.getId() >= nodeHashes.length )
+                {
+                    nodeHashes = Arrays.copyOf( nodeHashes, (int) Math.max( node.getId() + 1,
+                            nodeHashes.length * 2L ) );
+                }
+                nodeHashes[(int) node.getId()] = hash;
+                fingerprint += Seeds.mix( hash, 0 );
+                numberOfNodes++;
+            }
+
+            long numberOfRelationships = 0;
+            for ( Relationship relationship : operations.getAllRelationships() )
+            {
+                long hash = hash( FNV_OFFSET_BASIS, relationship.getType().name() );
+                hash = hash( hash, nodeHashes[(int) relationship.getStartNode().getId()] );
+                hash = hash( hash, nodeHashes[(int) relationship.getEndNode().getId()] );
+                fingerprint += Seeds.mix( hash( hash, relationship ), 1 );
+                numberOfRelationships++;
+            }
+            tx.success();
+            return new DatasetFingerprint( fingerprint, numberOfNodes, numberOfRelationships );
+        }
+    }
+
+    /**
+     * Fingerprints the dataset and writes the fingerprint and seed to the store directory.
+     */
+    public static DatasetFingerprint record( GraphDatabaseService db, String storeDir, String title, long seed,
+                                             PrintStream out )
+    {
+        DatasetFingerprint fingerprint = of( db );
+        Properties properties = new Properties();
+        properties.setProperty( "title", title );
+        properties.setProperty( "seed", String.valueOf( seed ) );
+        properties.setProperty( "scale.factor", String.valueOf( ScaleFactor.SCALE_FACTOR ) );
+        properties.setProperty( "nodes", String.valueOf( fingerprint.numberOfNodes ) );
+        properties.setProperty( "relationships", String.valueOf( fingerprint.numberOfRelationships ) );
+        properties.setProperty( "fingerprint", fingerprint.toString() );
+        File file = new File( storeDir, FILE_NAME );
+        try ( OutputStream stream = new FileOutputStream( file ) )
+        {
+            properties.store( stream, null );
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "Unable to write " + file, e );
+        }
+        out.println( String.format( "%s: seed %s, %s nodes, %s relationships, fingerprint %s", title, seed,
+                fingerprint.numberOfNodes, fingerprint.numberOfRelationships, fingerprint ) );
+        return fingerprint;
+    }
+
+    @Override
+    public boolean equals( Object o )
+    {
+        if ( this == o )
+        {
+            return true;
+        }
+        if ( o == null || getClass() != o.getClass() )
+        {
+            return false;
+        }
+        DatasetFingerprint that = (DatasetFingerprint) o;
+        return fingerprint == that.fingerprint && numberOfNodes == that.numberOfNodes
+                && numberOfRelationships == that.numberOfRelationships;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return (int) (fingerprint ^ (fingerprint >>> 32));
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "%016x", fingerprint );
+    }
+
+    private static String labels( Node node )
+    {
+        List<String> names = new ArrayList<>();
+        for ( Label label : node.getLabels() )
+        {
+            names.add( label.name() );
+        }
+        Collections.sort( names );
+        return names.toString();
+    }
+
+    private static long hash( long hash, PropertyContainer container )
+    {
+        List<String> keys = new ArrayList<>();
+        for ( String key : container.getPropertyKeys() )
+        {
+            keys.add( key );
+        }
+        Collections.sort( keys );
+        for ( String key : keys )
+        {
+            hash = hash( hash, key );
+            hash = hash( hash, valueOf( container.getProperty( key ) ) );
+        }
+        return hash;
+    }
+
+    private static String valueOf( Object value )
+    {
+        if ( !value.getClass().isArray() )
+        {
+            return value.getClass().getSimpleName() + ":" + value;
+        }
+        StringBuilder values = new StringBuilder( value.getClass().getComponentType().getSimpleName() ).append( "[" );
+        for ( int i = 0; i < Array.getLength( value ); i++ )
+        {
+            values.append( i == 0 ? "" : "," ).append( Array.get( value, i ) );
+        }
+        return values.append( "]" ).toString();
+    }
+
+    private static long hash( long hash, String value )
+    {
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            hash = (hash ^ value.charAt( i )) * FNV_PRIME;
+        }
+        // Separate consecutive values, so that "ab", "c" and "a", "bc" hash differently
+        return (hash ^ 0xFFFF) * FNV_PRIME;
+    }
+
+    private static long hash( long hash, long value )
+    {
+        for ( int i = 0; i < 8; i++ )
+        {
+            hash = (hash ^ ((value >>> (i * 8)) & 0xFF)) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,65 @@
+package org.neo4j.graphdatabases.dataset_builders.helpers;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+
+/**
+ * Writes through the embedded API. Nodes and relationships are created in the caller's transaction;
+ * indexes are created in their own, and are online when {@link #index(Label, String)} returns.
+ */
+public class EmbeddedGraphWriter implements GraphWriter
+{
+    private final GraphDatabaseService db;
+
+    public EmbeddedGraphWriter( GraphDatabaseService db )
+    {
+        this.db = db;
+    }
+
+    @Override
+    public long createNode( Map<String, Object> properties, Label... labels )
+    {
+        Node node = db.createNode( labels );
+        setProperties( node, properties );
+        return node.getId();
+    }
+
+    @Override
+    public void createRelationship( long startNode, long endNode, RelationshipType type,
+                                    Map<String, Object> properties )
+    {
+        Relationship relationship = db.getNodeById( startNode ).createRelationshipTo( db.getNodeById( endNode ), type );
+        setProperties( relationship, properties );
+    }
+
+    @Override
+    public void index( Label label, String property )
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            db.schema().indexFor( label ).on( property ).create();
+            tx.success();
+        }
+        try ( Transaction tx = db.beginTx() )
+        {
+            db.schema().awaitIndexesOnline( 10, TimeUnit.MINUTES );
+            tx.success();
+        }
+    }
+
+    private static void setProperties( PropertyContainer container, Map<String, Object> properties )
+    {
+        for ( Map.Entry<String, Object> property : properties.entrySet() )
+        {
+            container.setProperty( property.getKey(), property.getValue() );
+        }
+    }
+}
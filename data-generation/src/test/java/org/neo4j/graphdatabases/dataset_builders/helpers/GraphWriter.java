@@ -0,0 +1,28 @@
+package org.neo4j.graphdatabases.dataset_builders.helpers;
+
+import java.util.Map;
+
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+
+/**
+ * Where a dataset builder writes its nodes and relationships. The signatures follow
+ * {@link org.neo4j.unsafe.batchinsert.BatchInserter}, so that a builder's specification can write either
+ * to a live database, through {@link EmbeddedGraphWriter}, or to the intermediate form that
+ * {@link BulkStore} loads in one pass, through {@link CsvGraphWriter}.
+ */
+public interface GraphWriter
+{
+    /**
+     * Creates a node and returns its id, to be passed to
+     * {@link #createRelationship(long, long, RelationshipType, Map)}.
+     */
+    long createNode( Map<String, Object> properties, Label... labels );
+
+    void createRelationship( long startNode, long endNode, RelationshipType type, Map<String, Object> properties );
+
+    /**
+     * Declares a schema index on the label and property.
+     */
+    void index( Label label, String property );
+}
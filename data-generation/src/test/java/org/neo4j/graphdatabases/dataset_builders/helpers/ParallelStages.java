@@ -0,0 +1,327 @@
+package org.neo4j.graphdatabases.dataset_builders.helpers;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.DeadlockDetectedException;
+
+/**
+ * Runs the stages of a dataset build on a pool of worker threads. A stage's items are cut into
+ * batches, which the workers take in turn. Generating stages fill in-memory arrays. Writing stages
+ * commit each batch in its own transaction, and a batch that deadlocks with another is rolled back
+ * and, after a random pause, written again. Stages run without a database write their batches
+ * outside any transaction, for writers such as {@link CsvGraphWriter}.
+ * <p/>
+ * Each batch draws from its own {@link Random}, seeded from the build's seed, the stage and the
+ * batch number. Batch boundaries depend only on the batch size, so the same seed builds the same
+ * dataset whatever the number of threads, and a retried batch makes the same choices again.
+ * <p/>
+ * Each stage reports its nodes/s and relationships/s when it finishes, and every 10 seconds while it
+ * runs.
+ */
+public class ParallelStages
+{
+    private static final int REPORT_INTERVAL_SECONDS = 10;
+    private static final int MAX_DEADLOCK_RETRIES = 100;
+
+    private final GraphDatabaseService db;
+    private final long seed;
+    private final int numberOfThreads;
+    private final int batchSize;
+    private final PrintStream out;
+    private int numberOfStages;
+
+    public ParallelStages( long seed, int numberOfThreads, int batchSize, PrintStream out )
+    {
+        this( null, seed, numberOfThreads, batchSize, out );
+    }
+
+    public ParallelStages( GraphDatabaseService db, long seed, int numberOfThreads, int batchSize,
+                           PrintStream out )
+    {
+        this.db = db;
+        this.seed = seed;
+        this.numberOfThreads = numberOfThreads;
+        this.batchSize = batchSize;
+        this.out = out;
+    }
+
+    public interface Generator
+    {
+        void generate( int item, Random random );
+    }
+
+    public interface Writer
+    {
+        void write( int item, Random random, Counts counts );
+    }
+
+    /**
+     * Runs the generator over items 0 to numberOfItems - 1, outside any transaction.
+     */
+    public void generate( String stage, int numberOfItems, final Generator generator )
+    {
+        run( stage, batches( numberOfItems ), new Batch()
+        {
+            @Override
+            public void run( int from, int to, Random random, Counts counts )
+            {
+                for ( int item = from; item < to; item++ )
+                {
+                    generator.generate( item, random );
+                }
+            }
+        }, false, numberOfThreads );
+    }
+
+    /**
+     * Runs the writer over items 0 to numberOfItems - 1, committing every batch of items.
+     */
+    public void write( String stage, int numberOfItems, Writer writer )
+    {
+        run( stage, batches( numberOfItems ), items( writer ), true, numberOfThreads );
+    }
+
+    /**
+     * Like {@link #write(String, int, Writer)}, but one batch at a time, for items that write to
+     * nodes scattered across other batches: parallel batches would spend their time deadlocking.
+     */
+    public void writeSerially( String stage, int numberOfItems, Writer writer )
+    {
+        run( stage, batches( numberOfItems ), items( writer ), true, 1 );
+    }
+
+    /**
+     * Runs the writer over the items of groups, where group g holds items groupOffsets[g] to
+     * groupOffsets[g + 1] - 1. A group is never split across batches, so a batch is the only one
+     * writing to the nodes its groups stand for. Within a batch, items are written in ascending order
+     * of their lock order, a non-negative key for the other node each item writes to, so that
+     * transactions lock those shared nodes in the same order and can't deadlock.
+     */
+    public void writeGroups( String stage, int[] groupOffsets, final int[] lockOrder, final Writer writer )
+    {
+        List<int[]> batches = new ArrayList<>();
+        int from = 0;
+        for ( int group = 1; group < groupOffsets.length; group++ )
+        {
+            int to = groupOffsets[group];
+            if ( to - from >= batchSize || group == groupOffsets.length - 1 )
+            {
+                if ( to > from )
+                {
+                    batches.add( new int[]{from, to} );
+                }
+                from = to;
+            }
+        }
+        run( stage, batches, new Batch()
+        {
+            @Override
+            public void run( int from, int to, Random random, Counts counts )
+            {
+                long[] items = new long[to - from];
+                for ( int item = from; item < to; item++ )
+                {
+                    items[item - from] = ((long) lockOrder[item] << 32) | item;
+                }
+                Arrays.sort( items );
+                for ( long item : items )
+                {
+                    writer.write( (int) item, random, counts );
+                }
+            }
+        }, true, numberOfThreads );
+    }
+
+    private Batch items( final Writer writer )
+    {
+        return new Batch()
+        {
+            @Override
+            public void run( int from, int to, Random random, Counts counts )
+            {
+                for ( int item = from; item < to; item++ )
+                {
+                    writer.write( item, random, counts );
+                }
+            }
+        };
+    }
+
+    private List<int[]> batches( int numberOfItems )
+    {
+        List<int[]> batches = new ArrayList<>();
+        for ( int from = 0; from < numberOfItems; from += batchSize )
+        {
+            batches.add( new int[]{from, Math.min( numberOfItems, from + batchSize )} );
+        }
+        return batches;
+    }
+
+    private void run( final String stage, final List<int[]> batches, final Batch batch,
+                      final boolean writing, int threads )
+    {
+        final long stageSeed = Seeds.mix( seed, ++numberOfStages );
+        final Counts total = new Counts();
+        final AtomicInteger nextBatch = new AtomicInteger();
+        final long startTime = System.nanoTime();
+
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                report( stage, total, startTime, nextBatch.get(), batches.size(), writing );
+            }
+        }, REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS );
+        try
+        {
+            List<Future<Void>> futures = new ArrayList<>();
+            for ( int i = 0; i < threads; i++ )
+            {
+                futures.add( executor.submit( new Callable<Void>()
+                {
+                    @Override
+                    public Void call() throws Exception
+                    {
+                        int index;
+                        while ( (index = nextBatch.getAndIncrement()) < batches.size() )
+                        {
+                            int[] range = batches.get( index );
+                            long batchSeed = Seeds.mix( stageSeed, index );
+                            Counts counts = writing && db != null
+                                    ? runInTransaction( batch, range, batchSeed )
+                                    : runBatch( batch, range, batchSeed );
+                            total.add( counts );
+                        }
+                        return null;
+                    }
+                } ) );
+            }
+            for ( Future<Void> future : futures )
+            {
+                future.get();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted while running stage " + stage, e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new RuntimeException( "Stage " + stage + " failed", e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+            reporter.shutdownNow();
+        }
+
+        report( stage, total, startTime, batches.size(), batches.size(), writing );
+    }
+
+    private static Counts runBatch( Batch batch, int[] range, long batchSeed )
+    {
+        Counts counts = new Counts();
+        batch.run( range[0], range[1], new Random( batchSeed ), counts );
+        return counts;
+    }
+
+    private Counts runInTransaction( Batch batch, int[] range, long batchSeed )
+    {
+        for ( int attempt = 1; ; attempt++ )
+        {
+            try ( Transaction tx = db.beginTx() )
+            {
+                Counts counts = runBatch( batch, range, batchSeed );
+                tx.success();
+                return counts;
+            }
+            catch ( DeadlockDetectedException e )
+            {
+                if ( attempt == MAX_DEADLOCK_RETRIES )
+                {
+                    throw e;
+                }
+                backOff( attempt );
+            }
+        }
+    }
+
+    /**
+     * Waits a random, growing time, so that transactions that deadlocked don't retry in step.
+     */
+    private static void backOff( int attempt )
+    {
+        try
+        {
+            Thread.sleep( ThreadLocalRandom.current().nextInt( 10 * Math.min( attempt, 20 ) ) + 1 );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted while backing off from a deadlock", e );
+        }
+    }
+
+    private void report( String stage, Counts counts, long startTime, int batchesStarted, int numberOfBatches,
+                         boolean writing )
+    {
+        double seconds = Math.max( 1, System.nanoTime() - startTime ) / 1e9;
+        String progress = String.format( "%s: %s/%s batches in %.1f s", stage,
+                Math.min( batchesStarted, numberOfBatches ), numberOfBatches, seconds );
+        if ( writing )
+        {
+            long nodes = counts.nodes.get();
+            long relationships = counts.relationships.get();
+            progress += String.format( ", %s nodes (%.0f nodes/s), %s relationships (%.0f rels/s)", nodes,
+                    nodes / seconds, relationships, relationships / seconds );
+        }
+        out.println( progress );
+    }
+
+    private interface Batch
+    {
+        void run( int from, int to, Random random, Counts counts );
+    }
+
+    public static class Counts
+    {
+        private final AtomicLong nodes = new AtomicLong();
+        private final AtomicLong relationships = new AtomicLong();
+
+        public void node()
+        {
+            nodes.incrementAndGet();
+        }
+
+        public void relationship()
+        {
+            relationships.incrementAndGet();
+        }
+
+        void add( Counts counts )
+        {
+            nodes.addAndGet( counts.nodes.get() );
+            relationships.addAndGet( counts.relationships.get() );
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.neo4j.graphdatabases.dataset_builders.helpers;
+
+import java.util.Random;
+
+/**
+ * Flat and normal picks from an inclusive range, drawn from a caller supplied {@link Random} so that
+ * generators can be given their own seeded streams. The normal distribution is centred on the
+ * middle of the range, with the range spanning six standard deviations, as neode's does.
+ */
+public class RandomRanges
+{
+    public static int flat( Random random, int min, int max )
+    {
+        return min + random.nextInt( max - min + 1 );
+    }
+
+    public static int normal( Random random, int min, int max )
+    {
+        if ( min == max )
+        {
+            return min;
+        }
+        double mean = (min + max) / 2.0;
+        double standardDeviation = (max - min) / 6.0;
+        while ( true )
+        {
+            long value = Math.round( mean + random.nextGaussian() * standardDeviation );
+            if ( value >= min && value <= max )
+            {
+                return (int) value;
+            }
+        }
+    }
+
+    /**
+     * Fills the array with distinct values from the range, picked with a normal distribution.
+     */
+    public static int[] distinctNormal( Random random, int min, int max, int count )
+    {
+        int[] values = new int[Math.min( count, max - min + 1 )];
+        for ( int i = 0; i < values.length; i++ )
+        {
+            int value = normal( random, min, max );
+            while ( contains( values, i, value ) )
+            {
+                value = normal( random, min, max );
+            }
+            values[i] = value;
+        }
+        return values;
+    }
+
+    /**
+     * Fills the array with distinct values from the range, picked with a flat distribution.
+     */
+    public static int[] distinctFlat( Random random, int min, int max, int count )
+    {
+        int[] values = new int[Math.min( count, max - min + 1 )];
+        for ( int i = 0; i < values.length; i++ )
+        {
+            int value = flat( random, min, max );
+            while ( contains( values, i, value ) )
+            {
+                value = flat( random, min, max );
+            }
+            values[i] = value;
+        }
+        return values;
+    }
+
+    private static boolean contains( int[] values, int size, int value )
+    {
+        for ( int i = 0; i < size; i++ )
+        {
+            if ( values[i] == value )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
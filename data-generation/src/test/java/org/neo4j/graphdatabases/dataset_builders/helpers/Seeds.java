@@ -0,0 +1,37 @@
+package org.neo4j.graphdatabases.dataset_builders.helpers;
+
+import java.util.Random;
+
+/**
+ * The seed of a dataset build, taken from the dataset.seed system property, and the independent random
+ * streams derived from it. Each generator draws from its own named stream, so that adding or reordering
+ * generators doesn't shift the values the others draw.
+ */
+public class Seeds
+{
+    public static final long DEFAULT_SEED = 42L;
+
+    public static long datasetSeed()
+    {
+        return Long.getLong( "dataset.seed", DEFAULT_SEED );
+    }
+
+    /**
+     * Returns the named stream of the seed. The same seed and name always give the same stream.
+     */
+    public static Random stream( long seed, String name )
+    {
+        return new Random( mix( seed, name.hashCode() ) );
+    }
+
+    /**
+     * Derives a well spread seed for a sub-stream, using the SplitMix64 finalizer.
+     */
+    public static long mix( long seed, long stream )
+    {
+        long z = seed + (stream + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -22,10 +22,10 @@ public class SevenDays
             asList( 1, 3, 3 ),
             asList( 2, 2, 3 ) );
 
-    public SevenDays( DateTime start )
+    public SevenDays( DateTime start, Random random )
     {
         this.start = start;
-        this.random = new Random();
+        this.random = random;
     }
 
     public Iterable<Interval> calculateIntervals( int numberOfIntervals )
@@ -51,7 +51,8 @@ public class SevenDays
         else
         {
             int i = random.nextInt( days.size() );
-            List<Integer> plusDays = days.get( i );
+            // A copy, since builders calculate intervals on several threads
+            List<Integer> plusDays = new ArrayList<Integer>( days.get( i ) );
             Collections.shuffle( plusDays, random );
 
             DateTime mid1 = start.plusDays( plusDays.get( 0 ) );
@@ -1,5 +1,7 @@
 package org.neo4j.graphdatabases.dataset_builders.properties;
 
+import java.util.Random;
+
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.PropertyContainer;
@@ -8,6 +10,13 @@ import org.neo4j.neode.properties.Property;
 
 public class DurationOnProjectProperty extends Property
 {
+    private final Random random;
+
+    public DurationOnProjectProperty( Random random )
+    {
+        this.random = random;
+    }
+
     @Override
     public void setProperty( PropertyContainer propertyContainer, GraphDatabaseService graphDatabaseService,
                              String s, int i )
@@ -17,7 +26,7 @@ public class DurationOnProjectProperty extends Property
         Long startDateTime = (Long) endNode.getProperty( "start_date" );
         Long endDateTime = (Long) endNode.getProperty( "end_date" );
         ProjectDuration projectDuration = new ProjectDuration( startDateTime, endDateTime );
-        ProjectDuration durationOnProject = projectDuration.getSubDuration();
+        ProjectDuration durationOnProject = projectDuration.getSubDuration( random );
 
         propertyContainer.setProperty( "duration", durationOnProject.toString() );
         propertyContainer.setProperty( "start_date", durationOnProject.getStartDateMs() );
@@ -1,18 +1,16 @@
 package org.neo4j.graphdatabases.dataset_builders.properties;
 
-import static org.neo4j.neode.Range.minMax;
-import static org.neo4j.neode.probabilities.ProbabilityDistribution.normalDistribution;
+import java.util.Random;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.Duration;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
-import org.neo4j.neode.probabilities.ProbabilityDistribution;
+import org.neo4j.graphdatabases.dataset_builders.helpers.RandomRanges;
 
 public class ProjectDuration
 {
-    private static final ProbabilityDistribution normalDistribution = normalDistribution();
     private static final DateTimeFormatter fmt = DateTimeFormat.forPattern( "dd-MM-yyyy" );
 
     private final Long startMs;
@@ -34,17 +32,23 @@ public class ProjectDuration
         return endMs;
     }
 
-    public ProjectDuration getSubDuration()
+    public ProjectDuration getSubDuration( Random random )
     {
         DateTime startDateTime = new DateTime( startMs, DateTimeZone.UTC );
         DateTime endDateTime = new DateTime( endMs, DateTimeZone.UTC );
 
         int durationInDays = (int) new Duration( startDateTime, endDateTime ).getStandardDays();
-        int offsetDaysFromStart = normalDistribution.generateSingle( minMax( 0, (int) (durationInDays * 0.75) ) );
+        int offsetDaysFromStart = RandomRanges.normal( random, 0, (int) (durationInDays * 0.75) );
         int remainingDays = durationInDays - offsetDaysFromStart;
         int subDurationInDays = (int) ((remainingDays * 0.75) +
-                (normalDistribution.generateSingle( minMax( 0, (int) (remainingDays * (0.25)) ) )));
+                RandomRanges.normal( random, 0, (int) (remainingDays * (0.25)) ));
 
+        return subDuration( startDateTime, offsetDaysFromStart, subDurationInDays );
+    }
+
+    private static ProjectDuration subDuration( DateTime startDateTime, int offsetDaysFromStart,
+                                                int subDurationInDays )
+    {
         DateTime subDurationStartDateTime = startDateTime.plusDays( offsetDaysFromStart );
         DateTime subDurationEndDateTime = subDurationStartDateTime.plusDays( subDurationInDays );
 
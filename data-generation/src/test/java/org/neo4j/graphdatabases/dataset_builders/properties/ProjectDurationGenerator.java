@@ -8,7 +8,12 @@ import org.joda.time.DateTimeZone;
 public class ProjectDurationGenerator
 {
     private final static DateTime durationLowerLimit = new DateTime(2000, 1, 1, 0, 0, DateTimeZone.UTC);
-    private final Random rand = new Random();
+    private final Random rand;
+
+    public ProjectDurationGenerator( Random rand )
+    {
+        this.rand = rand;
+    }
 
     public ProjectDuration getNextProjectDuration()
     {
@@ -1,12 +1,19 @@
 package org.neo4j.graphdatabases.dataset_builders.properties;
 
+import java.util.Random;
+
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.neode.properties.Property;
 
 public class ProjectDurationProperty extends Property
 {
-    private final ProjectDurationGenerator generator = new ProjectDurationGenerator();
+    private final ProjectDurationGenerator generator;
+
+    public ProjectDurationProperty( Random random )
+    {
+        this.generator = new ProjectDurationGenerator( random );
+    }
 
     @Override
     public void setProperty( PropertyContainer propertyContainer, GraphDatabaseService graphDatabaseService,
@@ -0,0 +1,89 @@
+package org.neo4j.graphdatabases.performance_tests.testing;
+
+import java.io.File;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.neo4j.graphdatabases.queries.testing.TestOutputWriter;
+
+/**
+ * Records the latencies of a test as its baseline, or compares them with the stored baseline and
+ * fails the test if any query type has regressed.
+ */
+public class BaselineGate
+{
+    public enum Mode
+    {
+        RECORD, COMPARE
+    }
+
+    private static final double CONFIDENCE = 0.95;
+    private static final int RESAMPLES = 10000;
+    private static final long SEED = 42;
+
+    /**
+     * Returns a gate configured by the baseline (record or compare), baseline.dir (baselines by
+     * default) and baseline.threshold (0.05 by default) system properties, or null if the baseline
+     * property isn't set.
+     */
+    public static BaselineGate fromSystemProperties( String dataset )
+    {
+        String mode = System.getProperty( "baseline" );
+        if ( mode == null || mode.isEmpty() )
+        {
+            return null;
+        }
+        return new BaselineGate( Mode.valueOf( mode.toUpperCase( Locale.ROOT ) ),
+                new BaselineStore( new File( System.getProperty( "baseline.dir", "baselines" ) ) ), dataset,
+                new RegressionDetector( Double.parseDouble( System.getProperty( "baseline.threshold", "0.05" ) ),
+                        CONFIDENCE, RESAMPLES, SEED ) );
+    }
+
+    private final Mode mode;
+    private final BaselineStore store;
+    private final String dataset;
+    private final RegressionDetector detector;
+
+    public BaselineGate( Mode mode, BaselineStore store, String dataset, RegressionDetector detector )
+    {
+        this.mode = mode;
+        this.store = store;
+        this.dataset = dataset;
+        this.detector = detector;
+    }
+
+    public void check( String title, Map<String, long[]> latencies, TestOutputWriter writer )
+    {
+        if ( mode == Mode.RECORD )
+        {
+            File file = store.save( dataset, title, latencies );
+            writer.writeln( String.format( "Baseline recorded: %s", file.getAbsolutePath() ) );
+            return;
+        }
+
+        Map<String, long[]> baseline = store.load( dataset, title );
+        if ( baseline == null )
+        {
+            writer.writeln( String.format( "No baseline for %s: %s", dataset, title ) );
+            return;
+        }
+
+        List<RegressionDetector.Comparison> comparisons = detector.compare( baseline, latencies );
+        StringBuilder regressions = new StringBuilder();
+        writer.writeln( "Compared with baseline (95% confidence)" );
+        for ( RegressionDetector.Comparison comparison : comparisons )
+        {
+            writer.writeln( String.format( "  %s", comparison ) );
+            if ( comparison.isRegression() )
+            {
+                regressions.append( String.format( "%n  %s", comparison ) );
+            }
+        }
+        if ( regressions.length() > 0 )
+        {
+            throw new AssertionError( String.format( "%s regressed against the %s baseline:%s", title, dataset,
+                    regressions ) );
+        }
+    }
+}
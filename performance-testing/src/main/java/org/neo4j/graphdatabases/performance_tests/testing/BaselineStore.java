@@ -0,0 +1,94 @@
+package org.neo4j.graphdatabases.performance_tests.testing;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Stores the latencies (in microseconds) of every run of a test, per query type, in a properties
+ * file per dataset and test: &lt;directory&gt;/&lt;dataset&gt;/&lt;test&gt;.properties.
+ */
+public class BaselineStore
+{
+    private final File directory;
+
+    public BaselineStore( File directory )
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the stored latencies, or null if there is no baseline for the test.
+     */
+    public Map<String, long[]> load( String dataset, String title )
+    {
+        File file = file( dataset, title );
+        if ( !file.isFile() )
+        {
+            return null;
+        }
+        Properties properties = new Properties();
+        try ( InputStream in = new FileInputStream( file ) )
+        {
+            properties.load( in );
+        }
+        catch ( IOException e )
+        {
+            throw new IllegalStateException( String.format( "Unable to read baseline %s", file ), e );
+        }
+
+        Map<String, long[]> latencies = new LinkedHashMap<String, long[]>();
+        for ( String queryType : properties.stringPropertyNames() )
+        {
+            String[] values = properties.getProperty( queryType ).trim().split( "\\s+" );
+            long[] samples = new long[values.length];
+            for ( int i = 0; i < values.length; i++ )
+            {
+                samples[i] = Long.parseLong( values[i] );
+            }
+            latencies.put( queryType, samples );
+        }
+        return latencies;
+    }
+
+    public File save( String dataset, String title, Map<String, long[]> latencies )
+    {
+        File file = file( dataset, title );
+        File parent = file.getParentFile();
+        if ( !parent.isDirectory() && !parent.mkdirs() )
+        {
+            throw new IllegalStateException( String.format( "Unable to create directory %s", parent ) );
+        }
+
+        Properties properties = new Properties();
+        for ( Map.Entry<String, long[]> entry : latencies.entrySet() )
+        {
+            StringBuilder values = new StringBuilder();
+            for ( long value : entry.getValue() )
+            {
+                values.append( values.length() == 0 ? "" : " " ).append( value );
+            }
+            properties.setProperty( entry.getKey(), values.toString() );
+        }
+        try ( OutputStream out = new FileOutputStream( file ) )
+        {
+            properties.store( out, title );
+        }
+        catch ( IOException e )
+        {
+            throw new IllegalStateException( String.format( "Unable to write baseline %s", file ), e );
+        }
+        return file;
+    }
+
+    private File file( String dataset, String title )
+    {
+        return new File( new File( directory, dataset ), String.format( "%s.properties", FileNames.fromTitle( title ) ) );
+    }
+}
@@ -9,6 +9,12 @@ public class DoNothingWithTestResults implements TestResultsHandler
         return new DoNothingWithTestResults();
     }
 
+    @Override
+    public Object read( Object results )
+    {
+        return results;
+    }
+
     @Override
     public void handle( String queryType, Object results, SingleTestRunResultHandler singleTestRunResultHandler )
     {
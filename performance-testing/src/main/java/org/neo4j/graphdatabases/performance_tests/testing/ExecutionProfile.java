@@ -0,0 +1,125 @@
+package org.neo4j.graphdatabases.performance_tests.testing;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What one or more executions of a query type cost: thread CPU time, bytes allocated by the
+ * thread, garbage collections (anywhere in the JVM) while the query ran, and the database hits
+ * and rows of each Cypher operator. Totals are kept, and {@link #toString()} reports the mean per
+ * execution, except for garbage collections, which are totals.
+ */
+public class ExecutionProfile
+{
+    private long executions;
+    private long cpuNanos;
+    private long allocatedBytes;
+    private long gcCount;
+    private long gcMillis;
+    private long dbHits;
+    private final Map<String, long[]> operators = new TreeMap<String, long[]>();
+
+    ExecutionProfile()
+    {
+    }
+
+    ExecutionProfile( long cpuNanos, long allocatedBytes, long gcCount, long gcMillis )
+    {
+        this.executions = 1;
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.gcCount = gcCount;
+        this.gcMillis = gcMillis;
+    }
+
+    void addOperator( String name, long rows, long operatorDbHits )
+    {
+        long[] totals = operators.get( name );
+        if ( totals == null )
+        {
+            totals = new long[2];
+            operators.put( name, totals );
+        }
+        totals[0] += rows;
+        totals[1] += operatorDbHits;
+        dbHits += operatorDbHits;
+    }
+
+    public void add( ExecutionProfile other )
+    {
+        executions += other.executions;
+        cpuNanos += other.cpuNanos;
+        allocatedBytes += other.allocatedBytes;
+        gcCount += other.gcCount;
+        gcMillis += other.gcMillis;
+        dbHits += other.dbHits;
+        for ( Map.Entry<String, long[]> operator : other.operators.entrySet() )
+        {
+            long[] totals = operators.get( operator.getKey() );
+            if ( totals == null )
+            {
+                totals = new long[2];
+                operators.put( operator.getKey(), totals );
+            }
+            totals[0] += operator.getValue()[0];
+            totals[1] += operator.getValue()[1];
+        }
+    }
+
+    public long executions()
+    {
+        return executions;
+    }
+
+    public long cpuNanos()
+    {
+        return cpuNanos;
+    }
+
+    /**
+     * Returns a negative number if the JVM can't measure allocations.
+     */
+    public long allocatedBytes()
+    {
+        return allocatedBytes;
+    }
+
+    public long gcCount()
+    {
+        return gcCount;
+    }
+
+    public long gcMillis()
+    {
+        return gcMillis;
+    }
+
+    public long dbHits()
+    {
+        return dbHits;
+    }
+
+    @Override
+    public String toString()
+    {
+        if ( executions == 0 )
+        {
+            return "no executions";
+        }
+        StringBuilder builder = new StringBuilder( String.format( "CPU (us) %s, allocated (KB) %s",
+                TimeUnit.NANOSECONDS.toMicros( cpuNanos / executions ),
+                allocatedBytes < 0 ? "n/a" : String.valueOf( allocatedBytes / executions / 1024 ) ) );
+        builder.append( String.format( ", GC %s collections in %s ms", gcCount, gcMillis ) );
+        if ( !operators.isEmpty() )
+        {
+            builder.append( String.format( ", DB hits %s, rows/DB hits per operator:", dbHits / executions ) );
+            for ( Map.Entry<String, long[]> operator : operators.entrySet() )
+            {
+                builder.append( String.format( " [%s: %s/%s]", operator.getKey(),
+                        operator.getValue()[0] / executions, operator.getValue()[1] / executions ) );
+            }
+        }
+        return builder.toString();
+    }
+}
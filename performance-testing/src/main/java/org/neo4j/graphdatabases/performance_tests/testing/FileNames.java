@@ -0,0 +1,19 @@
+package org.neo4j.graphdatabases.performance_tests.testing;
+
+import java.util.Locale;
+
+final class FileNames
+{
+    private FileNames()
+    {
+    }
+
+    /**
+     * Turns a test title into a file name: lower case, with every run of other characters replaced
+     * by a hyphen.
+     */
+    static String fromTitle( String title )
+    {
+        return title.toLowerCase( Locale.ROOT ).replaceAll( "[^a-z0-9]+", "-" ).replaceAll( "^-|-$", "" );
+    }
+}
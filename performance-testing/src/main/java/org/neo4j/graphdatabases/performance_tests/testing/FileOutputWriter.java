@@ -0,0 +1,68 @@
+package org.neo4j.graphdatabases.performance_tests.testing;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+
+import org.neo4j.graphdatabases.queries.testing.TestOutputWriter;
+
+/**
+ * Writes to a file, which is created (or replaced) by {@link #begin()} and closed by {@link #end()}.
+ */
+public class FileOutputWriter implements TestOutputWriter
+{
+    private final File file;
+    private PrintWriter writer;
+
+    public FileOutputWriter( File file )
+    {
+        this.file = file;
+    }
+
+    @Override
+    public void begin()
+    {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if ( !directory.isDirectory() && !directory.mkdirs() )
+        {
+            throw new IllegalStateException( String.format( "Unable to create directory %s", directory ) );
+        }
+        try
+        {
+            writer = new PrintWriter( new OutputStreamWriter( new FileOutputStream( file ),
+                    Charset.forName( "UTF-8" ) ) );
+        }
+        catch ( IOException e )
+        {
+            throw new IllegalStateException( String.format( "Unable to open %s", file ), e );
+        }
+    }
+
+    @Override
+    public void write( String value )
+    {
+        writer.print( value );
+    }
+
+    @Override
+    public void writeln( String value )
+    {
+        writer.println( value );
+    }
+
+    @Override
+    public void flush()
+    {
+        writer.flush();
+    }
+
+    @Override
+    public void end()
+    {
+        writer.close();
+        writer = null;
+    }
+}
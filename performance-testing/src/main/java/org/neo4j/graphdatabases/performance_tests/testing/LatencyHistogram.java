@@ -0,0 +1,146 @@
+package org.neo4j.graphdatabases.performance_tests.testing;
+
+/**
+ * An HDR-style histogram of latencies: values are counted in log-linear buckets, so every
+ * recorded value, and therefore every percentile, is accurate to within 0.1%, however large the
+ * range of values. Values larger than the highest trackable value are counted in the top bucket,
+ * but still reported exactly by {@link #max()}.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_HALF_COUNT_MAGNITUDE = 10;
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << SUB_BUCKET_HALF_COUNT_MAGNITUDE;
+    private static final long SUB_BUCKET_MASK = (SUB_BUCKET_HALF_COUNT << 1) - 1;
+
+    private final long highestTrackableValue;
+    private final long[] counts;
+    private long totalCount;
+    private long sum;
+    private long max;
+
+    public LatencyHistogram( long highestTrackableValue )
+    {
+        this.highestTrackableValue = highestTrackableValue;
+        this.counts = new long[countsIndex( highestTrackableValue ) + 1];
+    }
+
+    public void recordValue( long value )
+    {
+        recordValue( value, 1 );
+    }
+
+    public void recordValue( long value, long count )
+    {
+        if ( value < 0 )
+        {
+            throw new IllegalArgumentException( String.format( "Negative value: %s", value ) );
+        }
+        counts[countsIndex( Math.min( value, highestTrackableValue ) )] += count;
+        totalCount += count;
+        sum += value * count;
+        max = Math.max( max, value );
+    }
+
+    public void add( LatencyHistogram other )
+    {
+        if ( other.counts.length != counts.length )
+        {
+            throw new IllegalArgumentException( "Histograms have different highest trackable values" );
+        }
+        for ( int i = 0; i < counts.length; i++ )
+        {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        max = Math.max( max, other.max );
+    }
+
+    /**
+     * Returns a copy of this histogram corrected for coordinated omission: a load generator that
+     * waits for each request before sending the next one doesn't send the requests that a stall
+     * would have delayed. For every value larger than the expected interval between requests, the
+     * copy also records the values those missing requests would have seen, the value less one
+     * interval, less two intervals, and so on down to the interval.
+     */
+    public LatencyHistogram correctedForCoordinatedOmission( long expectedInterval )
+    {
+        LatencyHistogram corrected = new LatencyHistogram( highestTrackableValue );
+        corrected.add( this );
+        if ( expectedInterval <= 0 )
+        {
+            return corrected;
+        }
+        for ( int i = 0; i < counts.length; i++ )
+        {
+            if ( counts[i] == 0 )
+            {
+                continue;
+            }
+            long value = Math.min( highestEquivalentValue( i ), max );
+            for ( long missing = value - expectedInterval; missing >= expectedInterval; missing -= expectedInterval )
+            {
+                corrected.recordValue( missing, counts[i] );
+            }
+        }
+        return corrected;
+    }
+
+    public long totalCount()
+    {
+        return totalCount;
+    }
+
+    public long max()
+    {
+        return max;
+    }
+
+    public double mean()
+    {
+        return totalCount == 0 ? 0.0 : (double) sum / totalCount;
+    }
+
+    /**
+     * Returns the highest value that is equivalent to the value at the given percentile, or the
+     * largest value recorded if that is lower.
+     */
+    public long valueAtPercentile( double percentile )
+    {
+        if ( totalCount == 0 )
+        {
+            return 0;
+        }
+        long countAtPercentile = Math.max( 1, Math.round( percentile / 100.0 * totalCount ) );
+        long count = 0;
+        for ( int i = 0; i < counts.length; i++ )
+        {
+            count += counts[i];
+            if ( count >= countAtPercentile )
+            {
+                return Math.min( highestEquivalentValue( i ), max );
+            }
+        }
+        return max;
+    }
+
+    private static int countsIndex( long value )
+    {
+        int bucketIndex = Math.max( 0, 63 - Long.numberOfLeadingZeros( value | SUB_BUCKET_MASK )
+                - SUB_BUCKET_HALF_COUNT_MAGNITUDE );
+        int subBucketIndex = (int) (value >>> bucketIndex);
+        return ((bucketIndex + 1) << SUB_BUCKET_HALF_COUNT_MAGNITUDE) + subBucketIndex - SUB_BUCKET_HALF_COUNT;
+    }
+
+    private static long highestEquivalentValue( int countsIndex )
+    {
+        int bucketIndex = (countsIndex >> SUB_BUCKET_HALF_COUNT_MAGNITUDE) - 1;
+        long subBucketIndex = (countsIndex & (SUB_BUCKET_HALF_COUNT - 1)) + SUB_BUCKET_HALF_COUNT;
+        if ( bucketIndex < 0 )
+        {
+            subBucketIndex -= SUB_BUCKET_HALF_COUNT;
+            bucketIndex = 0;
+        }
+        return (subBucketIndex << bucketIndex) + (1L << bucketIndex) - 1;
+    }
+}
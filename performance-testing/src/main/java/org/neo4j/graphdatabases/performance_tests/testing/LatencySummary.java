@@ -0,0 +1,105 @@
+package org.neo4j.graphdatabases.performance_tests.testing;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency percentiles (in microseconds) and throughput for one query type. Throughput is the
+ * number of queries per second of time spent running that query type.
+ */
+public class LatencySummary
+{
+    public static LatencySummary summarize( String queryType, LatencyHistogram histogram, long totalNanos )
+    {
+        double seconds = totalNanos / (double) TimeUnit.SECONDS.toNanos( 1 );
+        return new LatencySummary( queryType,
+                histogram.totalCount(),
+                histogram.mean(),
+                histogram.valueAtPercentile( 50.0 ),
+                histogram.valueAtPercentile( 90.0 ),
+                histogram.valueAtPercentile( 99.0 ),
+                histogram.valueAtPercentile( 99.9 ),
+                histogram.max(),
+                seconds == 0.0 ? 0.0 : histogram.totalCount() / seconds );
+    }
+
+    private final String queryType;
+    private final long count;
+    private final double mean;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+    private final long max;
+    private final double queriesPerSecond;
+
+    LatencySummary( String queryType, long count, double mean, long p50, long p90, long p99, long p999, long max,
+                    double queriesPerSecond )
+    {
+        this.queryType = queryType;
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+        this.queriesPerSecond = queriesPerSecond;
+    }
+
+    public String queryType()
+    {
+        return queryType;
+    }
+
+    public long count()
+    {
+        return count;
+    }
+
+    public double mean()
+    {
+        return mean;
+    }
+
+    public long p50()
+    {
+        return p50;
+    }
+
+    public long p90()
+    {
+        return p90;
+    }
+
+    public long p99()
+    {
+        return p99;
+    }
+
+    public long p999()
+    {
+        return p999;
+    }
+
+    public long max()
+    {
+        return max;
+    }
+
+    public double queriesPerSecond()
+    {
+        return queriesPerSecond;
+    }
+
+    public LatencySummary withQueryType( String queryType )
+    {
+        return new LatencySummary( queryType, count, mean, p50, p90, p99, p999, max, queriesPerSecond );
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "mean %.1f, p50 %s, p90 %s, p99 %s, p99.9 %s, max %s, %.2f queries/s",
+                mean, p50, p90, p99, p999, max, queriesPerSecond );
+    }
+}
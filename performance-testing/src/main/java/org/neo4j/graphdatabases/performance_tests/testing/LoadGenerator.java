@@ -0,0 +1,331 @@
+package org.neo4j.graphdatabases.performance_tests.testing;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.neo4j.graphdatabases.queries.testing.TestOutputWriter;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+
+/**
+ * Runs tests concurrently against one database, from a number of worker threads, for a fixed
+ * time after a warmup. Each query runs in its own transaction, and its results are consumed in
+ * full. The tests take turns, and each query gets new params.
+ * <p/>
+ * A closed loop keeps every worker busy: each sends its next query as soon as the last one
+ * returns. Stalls therefore also stop the queries that would have seen them, so the corrected
+ * latencies assume that each worker meant to send a query every median latency.
+ * <p/>
+ * An open loop sends queries at a fixed rate, shared between the workers, whether or not earlier
+ * queries have returned. Its corrected latencies are measured from when each query should have
+ * been sent, so they include any time spent waiting for a free worker.
+ */
+public class LoadGenerator
+{
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros( 1 );
+
+    public static LoadGenerator closedLoop( GraphDatabaseService db, int numberOfThreads, long warmup,
+                                            long duration, TimeUnit unit, TestOutputWriter writer )
+    {
+        return new LoadGenerator( db, numberOfThreads, 0.0, unit.toNanos( warmup ), unit.toNanos( duration ),
+                false, writer );
+    }
+
+    public static LoadGenerator openLoop( GraphDatabaseService db, int numberOfThreads, double queriesPerSecond,
+                                          long warmup, long duration, TimeUnit unit, TestOutputWriter writer )
+    {
+        if ( queriesPerSecond <= 0.0 )
+        {
+            throw new IllegalArgumentException( String.format( "Invalid rate: %s", queriesPerSecond ) );
+        }
+        return new LoadGenerator( db, numberOfThreads, queriesPerSecond, unit.toNanos( warmup ),
+                unit.toNanos( duration ), false, writer );
+    }
+
+    private final GraphDatabaseService db;
+    private final int numberOfThreads;
+    private final double queriesPerSecond;
+    private final long warmupNanos;
+    private final long durationNanos;
+    private final boolean virtualThreads;
+    private final TestOutputWriter writer;
+    private final ReportFormat reportFormat;
+    private final File reportDirectory;
+
+    private LoadGenerator( GraphDatabaseService db, int numberOfThreads, double queriesPerSecond, long warmupNanos,
+                           long durationNanos, boolean virtualThreads, TestOutputWriter writer )
+    {
+        this.db = db;
+        this.numberOfThreads = numberOfThreads;
+        this.queriesPerSecond = queriesPerSecond;
+        this.warmupNanos = warmupNanos;
+        this.durationNanos = durationNanos;
+        this.virtualThreads = virtualThreads;
+        this.writer = writer;
+        this.reportFormat = ReportFormat.fromName( System.getProperty( "latency.report" ) );
+        this.reportDirectory = new File( System.getProperty( "latency.report.dir", "target/latency-reports" ) );
+    }
+
+    /**
+     * Runs the workers as virtual threads, if the JVM supports them.
+     */
+    public LoadGenerator usingVirtualThreads()
+    {
+        return new LoadGenerator( db, numberOfThreads, queriesPerSecond, warmupNanos, durationNanos, true, writer );
+    }
+
+    /**
+     * Returns the corrected latency summaries, whose throughput is the number of queries of each
+     * type completed per second of the run.
+     */
+    public List<LatencySummary> execute( String title, ParamsGenerator paramsGenerator, SingleTest... tests )
+    {
+        writer.writeln( title );
+        writer.writeln( String.format( "%s, %s %sthreads",
+                queriesPerSecond > 0.0 ? String.format( "Open loop at %.1f queries/s", queriesPerSecond ) :
+                        "Closed loop", numberOfThreads, virtualThreads ? "virtual " : "" ) );
+
+        run( paramsGenerator, tests, warmupNanos );
+        Run run = run( paramsGenerator, tests, durationNanos );
+
+        List<LatencySummary> latencies = new ArrayList<LatencySummary>();
+        List<LatencySummary> corrected = new ArrayList<LatencySummary>();
+        long queries = 0;
+        for ( int i = 0; i < tests.length; i++ )
+        {
+            LatencyHistogram serviceTimes = run.serviceTimes[i];
+            LatencyHistogram correctedLatencies = queriesPerSecond > 0.0 ? run.responseTimes[i] :
+                    serviceTimes.correctedForCoordinatedOmission( serviceTimes.valueAtPercentile( 50.0 ) );
+            latencies.add( LatencySummary.summarize( tests[i].queryType(), serviceTimes, run.nanos ) );
+            corrected.add( LatencySummary.summarize( tests[i].queryType(), correctedLatencies, run.nanos ) );
+            queries += serviceTimes.totalCount();
+        }
+
+        writer.writeln( "\n======================================" );
+        writer.writeln( title );
+        writer.writeln( String.format( "%s queries in %.1f s: %.2f queries/s, %s errors", queries,
+                run.nanos / 1e9, queries / (run.nanos / 1e9), run.errors ) );
+        writer.writeln( "Latencies (us)" );
+        for ( LatencySummary summary : latencies )
+        {
+            writer.writeln( String.format( "  %s: %s", summary.queryType(), summary ) );
+        }
+        writer.writeln( "Latencies corrected for coordinated omission (us)" );
+        for ( LatencySummary summary : corrected )
+        {
+            writer.writeln( String.format( "  %s: %s", summary.queryType(), summary ) );
+        }
+        writer.writeln( "======================================" );
+
+        if ( reportFormat != null )
+        {
+            List<LatencySummary> summaries = new ArrayList<LatencySummary>( latencies );
+            for ( LatencySummary summary : corrected )
+            {
+                summaries.add( summary.withQueryType( summary.queryType() + " (corrected)" ) );
+            }
+            File report = reportFormat.writeReport( reportDirectory, title, summaries );
+            writer.writeln( String.format( "Report: %s", report.getAbsolutePath() ) );
+        }
+
+        if ( run.firstError != null )
+        {
+            throw new IllegalStateException( String.format( "%s queries failed", run.errors ), run.firstError );
+        }
+        return corrected;
+    }
+
+    private Run run( ParamsGenerator paramsGenerator, SingleTest[] tests, long nanos )
+    {
+        long start = System.nanoTime();
+        AtomicLong operations = new AtomicLong();
+        ExecutorService executor = newExecutor();
+        List<Future<Worker>> futures = new ArrayList<Future<Worker>>();
+        try
+        {
+            for ( int i = 0; i < numberOfThreads; i++ )
+            {
+                futures.add( executor.submit( new Worker( paramsGenerator, tests, operations, start,
+                        start + nanos ) ) );
+            }
+            Run run = new Run( tests.length );
+            for ( Future<Worker> future : futures )
+            {
+                run.add( future.get() );
+            }
+            run.nanos = System.nanoTime() - start;
+            return run;
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Interrupted while generating load", e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new IllegalStateException( "Load generator failed", e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private ExecutorService newExecutor()
+    {
+        if ( virtualThreads )
+        {
+            try
+            {
+                return (ExecutorService) Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" )
+                        .invoke( null );
+            }
+            catch ( ReflectiveOperationException e )
+            {
+                // Virtual threads need Java 21, so fall back to platform threads
+            }
+        }
+        return Executors.newFixedThreadPool( numberOfThreads );
+    }
+
+    private void execute( SingleTest test, Map<String, String> params )
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            Object results = test.execute( params );
+            if ( results instanceof Iterable )
+            {
+                results = ((Iterable) results).iterator();
+            }
+            if ( results instanceof Iterator )
+            {
+                Iterator iterator = (Iterator) results;
+                while ( iterator.hasNext() )
+                {
+                    iterator.next();
+                }
+            }
+            tx.success();
+        }
+    }
+
+    private static class Run
+    {
+        private final LatencyHistogram[] serviceTimes;
+        private final LatencyHistogram[] responseTimes;
+        private long errors;
+        private RuntimeException firstError;
+        private long nanos;
+
+        Run( int numberOfTests )
+        {
+            serviceTimes = histograms( numberOfTests );
+            responseTimes = histograms( numberOfTests );
+        }
+
+        void add( Worker worker )
+        {
+            for ( int i = 0; i < serviceTimes.length; i++ )
+            {
+                serviceTimes[i].add( worker.serviceTimes[i] );
+                responseTimes[i].add( worker.responseTimes[i] );
+            }
+            errors += worker.errors;
+            if ( firstError == null )
+            {
+                firstError = worker.firstError;
+            }
+        }
+    }
+
+    private static LatencyHistogram[] histograms( int numberOfTests )
+    {
+        LatencyHistogram[] histograms = new LatencyHistogram[numberOfTests];
+        for ( int i = 0; i < numberOfTests; i++ )
+        {
+            histograms[i] = new LatencyHistogram( HIGHEST_TRACKABLE_MICROS );
+        }
+        return histograms;
+    }
+
+    private class Worker implements Callable<Worker>
+    {
+        private final ParamsGenerator paramsGenerator;
+        private final SingleTest[] tests;
+        private final AtomicLong operations;
+        private final long start;
+        private final long deadline;
+        private final LatencyHistogram[] serviceTimes;
+        private final LatencyHistogram[] responseTimes;
+        private long errors;
+        private RuntimeException firstError;
+
+        Worker( ParamsGenerator paramsGenerator, SingleTest[] tests, AtomicLong operations, long start,
+                long deadline )
+        {
+            this.paramsGenerator = paramsGenerator;
+            this.tests = tests;
+            this.operations = operations;
+            this.start = start;
+            this.deadline = deadline;
+            this.serviceTimes = histograms( tests.length );
+            this.responseTimes = histograms( tests.length );
+        }
+
+        @Override
+        public Worker call()
+        {
+            while ( !Thread.currentThread().isInterrupted() )
+            {
+                long operation = operations.getAndIncrement();
+                long intendedStart = queriesPerSecond > 0.0 ?
+                        start + (long) (operation * 1e9 / queriesPerSecond) : System.nanoTime();
+                if ( intendedStart >= deadline )
+                {
+                    break;
+                }
+                int testIndex = (int) (operation % tests.length);
+                Map<String, String> params;
+                // Params generators aren't written to be shared between threads
+                synchronized ( paramsGenerator )
+                {
+                    params = paramsGenerator.generateParams();
+                }
+                long wait;
+                while ( (wait = intendedStart - System.nanoTime()) > 0 )
+                {
+                    LockSupport.parkNanos( wait );
+                }
+
+                long actualStart = System.nanoTime();
+                try
+                {
+                    execute( tests[testIndex], params );
+                }
+                catch ( RuntimeException e )
+                {
+                    errors++;
+                    if ( firstError == null )
+                    {
+                        firstError = e;
+                    }
+                }
+                long end = System.nanoTime();
+                serviceTimes[testIndex].recordValue( TimeUnit.NANOSECONDS.toMicros( end - actualStart ) );
+                responseTimes[testIndex].recordValue( TimeUnit.NANOSECONDS.toMicros( end - intendedStart ) );
+            }
+            return this;
+        }
+    }
+}
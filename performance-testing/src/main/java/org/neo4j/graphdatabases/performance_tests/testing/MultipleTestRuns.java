@@ -3,24 +3,70 @@ package org.neo4j.graphdatabases.performance_tests.testing;
 import static org.neo4j.neode.Range.minMax;
 import static org.neo4j.neode.probabilities.ProbabilityDistribution.flatDistribution;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import org.neo4j.graphdatabases.ScaleFactor;
 import org.neo4j.graphdatabases.queries.testing.TestOutputWriter;
 
+/**
+ * Runs each test a number of times, recording every duration in a {@link LatencyHistogram} per
+ * query type, and reports latency percentiles and throughput. To also write a machine-readable
+ * report per test, set the latency.report system property to csv or json; reports are written to
+ * the directory named by latency.report.dir (target/latency-reports by default). Runs created
+ * for a dataset write their reports to &lt;dataset&gt;/&lt;scale&gt; below that directory, where
+ * {@link ScalingReport} finds them, and can also be recorded as, or compared with, a baseline for
+ * the dataset at its current {@link ScaleFactor}: see {@link BaselineGate}.
+ * An enabled {@link QueryProfiler} profiles every execution.
+ */
 public class MultipleTestRuns
 {
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros( 1 );
+
     private final int numberOfRuns;
     private final TestOutputWriter writer;
+    private final ReportFormat reportFormat;
+    private final File reportDirectory;
+    private final BaselineGate baselineGate;
+    private final QueryProfiler profiler;
 
     public MultipleTestRuns( int numberOfRuns, TestOutputWriter writer )
+    {
+        this( numberOfRuns, writer, ReportFormat.fromName( System.getProperty( "latency.report" ) ),
+                new File( System.getProperty( "latency.report.dir", "target/latency-reports" ) ), null,
+                QueryProfiler.disabled() );
+    }
+
+    public MultipleTestRuns( int numberOfRuns, TestOutputWriter writer, String dataset )
+    {
+        this( numberOfRuns, writer, dataset, QueryProfiler.disabled() );
+    }
+
+    public MultipleTestRuns( int numberOfRuns, TestOutputWriter writer, String dataset, QueryProfiler profiler )
+    {
+        this( numberOfRuns, writer, ReportFormat.fromName( System.getProperty( "latency.report" ) ),
+                ScalingReport.reportDirectory( new File( System.getProperty( "latency.report.dir",
+                        "target/latency-reports" ) ), dataset, ScaleFactor.SCALE_FACTOR ),
+                BaselineGate.fromSystemProperties( ScaleFactor.dataset( dataset ) ), profiler );
+    }
+
+    public MultipleTestRuns( int numberOfRuns, TestOutputWriter writer, ReportFormat reportFormat,
+                             File reportDirectory, BaselineGate baselineGate, QueryProfiler profiler )
     {
         this.numberOfRuns = numberOfRuns;
         this.writer = writer;
+        this.reportFormat = reportFormat;
+        this.reportDirectory = reportDirectory;
+        this.baselineGate = baselineGate;
+        this.profiler = profiler;
     }
 
-    public void execute( String title,
+    public List<LatencySummary> execute( String title,
                          ParamsGenerator paramsGenerator,
                          SingleTestRunResultHandlerFactory singleTestRunResultHandlerFactory,
                          TestResultsHandler testResultsHandler,
@@ -30,12 +76,18 @@ public class MultipleTestRuns
         testResultsHandler.writeTo( writer );
 
         Map<String, Long> totalTimes = new HashMap<String, Long>();
+        Map<String, LatencyHistogram> histograms = new HashMap<String, LatencyHistogram>();
+        Map<String, long[]> latencies = new LinkedHashMap<String, long[]>();
+        Map<String, ExecutionProfile> profiles = new HashMap<String, ExecutionProfile>();
         for ( SingleTest singleTest : tests )
         {
             totalTimes.put( singleTest.queryType(), 0L );
+            histograms.put( singleTest.queryType(), new LatencyHistogram( HIGHEST_TRACKABLE_MICROS ) );
+            latencies.put( singleTest.queryType(), new long[numberOfRuns] );
+            profiles.put( singleTest.queryType(), new ExecutionProfile() );
         }
 
-        for ( long i = 0; i < numberOfRuns; i++ )
+        for ( int i = 0; i < numberOfRuns; i++ )
         {
             SingleTestRunResultHandler singleTestRunResultHandler = singleTestRunResultHandlerFactory
                     .createSingleTestRunResultHandler();
@@ -62,38 +114,102 @@ public class MultipleTestRuns
             {
                 SingleTest singleTest = tests[testIndex];
                 writer.writeln( String.format( "\n  %s", singleTest.queryType() ) );
+                profiler.begin();
                 long startTime = System.nanoTime();
                 Object lastResult = singleTest.execute( params );
-                testResultsHandler.handle( singleTest.queryType(), lastResult, singleTestRunResultHandler );
-                long endTime = System.nanoTime();
+                Object rows;
+                long endTime;
+                try
+                {
+                    rows = testResultsHandler.read( lastResult );
+                    endTime = System.nanoTime();
+                }
+                finally
+                {
+                    close( lastResult );
+                }
+                ExecutionProfile profile = profiler.end();
+                testResultsHandler.handle( singleTest.queryType(), rows, singleTestRunResultHandler );
                 long duration = endTime - startTime;
-                writer.writeln( String.format( "  Duration (ms): %s", duration / 1000000 ) );
+                writer.writeln( String.format( "  Duration (us): %s", TimeUnit.NANOSECONDS.toMicros( duration ) ) );
+                if ( profile != null )
+                {
+                    writer.writeln( String.format( "  %s", profile ) );
+                    profiles.get( singleTest.queryType() ).add( profile );
+                }
                 Long currentTotalTime = totalTimes.get( singleTest.queryType() );
                 totalTimes.put( singleTest.queryType(), currentTotalTime + duration );
+                histograms.get( singleTest.queryType() ).recordValue( TimeUnit.NANOSECONDS.toMicros( duration ) );
+                latencies.get( singleTest.queryType() )[i] = TimeUnit.NANOSECONDS.toMicros( duration );
             }
 
             singleTestRunResultHandler.summarize( writer );
 
         }
 
+        List<LatencySummary> summaries = new ArrayList<LatencySummary>();
+        for ( SingleTest singleTest : tests )
+        {
+            summaries.add( LatencySummary.summarize( singleTest.queryType(),
+                    histograms.get( singleTest.queryType() ), totalTimes.get( singleTest.queryType() ) ) );
+        }
+
         writer.writeln( "\n======================================" );
         writer.writeln( title );
-        writer.writeln( "Average times (ms)" );
+        writer.writeln( "Latencies (us)" );
 
-        for ( SingleTest singleTest : tests )
+        for ( LatencySummary summary : summaries )
         {
-            long avgTime = totalTimes.get( singleTest.queryType() ) / numberOfRuns / 1000000;
-            writer.writeln( String.format( "  %s: %s", singleTest.queryType(), avgTime ) );
+            writer.writeln( String.format( "  %s: %s", summary.queryType(), summary ) );
+        }
+        if ( profiler.isEnabled() )
+        {
+            writer.writeln( "Profile (mean per execution, with Cypher profiling)" );
+            for ( SingleTest singleTest : tests )
+            {
+                writer.writeln( String.format( "  %s: %s", singleTest.queryType(),
+                        profiles.get( singleTest.queryType() ) ) );
+            }
         }
         writer.writeln( "======================================" );
+
+        if ( reportFormat != null )
+        {
+            File report = reportFormat.writeReport( reportDirectory, title, summaries );
+            writer.writeln( String.format( "Report: %s", report.getAbsolutePath() ) );
+        }
+        if ( baselineGate != null )
+        {
+            baselineGate.check( title, latencies, writer );
+        }
+        return summaries;
     }
 
-    public void execute( String title,
+    public List<LatencySummary> execute( String title,
                          ParamsGenerator paramsGenerator,
                          TestResultsHandler testResultsHandler,
                          SingleTest... tests )
     {
-        execute( title, paramsGenerator, new NullSingleTestRunResultHandlerFactory(), testResultsHandler, tests );
+        return execute( title, paramsGenerator, new NullSingleTestRunResultHandlerFactory(), testResultsHandler,
+                tests );
+    }
+
+    /**
+     * Closes a result that holds resources, such as a concurrent union whose handler stopped reading early.
+     */
+    private static void close( Object result )
+    {
+        if ( result instanceof AutoCloseable )
+        {
+            try
+            {
+                ((AutoCloseable) result).close();
+            }
+            catch ( Exception e )
+            {
+                throw new IllegalStateException( "Unable to close test result.", e );
+            }
+        }
     }
 
     private static class NullSingleTestRunResultHandler implements SingleTestRunResultHandler
@@ -1,6 +1,8 @@
 package org.neo4j.graphdatabases.performance_tests.testing;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.neo4j.graphdatabases.queries.testing.TestOutputWriter;
 
@@ -37,6 +39,22 @@ public class PrintTestResults implements TestResultsHandler
         this.writer = writer;
     }
 
+    @Override
+    public Object read( Object results )
+    {
+        if ( Iterable.class.isAssignableFrom( results.getClass() ) )
+        {
+            List<Object> rows = new ArrayList<Object>();
+            Iterator iterator = ((Iterable) results).iterator();
+            while ( iterator.hasNext() && rows.size() < numberOfResults )
+            {
+                rows.add( iterator.next() );
+            }
+            return rows;
+        }
+        return results;
+    }
+
     @Override
     public void handle( String queryType, Object results, SingleTestRunResultHandler singleTestRunResultHandler )
     {
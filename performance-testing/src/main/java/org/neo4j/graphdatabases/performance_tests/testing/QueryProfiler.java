@@ -0,0 +1,199 @@
+package org.neo4j.graphdatabases.performance_tests.testing;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.cypher.ProfilerStatisticsNotReadyException;
+import org.neo4j.cypher.javacompat.ExecutionEngine;
+import org.neo4j.cypher.javacompat.ExecutionResult;
+import org.neo4j.cypher.javacompat.PlanDescription;
+import org.neo4j.cypher.javacompat.ProfilerStatistics;
+import org.neo4j.graphdatabases.queries.helpers.ExecutionEngineWrapper;
+import org.neo4j.graphdb.GraphDatabaseService;
+
+/**
+ * Profiles each execution of a test on the current thread, between {@link #begin()} and
+ * {@link #end()}: thread CPU time and allocated bytes from the ThreadMXBean, garbage collections
+ * from the GarbageCollectorMXBeans, and, for Cypher queries run through
+ * {@link #executionEngineWrapper(GraphDatabaseService)}, the Cypher profile. Profiled Cypher
+ * queries are slower than unprofiled ones, so timings taken while profiling are only good for
+ * comparing queries with each other.
+ * <p/>
+ * A disabled profiler executes queries without profiling them, and profiles nothing.
+ */
+public class QueryProfiler
+{
+    public static QueryProfiler enabled()
+    {
+        return new QueryProfiler( true );
+    }
+
+    public static QueryProfiler disabled()
+    {
+        return new QueryProfiler( false );
+    }
+
+    /**
+     * Returns an enabled profiler if the query.profile system property is true.
+     */
+    public static QueryProfiler fromSystemProperties()
+    {
+        return new QueryProfiler( Boolean.getBoolean( "query.profile" ) );
+    }
+
+    private final boolean enabled;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final ThreadLocal<Execution> executions = new ThreadLocal<Execution>()
+    {
+        @Override
+        protected Execution initialValue()
+        {
+            return new Execution();
+        }
+    };
+
+    private QueryProfiler( boolean enabled )
+    {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public ExecutionEngineWrapper executionEngineWrapper( GraphDatabaseService db )
+    {
+        if ( !enabled )
+        {
+            return new DefaultExecutionEngineWrapper( db );
+        }
+        final ExecutionEngine executionEngine = new ExecutionEngine( db );
+        return new ExecutionEngineWrapper()
+        {
+            @Override
+            public ExecutionResult execute( String query, Map<String, Object> params )
+            {
+                ExecutionResult result = executionEngine.profile( query, params );
+                executions.get().results.add( result );
+                return result;
+            }
+
+            @Override
+            public ExecutionResult execute( String query, Map<String, Object> params, int index )
+            {
+                return execute( query, params );
+            }
+        };
+    }
+
+    public void begin()
+    {
+        if ( !enabled )
+        {
+            return;
+        }
+        Execution execution = executions.get();
+        execution.results.clear();
+        execution.cpuNanos = threads.getCurrentThreadCpuTime();
+        execution.allocatedBytes = allocatedBytes();
+        execution.gcCount = gcCount();
+        execution.gcMillis = gcMillis();
+    }
+
+    /**
+     * Returns the profile of the execution since {@link #begin()}, or null if the profiler is
+     * disabled. Cypher profiles are only complete once all of a query's rows have been read, so
+     * this reads any rows that the test left unread.
+     */
+    public ExecutionProfile end()
+    {
+        if ( !enabled )
+        {
+            return null;
+        }
+        Execution execution = executions.get();
+        long allocatedBytes = allocatedBytes();
+        ExecutionProfile profile = new ExecutionProfile(
+                threads.getCurrentThreadCpuTime() - execution.cpuNanos,
+                allocatedBytes < 0 ? -1 : allocatedBytes - execution.allocatedBytes,
+                gcCount() - execution.gcCount,
+                gcMillis() - execution.gcMillis );
+
+        for ( ExecutionResult result : execution.results )
+        {
+            Iterator<Map<String, Object>> rows = result.iterator();
+            while ( rows.hasNext() )
+            {
+                rows.next();
+            }
+            addOperators( result.executionPlanDescription(), profile );
+        }
+        execution.results.clear();
+        return profile;
+    }
+
+    private void addOperators( PlanDescription plan, ExecutionProfile profile )
+    {
+        if ( plan.hasProfilerStatistics() )
+        {
+            try
+            {
+                ProfilerStatistics statistics = plan.getProfilerStatistics();
+                profile.addOperator( plan.getName(), statistics.getRows(), statistics.getDbHits() );
+            }
+            catch ( ProfilerStatisticsNotReadyException e )
+            {
+                // Operator didn't run
+            }
+        }
+        for ( PlanDescription child : plan.getChildren() )
+        {
+            addOperators( child, profile );
+        }
+    }
+
+    private long allocatedBytes()
+    {
+        if ( threads instanceof com.sun.management.ThreadMXBean )
+        {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(
+                    Thread.currentThread().getId() );
+        }
+        return -1;
+    }
+
+    private static long gcCount()
+    {
+        long count = 0;
+        for ( GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans() )
+        {
+            count += Math.max( 0, collector.getCollectionCount() );
+        }
+        return count;
+    }
+
+    private static long gcMillis()
+    {
+        long millis = 0;
+        for ( GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans() )
+        {
+            millis += Math.max( 0, collector.getCollectionTime() );
+        }
+        return millis;
+    }
+
+    private static class Execution
+    {
+        private final List<ExecutionResult> results = new ArrayList<ExecutionResult>();
+        private long cpuNanos;
+        private long allocatedBytes;
+        private long gcCount;
+        private long gcMillis;
+    }
+}
@@ -0,0 +1,160 @@
+package org.neo4j.graphdatabases.performance_tests.testing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares the latencies of a query type in two sets of runs. Latencies are skewed, so the
+ * comparison is made on their logarithms: the ratio is the ratio of the geometric means of the
+ * two sets, and its confidence interval comes from resampling both sets (a percentile bootstrap),
+ * which needs no assumptions about how latencies are distributed. A query type has regressed only
+ * if the whole of the interval lies above 1 + threshold, so a slowdown smaller than the
+ * threshold, or one that the noise between runs could explain, doesn't count.
+ */
+public class RegressionDetector
+{
+    private final double threshold;
+    private final double confidence;
+    private final int resamples;
+    private final long seed;
+
+    public RegressionDetector( double threshold, double confidence, int resamples, long seed )
+    {
+        this.threshold = threshold;
+        this.confidence = confidence;
+        this.resamples = resamples;
+        this.seed = seed;
+    }
+
+    /**
+     * Compares the query types that appear in both sets of runs.
+     */
+    public List<Comparison> compare( Map<String, long[]> baseline, Map<String, long[]> current )
+    {
+        List<Comparison> comparisons = new ArrayList<Comparison>();
+        for ( Map.Entry<String, long[]> entry : current.entrySet() )
+        {
+            long[] baselineLatencies = baseline.get( entry.getKey() );
+            if ( baselineLatencies != null && baselineLatencies.length > 0 && entry.getValue().length > 0 )
+            {
+                comparisons.add( compare( entry.getKey(), baselineLatencies, entry.getValue() ) );
+            }
+        }
+        return comparisons;
+    }
+
+    public Comparison compare( String queryType, long[] baseline, long[] current )
+    {
+        double[] logBaseline = logs( baseline );
+        double[] logCurrent = logs( current );
+
+        Random random = new Random( seed );
+        double[] differences = new double[resamples];
+        for ( int i = 0; i < resamples; i++ )
+        {
+            differences[i] = resampledMean( logCurrent, random ) - resampledMean( logBaseline, random );
+        }
+        Arrays.sort( differences );
+        double alpha = 1.0 - confidence;
+        int lowerIndex = (int) Math.floor( alpha / 2 * (resamples - 1) );
+        int upperIndex = (int) Math.ceil( (1.0 - alpha / 2) * (resamples - 1) );
+
+        return new Comparison( queryType,
+                Math.exp( mean( logCurrent ) - mean( logBaseline ) ),
+                Math.exp( differences[lowerIndex] ),
+                Math.exp( differences[upperIndex] ),
+                threshold );
+    }
+
+    private static double[] logs( long[] latencies )
+    {
+        double[] logs = new double[latencies.length];
+        for ( int i = 0; i < latencies.length; i++ )
+        {
+            // Latencies can be 0us
+            logs[i] = Math.log( latencies[i] + 1 );
+        }
+        return logs;
+    }
+
+    private static double mean( double[] values )
+    {
+        double sum = 0.0;
+        for ( double value : values )
+        {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    private static double resampledMean( double[] values, Random random )
+    {
+        double sum = 0.0;
+        for ( int i = 0; i < values.length; i++ )
+        {
+            sum += values[random.nextInt( values.length )];
+        }
+        return sum / values.length;
+    }
+
+    public static class Comparison
+    {
+        private final String queryType;
+        private final double ratio;
+        private final double lower;
+        private final double upper;
+        private final double threshold;
+
+        Comparison( String queryType, double ratio, double lower, double upper, double threshold )
+        {
+            this.queryType = queryType;
+            this.ratio = ratio;
+            this.lower = lower;
+            this.upper = upper;
+            this.threshold = threshold;
+        }
+
+        public String queryType()
+        {
+            return queryType;
+        }
+
+        /**
+         * Current latency as a multiple of the baseline latency.
+         */
+        public double ratio()
+        {
+            return ratio;
+        }
+
+        public double lower()
+        {
+            return lower;
+        }
+
+        public double upper()
+        {
+            return upper;
+        }
+
+        public boolean isRegression()
+        {
+            return lower > 1.0 + threshold;
+        }
+
+        public boolean isImprovement()
+        {
+            return upper < 1.0 / (1.0 + threshold);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format( "%s: %.3fx baseline [%.3f, %.3f]%s", queryType, ratio, lower, upper,
+                    isRegression() ? " REGRESSION" : isImprovement() ? " improvement" : "" );
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.neo4j.graphdatabases.performance_tests.testing;
+
+import java.io.File;
+import java.util.List;
+import java.util.Locale;
+
+import org.neo4j.graphdatabases.queries.testing.TestOutputWriter;
+
+/**
+ * Machine-readable formats for the latency summaries of a test, so that results can be compared
+ * across builds. All latencies are in microseconds.
+ */
+public enum ReportFormat
+{
+    CSV( "csv" )
+            {
+                @Override
+                public void write( String title, List<LatencySummary> summaries, TestOutputWriter writer )
+                {
+                    writer.writeln( "title,queryType,count,mean_us,p50_us,p90_us,p99_us,p999_us,max_us,qps" );
+                    for ( LatencySummary summary : summaries )
+                    {
+                        writer.writeln( String.format( Locale.ROOT, "%s,%s,%s,%.1f,%s,%s,%s,%s,%s,%.2f",
+                                csvField( title ), csvField( summary.queryType() ), summary.count(),
+                                summary.mean(), summary.p50(), summary.p90(), summary.p99(), summary.p999(),
+                                summary.max(), summary.queriesPerSecond() ) );
+                    }
+                }
+            },
+    JSON( "json" )
+            {
+                @Override
+                public void write( String title, List<LatencySummary> summaries, TestOutputWriter writer )
+                {
+                    writer.writeln( "{" );
+                    writer.writeln( String.format( "  \"title\": %s,", jsonString( title ) ) );
+                    writer.writeln( "  \"unit\": \"us\"," );
+                    writer.writeln( "  \"queries\": [" );
+                    for ( int i = 0; i < summaries.size(); i++ )
+                    {
+                        LatencySummary summary = summaries.get( i );
+                        writer.writeln( String.format( Locale.ROOT,
+                                "    {\"queryType\": %s, \"count\": %s, \"mean\": %.1f, \"p50\": %s, " +
+                                        "\"p90\": %s, \"p99\": %s, \"p999\": %s, \"max\": %s, \"qps\": %.2f}%s",
+                                jsonString( summary.queryType() ), summary.count(), summary.mean(), summary.p50(),
+                                summary.p90(), summary.p99(), summary.p999(), summary.max(),
+                                summary.queriesPerSecond(), i < summaries.size() - 1 ? "," : "" ) );
+                    }
+                    writer.writeln( "  ]" );
+                    writer.writeln( "}" );
+                }
+            };
+
+    private final String extension;
+
+    private ReportFormat( String extension )
+    {
+        this.extension = extension;
+    }
+
+    public String extension()
+    {
+        return extension;
+    }
+
+    public abstract void write( String title, List<LatencySummary> summaries, TestOutputWriter writer );
+
+    /**
+     * Writes a report to a file in the given directory, named after the title, and returns the file.
+     */
+    public File writeReport( File directory, String title, List<LatencySummary> summaries )
+    {
+        File file = new File( directory, String.format( "%s.%s", FileNames.fromTitle( title ), extension ) );
+        TestOutputWriter writer = new FileOutputWriter( file );
+        writer.begin();
+        try
+        {
+            write( title, summaries, writer );
+            writer.flush();
+        }
+        finally
+        {
+            writer.end();
+        }
+        return file;
+    }
+
+    /**
+     * Returns the format with the given name, ignoring case, or null if no name is given.
+     */
+    public static ReportFormat fromName( String name )
+    {
+        if ( name == null || name.isEmpty() )
+        {
+            return null;
+        }
+        return valueOf( name.toUpperCase( Locale.ROOT ) );
+    }
+
+    static String csvField( String value )
+    {
+        if ( value.contains( "," ) || value.contains( "\"" ) || value.contains( "\n" ) )
+        {
+            return "\"" + value.replace( "\"", "\"\"" ) + "\"";
+        }
+        return value;
+    }
+
+    private static String jsonString( String value )
+    {
+        StringBuilder builder = new StringBuilder( "\"" );
+        for ( char c : value.toCharArray() )
+        {
+            if ( c == '"' || c == '\\' )
+            {
+                builder.append( '\\' ).append( c );
+            }
+            else if ( c < 0x20 )
+            {
+                builder.append( String.format( "\\u%04x", (int) c ) );
+            }
+            else
+            {
+                builder.append( c );
+            }
+        }
+        return builder.append( '"' ).toString();
+    }
+}
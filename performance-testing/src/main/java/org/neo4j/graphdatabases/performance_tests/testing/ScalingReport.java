@@ -0,0 +1,301 @@
+package org.neo4j.graphdatabases.performance_tests.testing;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.neo4j.graphdatabases.ScaleFactor;
+import org.neo4j.graphdatabases.queries.testing.TestOutputWriter;
+
+/**
+ * Plots the latency of every query of a dataset against the size of the dataset, from the CSV latency
+ * reports of runs at different scales (&lt;report directory&gt;/&lt;dataset&gt;/&lt;scale&gt;/*.csv).
+ * The size of a dataset is the number of nodes and relationships its builder recorded in
+ * dataset.properties; where a store has no such file, the scale factor is used instead.
+ * <p/>
+ * For each query, the report also gives the exponent k of the power law p50 ~ size^k that best fits
+ * the runs: around 0 for a query whose latency doesn't depend on the size of the graph, 1 for one
+ * that grows linearly with it. The figures are also written to scaling.csv in the dataset's report
+ * directory.
+ */
+public class ScalingReport
+{
+    public static final String FILE_NAME = "scaling.csv";
+
+    private static final String DATASET_PROPERTIES = "dataset.properties";
+    private static final int BAR_WIDTH = 40;
+
+    private final File reportDirectory;
+    private final File datasetsDirectory;
+
+    public ScalingReport( File reportDirectory, File datasetsDirectory )
+    {
+        this.reportDirectory = reportDirectory;
+        this.datasetsDirectory = datasetsDirectory;
+    }
+
+    /**
+     * Returns the directory the latency reports of a dataset at the given scale are written to.
+     */
+    public static File reportDirectory( File reportDirectory, String dataset, double scaleFactor )
+    {
+        return new File( new File( reportDirectory, dataset ), ScaleFactor.name( scaleFactor ) );
+    }
+
+    /**
+     * Writes the report for a dataset, and returns the CSV file of its figures, or null if there are
+     * no latency reports for the dataset.
+     */
+    public File write( String dataset, TestOutputWriter writer )
+    {
+        Map<String, Map<String, List<Point>>> titles = read( dataset );
+        if ( titles.isEmpty() )
+        {
+            writer.writeln( String.format( "No latency reports for %s in %s", dataset,
+                    new File( reportDirectory, dataset ).getAbsolutePath() ) );
+            return null;
+        }
+
+        File file = new File( new File( reportDirectory, dataset ), FILE_NAME );
+        TestOutputWriter csv = new FileOutputWriter( file );
+        csv.begin();
+        try
+        {
+            csv.writeln( "title,queryType,scale_factor,size,mean_us,p50_us,p99_us" );
+            writer.writeln( String.format( "Scaling: %s", dataset ) );
+            for ( Map.Entry<String, Map<String, List<Point>>> title : titles.entrySet() )
+            {
+                writer.writeln( String.format( "\n%s", title.getKey() ) );
+                for ( Map.Entry<String, List<Point>> query : title.getValue().entrySet() )
+                {
+                    write( title.getKey(), query.getKey(), query.getValue(), writer, csv );
+                }
+            }
+            csv.flush();
+        }
+        finally
+        {
+            csv.end();
+        }
+        writer.writeln( String.format( "\nReport: %s", file.getAbsolutePath() ) );
+        return file;
+    }
+
+    private void write( String title, String queryType, List<Point> points, TestOutputWriter writer,
+                        TestOutputWriter csv )
+    {
+        boolean sized = true;
+        long maxP50 = 0;
+        for ( Point point : points )
+        {
+            sized &= point.size > 0;
+            maxP50 = Math.max( maxP50, point.p50 );
+        }
+
+        double exponent = exponent( points, sized );
+        writer.writeln( String.format( Locale.ROOT, "  %s (p50 ~ %s^%s)", queryType,
+                sized ? "size" : "scale", Double.isNaN( exponent ) ? "?" : String.format( Locale.ROOT, "%.2f",
+                        exponent ) ) );
+        for ( Point point : points )
+        {
+            int bar = maxP50 == 0 ? 0 : (int) Math.max( point.p50 > 0 ? 1 : 0, point.p50 * BAR_WIDTH / maxP50 );
+            char[] hashes = new char[bar];
+            Arrays.fill( hashes, '#' );
+            writer.writeln( String.format( Locale.ROOT, "    %-8s %14s  p50 %10s us  p99 %10s us  |%s",
+                    ScaleFactor.name( point.scaleFactor ), point.size > 0 ? point.size : "", point.p50, point.p99,
+                    new String( hashes ) ) );
+            csv.writeln( String.format( Locale.ROOT, "%s,%s,%s,%s,%.1f,%s,%s", ReportFormat.csvField( title ),
+                    ReportFormat.csvField( queryType ), point.scaleFactor, point.size > 0 ? point.size : "",
+                    point.mean, point.p50, point.p99 ) );
+        }
+    }
+
+    /**
+     * Returns the least squares slope of log p50 against log size, or NaN if it can't be fitted.
+     */
+    static double exponent( List<Point> points, boolean sized )
+    {
+        List<double[]> logs = new ArrayList<double[]>();
+        for ( Point point : points )
+        {
+            if ( point.p50 > 0 )
+            {
+                logs.add( new double[]{Math.log( sized ? point.size : point.scaleFactor ), Math.log( point.p50 )} );
+            }
+        }
+        double meanX = 0;
+        double meanY = 0;
+        for ( double[] log : logs )
+        {
+            meanX += log[0] / logs.size();
+            meanY += log[1] / logs.size();
+        }
+        double covariance = 0;
+        double variance = 0;
+        for ( double[] log : logs )
+        {
+            covariance += (log[0] - meanX) * (log[1] - meanY);
+            variance += (log[0] - meanX) * (log[0] - meanX);
+        }
+        return logs.size() < 2 || variance == 0 ? Double.NaN : covariance / variance;
+    }
+
+    private Map<String, Map<String, List<Point>>> read( String dataset )
+    {
+        Map<String, Map<String, List<Point>>> titles = new TreeMap<String, Map<String, List<Point>>>();
+        File[] scales = new File( reportDirectory, dataset ).listFiles();
+        for ( File scale : scales == null ? new File[0] : scales )
+        {
+            if ( !scale.isDirectory() || !scale.getName().startsWith( "sf" ) )
+            {
+                continue;
+            }
+            double scaleFactor = ScaleFactor.parse( scale.getName() );
+            long size = size( dataset, scaleFactor );
+            File[] reports = scale.listFiles();
+            for ( File report : reports == null ? new File[0] : reports )
+            {
+                if ( report.getName().endsWith( ".csv" ) )
+                {
+                    read( report, scaleFactor, size, titles );
+                }
+            }
+        }
+        for ( Map<String, List<Point>> queries : titles.values() )
+        {
+            for ( List<Point> points : queries.values() )
+            {
+                Collections.sort( points, new Comparator<Point>()
+                {
+                    @Override
+                    public int compare( Point first, Point second )
+                    {
+                        return Double.compare( first.scaleFactor, second.scaleFactor );
+                    }
+                } );
+            }
+        }
+        return titles;
+    }
+
+    private static void read( File report, double scaleFactor, long size,
+                              Map<String, Map<String, List<Point>>> titles )
+    {
+        try ( BufferedReader reader = new BufferedReader( new FileReader( report ) ) )
+        {
+            // Skip the header
+            String line = reader.readLine();
+            while ( (line = reader.readLine()) != null )
+            {
+                List<String> fields = fields( line );
+                Map<String, List<Point>> queries = titles.get( fields.get( 0 ) );
+                if ( queries == null )
+                {
+                    queries = new TreeMap<String, List<Point>>();
+                    titles.put( fields.get( 0 ), queries );
+                }
+                List<Point> points = queries.get( fields.get( 1 ) );
+                if ( points == null )
+                {
+                    points = new ArrayList<Point>();
+                    queries.put( fields.get( 1 ), points );
+                }
+                points.add( new Point( scaleFactor, size, Double.parseDouble( fields.get( 3 ) ),
+                        Long.parseLong( fields.get( 4 ) ), Long.parseLong( fields.get( 6 ) ) ) );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new IllegalStateException( String.format( "Unable to read %s", report ), e );
+        }
+    }
+
+    /**
+     * Returns the number of nodes and relationships recorded for the dataset at the given scale, or 0
+     * if the store has no record of its size.
+     */
+    private long size( String dataset, double scaleFactor )
+    {
+        File file = new File( new File( datasetsDirectory, ScaleFactor.dataset( dataset, scaleFactor ) ),
+                DATASET_PROPERTIES );
+        if ( !file.isFile() )
+        {
+            return 0;
+        }
+        Properties properties = new Properties();
+        try ( InputStream in = new FileInputStream( file ) )
+        {
+            properties.load( in );
+        }
+        catch ( IOException e )
+        {
+            throw new IllegalStateException( String.format( "Unable to read %s", file ), e );
+        }
+        return Long.parseLong( properties.getProperty( "nodes", "0" ) )
+                + Long.parseLong( properties.getProperty( "relationships", "0" ) );
+    }
+
+    /**
+     * Splits a line of a report written by {@link ReportFormat#CSV}.
+     */
+    private static List<String> fields( String line )
+    {
+        List<String> fields = new ArrayList<String>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for ( int i = 0; i < line.length(); i++ )
+        {
+            char c = line.charAt( i );
+            if ( quoted && c == '"' && i + 1 < line.length() && line.charAt( i + 1 ) == '"' )
+            {
+                field.append( c );
+                i++;
+            }
+            else if ( c == '"' )
+            {
+                quoted = !quoted;
+            }
+            else if ( c == ',' && !quoted )
+            {
+                fields.add( field.toString() );
+                field.setLength( 0 );
+            }
+            else
+            {
+                field.append( c );
+            }
+        }
+        fields.add( field.toString() );
+        return fields;
+    }
+
+    static class Point
+    {
+        private final double scaleFactor;
+        private final long size;
+        private final double mean;
+        private final long p50;
+        private final long p99;
+
+        Point( double scaleFactor, long size, double mean, long p50, long p99 )
+        {
+            this.scaleFactor = scaleFactor;
+            this.size = size;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p99 = p99;
+        }
+    }
+}
@@ -20,7 +20,7 @@ public class TakeXTestResults implements TestResultsHandler
     }
 
     @Override
-    public void handle( String queryType, Object results, SingleTestRunResultHandler singleTestRunResultHandler )
+    public Object read( Object results )
     {
         int i = 0;
         if ( Iterable.class.isAssignableFrom( results.getClass() ) )
@@ -31,6 +31,13 @@ public class TakeXTestResults implements TestResultsHandler
                 iterator.next();
             }
         }
+        return results;
+    }
+
+    @Override
+    public void handle( String queryType, Object results, SingleTestRunResultHandler singleTestRunResultHandler )
+    {
+        // Already read
     }
 
     @Override
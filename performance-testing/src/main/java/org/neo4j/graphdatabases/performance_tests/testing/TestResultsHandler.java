@@ -8,6 +8,14 @@ import org.neo4j.graphdatabases.queries.testing.TestOutputWriter;
 
 public interface TestResultsHandler
 {
+    /**
+     * Reads the results a test returned, while the test is still timed, returning what to pass to handle.
+     */
+    Object read( Object results );
+
+    /**
+     * Handles what read returned, once the test's timer has stopped.
+     */
     void handle( String queryType, Object results, SingleTestRunResultHandler singleTestRunResultHandler );
     void writeTo(TestOutputWriter writer);
 }
@@ -4,6 +4,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -12,13 +13,16 @@ import org.junit.Test;
 import org.neo4j.cypher.javacompat.ExecutionResult;
 import org.neo4j.graphdatabases.AccessControlConfig;
 import org.neo4j.graphdatabases.AccessControlWithRelationshipPropertiesConfig;
-import org.neo4j.graphdatabases.performance_tests.testing.DefaultExecutionEngineWrapper;
+import org.neo4j.graphdatabases.performance_tests.testing.LoadGenerator;
 import org.neo4j.graphdatabases.performance_tests.testing.MultipleTestRuns;
 import org.neo4j.graphdatabases.performance_tests.testing.ParamsGenerator;
+import org.neo4j.graphdatabases.performance_tests.testing.QueryProfiler;
 import org.neo4j.graphdatabases.performance_tests.testing.SingleTest;
 import org.neo4j.graphdatabases.performance_tests.testing.SysOutWriter;
 import org.neo4j.graphdatabases.queries.AccessControlQueries;
 import org.neo4j.graphdatabases.queries.helpers.DbUtils;
+import org.neo4j.graphdatabases.queries.traversals.AccessControlClosure;
+import org.neo4j.graphdatabases.queries.traversals.AccessDecisionEngine;
 import org.neo4j.graphdatabases.queries.testing.TestOutputWriter;
 import org.neo4j.graphdb.GraphDatabaseService;
 
@@ -28,12 +32,17 @@ public class AccessControl
 {
     private static final int NUMBER_OF_TEST_RUNS = 20;
     private static final int NUMBER_OF_RESULTS = 15;
+    private static final int NUMBER_OF_LOAD_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+    private static final double OPEN_LOOP_QUERIES_PER_SECOND = 200.0;
+    private static final int LOAD_SECONDS = 60;
 
     private static int numberOfAccounts;
     private static int numberOfEmployees;
 
     private static GraphDatabaseService db;
     private static AccessControlQueries queries;
+    private static AccessControlClosure closure;
+    private static AccessDecisionEngine decisionEngine;
     private static MultipleTestRuns multipleTestRuns;
     private static Random random;
     private static TestOutputWriter writer = SysOutWriter.INSTANCE;
@@ -44,8 +53,12 @@ public class AccessControl
         try
         {
             db = DbUtils.existingDB( AccessControlConfig.STORE_DIR );
-            queries = new AccessControlQueries( new DefaultExecutionEngineWrapper( db ) );
-            multipleTestRuns = new MultipleTestRuns( NUMBER_OF_TEST_RUNS, writer );
+            QueryProfiler profiler = QueryProfiler.fromSystemProperties();
+            queries = new AccessControlQueries( profiler.executionEngineWrapper( db ) );
+            closure = new AccessControlClosure( db ).build();
+            decisionEngine = new AccessDecisionEngine( db ).build();
+            multipleTestRuns = new MultipleTestRuns( NUMBER_OF_TEST_RUNS, writer, AccessControlConfig.DATASET,
+                    profiler );
 
             random = new Random();
 
@@ -239,10 +252,193 @@ public class AccessControl
                     {
                         return queries.hasAccessToIndexedResource( params.get( "admin" ), params.get( "resource" ) );
                     }
+                }, new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Bitset decision engine";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        return decisionEngine.hasAccessToResource( params.get( "admin" ), params.get( "resource" ) );
+                    }
                 }
         );
     }
 
+    @Test
+    public void findAccessibleCompaniesBakeoff() throws Exception
+    {
+        // when
+        multipleTestRuns.execute( "Find accessible companies for admin",
+                createParams(),
+                printResults( NUMBER_OF_RESULTS, writer ),
+                new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Cypher";
+                    }
+
+                    @Override
+                    public ExecutionResult execute( Map<String, String> params )
+                    {
+                        return queries.findAccessibleCompanies( params.get( "admin" ) );
+                    }
+                }, new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Closure";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        return closure.findAccessibleCompanies( params.get( "admin" ) );
+                    }
+                }
+        );
+    }
+
+    @Test
+    public void findAccessibleResourcesBakeoff() throws Exception
+    {
+        // when
+        multipleTestRuns.execute( "Find accessible resources for admin",
+                createParams(),
+                printResults( NUMBER_OF_RESULTS, writer ),
+                new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Cypher";
+                    }
+
+                    @Override
+                    public ExecutionResult execute( Map<String, String> params )
+                    {
+                        return queries.findAccessibleResources( params.get( "admin" ) );
+                    }
+                }, new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Closure";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        return closure.findAccessibleResources( params.get( "admin" ) );
+                    }
+                }
+        );
+    }
+
+    @Test
+    public void closureConsistencyCheck() throws Exception
+    {
+        final AccessControlClosure checkedClosure = new AccessControlClosure( db, queries );
+
+        // when
+        multipleTestRuns.execute( "Closure v. Cypher consistency check",
+                createParams(),
+                printResults( NUMBER_OF_RESULTS, writer ),
+                new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Closure (checked)";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        checkedClosure.findAccessibleResources( params.get( "admin" ) );
+                        checkedClosure.findAccessibleAccountsForCompany( params.get( "admin" ),
+                                params.get( "company" ) );
+                        checkedClosure.findAdminForResource( params.get( "resource" ) );
+                        return checkedClosure.findAccessibleCompanies( params.get( "admin" ) );
+                    }
+                }
+        );
+
+        checkedClosure.stopMaintaining();
+    }
+
+    @Test
+    public void accessChecksUnderClosedLoopLoad() throws Exception
+    {
+        // when
+        LoadGenerator.closedLoop( db, NUMBER_OF_LOAD_THREADS, LOAD_SECONDS / 4, LOAD_SECONDS, TimeUnit.SECONDS,
+                writer ).execute( "Access checks under closed-loop load", createParams(), accessChecks() );
+    }
+
+    @Test
+    public void accessChecksUnderOpenLoopLoad() throws Exception
+    {
+        // when
+        LoadGenerator.openLoop( db, NUMBER_OF_LOAD_THREADS, OPEN_LOOP_QUERIES_PER_SECOND, LOAD_SECONDS / 4,
+                LOAD_SECONDS, TimeUnit.SECONDS, writer )
+                .execute( "Access checks under open-loop load", createParams(), accessChecks() );
+    }
+
+    private SingleTest[] accessChecks()
+    {
+        return new SingleTest[]{
+                new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Find accessible resources";
+                    }
+
+                    @Override
+                    public ExecutionResult execute( Map<String, String> params )
+                    {
+                        return queries.findAccessibleResources( params.get( "admin" ) );
+                    }
+                }, new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Find accessible accounts for company";
+                    }
+
+                    @Override
+                    public ExecutionResult execute( Map<String, String> params )
+                    {
+                        return queries.findAccessibleAccountsForCompany( params.get( "admin" ),
+                                params.get( "company" ) );
+                    }
+                }, new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Has access to indexed resource";
+                    }
+
+                    @Override
+                    public ExecutionResult execute( Map<String, String> params )
+                    {
+                        return queries.hasAccessToIndexedResource( params.get( "admin" ), params.get( "resource" ) );
+                    }
+                }
+        };
+    }
+
     private ParamsGenerator createParams()
     {
         return new ParamsGenerator()
@@ -16,6 +16,7 @@ import org.neo4j.graphdatabases.performance_tests.testing.ParamsGenerator;
 import org.neo4j.graphdatabases.performance_tests.testing.SingleTest;
 import org.neo4j.graphdatabases.performance_tests.testing.SysOutWriter;
 import org.neo4j.graphdatabases.queries.AccessControlWithRelationshipPropertiesQueries;
+import org.neo4j.graphdatabases.queries.helpers.ConcurrentQueryUnionExecutionEngine;
 import org.neo4j.graphdatabases.queries.helpers.DbUtils;
 import org.neo4j.graphdatabases.queries.helpers.QueryUnionExecutionResult;
 import org.neo4j.graphdatabases.queries.testing.TestOutputWriter;
@@ -34,6 +35,8 @@ public class AccessControlWithRelationshipProperties
 
     private static GraphDatabaseService db;
     private static AccessControlWithRelationshipPropertiesQueries queries;
+    private static ConcurrentQueryUnionExecutionEngine concurrentExecutionEngine;
+    private static AccessControlWithRelationshipPropertiesQueries concurrentQueries;
     private static MultipleTestRuns multipleTestRuns;
     private static Random random;
     private static TestOutputWriter writer = SysOutWriter.INSTANCE;
@@ -44,7 +47,11 @@ public class AccessControlWithRelationshipProperties
         db = DbUtils.existingDB( AccessControlWithRelationshipPropertiesConfig.STORE_DIR );
 
         queries = new AccessControlWithRelationshipPropertiesQueries( new DefaultExecutionEngineWrapper( db ) );
-        multipleTestRuns = new MultipleTestRuns( NUMBER_OF_TEST_RUNS, writer );
+        concurrentExecutionEngine = new ConcurrentQueryUnionExecutionEngine(
+                new DefaultExecutionEngineWrapper( db ), 4, 1024, 100000 );
+        concurrentQueries = new AccessControlWithRelationshipPropertiesQueries( concurrentExecutionEngine );
+        multipleTestRuns = new MultipleTestRuns( NUMBER_OF_TEST_RUNS, writer,
+                AccessControlWithRelationshipPropertiesConfig.DATASET );
 
         random = new Random();
 
@@ -56,6 +63,7 @@ public class AccessControlWithRelationshipProperties
     @AfterClass
     public static void teardown()
     {
+        concurrentExecutionEngine.shutdown();
         db.shutdown();
     }
 
@@ -240,6 +248,43 @@ public class AccessControlWithRelationshipProperties
         );
     }
 
+    @Test
+    public void findAccessibleResourcesBakeoff() throws Exception
+    {
+        // when
+        multipleTestRuns.execute( "Find accessible resources for admin",
+                createParams(),
+                printResults( NUMBER_OF_RESULTS, writer ),
+                new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Cypher";
+                    }
+
+                    @Override
+                    public QueryUnionExecutionResult execute( Map<String, String> params )
+                    {
+                        return queries.findAccessibleResources( params.get( "admin" ) );
+                    }
+                }, new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Cypher (concurrent union)";
+                    }
+
+                    @Override
+                    public QueryUnionExecutionResult execute( Map<String, String> params )
+                    {
+                        return concurrentQueries.findAccessibleResources( params.get( "admin" ) );
+                    }
+                }
+        );
+    }
+
     private ParamsGenerator createParams()
     {
         return new ParamsGenerator()
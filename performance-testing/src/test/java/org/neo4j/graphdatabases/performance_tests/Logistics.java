@@ -1,6 +1,9 @@
 package org.neo4j.graphdatabases.performance_tests;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -15,13 +18,16 @@ import org.junit.Test;
 import org.neo4j.cypher.javacompat.ExecutionEngine;
 import org.neo4j.cypher.javacompat.ExecutionResult;
 import org.neo4j.graphdatabases.LogisticsConfig;
-import org.neo4j.graphdatabases.performance_tests.testing.DefaultExecutionEngineWrapper;
 import org.neo4j.graphdatabases.performance_tests.testing.MultipleTestRuns;
 import org.neo4j.graphdatabases.performance_tests.testing.ParamsGenerator;
+import org.neo4j.graphdatabases.performance_tests.testing.QueryProfiler;
 import org.neo4j.graphdatabases.performance_tests.testing.SingleTest;
 import org.neo4j.graphdatabases.performance_tests.testing.SysOutWriter;
 import org.neo4j.graphdatabases.queries.LogisticsQueries;
 import org.neo4j.graphdatabases.queries.helpers.DbUtils;
+import org.neo4j.graphdatabases.queries.traversals.ParcelManifestRouter;
+import org.neo4j.graphdatabases.queries.traversals.SimpleParcelRouteCalculator.SearchCounters;
+import org.neo4j.graphdatabases.queries.traversals.SimpleParcelRouteCalculator.SearchMode;
 import org.neo4j.graphdatabases.queries.testing.TestOutputWriter;
 import org.neo4j.graphdb.DynamicLabel;
 import org.neo4j.graphdb.GraphDatabaseService;
@@ -37,6 +43,8 @@ public class Logistics
 {
     public static final int NUMBER_OF_TEST_RUNS = 20;
     private static final int NUMBER_OF_RESULTS = 15;
+    private static final int NUMBER_OF_LATENCY_SAMPLES = 200;
+    private static final int MANIFEST_SIZE = 5000;
 
     private static GraphDatabaseService db;
     private static LogisticsQueries queries;
@@ -49,8 +57,9 @@ public class Logistics
     {
         db = DbUtils.existingDB( LogisticsConfig.STORE_DIR );
 
-        queries = new LogisticsQueries( db, new DefaultExecutionEngineWrapper( db ) );
-        multipleTestRuns = new MultipleTestRuns( NUMBER_OF_TEST_RUNS, writer );
+        QueryProfiler profiler = QueryProfiler.fromSystemProperties();
+        queries = new LogisticsQueries( db, profiler.executionEngineWrapper( db ) );
+        multipleTestRuns = new MultipleTestRuns( NUMBER_OF_TEST_RUNS, writer, LogisticsConfig.DATASET, profiler );
 
         random = new Random();
 
@@ -59,6 +68,10 @@ public class Logistics
     @AfterClass
     public static void teardown()
     {
+        if ( queries != null )
+        {
+            queries.shutdown();
+        }
         if ( db != null )
         {
             db.shutdown();
@@ -157,7 +170,25 @@ public class Logistics
                     @Override
                     public String queryType()
                     {
-                        return "ParcelRouteCalculator";
+                        return "ParcelRouteCalculator (hub labels)";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        return queries.findShortestPathWithHubLabelParcelRouteCalculator(
+                                params.get( "start" ),
+                                params.get( "end" ),
+                                Interval.parse( params.get( "interval" ) ) );
+
+                    }
+                },
+                new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "ParcelRouteCalculator (Dijkstra)";
                     }
 
                     @Override
@@ -168,11 +199,213 @@ public class Logistics
                                 params.get( "end" ),
                                 Interval.parse( params.get( "interval" ) ) );
 
+                    }
+                },
+                new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "TimeSlicedRoutingIndex";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        return queries.findShortestPathWithRoutingIndex(
+                                params.get( "start" ),
+                                params.get( "end" ),
+                                Interval.parse( params.get( "interval" ) ) );
+
                     }
                 }
         );
     }
 
+    @Test
+    public void routeLatencyBakeoff() throws Exception
+    {
+        ParamsGenerator paramsGenerator = new TestRunParams( db, writer ).createParams();
+        List<Map<String, String>> routes = new ArrayList<Map<String, String>>();
+        for ( int i = 0; i < NUMBER_OF_LATENCY_SAMPLES; i++ )
+        {
+            routes.add( paramsGenerator.generateParams() );
+        }
+
+        writer.writeln( String.format( "Route latency over %s routes (ms)", routes.size() ) );
+        printLatencies( routes, new SingleTest()
+        {
+            @Override
+            public String queryType()
+            {
+                return "Cypher";
+            }
+
+            @Override
+            public Object execute( Map<String, String> params )
+            {
+                return queries.findShortestPathWithCypherReduce( params.get( "start" ), params.get( "end" ),
+                        Interval.parse( params.get( "interval" ) ) );
+            }
+        } );
+        printLatencies( routes, new SingleTest()
+        {
+            @Override
+            public String queryType()
+            {
+                return "ParcelRouteCalculator (Dijkstra)";
+            }
+
+            @Override
+            public Object execute( Map<String, String> params )
+            {
+                return queries.findShortestPathWithParcelRouteCalculator( params.get( "start" ),
+                        params.get( "end" ), Interval.parse( params.get( "interval" ) ) );
+            }
+        } );
+        printLatencies( routes, new SingleTest()
+        {
+            @Override
+            public String queryType()
+            {
+                return "ParcelRouteCalculator (hub labels)";
+            }
+
+            @Override
+            public Object execute( Map<String, String> params )
+            {
+                return queries.findShortestPathWithHubLabelParcelRouteCalculator( params.get( "start" ),
+                        params.get( "end" ), Interval.parse( params.get( "interval" ) ) );
+            }
+        } );
+    }
+
+    @Test
+    public void simpleRouteSearchModes() throws Exception
+    {
+        ParamsGenerator paramsGenerator = new TestRunParams( db, writer ).createParams();
+        List<Map<String, String>> routes = new ArrayList<Map<String, String>>();
+        for ( int i = 0; i < NUMBER_OF_LATENCY_SAMPLES; i++ )
+        {
+            routes.add( paramsGenerator.generateParams() );
+        }
+
+        writer.writeln( String.format( "Search effort over %s routes", routes.size() ) );
+        for ( SearchMode mode : SearchMode.values() )
+        {
+            // The first pass warms up caches (and computes landmarks); the second is measured
+            findSimpleRoutes( routes, mode, new SearchCounters() );
+
+            SearchCounters counters = new SearchCounters();
+            long startTime = System.nanoTime();
+            int routed = findSimpleRoutes( routes, mode, counters );
+            long time = System.nanoTime() - startTime;
+
+            writer.writeln( String.format( "  %s: %s ms, %s routed, %s", mode, time / 1000000, routed, counters ) );
+        }
+    }
+
+    private int findSimpleRoutes( List<Map<String, String>> routes, SearchMode mode, SearchCounters counters )
+    {
+        int routed = 0;
+        try ( Transaction tx = db.beginTx() )
+        {
+            for ( Map<String, String> route : routes )
+            {
+                try
+                {
+                    IteratorUtil.count( queries.findShortestPathWithSimpleParcelRouteCalculator( route.get( "start" ),
+                            route.get( "end" ), Interval.parse( route.get( "interval" ) ), mode, counters ) );
+                    routed++;
+                }
+                catch ( IllegalStateException e )
+                {
+                    // Counted as not routed
+                }
+            }
+            tx.success();
+        }
+        return routed;
+    }
+
+    @Test
+    public void manifestRouting() throws Exception
+    {
+        ParamsGenerator paramsGenerator = new TestRunParams( db, writer ).createParams();
+        List<ParcelManifestRouter.Request> manifest = new ArrayList<ParcelManifestRouter.Request>();
+        for ( int i = 0; i < MANIFEST_SIZE; i++ )
+        {
+            Map<String, String> params = paramsGenerator.generateParams();
+            manifest.add( new ParcelManifestRouter.Request( params.get( "start" ), params.get( "end" ),
+                    Interval.parse( params.get( "interval" ) ) ) );
+        }
+
+        // Builds the routing index before timing
+        IteratorUtil.count( queries.findShortestPathsForManifest( manifest.subList( 0, 1 ) ) );
+
+        long startTime = System.nanoTime();
+        int routed = 0;
+        for ( ParcelManifestRouter.Request request : manifest )
+        {
+            try
+            {
+                IteratorUtil.count( queries.findShortestPathWithHubLabelParcelRouteCalculator( request.start(),
+                        request.end(), request.interval() ) );
+                routed++;
+            }
+            catch ( RuntimeException e )
+            {
+                // Counted as not routed
+            }
+        }
+        long singleRoutesTime = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        int routedInManifest = 0;
+        Iterator<ParcelManifestRouter.Result> results = queries.findShortestPathsForManifest( manifest );
+        while ( results.hasNext() )
+        {
+            if ( results.next().isRouted() )
+            {
+                routedInManifest++;
+            }
+        }
+        long manifestTime = System.nanoTime() - startTime;
+
+        writer.writeln( String.format( "%s routes one at a time: %s ms (%s routed)", manifest.size(),
+                singleRoutesTime / 1000000, routed ) );
+        writer.writeln( String.format( "%s routes as a manifest: %s ms (%s routed)", manifest.size(),
+                manifestTime / 1000000, routedInManifest ) );
+    }
+
+    private void printLatencies( List<Map<String, String>> routes, SingleTest test )
+    {
+        // The first pass warms up caches (and builds the routing index); the second is measured
+        for ( Map<String, String> route : routes )
+        {
+            IteratorUtil.count( (Iterable<?>) test.execute( route ) );
+        }
+
+        long[] latencies = new long[routes.size()];
+        for ( int i = 0; i < latencies.length; i++ )
+        {
+            long startTime = System.nanoTime();
+            IteratorUtil.count( (Iterable<?>) test.execute( routes.get( i ) ) );
+            latencies[i] = System.nanoTime() - startTime;
+        }
+        Arrays.sort( latencies );
+
+        writer.writeln( String.format( "  %s: p50 %.3f, p99 %.3f, max %.3f", test.queryType(),
+                percentile( latencies, 0.5 ), percentile( latencies, 0.99 ),
+                latencies[latencies.length - 1] / 1000000.0 ) );
+    }
+
+    private static double percentile( long[] sortedLatencies, double percentile )
+    {
+        int index = (int) Math.ceil( percentile * sortedLatencies.length ) - 1;
+        return sortedLatencies[Math.max( 0, index )] / 1000000.0;
+    }
+
     @Test
     public void testSingleCypherQuery() throws Exception
     {
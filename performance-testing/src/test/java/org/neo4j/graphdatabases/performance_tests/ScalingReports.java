@@ -0,0 +1,39 @@
+package org.neo4j.graphdatabases.performance_tests;
+
+import static java.util.Arrays.asList;
+
+import java.io.File;
+
+import org.junit.Test;
+import org.neo4j.graphdatabases.AccessControlConfig;
+import org.neo4j.graphdatabases.AccessControlWithRelationshipPropertiesConfig;
+import org.neo4j.graphdatabases.LogisticsConfig;
+import org.neo4j.graphdatabases.ScaleFactor;
+import org.neo4j.graphdatabases.SimpleSocialNetworkConfig;
+import org.neo4j.graphdatabases.SocialNetworkConfig;
+import org.neo4j.graphdatabases.performance_tests.testing.ScalingReport;
+import org.neo4j.graphdatabases.performance_tests.testing.SysOutWriter;
+
+/**
+ * Writes a {@link ScalingReport} for each dataset, from the latency reports of the performance tests
+ * run at different scales.
+ */
+public class ScalingReports
+{
+    @Test
+    public void writeScalingReports() throws Exception
+    {
+        ScalingReport report = new ScalingReport(
+                new File( System.getProperty( "latency.report.dir", "target/latency-reports" ) ),
+                new File( ScaleFactor.DATASETS_DIR ) );
+        for ( String dataset : asList( SocialNetworkConfig.DATASET,
+                SimpleSocialNetworkConfig.DATASET,
+                AccessControlConfig.DATASET,
+                AccessControlWithRelationshipPropertiesConfig.DATASET,
+                LogisticsConfig.DATASET ) )
+        {
+            report.write( dataset, SysOutWriter.INSTANCE );
+            SysOutWriter.INSTANCE.writeln( "" );
+        }
+    }
+}
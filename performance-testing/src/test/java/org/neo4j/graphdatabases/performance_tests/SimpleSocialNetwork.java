@@ -1,5 +1,6 @@
 package org.neo4j.graphdatabases.performance_tests;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
@@ -12,12 +13,15 @@ import org.neo4j.cypher.javacompat.ExecutionResult;
 import org.neo4j.graphdatabases.SimpleSocialNetworkConfig;
 import org.neo4j.graphdatabases.performance_tests.testing.MultipleTestRuns;
 import org.neo4j.graphdatabases.performance_tests.testing.ParamsGenerator;
+import org.neo4j.graphdatabases.performance_tests.testing.ResultsContainSameElementsUnordered;
 import org.neo4j.graphdatabases.performance_tests.testing.SingleTest;
 import org.neo4j.graphdatabases.performance_tests.testing.SysOutWriter;
 import org.neo4j.graphdatabases.queries.SimpleSocialNetworkQueries;
 import org.neo4j.graphdatabases.queries.helpers.DbUtils;
 import org.neo4j.graphdatabases.queries.testing.TestOutputWriter;
+import org.neo4j.graphdatabases.queries.traversals.BidirectionalFriendSearch;
 import org.neo4j.graphdatabases.queries.traversals.FriendOfAFriendDepth4;
+import org.neo4j.graphdatabases.queries.traversals.FriendOfAFriendFrontiers;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Transaction;
@@ -40,7 +44,7 @@ public class SimpleSocialNetwork
         db = DbUtils.existingDB( SimpleSocialNetworkConfig.STORE_DIR );
 
         queries = new SimpleSocialNetworkQueries( db );
-        multipleTestRuns = new MultipleTestRuns( NUMBER_OF_TEST_RUNS, writer );
+        multipleTestRuns = new MultipleTestRuns( NUMBER_OF_TEST_RUNS, writer, SimpleSocialNetworkConfig.DATASET );
 
         random = new Random();
     }
@@ -57,20 +61,43 @@ public class SimpleSocialNetwork
         try ( Transaction tx = db.beginTx() )
         {
             // when
-            multipleTestRuns.execute( "Foaf to depth 4", createParams(), printResults( 1, writer ), new SingleTest()
-            {
-                @Override
-                public String queryType()
-                {
-                    return "Cypher";
-                }
-
-                @Override
-                public ExecutionResult execute( Map<String, String> params )
-                {
-                    return queries.pathBetweenTwoFriends( params.get( "first-user" ), params.get( "second-user" ) );
-                }
-            } );
+            multipleTestRuns.execute( "Foaf to depth 4", createParams(),
+                    ResultsContainSameElementsUnordered.newFactory(), printResults( 1, writer ),
+                    new SingleTest()
+                    {
+                        @Override
+                        public String queryType()
+                        {
+                            return "Cypher";
+                        }
+
+                        @Override
+                        public ExecutionResult execute( Map<String, String> params )
+                        {
+                            return queries.pathBetweenTwoFriends( params.get( "first-user" ),
+                                    params.get( "second-user" ) );
+                        }
+                    },
+                    new SingleTest()
+                    {
+                        @Override
+                        public String queryType()
+                        {
+                            return "Core API (bidirectional BFS)";
+                        }
+
+                        @Override
+                        public Object execute( Map<String, String> params )
+                        {
+                            int depth = queries.pathBetweenTwoFriendsCoreApi( params.get( "first-user" ),
+                                    params.get( "second-user" ) );
+                            if ( depth == BidirectionalFriendSearch.NO_PATH )
+                            {
+                                return Collections.emptyList();
+                            }
+                            return Collections.singletonList( Collections.singletonMap( "depth", depth ) );
+                        }
+                    } );
             tx.success();
         }
     }
@@ -128,6 +155,64 @@ public class SimpleSocialNetwork
         }
     }
 
+    @Test
+    public void onlyFriendsAtDepth4UsingFrontiers() throws Exception
+    {
+        final FriendOfAFriendFrontiers frontiers = new FriendOfAFriendFrontiers( db ).build();
+        try ( Transaction tx = db.beginTx() )
+        {
+            // when
+            multipleTestRuns.execute( "Only friends at depth 4 using frontiers", createParams(),
+                    printResults( 1, writer ),
+                    new SingleTest()
+                    {
+                        @Override
+                        public String queryType()
+                        {
+                            return "Core API (frontiers)";
+                        }
+
+                        @Override
+                        public Object execute( Map<String, String> params )
+                        {
+                            int count = 0;
+                            for ( Node friend : frontiers.getFriends( params.get( "first-user" ) ) )
+                            {
+                                count++;
+                            }
+                            return count;
+                        }
+                    },
+                    new SingleTest()
+                    {
+                        @Override
+                        public String queryType()
+                        {
+                            return "Core API (frontiers, ids only)";
+                        }
+
+                        @Override
+                        public Object execute( Map<String, String> params )
+                        {
+                            FriendOfAFriendFrontiers.FriendIds ids =
+                                    frontiers.getFriendIds( params.get( "first-user" ) );
+                            int count = 0;
+                            while ( ids.hasNext() )
+                            {
+                                ids.next();
+                                count++;
+                            }
+                            return count;
+                        }
+                    } );
+            tx.success();
+        }
+        finally
+        {
+            frontiers.shutdown();
+        }
+    }
+
     private ParamsGenerator createParams()
     {
         return new ParamsGenerator()
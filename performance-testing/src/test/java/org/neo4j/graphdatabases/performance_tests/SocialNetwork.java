@@ -1,10 +1,13 @@
 package org.neo4j.graphdatabases.performance_tests;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.*;
 import org.junit.rules.TestName;
@@ -13,8 +16,10 @@ import org.neo4j.cypher.javacompat.ExecutionEngine;
 import org.neo4j.cypher.javacompat.ExecutionResult;
 import org.neo4j.graphdatabases.SocialNetworkConfig;
 import org.neo4j.graphdatabases.performance_tests.testing.DefaultExecutionEngineWrapper;
+import org.neo4j.graphdatabases.performance_tests.testing.LoadGenerator;
 import org.neo4j.graphdatabases.performance_tests.testing.MultipleTestRuns;
 import org.neo4j.graphdatabases.performance_tests.testing.ParamsGenerator;
+import org.neo4j.graphdatabases.performance_tests.testing.QueryProfiler;
 import org.neo4j.graphdatabases.performance_tests.testing.ResultFormatter;
 import org.neo4j.graphdatabases.performance_tests.testing.ResultsContainSameElementsUnordered;
 import org.neo4j.graphdatabases.performance_tests.testing.SingleTest;
@@ -22,6 +27,9 @@ import org.neo4j.graphdatabases.performance_tests.testing.SysOutWriter;
 import org.neo4j.graphdatabases.queries.SocialNetworkQueries;
 import org.neo4j.graphdatabases.queries.helpers.DbUtils;
 import org.neo4j.graphdatabases.queries.testing.TestOutputWriter;
+import org.neo4j.graphdatabases.queries.traversals.SocialNetworkRecommendations;
+import org.neo4j.graphdatabases.queries.traversals.SupernodeStrategy;
+import org.neo4j.graphdatabases.queries.traversals.UserInterestIndex;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Transaction;
@@ -35,7 +43,12 @@ import static org.neo4j.neode.probabilities.ProbabilityDistribution.flatDistribu
 public class SocialNetwork
 {
     public static final int NUMBER_OF_RESULTS = 5;
+    // Cypher and the Core API break ties at the limit differently, so bakeoffs compare every result
+    public static final int ALL_RESULTS = Integer.MAX_VALUE;
     public static final int NUMBER_OF_TEST_RUNS = 20;
+    public static final int NUMBER_OF_LOAD_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+    public static final double OPEN_LOOP_QUERIES_PER_SECOND = 100.0;
+    public static final int LOAD_SECONDS = 60;
 
     private GraphDatabaseService db;
     private SocialNetworkQueries queries;
@@ -51,8 +64,10 @@ public class SocialNetwork
     {
         db = DbUtils.existingDB( SocialNetworkConfig.STORE_DIR );
 
-        queries = new SocialNetworkQueries( db, new DefaultExecutionEngineWrapper( db ) );
-        multipleTestRuns = new MultipleTestRuns( NUMBER_OF_TEST_RUNS, writer );
+        QueryProfiler profiler = QueryProfiler.fromSystemProperties();
+        queries = new SocialNetworkQueries( db, profiler.executionEngineWrapper( db ) );
+        multipleTestRuns = new MultipleTestRuns( NUMBER_OF_TEST_RUNS, writer, SocialNetworkConfig.DATASET,
+                profiler );
 
         random = new Random();
     }
@@ -158,6 +173,9 @@ public class SocialNetwork
     @Test
     public void friendOfAFriendWithInterestTraversalFramework() throws Exception
     {
+        // given
+        final SocialNetworkQueries supernodeQueries = supernodeAwareQueries();
+
         try ( Transaction tx = db.beginTx() )
         {
             // when
@@ -176,6 +194,20 @@ public class SocialNetwork
                     return queries.friendOfAFriendWithInterestTraversalFramework(
                             params.get( "user" ), params.get( "topic1" ), NUMBER_OF_RESULTS );
                 }
+            }, new SingleTest()
+            {
+                @Override
+                public String queryType()
+                {
+                    return "Traversal Framework (supernode-aware)";
+                }
+
+                @Override
+                public Object execute( Map<String, String> params )
+                {
+                    return supernodeQueries.friendOfAFriendWithInterestTraversalFramework(
+                            params.get( "user" ), params.get( "topic1" ), NUMBER_OF_RESULTS );
+                }
             } );
             tx.success();
         }
@@ -368,6 +400,351 @@ public class SocialNetwork
         );
     }
 
+    @Test
+    public void sharedInterestsSameCompanyBakeoff() throws Exception
+    {
+        // given
+        UserInterestIndex interestIndex = new UserInterestIndex( db ).build();
+        final SocialNetworkRecommendations bitsetRecommendations =
+                new SocialNetworkRecommendations( db, interestIndex );
+        final SocialNetworkQueries supernodeQueries = supernodeAwareQueries();
+
+        // when
+        multipleTestRuns.execute( name.getMethodName(), createParams( "user" ),
+                ResultsContainSameElementsUnordered.newFactory(),
+                printResults( ALL_RESULTS, rowFormatter( "name", "score", "interests" ), writer ),
+                new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Cypher";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        return queries.sharedInterestsSameCompany( params.get( "user" ) );
+                    }
+                },
+                new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Core API";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        return queries.sharedInterestsSameCompanyCoreApi( params.get( "user" ), ALL_RESULTS );
+                    }
+                },
+                new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Core API (supernode-aware)";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        return supernodeQueries.sharedInterestsSameCompanyCoreApi( params.get( "user" ), ALL_RESULTS );
+                    }
+                },
+                new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Core API (interest bitsets)";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        return bitsetRecommendations.sharedInterestsSameCompany( params.get( "user" ), ALL_RESULTS );
+                    }
+                } );
+
+        interestIndex.stopMaintaining();
+    }
+
+    @Test
+    public void sharedInterestsAllCompaniesBakeoff() throws Exception
+    {
+        // given
+        UserInterestIndex interestIndex = new UserInterestIndex( db ).build();
+        final SocialNetworkRecommendations bitsetRecommendations =
+                new SocialNetworkRecommendations( db, interestIndex );
+
+        // when
+        multipleTestRuns.execute( name.getMethodName(), createParams( "user" ),
+                ResultsContainSameElementsUnordered.newFactory(),
+                printResults( ALL_RESULTS, rowFormatter( "name", "company", "score", "interests" ), writer ),
+                new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Cypher";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        return queries.sharedInterestsAllCompanies( params.get( "user" ), ALL_RESULTS );
+                    }
+                },
+                new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Core API";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        return queries.sharedInterestsAllCompaniesCoreApi( params.get( "user" ), ALL_RESULTS );
+                    }
+                },
+                new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Core API (interest bitsets)";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        return bitsetRecommendations.sharedInterestsAllCompanies( params.get( "user" ), ALL_RESULTS );
+                    }
+                } );
+
+        interestIndex.stopMaintaining();
+    }
+
+    @Test
+    public void sharedInterestsAlsoInterestedInTopicBakeoff() throws Exception
+    {
+        // given
+        final SocialNetworkQueries supernodeQueries = supernodeAwareQueries();
+
+        // when
+        multipleTestRuns.execute( name.getMethodName(), createParams( "user", "topic1" ),
+                ResultsContainSameElementsUnordered.newFactory(),
+                printResults( ALL_RESULTS, rowFormatter( "name", "topics" ), writer ),
+                new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Cypher";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        return queries.sharedInterestsAlsoInterestedInTopic( params.get( "user" ),
+                                params.get( "topic1" ) );
+                    }
+                },
+                new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Core API";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        return queries.sharedInterestsAlsoInterestedInTopicCoreApi( params.get( "user" ),
+                                params.get( "topic1" ), ALL_RESULTS );
+                    }
+                },
+                new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Core API (supernode-aware)";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        return supernodeQueries.sharedInterestsAlsoInterestedInTopicCoreApi( params.get( "user" ),
+                                params.get( "topic1" ), ALL_RESULTS );
+                    }
+                } );
+    }
+
+    @Test
+    public void friendOfAFriendWithMultipleInterestBakeoff() throws Exception
+    {
+        // when
+        multipleTestRuns.execute( name.getMethodName(), createParams( "user", "topic1", "topic2", "topic3" ),
+                ResultsContainSameElementsUnordered.newFactory(),
+                printResults( ALL_RESULTS, rowFormatter( "name", "score", "interests", "distance" ), writer ),
+                new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Cypher";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        return queries.friendOfAFriendWithMultipleInterest( params.get( "user" ), ALL_RESULTS,
+                                params.get( "topic1" ), params.get( "topic2" ), params.get( "topic3" ) );
+                    }
+                },
+                new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Core API";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        return queries.friendOfAFriendWithMultipleInterestCoreApi( params.get( "user" ), ALL_RESULTS,
+                                params.get( "topic1" ), params.get( "topic2" ), params.get( "topic3" ) );
+                    }
+                } );
+    }
+
+    @Test
+    public void friendWorkedWithFriendWithInterestsBakeoff() throws Exception
+    {
+        // when
+        multipleTestRuns.execute( name.getMethodName(), createParams( "user", "topic1", "topic2", "topic3" ),
+                ResultsContainSameElementsUnordered.newFactory(),
+                printResults( ALL_RESULTS, rowFormatter( "name", "score", "interests", "distance" ), writer ),
+                new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Cypher";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        return queries.friendWorkedWithFriendWithInterests( params.get( "user" ), ALL_RESULTS,
+                                params.get( "topic1" ), params.get( "topic2" ), params.get( "topic3" ) );
+                    }
+                },
+                new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Core API";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        return queries.friendWorkedWithFriendWithInterestsCoreApi( params.get( "user" ), ALL_RESULTS,
+                                params.get( "topic1" ), params.get( "topic2" ), params.get( "topic3" ) );
+                    }
+                } );
+    }
+
+    @Test
+    public void recommendationsUnderClosedLoopLoad() throws Exception
+    {
+        // when
+        LoadGenerator.closedLoop( db, NUMBER_OF_LOAD_THREADS, LOAD_SECONDS / 4, LOAD_SECONDS, TimeUnit.SECONDS,
+                writer ).execute( name.getMethodName(), createParams( "user", "topic1" ), recommendations() );
+    }
+
+    @Test
+    public void recommendationsUnderOpenLoopLoad() throws Exception
+    {
+        // when
+        LoadGenerator.openLoop( db, NUMBER_OF_LOAD_THREADS, OPEN_LOOP_QUERIES_PER_SECOND, LOAD_SECONDS / 4,
+                LOAD_SECONDS, TimeUnit.SECONDS, writer )
+                .execute( name.getMethodName(), createParams( "user", "topic1" ), recommendations() );
+    }
+
+    private SingleTest[] recommendations()
+    {
+        return new SingleTest[]{
+                new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Shared interests same company";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        return queries.sharedInterestsSameCompany( params.get( "user" ) );
+                    }
+                }, new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Friend of a friend with interest";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        return queries.friendOfAFriendWithInterest( params.get( "user" ), params.get( "topic1" ),
+                                NUMBER_OF_RESULTS );
+                    }
+                }, new SingleTest()
+                {
+                    @Override
+                    public String queryType()
+                    {
+                        return "Friend worked with friend with interests";
+                    }
+
+                    @Override
+                    public Object execute( Map<String, String> params )
+                    {
+                        return queries.friendWorkedWithFriendWithInterests( params.get( "user" ), NUMBER_OF_RESULTS,
+                                params.get( "topic1" ) );
+                    }
+                }
+        };
+    }
+
+    /**
+     * Queries that avoid expanding hubs, configured by the supernode.degree.threshold and
+     * supernode.sample.size (0, no sampling, by default) system properties.
+     */
+    private SocialNetworkQueries supernodeAwareQueries()
+    {
+        SupernodeStrategy supernodes = new SupernodeStrategy( db,
+                Integer.getInteger( "supernode.degree.threshold", SupernodeStrategy.DEFAULT_DEGREE_THRESHOLD ),
+                Integer.getInteger( "supernode.sample.size", SupernodeStrategy.NO_SAMPLING ) ).build();
+        writer.writeln( String.format( "Supernodes: %s with degree >= %s", supernodes.numberOfSupernodes(),
+                supernodes.degreeThreshold() ) );
+        return new SocialNetworkQueries( db, new DefaultExecutionEngineWrapper( db ), supernodes );
+    }
+
     private ParamsGenerator createParams( final String... keys )
     {
         return new ParamsGenerator()
@@ -433,6 +810,40 @@ public class SocialNetwork
         };
     }
 
+    /**
+     * Formats Cypher and Core API rows alike: the given columns in order, with collections sorted,
+     * because collect() gathers values in no particular order.
+     */
+    private ResultFormatter rowFormatter( final String... columns )
+    {
+        return new ResultFormatter()
+        {
+            @Override
+            @SuppressWarnings( "unchecked" )
+            public String format( Object result )
+            {
+                Map<String, Object> row = (Map<String, Object>) result;
+                StringBuilder builder = new StringBuilder();
+                for ( String column : columns )
+                {
+                    Object value = row.get( column );
+                    if ( value instanceof Collection )
+                    {
+                        List<String> values = new ArrayList<String>();
+                        for ( Object element : (Collection<Object>) value )
+                        {
+                            values.add( String.valueOf( element ) );
+                        }
+                        Collections.sort( values );
+                        value = values;
+                    }
+                    builder.append( builder.length() == 0 ? "" : ", " ).append( column ).append( "=" ).append( value );
+                }
+                return builder.toString();
+            }
+        };
+    }
+
     @Test
     @Ignore
     public void testSingleCypherQuery() throws Exception
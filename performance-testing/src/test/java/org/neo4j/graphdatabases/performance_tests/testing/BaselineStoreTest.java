@@ -0,0 +1,50 @@
+package org.neo4j.graphdatabases.performance_tests.testing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BaselineStoreTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldLoadLatenciesThatWereSaved() throws Exception
+    {
+        // given
+        BaselineStore store = new BaselineStore( folder.getRoot() );
+        Map<String, long[]> latencies = new LinkedHashMap<String, long[]>();
+        latencies.put( "Cypher", new long[]{1200, 1100, 1350} );
+        latencies.put( "Traversal Framework", new long[]{300, 0, 280} );
+
+        // when
+        File file = store.save( "social-network", "Friend of a friend: with interest", latencies );
+        Map<String, long[]> loaded = store.load( "social-network", "Friend of a friend: with interest" );
+
+        // then
+        assertEquals( new File( new File( folder.getRoot(), "social-network" ),
+                "friend-of-a-friend-with-interest.properties" ), file );
+        assertEquals( 2, loaded.size() );
+        assertArrayEquals( new long[]{1200, 1100, 1350}, loaded.get( "Cypher" ) );
+        assertArrayEquals( new long[]{300, 0, 280}, loaded.get( "Traversal Framework" ) );
+    }
+
+    @Test
+    public void shouldReturnNullWhenThereIsNoBaseline() throws Exception
+    {
+        // given
+        BaselineStore store = new BaselineStore( folder.getRoot() );
+
+        // then
+        assertNull( store.load( "social-network", "Friend of a friend" ) );
+    }
+}
@@ -0,0 +1,111 @@
+package org.neo4j.graphdatabases.performance_tests.testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest
+{
+    @Test
+    public void shouldReportExactPercentilesForSmallValues() throws Exception
+    {
+        // given
+        LatencyHistogram histogram = new LatencyHistogram( 1000000 );
+
+        // when
+        for ( int value = 1; value <= 1000; value++ )
+        {
+            histogram.recordValue( value );
+        }
+
+        // then
+        assertEquals( 1000, histogram.totalCount() );
+        assertEquals( 500, histogram.valueAtPercentile( 50.0 ) );
+        assertEquals( 900, histogram.valueAtPercentile( 90.0 ) );
+        assertEquals( 990, histogram.valueAtPercentile( 99.0 ) );
+        assertEquals( 999, histogram.valueAtPercentile( 99.9 ) );
+        assertEquals( 1000, histogram.valueAtPercentile( 100.0 ) );
+        assertEquals( 1000, histogram.max() );
+        assertEquals( 500.5, histogram.mean(), 0.0 );
+    }
+
+    @Test
+    public void shouldReportPercentilesOfLargeValuesToWithinOneThousandth() throws Exception
+    {
+        // given
+        LatencyHistogram histogram = new LatencyHistogram( 3600000000L );
+        Random random = new Random( 42 );
+        long[] values = new long[10000];
+
+        // when
+        for ( int i = 0; i < values.length; i++ )
+        {
+            values[i] = (long) Math.exp( random.nextDouble() * Math.log( 3600000000L ) );
+            histogram.recordValue( values[i] );
+        }
+
+        // then
+        Arrays.sort( values );
+        for ( double percentile : new double[]{50.0, 90.0, 99.0, 99.9} )
+        {
+            long expected = values[(int) Math.round( percentile / 100.0 * values.length ) - 1];
+            long actual = histogram.valueAtPercentile( percentile );
+            assertTrue( String.format( "p%s: expected %s, was %s", percentile, expected, actual ),
+                    actual >= expected && actual - expected <= expected / 1000 );
+        }
+        assertEquals( values[values.length - 1], histogram.max() );
+    }
+
+    @Test
+    public void shouldCountValuesAboveHighestTrackableValueInTopBucket() throws Exception
+    {
+        // given
+        LatencyHistogram histogram = new LatencyHistogram( 10000 );
+
+        // when
+        histogram.recordValue( 10 );
+        histogram.recordValue( 50000 );
+
+        // then
+        assertEquals( 10, histogram.valueAtPercentile( 50.0 ) );
+        assertTrue( histogram.valueAtPercentile( 100.0 ) >= 10000 );
+        assertEquals( 50000, histogram.max() );
+    }
+
+    @Test
+    public void shouldAddValuesMissedDuringStallsWhenCorrectingForCoordinatedOmission() throws Exception
+    {
+        // given
+        LatencyHistogram histogram = new LatencyHistogram( 1000000 );
+        for ( int i = 0; i < 96; i++ )
+        {
+            histogram.recordValue( 100 );
+        }
+        histogram.recordValue( 1000 );
+
+        // when
+        LatencyHistogram corrected = histogram.correctedForCoordinatedOmission( 100 );
+
+        // then
+        assertEquals( 97, histogram.totalCount() );
+        assertEquals( 100, histogram.valueAtPercentile( 99.0 ) );
+        assertEquals( 106, corrected.totalCount() );
+        assertEquals( 900, corrected.valueAtPercentile( 99.0 ) );
+        assertEquals( 1000, corrected.max() );
+    }
+
+    @Test
+    public void shouldReportZeroForEmptyHistogram() throws Exception
+    {
+        // given
+        LatencyHistogram histogram = new LatencyHistogram( 10000 );
+
+        // then
+        assertEquals( 0, histogram.valueAtPercentile( 99.0 ) );
+        assertEquals( 0.0, histogram.mean(), 0.0 );
+    }
+}
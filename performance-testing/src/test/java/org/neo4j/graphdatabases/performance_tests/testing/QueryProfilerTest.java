@@ -0,0 +1,96 @@
+package org.neo4j.graphdatabases.performance_tests.testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdatabases.queries.helpers.ExecutionEngineWrapper;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+
+public class QueryProfilerTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GraphDatabaseService db;
+
+    @Before
+    public void init() throws Exception
+    {
+        db = new GraphDatabaseFactory().newEmbeddedDatabase( folder.newFolder().getAbsolutePath() );
+        new DefaultExecutionEngineWrapper( db ).execute(
+                "CREATE (a:User {name:'a'})-[:FRIEND]->(b:User {name:'b'})-[:FRIEND]->(c:User {name:'c'})",
+                new HashMap<String, Object>() );
+    }
+
+    @After
+    public void shutdown()
+    {
+        db.shutdown();
+    }
+
+    @Test
+    public void shouldProfileCypherQueryEvenIfNotAllRowsWereRead() throws Exception
+    {
+        // given
+        QueryProfiler profiler = QueryProfiler.enabled();
+        ExecutionEngineWrapper executionEngineWrapper = profiler.executionEngineWrapper( db );
+
+        // when
+        profiler.begin();
+        Iterable<Map<String, Object>> results = executionEngineWrapper.execute(
+                "MATCH (user:User)-[:FRIEND]->(friend) RETURN friend.name", new HashMap<String, Object>() );
+        results.iterator().next();
+        ExecutionProfile profile = profiler.end();
+
+        // then
+        assertEquals( 1, profile.executions() );
+        assertTrue( profile.dbHits() > 0 );
+        assertTrue( profile.cpuNanos() > 0 );
+        assertTrue( profile.toString(), profile.toString().contains( "rows/DB hits per operator" ) );
+    }
+
+    @Test
+    public void shouldAggregateProfilesPerQueryType() throws Exception
+    {
+        // given
+        ExecutionProfile total = new ExecutionProfile();
+        ExecutionProfile first = new ExecutionProfile( 2000, 4096, 1, 5 );
+        first.addOperator( "TraversalMatcher", 2, 10 );
+        ExecutionProfile second = new ExecutionProfile( 4000, 2048, 0, 0 );
+        second.addOperator( "TraversalMatcher", 4, 20 );
+
+        // when
+        total.add( first );
+        total.add( second );
+
+        // then
+        assertEquals( 2, total.executions() );
+        assertEquals( 30, total.dbHits() );
+        assertEquals( "CPU (us) 3, allocated (KB) 3, GC 1 collections in 5 ms, DB hits 15, " +
+                "rows/DB hits per operator: [TraversalMatcher: 3/15]", total.toString() );
+    }
+
+    @Test
+    public void disabledProfilerShouldProfileNothing() throws Exception
+    {
+        // given
+        QueryProfiler profiler = QueryProfiler.disabled();
+
+        // when
+        profiler.begin();
+        ExecutionProfile profile = profiler.end();
+
+        // then
+        assertNull( profile );
+    }
+}
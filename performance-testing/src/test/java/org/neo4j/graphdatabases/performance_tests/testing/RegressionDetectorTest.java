@@ -0,0 +1,99 @@
+package org.neo4j.graphdatabases.performance_tests.testing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RegressionDetectorTest
+{
+    private final RegressionDetector detector = new RegressionDetector( 0.05, 0.95, 10000, 42 );
+
+    @Test
+    public void shouldNotFlagRunsFromSameDistribution() throws Exception
+    {
+        // given
+        Random random = new Random( 2 );
+        long[] baseline = latencies( random, 40, 0.3 );
+        long[] current = latencies( random, 40, 0.3 );
+
+        // when
+        RegressionDetector.Comparison comparison = detector.compare( "Cypher", baseline, current );
+
+        // then
+        assertFalse( comparison.toString(), comparison.isRegression() );
+        assertFalse( comparison.toString(), comparison.isImprovement() );
+        assertTrue( comparison.lower() < 1.0 && comparison.upper() > 1.0 );
+    }
+
+    @Test
+    public void shouldFlagSignificantSlowdown() throws Exception
+    {
+        // given
+        Random random = new Random( 1 );
+        long[] baseline = latencies( random, 40, 0.3 );
+        long[] current = slower( baseline, 1.3 );
+
+        // when
+        RegressionDetector.Comparison comparison = detector.compare( "Cypher", baseline, current );
+
+        // then
+        assertTrue( comparison.toString(), comparison.isRegression() );
+        assertEquals( 1.3, comparison.ratio(), 0.01 );
+    }
+
+    @Test
+    public void shouldNotFlagSlowdownThatNoiseCouldExplain() throws Exception
+    {
+        // given
+        Random random = new Random( 1 );
+        long[] baseline = latencies( random, 5, 0.5 );
+        long[] current = slower( latencies( random, 5, 0.5 ), 1.1 );
+
+        // when
+        RegressionDetector.Comparison comparison = detector.compare( "Cypher", baseline, current );
+
+        // then
+        assertFalse( comparison.toString(), comparison.isRegression() );
+    }
+
+    @Test
+    public void shouldFlagSignificantSpeedUpAsImprovement() throws Exception
+    {
+        // given
+        Random random = new Random( 1 );
+        long[] baseline = latencies( random, 40, 0.3 );
+        long[] current = slower( baseline, 0.5 );
+
+        // when
+        RegressionDetector.Comparison comparison = detector.compare( "Cypher", baseline, current );
+
+        // then
+        assertFalse( comparison.isRegression() );
+        assertTrue( comparison.toString(), comparison.isImprovement() );
+    }
+
+    private static long[] latencies( Random random, int numberOfRuns, double sigma )
+    {
+        long[] latencies = new long[numberOfRuns];
+        for ( int i = 0; i < numberOfRuns; i++ )
+        {
+            // Log-normal around 1ms
+            latencies[i] = (long) (1000 * Math.exp( random.nextGaussian() * sigma ));
+        }
+        return latencies;
+    }
+
+    private static long[] slower( long[] latencies, double factor )
+    {
+        long[] slower = new long[latencies.length];
+        for ( int i = 0; i < latencies.length; i++ )
+        {
+            slower[i] = (long) (latencies[i] * factor);
+        }
+        return slower;
+    }
+}
@@ -0,0 +1,103 @@
+package org.neo4j.graphdatabases.performance_tests.testing;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.neo4j.graphdatabases.queries.testing.TestOutputWriter;
+
+public class ReportFormatTest
+{
+    private static final List<LatencySummary> SUMMARIES = asList(
+            new LatencySummary( "Cypher", 100, 1250.0, 1000, 2000, 3000, 4000, 5000, 800.0 ),
+            new LatencySummary( "Traversal, \"fast\"", 100, 125.0, 100, 200, 300, 400, 500, 8000.0 ) );
+
+    @Test
+    public void shouldWriteCsv() throws Exception
+    {
+        // given
+        StringOutputWriter writer = new StringOutputWriter();
+
+        // when
+        ReportFormat.CSV.write( "Social network", SUMMARIES, writer );
+
+        // then
+        String expected = "title,queryType,count,mean_us,p50_us,p90_us,p99_us,p999_us,max_us,qps\n" +
+                "Social network,Cypher,100,1250.0,1000,2000,3000,4000,5000,800.00\n" +
+                "Social network,\"Traversal, \"\"fast\"\"\",100,125.0,100,200,300,400,500,8000.00\n";
+        assertEquals( expected, writer.toString() );
+    }
+
+    @Test
+    public void shouldWriteJson() throws Exception
+    {
+        // given
+        StringOutputWriter writer = new StringOutputWriter();
+
+        // when
+        ReportFormat.JSON.write( "Social network", SUMMARIES, writer );
+
+        // then
+        String expected = "{\n" +
+                "  \"title\": \"Social network\",\n" +
+                "  \"unit\": \"us\",\n" +
+                "  \"queries\": [\n" +
+                "    {\"queryType\": \"Cypher\", \"count\": 100, \"mean\": 1250.0, \"p50\": 1000, \"p90\": 2000, " +
+                "\"p99\": 3000, \"p999\": 4000, \"max\": 5000, \"qps\": 800.00},\n" +
+                "    {\"queryType\": \"Traversal, \\\"fast\\\"\", \"count\": 100, \"mean\": 125.0, \"p50\": 100, " +
+                "\"p90\": 200, \"p99\": 300, \"p999\": 400, \"max\": 500, \"qps\": 8000.00}\n" +
+                "  ]\n" +
+                "}\n";
+        assertEquals( expected, writer.toString() );
+    }
+
+    @Test
+    public void shouldFindFormatByName() throws Exception
+    {
+        assertEquals( ReportFormat.CSV, ReportFormat.fromName( "csv" ) );
+        assertEquals( ReportFormat.JSON, ReportFormat.fromName( "JSON" ) );
+        assertNull( ReportFormat.fromName( null ) );
+    }
+
+    private static class StringOutputWriter implements TestOutputWriter
+    {
+        private final StringBuilder builder = new StringBuilder();
+
+        @Override
+        public void begin()
+        {
+        }
+
+        @Override
+        public void write( String value )
+        {
+            builder.append( value );
+        }
+
+        @Override
+        public void writeln( String value )
+        {
+            builder.append( value );
+            builder.append( "\n" );
+        }
+
+        @Override
+        public void flush()
+        {
+        }
+
+        @Override
+        public void end()
+        {
+        }
+
+        @Override
+        public String toString()
+        {
+            return builder.toString();
+        }
+    }
+}
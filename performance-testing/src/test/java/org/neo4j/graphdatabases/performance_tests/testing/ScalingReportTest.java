@@ -0,0 +1,150 @@
+package org.neo4j.graphdatabases.performance_tests.testing;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdatabases.queries.testing.TestOutputWriter;
+
+public class ScalingReportTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldFitLatencyAgainstDatasetSize() throws Exception
+    {
+        // given
+        File reports = folder.newFolder( "reports" );
+        File datasets = folder.newFolder( "datasets" );
+        writeReport( reports, 0.1, 100, 50 );
+        writeReport( reports, 1.0, 1000, 50 );
+        writeSize( new File( datasets, "social-network-sf0.1" ), 600, 400 );
+        writeSize( new File( datasets, "social-network" ), 6000, 4000 );
+        StringOutputWriter writer = new StringOutputWriter();
+
+        // when
+        File file = new ScalingReport( reports, datasets ).write( "social-network", writer );
+
+        // then
+        String output = writer.toString();
+        assertTrue( output, output.contains( "Cypher (p50 ~ size^1.00)" ) );
+        assertTrue( output, output.contains( "Traversal (p50 ~ size^0.00)" ) );
+        List<String> lines = Files.readAllLines( file.toPath(), StandardCharsets.UTF_8 );
+        assertEquals( asList(
+                "title,queryType,scale_factor,size,mean_us,p50_us,p99_us",
+                "friendsOfFriends,Cypher,0.1,1000,100.0,100,300",
+                "friendsOfFriends,Cypher,1.0,10000,1000.0,1000,3000",
+                "friendsOfFriends,Traversal,0.1,1000,50.0,50,150",
+                "friendsOfFriends,Traversal,1.0,10000,50.0,50,150" ), lines );
+    }
+
+    @Test
+    public void shouldFitAgainstScaleFactorWhenDatasetSizeIsUnknown() throws Exception
+    {
+        // given
+        File reports = folder.newFolder( "reports" );
+        writeReport( reports, 0.01, 10, 10 );
+        writeReport( reports, 1.0, 100, 10 );
+        StringOutputWriter writer = new StringOutputWriter();
+
+        // when
+        new ScalingReport( reports, folder.newFolder( "datasets" ) ).write( "social-network", writer );
+
+        // then
+        String output = writer.toString();
+        assertTrue( output, output.contains( "Cypher (p50 ~ scale^0.50)" ) );
+    }
+
+    @Test
+    public void shouldReportMissingReports() throws Exception
+    {
+        // given
+        StringOutputWriter writer = new StringOutputWriter();
+
+        // when
+        File file = new ScalingReport( folder.newFolder( "reports" ), folder.newFolder( "datasets" ) )
+                .write( "social-network", writer );
+
+        // then
+        assertNull( file );
+        assertTrue( writer.toString(), writer.toString().startsWith( "No latency reports for social-network" ) );
+    }
+
+    private static void writeReport( File reports, double scaleFactor, long cypherMicros, long traversalMicros )
+    {
+        ReportFormat.CSV.writeReport( ScalingReport.reportDirectory( reports, "social-network", scaleFactor ),
+                "friendsOfFriends", asList(
+                        summary( "Cypher", cypherMicros ),
+                        summary( "Traversal", traversalMicros ) ) );
+    }
+
+    private static LatencySummary summary( String queryType, long micros )
+    {
+        return new LatencySummary( queryType, 10, micros, micros, micros * 2, micros * 3, micros * 3, micros * 3,
+                1000000.0 / micros );
+    }
+
+    private static void writeSize( File storeDir, long nodes, long relationships ) throws Exception
+    {
+        assertTrue( storeDir.mkdirs() );
+        Properties properties = new Properties();
+        properties.setProperty( "nodes", String.valueOf( nodes ) );
+        properties.setProperty( "relationships", String.valueOf( relationships ) );
+        try ( OutputStream out = new FileOutputStream( new File( storeDir, "dataset.properties" ) ) )
+        {
+            properties.store( out, null );
+        }
+    }
+
+    private static class StringOutputWriter implements TestOutputWriter
+    {
+        private final StringBuilder builder = new StringBuilder();
+
+        @Override
+        public void begin()
+        {
+        }
+
+        @Override
+        public void write( String value )
+        {
+            builder.append( value );
+        }
+
+        @Override
+        public void writeln( String value )
+        {
+            builder.append( value );
+            builder.append( "\n" );
+        }
+
+        @Override
+        public void flush()
+        {
+        }
+
+        @Override
+        public void end()
+        {
+        }
+
+        @Override
+        public String toString()
+        {
+            return builder.toString();
+        }
+    }
+}
@@ -13,7 +13,12 @@ public class AccessControlWithRelationshipPropertiesQueries
 
     public AccessControlWithRelationshipPropertiesQueries( ExecutionEngineWrapper executionEngine )
     {
-        this.executionEngine = new QueryUnionExecutionEngine( executionEngine );
+        this( new QueryUnionExecutionEngine( executionEngine ) );
+    }
+
+    public AccessControlWithRelationshipPropertiesQueries( QueryUnionExecutionEngine executionEngine )
+    {
+        this.executionEngine = executionEngine;
     }
 
     public QueryUnionExecutionResult findAccessibleResources( String adminName )
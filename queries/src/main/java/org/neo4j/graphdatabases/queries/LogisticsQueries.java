@@ -1,65 +1,125 @@
 package org.neo4j.graphdatabases.queries;
 
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.joda.time.Interval;
 import org.neo4j.cypher.javacompat.ExecutionResult;
 import org.neo4j.graphdatabases.queries.helpers.ExecutionEngineWrapper;
+import org.neo4j.graphdatabases.queries.traversals.ParcelManifestRouter;
 import org.neo4j.graphdatabases.queries.traversals.ParcelRouteCalculator;
 import org.neo4j.graphdatabases.queries.traversals.SimpleParcelRouteCalculator;
+import org.neo4j.graphdatabases.queries.traversals.TimeSlicedRoutingIndex;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 
 public class LogisticsQueries
 {
+    private static final String FIND_SHORTEST_PATH_WITH_CYPHER_REDUCE =
+            "MATCH (s:Location {name:{startLocation}}),\n" +
+            "      (e:Location {name:{endLocation}})\n" +
+            "MATCH upLeg = (s)<-[:DELIVERY_ROUTE*1..2]-(db1)\n" +
+            "WHERE all(r in relationships(upLeg)\n" +
+            "          WHERE r.start_date <= {intervalStart}\n" +
+            "          AND r.end_date >= {intervalEnd})\n" +
+            "WITH  e, upLeg, db1\n" +
+            "MATCH downLeg = (db2)-[:DELIVERY_ROUTE*1..2]->(e)\n" +
+            "WHERE all(r in relationships(downLeg)\n" +
+            "          WHERE r.start_date <= {intervalStart}\n" +
+            "          AND r.end_date >= {intervalEnd})\n" +
+            "WITH  db1, db2, upLeg, downLeg\n" +
+            "MATCH topRoute = (db1)<-[:CONNECTED_TO]-()-[:CONNECTED_TO*1..3]-(db2)\n" +
+            "WHERE all(r in relationships(topRoute)\n" +
+            "          WHERE r.start_date <= {intervalStart}\n" +
+            "          AND r.end_date >= {intervalEnd})\n" +
+            "WITH  upLeg, downLeg, topRoute,\n" +
+            "      reduce(weight=0, r in relationships(topRoute) | weight+r.cost) AS score\n" +
+            "      ORDER BY score ASC\n" +
+            "      LIMIT 1\n" +
+            "RETURN (nodes(upLeg) + tail(nodes(topRoute)) + tail(nodes(downLeg))) AS n";
+
+    private final GraphDatabaseService db;
     private final ExecutionEngineWrapper executionEngineWrapper;
     private final ParcelRouteCalculator parcelRouteCalculator;
     private final SimpleParcelRouteCalculator simpleParcelRouteCalculator;
 
+    // Created on first use, since the routing index is maintained on every commit and the manifest
+    // router starts a thread pool
+    private TimeSlicedRoutingIndex routingIndex;
+    private ParcelRouteCalculator hubLabelParcelRouteCalculator;
+    private ParcelManifestRouter manifestRouter;
+
     public LogisticsQueries( GraphDatabaseService db, ExecutionEngineWrapper executionEngineWrapper )
     {
+        this.db = db;
         this.executionEngineWrapper = executionEngineWrapper;
         this.parcelRouteCalculator = new ParcelRouteCalculator( db );
         this.simpleParcelRouteCalculator = new SimpleParcelRouteCalculator( db );
     }
 
+    /**
+     * Stops maintaining the routing index and landmarks, and shuts down the manifest router's threads,
+     * if they were used. Call before shutting down the database.
+     */
+    public synchronized void shutdown()
+    {
+        if ( manifestRouter != null )
+        {
+            manifestRouter.shutdown();
+            manifestRouter = null;
+        }
+        if ( routingIndex != null )
+        {
+            routingIndex.stopMaintaining();
+            routingIndex = null;
+            hubLabelParcelRouteCalculator = null;
+        }
+        simpleParcelRouteCalculator.stopMaintaining();
+    }
+
     public Iterable<Node> findShortestPathWithParcelRouteCalculator( String start, String end, Interval interval )
     {
         return parcelRouteCalculator.calculateRoute( start, end, interval );
     }
 
+    /**
+     * As {@link #findShortestPathWithParcelRouteCalculator(String, String, Interval)}, but routes between
+     * delivery bases with the routing index's hub labels. Among routes of equal cost, it may pick a
+     * different one.
+     */
+    public Iterable<Node> findShortestPathWithHubLabelParcelRouteCalculator( String start, String end,
+                                                                            Interval interval )
+    {
+        return hubLabelParcelRouteCalculator().calculateRoute( start, end, interval );
+    }
+
     public Iterable<Node> findShortestPathWithSimpleParcelRouteCalculator( String start, String end, Interval interval )
     {
         return simpleParcelRouteCalculator.calculateRoute( start, end, interval );
     }
 
+    public Iterable<Node> findShortestPathWithSimpleParcelRouteCalculator( String start, String end, Interval interval,
+            SimpleParcelRouteCalculator.SearchMode mode, SimpleParcelRouteCalculator.SearchCounters counters )
+    {
+        return simpleParcelRouteCalculator.calculateRoute( start, end, interval, mode, counters );
+    }
 
-    public ExecutionResult findShortestPathWithCypherReduce( String start, String end, Interval interval )
+    public Iterator<ParcelManifestRouter.Result> findShortestPathsForManifest(
+            List<ParcelManifestRouter.Request> manifest )
     {
-        String query =
-                "MATCH (s:Location {name:{startLocation}}),\n" +
-                "      (e:Location {name:{endLocation}})\n" +
-                "MATCH upLeg = (s)<-[:DELIVERY_ROUTE*1..2]-(db1)\n" +
-                "WHERE all(r in relationships(upLeg)\n" +
-                "          WHERE r.start_date <= {intervalStart}\n" +
-                "          AND r.end_date >= {intervalEnd})\n" +
-                "WITH  e, upLeg, db1\n" +
-                "MATCH downLeg = (db2)-[:DELIVERY_ROUTE*1..2]->(e)\n" +
-                "WHERE all(r in relationships(downLeg)\n" +
-                "          WHERE r.start_date <= {intervalStart}\n" +
-                "          AND r.end_date >= {intervalEnd})\n" +
-                "WITH  db1, db2, upLeg, downLeg\n" +
-                "MATCH topRoute = (db1)<-[:CONNECTED_TO]-()-[:CONNECTED_TO*1..3]-(db2)\n" +
-                "WHERE all(r in relationships(topRoute)\n" +
-                "          WHERE r.start_date <= {intervalStart}\n" +
-                "          AND r.end_date >= {intervalEnd})\n" +
-                "WITH  upLeg, downLeg, topRoute,\n" +
-                "      reduce(weight=0, r in relationships(topRoute) | weight+r.cost) AS score\n" +
-                "      ORDER BY score ASC\n" +
-                "      LIMIT 1\n" +
-                "RETURN (nodes(upLeg) + tail(nodes(topRoute)) + tail(nodes(downLeg))) AS n";
+        return manifestRouter().route( manifest );
+    }
 
+    public Iterable<Node> findShortestPathWithRoutingIndex( String start, String end, Interval interval )
+    {
+        return routingIndex().calculateRoute( start, end, interval );
+    }
+
+
+    public ExecutionResult findShortestPathWithCypherReduce( String start, String end, Interval interval )
+    {
         Map<String, Object> params = new HashMap<String, Object>();
         params.put( "startLocation", start );
         params.put( "endLocation", end );
@@ -67,6 +127,33 @@ public class LogisticsQueries
         params.put( "intervalEnd", interval.getEndMillis() );
 
 
-        return executionEngineWrapper.execute( query, params );
+        return executionEngineWrapper.execute( FIND_SHORTEST_PATH_WITH_CYPHER_REDUCE, params );
+    }
+
+    private synchronized TimeSlicedRoutingIndex routingIndex()
+    {
+        if ( routingIndex == null )
+        {
+            routingIndex = new TimeSlicedRoutingIndex( db );
+        }
+        return routingIndex;
+    }
+
+    private synchronized ParcelRouteCalculator hubLabelParcelRouteCalculator()
+    {
+        if ( hubLabelParcelRouteCalculator == null )
+        {
+            hubLabelParcelRouteCalculator = new ParcelRouteCalculator( db, routingIndex() );
+        }
+        return hubLabelParcelRouteCalculator;
+    }
+
+    private synchronized ParcelManifestRouter manifestRouter()
+    {
+        if ( manifestRouter == null )
+        {
+            manifestRouter = new ParcelManifestRouter( routingIndex(), Runtime.getRuntime().availableProcessors() );
+        }
+        return manifestRouter;
     }
 }
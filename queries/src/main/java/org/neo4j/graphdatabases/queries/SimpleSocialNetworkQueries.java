@@ -5,15 +5,18 @@ import java.util.Map;
 
 import org.neo4j.cypher.javacompat.ExecutionEngine;
 import org.neo4j.cypher.javacompat.ExecutionResult;
+import org.neo4j.graphdatabases.queries.traversals.BidirectionalFriendSearch;
 import org.neo4j.graphdb.GraphDatabaseService;
 
 public class SimpleSocialNetworkQueries
 {
     private final ExecutionEngine executionEngine;
+    private final BidirectionalFriendSearch friendSearch;
 
     public SimpleSocialNetworkQueries( GraphDatabaseService db )
     {
         this.executionEngine = new ExecutionEngine( db );
+        this.friendSearch = new BidirectionalFriendSearch( db );
     }
 
     public ExecutionResult pathBetweenTwoFriends( String firstUser, String secondUser )
@@ -30,6 +33,16 @@ public class SimpleSocialNetworkQueries
         return executionEngine.execute( query, params );
     }
 
+    /**
+     * Core API version of {@link #pathBetweenTwoFriends(String, String)} that follows FRIEND
+     * relationships only. Returns {@link BidirectionalFriendSearch#NO_PATH} if the users are not
+     * connected within depth 4.
+     */
+    public int pathBetweenTwoFriendsCoreApi( String firstUser, String secondUser )
+    {
+        return friendSearch.distance( firstUser, secondUser );
+    }
+
     public ExecutionResult friendOfAFriendToDepth4(String name)
     {
         String query =
@@ -9,6 +9,8 @@ import java.util.Map;
 
 import org.neo4j.cypher.javacompat.ExecutionResult;
 import org.neo4j.graphdatabases.queries.helpers.ExecutionEngineWrapper;
+import org.neo4j.graphdatabases.queries.traversals.SocialNetworkRecommendations;
+import org.neo4j.graphdatabases.queries.traversals.SupernodeStrategy;
 import org.neo4j.graphdb.*;
 import org.neo4j.graphdb.traversal.Evaluation;
 import org.neo4j.graphdb.traversal.Evaluator;
@@ -22,90 +24,159 @@ public class SocialNetworkQueries
 {
     public static final Label USER = DynamicLabel.label("User");
     public static final Label TOPIC = DynamicLabel.label("Topic");
+
+    private static final String SHARED_INTERESTS_SAME_COMPANY =
+            "MATCH  (subject:User {name:{name}})\n" +
+            "MATCH  (subject)-[:WORKS_FOR]->(company)<-[:WORKS_FOR]-(person),\n" +
+            "       (subject)-[:INTERESTED_IN]->(interest)<-[:INTERESTED_IN]-(person)\n" +
+            "RETURN person.name AS name,\n" +
+            "       count(interest) AS score,\n" +
+            "       collect(interest.name) AS interests\n" +
+            "ORDER BY score DESC";
+
+    private static final String SHARED_INTERESTS_ALL_COMPANIES =
+            "MATCH  (subject:User {name:{name}})\n" +
+            "MATCH  (subject)-[:INTERESTED_IN]->(interest)<-[:INTERESTED_IN]-(person),\n" +
+            "       (person)-[:WORKS_FOR]->(company)\n" +
+            "RETURN person.name AS name,\n" +
+            "       company.name AS company,\n" +
+            "       count(interest) AS score,\n" +
+            "       collect(interest.name) AS interests\n" +
+            "ORDER BY score DESC";
+
+    private static final String SHARED_INTERESTS_ALSO_INTERESTED_IN_TOPIC =
+            "MATCH (person:User {name:{name}})\n" +
+            "MATCH (person)-[:INTERESTED_IN]->()<-[:INTERESTED_IN]-(colleague)-[:INTERESTED_IN]->(topic)\n" +
+            "WHERE topic.name={topic}\n" +
+            "WITH  colleague\n" +
+            "MATCH (colleague)-[:INTERESTED_IN]->(allTopics)\n" +
+            "RETURN colleague.name AS name, collect(distinct(allTopics.name)) AS topics";
+
+    private static final String FRIEND_OF_A_FRIEND_WITH_INTEREST =
+            "MATCH (subject:User {name:{name}})\n" +
+            "MATCH p=(subject)-[:WORKED_ON]->()-[:WORKED_ON*0..2]-()\n" +
+            "        <-[:WORKED_ON]-(person)-[:INTERESTED_IN]->(interest)\n" +
+            "WHERE person<>subject AND interest.name={topic}\n" +
+            "WITH DISTINCT person.name AS name,\n" +
+            "     min(length(p)) as pathLength\n" +
+            "ORDER BY pathLength ASC\n" +
+            "LIMIT {resultLimit}\n" +
+            "RETURN name, pathLength";
+
+    private static final String FRIEND_OF_A_FRIEND_WITH_MULTIPLE_INTEREST =
+            "MATCH (subject:User {name:{name}})\n" +
+            "MATCH p=(subject)-[:WORKED_ON]->()-[:WORKED_ON*0..2]-()\n" +
+            "        <-[:WORKED_ON]-(person)-[:INTERESTED_IN]->(interest)\n" +
+            "WHERE person<>subject AND interest.name IN {interests}\n" +
+            "WITH person, interest, min(length(p)) as pathLength\n" +
+            "ORDER BY interest.name\n"+
+            "RETURN person.name AS name,\n" +
+            "       count(interest) AS score,\n" +
+            "       collect(interest.name) AS interests,\n" +
+            "       ((pathLength - 1)/2) AS distance\n" +
+            "ORDER BY score DESC\n" +
+            "LIMIT {resultLimit}";
+
+    private static final String FRIEND_WORKED_WITH_FRIEND_WITH_INTERESTS =
+            "MATCH (subject:User {name:{name}})\n" +
+            "MATCH p=(subject)-[:WORKED_WITH*0..1]-()-[:WORKED_WITH]-(person)\n" +
+            "        -[:INTERESTED_IN]->(interest)\n" +
+            "WHERE person<>subject AND interest.name IN {interests}\n" +
+            "WITH person, interest, min(length(p)) as pathLength\n" +
+            "RETURN person.name AS name,\n" +
+            "       count(interest) AS score,\n" +
+            "       collect(interest.name) AS interests,\n" +
+            "       (pathLength - 1) AS distance\n" +
+            "ORDER BY score DESC\n" +
+            "LIMIT {resultLimit}";
+
+    private static final String CREATE_WORKED_WITH_RELATIONSHIPS =
+            "MATCH (subject:User {name:{name}})\n" +
+            "MATCH (subject)-[:WORKED_ON]->()<-[:WORKED_ON]-(person)\n" +
+            "WHERE NOT((subject)-[:WORKED_WITH]-(person))\n" +
+            "WITH DISTINCT subject, person\n" +
+            "CREATE UNIQUE (subject)-[:WORKED_WITH]-(person)\n" +
+            "RETURN subject.name AS startName, person.name AS endName";
+
+    private static final String GET_ALL_USERS =
+            "MATCH (subject:User)\n" +
+            "RETURN subject.name AS name";
+
     private final GraphDatabaseService db;
     private final ExecutionEngineWrapper executionEngineWrapper;
-
+    private final SocialNetworkRecommendations recommendations;
+    private final SupernodeStrategy supernodes;
 
     public SocialNetworkQueries( GraphDatabaseService db, ExecutionEngineWrapper executionEngineWrapper )
+    {
+        this( db, executionEngineWrapper, null );
+    }
+
+    /**
+     * Queries whose Core API and traversal framework versions avoid expanding the hubs found by
+     * the (built) supernode strategy.
+     */
+    public SocialNetworkQueries( GraphDatabaseService db, ExecutionEngineWrapper executionEngineWrapper,
+                                 SupernodeStrategy supernodes )
     {
         this.db = db;
         this.executionEngineWrapper = executionEngineWrapper;
+        this.supernodes = supernodes;
+        this.recommendations = new SocialNetworkRecommendations( db, supernodes );
     }
 
     public ExecutionResult sharedInterestsSameCompany( String userName )
     {
-        String query =
-                "MATCH  (subject:User {name:{name}})\n" +
-                        "MATCH  (subject)-[:WORKS_FOR]->(company)<-[:WORKS_FOR]-(person),\n" +
-                        "       (subject)-[:INTERESTED_IN]->(interest)<-[:INTERESTED_IN]-(person)\n" +
-                        "RETURN person.name AS name,\n" +
-                        "       count(interest) AS score,\n" +
-                        "       collect(interest.name) AS interests\n" +
-                        "ORDER BY score DESC";
-
         Map<String, Object> params = new HashMap<String, Object>();
         params.put( "name", userName );
 
-        return executionEngineWrapper.execute( query, params );
+        return executionEngineWrapper.execute( SHARED_INTERESTS_SAME_COMPANY, params );
     }
 
-    public ExecutionResult sharedInterestsAllCompanies( String userName, int limit )
+    public List<Map<String, Object>> sharedInterestsSameCompanyCoreApi( String userName, int limit )
     {
-        String query =
-                "MATCH  (subject:User {name:{name}})\n" +
-                        "MATCH  (subject)-[:INTERESTED_IN]->(interest)<-[:INTERESTED_IN]-(person),\n" +
-                        "       (person)-[:WORKS_FOR]->(company)\n" +
-                        "RETURN person.name AS name,\n" +
-                        "       company.name AS company,\n" +
-                        "       count(interest) AS score,\n" +
-                        "       collect(interest.name) AS interests\n" +
-                        "ORDER BY score DESC";
+        return recommendations.sharedInterestsSameCompany( userName, limit );
+    }
 
+    public ExecutionResult sharedInterestsAllCompanies( String userName, int limit )
+    {
         Map<String, Object> params = new HashMap<String, Object>();
         params.put( "name", userName );
         params.put( "resultLimit", limit );
 
-        return executionEngineWrapper.execute( query, params );
+        return executionEngineWrapper.execute( SHARED_INTERESTS_ALL_COMPANIES, params );
     }
 
-    public ExecutionResult sharedInterestsAlsoInterestedInTopic( String userName, String topicLabel )
+    public List<Map<String, Object>> sharedInterestsAllCompaniesCoreApi( String userName, int limit )
     {
-        String query = "MATCH (person:User {name:{name}})\n" +
-                "MATCH (person)-[:INTERESTED_IN]->()<-[:INTERESTED_IN]-(colleague)-[:INTERESTED_IN]->(topic)\n" +
-                "WHERE topic.name={topic}\n" +
-                "WITH  colleague\n" +
-                "MATCH (colleague)-[:INTERESTED_IN]->(allTopics)\n" +
-                "RETURN colleague.name AS name, collect(distinct(allTopics.name)) AS topics";
-
+        return recommendations.sharedInterestsAllCompanies( userName, limit );
+    }
 
+    public ExecutionResult sharedInterestsAlsoInterestedInTopic( String userName, String topicLabel )
+    {
         Map<String, Object> params = new HashMap<String, Object>();
         params.put( "name", userName );
         params.put( "topicQuery", "name:" + topicLabel );
         params.put( "topic", topicLabel );
 
-        return executionEngineWrapper.execute( query, params );
+        return executionEngineWrapper.execute( SHARED_INTERESTS_ALSO_INTERESTED_IN_TOPIC, params );
     }
 
-    public ExecutionResult friendOfAFriendWithInterest( String userName, String topicLabel, int limit )
+    public List<Map<String, Object>> sharedInterestsAlsoInterestedInTopicCoreApi( String userName, String topicLabel,
+                                                                                int limit )
     {
-        String query =
-                "MATCH (subject:User {name:{name}})\n" +
-                        "MATCH p=(subject)-[:WORKED_ON]->()-[:WORKED_ON*0..2]-()\n" +
-                        "        <-[:WORKED_ON]-(person)-[:INTERESTED_IN]->(interest)\n" +
-                        "WHERE person<>subject AND interest.name={topic}\n" +
-                        "WITH DISTINCT person.name AS name,\n" +
-                        "     min(length(p)) as pathLength\n" +
-                        "ORDER BY pathLength ASC\n" +
-                        "LIMIT {resultLimit}\n" +
-                        "RETURN name, pathLength";
+        return recommendations.sharedInterestsAlsoInterestedInTopic( userName, topicLabel, limit );
+    }
 
+    public ExecutionResult friendOfAFriendWithInterest( String userName, String topicLabel, int limit )
+    {
         Map<String, Object> params = new HashMap<String, Object>();
         params.put( "name", userName );
         params.put( "topicQuery", "name:" + topicLabel );
         params.put( "topic", topicLabel );
         params.put( "resultLimit", limit );
 
-        return executionEngineWrapper.execute( query, params );
+        return executionEngineWrapper.execute( FRIEND_OF_A_FRIEND_WITH_INTEREST, params );
     }
 
     public Collection<Node> friendOfAFriendWithInterestTraversalFramework( String userName,
@@ -120,8 +191,11 @@ public class SocialNetworkQueries
 
         TraversalDescription traversalDescription = db.traversalDescription()
                 .breadthFirst()
-                .uniqueness( Uniqueness.NODE_GLOBAL )
-                .relationships( worked_on )
+                .uniqueness( Uniqueness.NODE_GLOBAL );
+        traversalDescription = supernodes == null
+                ? traversalDescription.relationships( worked_on )
+                : traversalDescription.expand( supernodes.expander( worked_on, Direction.BOTH ) );
+        traversalDescription = traversalDescription
                 .evaluator( new
                             Evaluator()
                             {
@@ -185,43 +259,22 @@ public class SocialNetworkQueries
 
     public ExecutionResult friendOfAFriendWithMultipleInterest( String userName, int limit, String... interestLabels )
     {
-        String query =
-                "MATCH (subject:User {name:{name}})\n" +
-                        "MATCH p=(subject)-[:WORKED_ON]->()-[:WORKED_ON*0..2]-()\n" +
-                        "        <-[:WORKED_ON]-(person)-[:INTERESTED_IN]->(interest)\n" +
-                        "WHERE person<>subject AND interest.name IN {interests}\n" +
-                        "WITH person, interest, min(length(p)) as pathLength\n" +
-                        "ORDER BY interest.name\n"+
-                        "RETURN person.name AS name,\n" +
-                        "       count(interest) AS score,\n" +
-                        "       collect(interest.name) AS interests,\n" +
-                        "       ((pathLength - 1)/2) AS distance\n" +
-                        "ORDER BY score DESC\n" +
-                        "LIMIT {resultLimit}";
-
         Map<String, Object> params = new HashMap<String, Object>();
         params.put( "name", userName );
         params.put( "interests", interestLabels );
         params.put( "resultLimit", limit );
 
-        return executionEngineWrapper.execute( query, params );
+        return executionEngineWrapper.execute( FRIEND_OF_A_FRIEND_WITH_MULTIPLE_INTEREST, params );
     }
 
-    public ExecutionResult friendWorkedWithFriendWithInterests( String userName, int limit, String... interestLabels )
+    public List<Map<String, Object>> friendOfAFriendWithMultipleInterestCoreApi( String userName, int limit,
+                                                                               String... interestLabels )
     {
-        String query = "MATCH (subject:User {name:{name}})\n" +
-                "MATCH p=(subject)-[:WORKED_WITH*0..1]-()-[:WORKED_WITH]-(person)\n" +
-                "        -[:INTERESTED_IN]->(interest)\n" +
-                "WHERE person<>subject AND interest.name IN {interests}\n" +
-                "WITH person, interest, min(length(p)) as pathLength\n" +
-                "RETURN person.name AS name,\n" +
-                "       count(interest) AS score,\n" +
-                "       collect(interest.name) AS interests,\n" +
-                "       (pathLength - 1) AS distance\n" +
-                "ORDER BY score DESC\n" +
-                "LIMIT {resultLimit}";
-
+        return recommendations.friendOfAFriendWithMultipleInterest( userName, limit, interestLabels );
+    }
 
+    public ExecutionResult friendWorkedWithFriendWithInterests( String userName, int limit, String... interestLabels )
+    {
         Map<String, Object> params = new HashMap<String, Object>();
         params.put( "name", userName );
         params.put( "userQuery", "name:" + userName );
@@ -243,32 +296,26 @@ public class SocialNetworkQueries
         builder.append( "]" );
         params.put( "topicQuery", builder.toString() );
 
-        return executionEngineWrapper.execute( query, params );
+        return executionEngineWrapper.execute( FRIEND_WORKED_WITH_FRIEND_WITH_INTERESTS, params );
+    }
+
+    public List<Map<String, Object>> friendWorkedWithFriendWithInterestsCoreApi( String userName, int limit,
+                                                                               String... interestLabels )
+    {
+        return recommendations.friendWorkedWithFriendWithInterests( userName, limit, interestLabels );
     }
 
     // todo no result?
     public ExecutionResult createWorkedWithRelationships( String userName )
     {
-
-        String query = "MATCH (subject:User {name:{name}})\n" +
-                "MATCH (subject)-[:WORKED_ON]->()<-[:WORKED_ON]-(person)\n" +
-                "WHERE NOT((subject)-[:WORKED_WITH]-(person))\n" +
-                "WITH DISTINCT subject, person\n" +
-                "CREATE UNIQUE (subject)-[:WORKED_WITH]-(person)\n" +
-                "RETURN subject.name AS startName, person.name AS endName";
-
-
         Map<String, Object> params = new HashMap<String, Object>();
         params.put( "name", userName );
 
-        return executionEngineWrapper.execute( query, params );
+        return executionEngineWrapper.execute( CREATE_WORKED_WITH_RELATIONSHIPS, params );
     }
 
     public ExecutionResult getAllUsers()
     {
-        String query = "MATCH (subject:User)\n" +
-                "RETURN subject.name AS name";
-
-        return executionEngineWrapper.execute( query, new HashMap<String, Object>() );
+        return executionEngineWrapper.execute( GET_ALL_USERS, new HashMap<String, Object>() );
     }
 }
@@ -0,0 +1,71 @@
+package org.neo4j.graphdatabases.queries.helpers;
+
+import static java.util.Arrays.asList;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes the sub-queries of a union concurrently on a bounded pool of threads, streaming
+ * rows to the caller through a bounded queue as they arrive. Rows from different sub-queries
+ * are interleaved. If <code>maxDistinctRows</code> is greater than zero, duplicate rows are
+ * dropped; once that many distinct rows have been remembered, rows not already seen are passed
+ * through without being remembered, bounding the memory used for de-duplication.
+ */
+public class ConcurrentQueryUnionExecutionEngine extends QueryUnionExecutionEngine
+{
+    private final ExecutionEngineWrapper executionEngine;
+    private final ExecutorService executor;
+    private final int queueCapacity;
+    private final int maxDistinctRows;
+
+    public ConcurrentQueryUnionExecutionEngine( ExecutionEngineWrapper executionEngine, int numberOfThreads,
+                                                int queueCapacity, int maxDistinctRows )
+    {
+        this( executionEngine, Executors.newFixedThreadPool( numberOfThreads, new DaemonThreadFactory() ),
+                queueCapacity, maxDistinctRows );
+    }
+
+    public ConcurrentQueryUnionExecutionEngine( ExecutionEngineWrapper executionEngine, ExecutorService executor,
+                                                int queueCapacity, int maxDistinctRows )
+    {
+        super( executionEngine );
+        this.executionEngine = executionEngine;
+        this.executor = executor;
+        this.queueCapacity = queueCapacity;
+        this.maxDistinctRows = maxDistinctRows;
+    }
+
+    @Override
+    public ConcurrentQueryUnionExecutionResult execute( Map<String, Object> params, String... queries )
+    {
+        if ( queries.length == 0 )
+        {
+            throw new IllegalArgumentException( "Must supply one or more queries." );
+        }
+
+        return new ConcurrentQueryUnionExecutionResult( asList( queries ), executionEngine, params, executor,
+                queueCapacity, maxDistinctRows );
+    }
+
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable runnable )
+        {
+            Thread thread = new Thread( runnable, "query-union-" + threadNumber.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+}
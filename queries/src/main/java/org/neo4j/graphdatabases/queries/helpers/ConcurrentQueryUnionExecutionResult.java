@@ -0,0 +1,328 @@
+package org.neo4j.graphdatabases.queries.helpers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.neo4j.graphdb.ResourceIterator;
+
+/**
+ * Result of a concurrently executed union. The sub-queries start executing as soon as the
+ * result is created. The result can be iterated once only; it is never re-executed.
+ * <p/>
+ * The result is closed once its iterator is exhausted. A caller that stops reading early must
+ * close it, so that the sub-queries stop and release their threads and transactions.
+ */
+public class ConcurrentQueryUnionExecutionResult extends QueryUnionExecutionResult implements AutoCloseable
+{
+    private static final Map<String, Object> END_OF_SUB_QUERY = new HashMap<>();
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private final BlockingQueue<Map<String, Object>> queue;
+    private final int maxDistinctRows;
+    private final List<SubQueryMetrics> metrics = new ArrayList<>();
+    private final List<Future<?>> futures = new ArrayList<>();
+    private final AtomicBoolean iterated = new AtomicBoolean();
+    private volatile RuntimeException failure;
+    private volatile boolean closed;
+
+    public ConcurrentQueryUnionExecutionResult( List<String> queries,
+                                                ExecutionEngineWrapper executionEngine,
+                                                Map<String, Object> params,
+                                                ExecutorService executor,
+                                                int queueCapacity,
+                                                int maxDistinctRows )
+    {
+        super( queries, executionEngine, params );
+        this.queue = new ArrayBlockingQueue<>( queueCapacity );
+        this.maxDistinctRows = maxDistinctRows;
+
+        long startTime = System.nanoTime();
+        for ( int i = 0; i < queries.size(); i++ )
+        {
+            SubQueryMetrics subQueryMetrics = new SubQueryMetrics( queries.get( i ), i + 1, startTime );
+            metrics.add( subQueryMetrics );
+            futures.add( executor.submit( new SubQuery( executionEngine, params, subQueryMetrics ) ) );
+        }
+    }
+
+    @Override
+    public Iterator<Map<String, Object>> iterator()
+    {
+        if ( !iterated.compareAndSet( false, true ) )
+        {
+            throw new IllegalStateException( "Concurrent union results can only be iterated once." );
+        }
+        return new StreamingIterator();
+    }
+
+    public List<SubQueryMetrics> metrics()
+    {
+        return Collections.unmodifiableList( metrics );
+    }
+
+    @Override
+    public void close()
+    {
+        closed = true;
+        for ( Future<?> future : futures )
+        {
+            future.cancel( false );
+        }
+        queue.clear();
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+        for ( SubQueryMetrics subQueryMetrics : metrics )
+        {
+            builder.append( subQueryMetrics ).append( "\n" );
+        }
+        return builder.toString();
+    }
+
+    public static class SubQueryMetrics
+    {
+        private final String query;
+        private final int index;
+        private final long startTime;
+        private volatile long firstRowNanos = -1;
+        private volatile long totalNanos = -1;
+        private volatile long rows;
+
+        private SubQueryMetrics( String query, int index, long startTime )
+        {
+            this.query = query;
+            this.index = index;
+            this.startTime = startTime;
+        }
+
+        public String query()
+        {
+            return query;
+        }
+
+        public int index()
+        {
+            return index;
+        }
+
+        /**
+         * Nanoseconds from submission until the first row was produced, or -1 if no rows were produced.
+         */
+        public long firstRowNanos()
+        {
+            return firstRowNanos;
+        }
+
+        /**
+         * Nanoseconds from submission until the sub-query was exhausted, or -1 if it has not yet finished.
+         */
+        public long totalNanos()
+        {
+            return totalNanos;
+        }
+
+        public long rows()
+        {
+            return rows;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format( "Query %s: %s rows, first row (ms): %.3f, total (ms): %.3f", index, rows,
+                    firstRowNanos / 1000000.0, totalNanos / 1000000.0 );
+        }
+    }
+
+    private class SubQuery implements Runnable
+    {
+        private final ExecutionEngineWrapper executionEngine;
+        private final Map<String, Object> params;
+        private final SubQueryMetrics metrics;
+
+        SubQuery( ExecutionEngineWrapper executionEngine, Map<String, Object> params, SubQueryMetrics metrics )
+        {
+            this.executionEngine = executionEngine;
+            this.params = params;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                try
+                {
+                    if ( !stream() )
+                    {
+                        return;
+                    }
+                }
+                catch ( RuntimeException e )
+                {
+                    failure = e;
+                }
+                offer( END_OF_SUB_QUERY );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Streams the rows of the sub-query to the queue, returning false if the result was closed first.
+         */
+        private boolean stream() throws InterruptedException
+        {
+            if ( closed )
+            {
+                return false;
+            }
+            try ( ResourceIterator<Map<String, Object>> rows =
+                          executionEngine.execute( metrics.query, params, metrics.index ).iterator() )
+            {
+                long count = 0;
+                while ( rows.hasNext() )
+                {
+                    Map<String, Object> row = rows.next();
+                    if ( count == 0 )
+                    {
+                        metrics.firstRowNanos = System.nanoTime() - metrics.startTime;
+                    }
+                    metrics.rows = ++count;
+                    if ( !offer( row ) )
+                    {
+                        return false;
+                    }
+                }
+            }
+            metrics.totalNanos = System.nanoTime() - metrics.startTime;
+            return true;
+        }
+
+        /**
+         * Waits for room in the queue, giving up if the result is closed while waiting.
+         */
+        private boolean offer( Map<String, Object> row ) throws InterruptedException
+        {
+            while ( !queue.offer( row, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS ) )
+            {
+                if ( closed )
+                {
+                    return false;
+                }
+            }
+            return !closed;
+        }
+    }
+
+    private class StreamingIterator implements ResourceIterator<Map<String, Object>>
+    {
+        private final Set<Map<String, Object>> distinctRows = new HashSet<>();
+        private int remainingSubQueries = metrics.size();
+        private Map<String, Object> next;
+
+        @Override
+        public boolean hasNext()
+        {
+            while ( next == null && remainingSubQueries > 0 )
+            {
+                Map<String, Object> row = take();
+                if ( row == END_OF_SUB_QUERY )
+                {
+                    remainingSubQueries--;
+                    if ( failure != null )
+                    {
+                        close();
+                        throw failure;
+                    }
+                    if ( remainingSubQueries == 0 )
+                    {
+                        close();
+                    }
+                }
+                else if ( isNew( row ) )
+                {
+                    next = row;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Map<String, Object> next()
+        {
+            if ( !hasNext() )
+            {
+                throw new NoSuchElementException();
+            }
+            Map<String, Object> row = next;
+            next = null;
+            return row;
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close()
+        {
+            remainingSubQueries = 0;
+            next = null;
+            ConcurrentQueryUnionExecutionResult.this.close();
+        }
+
+        private boolean isNew( Map<String, Object> row )
+        {
+            if ( maxDistinctRows <= 0 )
+            {
+                return true;
+            }
+            if ( distinctRows.size() >= maxDistinctRows )
+            {
+                return !distinctRows.contains( row );
+            }
+            return distinctRows.add( row );
+        }
+
+        private Map<String, Object> take()
+        {
+            try
+            {
+                Map<String, Object> row = queue.poll( OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS );
+                while ( row == null && !closed )
+                {
+                    row = queue.poll( OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS );
+                }
+                return row == null ? END_OF_SUB_QUERY : row;
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                close();
+                throw new IllegalStateException( "Interrupted while waiting for union results.", e );
+            }
+        }
+    }
+}
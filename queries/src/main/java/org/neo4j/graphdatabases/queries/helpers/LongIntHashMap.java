@@ -0,0 +1,116 @@
+package org.neo4j.graphdatabases.queries.helpers;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from long keys to non-negative int values. Lookups do not allocate,
+ * which makes it suitable for mapping node ids to dense ids on hot paths. Long.MIN_VALUE marks
+ * empty slots, so it can't be used as a key.
+ */
+public class LongIntHashMap
+{
+    public static final int NO_VALUE = -1;
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    public LongIntHashMap()
+    {
+        this( 16 );
+    }
+
+    public LongIntHashMap( int expectedSize )
+    {
+        int capacity = Integer.highestOneBit( Math.max( 4, expectedSize ) * 2 - 1 ) * 2;
+        allocate( capacity );
+    }
+
+    public int get( long key )
+    {
+        if ( key == EMPTY )
+        {
+            return NO_VALUE;
+        }
+        int slot = slotFor( key );
+        return keys[slot] == key ? values[slot] : NO_VALUE;
+    }
+
+    public boolean containsKey( long key )
+    {
+        return get( key ) != NO_VALUE;
+    }
+
+    public void put( long key, int value )
+    {
+        if ( key == EMPTY )
+        {
+            throw new IllegalArgumentException( "Key not supported: " + key );
+        }
+        if ( value < 0 )
+        {
+            throw new IllegalArgumentException( "Value must be non-negative: " + value );
+        }
+
+        int slot = slotFor( key );
+        if ( keys[slot] != key )
+        {
+            keys[slot] = key;
+            if ( ++size * 2 > keys.length )
+            {
+                values[slot] = value;
+                rehash( keys.length * 2 );
+                return;
+            }
+        }
+        values[slot] = value;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    private int slotFor( long key )
+    {
+        int slot = hash( key ) & mask;
+        while ( keys[slot] != EMPTY && keys[slot] != key )
+        {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash( int newCapacity )
+    {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate( newCapacity );
+        for ( int i = 0; i < oldKeys.length; i++ )
+        {
+            if ( oldKeys[i] != EMPTY )
+            {
+                int slot = slotFor( oldKeys[i] );
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate( int capacity )
+    {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill( keys, EMPTY );
+        mask = capacity - 1;
+    }
+
+    private static int hash( long key )
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,371 @@
+package org.neo4j.graphdatabases.queries.helpers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.graphdatabases.queries.testing.TestOutputWriter;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.index.Index;
+
+/**
+ * Indexes nodes by the property values of other nodes, using a legacy node index so that
+ * one node can be indexed under many values for the same key.
+ * <p/>
+ * The indexable nodes are split into partitions that are indexed concurrently, each
+ * partition committing its own batches. The partitions' progress is written to the checkpoint
+ * file (if one is supplied) at most once a second, and when a partition finishes or fails, so a
+ * rerun after a failure resumes close to where each partition stopped. Batches committed after
+ * the last checkpoint write are indexed again on resume, so a resumed run removes each node's
+ * entries before adding them. The checkpoint records a fingerprint of the indexable node ids, and
+ * is ignored if the nodes have changed since it was written. The checkpoint file is deleted once
+ * indexing completes.
+ */
+public class ParallelIndexNodeByOtherNodeIndexer
+{
+    private static final long REPORT_INTERVAL_SECONDS = 10;
+
+    private final IndexNodeByOtherNodeIndexer.GraphTraversal findIndexableNodes;
+    private final IndexNodeByOtherNodeIndexer.GraphTraversal findOtherNodesForIndexableNode;
+    private final String indexName;
+    private final String indexKey;
+    private final String nodeToIndexByPropertyName;
+
+    private final AtomicLong nodesIndexed = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+
+    public ParallelIndexNodeByOtherNodeIndexer( IndexNodeByOtherNodeIndexer.GraphTraversal findIndexableNodes,
+                                                IndexNodeByOtherNodeIndexer.GraphTraversal
+                                                        findOtherNodesForIndexableNode,
+                                                String indexName, String indexKey,
+                                                String nodeToIndexByPropertyName )
+    {
+        this.findIndexableNodes = findIndexableNodes;
+        this.findOtherNodesForIndexableNode = findOtherNodesForIndexableNode;
+        this.indexName = indexName;
+        this.indexKey = indexKey;
+        this.nodeToIndexByPropertyName = nodeToIndexByPropertyName;
+    }
+
+    public void execute( GraphDatabaseService db, Node startNode, int batchSize, int numberOfThreads,
+                         File checkpointFile, TestOutputWriter writer )
+    {
+        createIndex( db );
+        long[] nodeIds = findIndexableNodeIds( db, startNode );
+        int numberOfPartitions = Math.max( 1, Math.min( numberOfThreads * 4, nodeIds.length ) );
+        Checkpoint checkpoint = Checkpoint.load( checkpointFile, nodeIds, numberOfPartitions, writer );
+
+        nodesIndexed.set( 0 );
+        writes.set( 0 );
+        final long startTime = System.nanoTime();
+
+        ExecutorService executor = Executors.newFixedThreadPool( numberOfThreads );
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate( new ProgressReport( writer, startTime ), REPORT_INTERVAL_SECONDS,
+                REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS );
+        try
+        {
+            List<Future<Void>> futures = new ArrayList<>();
+            for ( int partition = 0; partition < numberOfPartitions; partition++ )
+            {
+                int from = (int) ((long) nodeIds.length * partition / numberOfPartitions);
+                int to = (int) ((long) nodeIds.length * (partition + 1) / numberOfPartitions);
+                futures.add( executor.submit(
+                        new PartitionIndexer( db, nodeIds, from, to, partition, batchSize, checkpoint ) ) );
+            }
+            for ( Future<Void> future : futures )
+            {
+                future.get();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted while indexing. Rerun to resume from checkpoint.", e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new RuntimeException( "Indexing failed. Rerun to resume from checkpoint.", e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+            reporter.shutdownNow();
+        }
+
+        new ProgressReport( writer, startTime ).run();
+        checkpoint.delete();
+    }
+
+    public long nodesIndexed()
+    {
+        return nodesIndexed.get();
+    }
+
+    public long writes()
+    {
+        return writes.get();
+    }
+
+    /**
+     * Returns a fingerprint of sorted node ids: the lowest and highest id, and a hash of all of them.
+     */
+    static String fingerprint( long[] nodeIds )
+    {
+        long hash = 0xCBF29CE484222325L;
+        for ( long nodeId : nodeIds )
+        {
+            hash = (hash ^ nodeId) * 0x100000001B3L;
+        }
+        return nodeIds.length == 0 ? "empty" :
+                String.format( "%s-%s-%016x", nodeIds[0], nodeIds[nodeIds.length - 1], hash );
+    }
+
+    private void createIndex( GraphDatabaseService db )
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            db.index().forNodes( indexName );
+            tx.success();
+        }
+    }
+
+    private long[] findIndexableNodeIds( GraphDatabaseService db, Node startNode )
+    {
+        List<Long> ids = new ArrayList<>();
+        try ( Transaction tx = db.beginTx() )
+        {
+            for ( Node node : findIndexableNodes.execute( startNode ) )
+            {
+                ids.add( node.getId() );
+            }
+            tx.success();
+        }
+
+        long[] results = new long[ids.size()];
+        for ( int i = 0; i < results.length; i++ )
+        {
+            results[i] = ids.get( i );
+        }
+        Arrays.sort( results );
+        return results;
+    }
+
+    private class PartitionIndexer implements Callable<Void>
+    {
+        private final GraphDatabaseService db;
+        private final long[] nodeIds;
+        private final int from;
+        private final int to;
+        private final int partition;
+        private final int batchSize;
+        private final Checkpoint checkpoint;
+
+        PartitionIndexer( GraphDatabaseService db, long[] nodeIds, int from, int to, int partition,
+                          int batchSize, Checkpoint checkpoint )
+        {
+            this.db = db;
+            this.nodeIds = nodeIds;
+            this.from = from;
+            this.to = to;
+            this.partition = partition;
+            this.batchSize = batchSize;
+            this.checkpoint = checkpoint;
+        }
+
+        @Override
+        public Void call() throws Exception
+        {
+            int position = from + checkpoint.completed( partition );
+            try
+            {
+                while ( position < to )
+                {
+                    int batchWrites = 0;
+                    int batchNodes = 0;
+                    try ( Transaction tx = db.beginTx() )
+                    {
+                        Index<Node> index = db.index().forNodes( indexName );
+                        while ( position + batchNodes < to && batchWrites < batchSize )
+                        {
+                            Node indexableNode = db.getNodeById( nodeIds[position + batchNodes] );
+                            if ( checkpoint.resumed() )
+                            {
+                                index.remove( indexableNode, indexKey );
+                            }
+                            for ( Node node : findOtherNodesForIndexableNode.execute( indexableNode ) )
+                            {
+                                index.add( indexableNode, indexKey, node.getProperty( nodeToIndexByPropertyName ) );
+                                batchWrites++;
+                            }
+                            batchNodes++;
+                        }
+                        tx.success();
+                    }
+                    position += batchNodes;
+                    nodesIndexed.addAndGet( batchNodes );
+                    writes.addAndGet( batchWrites );
+                    checkpoint.update( partition, position - from );
+                }
+            }
+            finally
+            {
+                checkpoint.flush();
+            }
+            return null;
+        }
+    }
+
+    private class ProgressReport implements Runnable
+    {
+        private final TestOutputWriter writer;
+        private final long startTime;
+
+        ProgressReport( TestOutputWriter writer, long startTime )
+        {
+            this.writer = writer;
+            this.startTime = startTime;
+        }
+
+        @Override
+        public void run()
+        {
+            double seconds = Math.max( 1, System.nanoTime() - startTime ) / 1000000000.0;
+            long nodes = nodesIndexed.get();
+            long indexWrites = writes.get();
+            writer.writeln( String.format( "Indexed %s nodes (%.1f nodes/s), %s writes (%.1f writes/s) into '%s'",
+                    nodes, nodes / seconds, indexWrites, indexWrites / seconds, indexName ) );
+        }
+    }
+
+    private static class Checkpoint
+    {
+        private static final String NODES = "nodes";
+        private static final String PARTITIONS = "partitions";
+        private static final String FINGERPRINT = "fingerprint";
+        private static final String PARTITION_PREFIX = "partition.";
+
+        private static final long WRITE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos( 1 );
+
+        private final File file;
+        private final Properties properties;
+        private final boolean resumed;
+        private long lastWrite = System.nanoTime();
+        private boolean dirty;
+
+        static Checkpoint load( File file, long[] nodeIds, int numberOfPartitions, TestOutputWriter writer )
+        {
+            String numberOfNodes = String.valueOf( nodeIds.length );
+            boolean resumed = false;
+            String fingerprint = fingerprint( nodeIds );
+            Properties properties = new Properties();
+            if ( file != null && file.exists() )
+            {
+                try ( InputStream in = new FileInputStream( file ) )
+                {
+                    properties.load( in );
+                }
+                catch ( IOException e )
+                {
+                    throw new IllegalStateException( "Unable to read checkpoint file " + file, e );
+                }
+
+                if ( numberOfNodes.equals( properties.getProperty( NODES ) ) &&
+                        fingerprint.equals( properties.getProperty( FINGERPRINT ) ) &&
+                        String.valueOf( numberOfPartitions ).equals( properties.getProperty( PARTITIONS ) ) )
+                {
+                    writer.writeln( "Resuming indexing from checkpoint " + file );
+                    resumed = true;
+                }
+                else
+                {
+                    writer.writeln( "Ignoring checkpoint " + file + " because the indexable nodes have changed" );
+                    properties.clear();
+                }
+            }
+            properties.setProperty( NODES, numberOfNodes );
+            properties.setProperty( FINGERPRINT, fingerprint );
+            properties.setProperty( PARTITIONS, String.valueOf( numberOfPartitions ) );
+            return new Checkpoint( file, properties, resumed );
+        }
+
+        private Checkpoint( File file, Properties properties, boolean resumed )
+        {
+            this.file = file;
+            this.properties = properties;
+            this.resumed = resumed;
+        }
+
+        /**
+         * Whether this run resumes an earlier one, which may have indexed nodes past its checkpoint.
+         */
+        boolean resumed()
+        {
+            return resumed;
+        }
+
+        synchronized int completed( int partition )
+        {
+            return Integer.parseInt( properties.getProperty( PARTITION_PREFIX + partition, "0" ) );
+        }
+
+        synchronized void update( int partition, int completed )
+        {
+            properties.setProperty( PARTITION_PREFIX + partition, String.valueOf( completed ) );
+            dirty = true;
+            if ( System.nanoTime() - lastWrite >= WRITE_INTERVAL_NANOS )
+            {
+                flush();
+            }
+        }
+
+        synchronized void flush()
+        {
+            if ( file == null || !dirty )
+            {
+                return;
+            }
+
+            File tempFile = new File( file.getPath() + ".tmp" );
+            try ( OutputStream out = new FileOutputStream( tempFile ) )
+            {
+                properties.store( out, "IndexNodeByOtherNodeIndexer checkpoint" );
+            }
+            catch ( IOException e )
+            {
+                throw new IllegalStateException( "Unable to write checkpoint file " + tempFile, e );
+            }
+            if ( !tempFile.renameTo( file ) && !(file.delete() && tempFile.renameTo( file )) )
+            {
+                throw new IllegalStateException( "Unable to replace checkpoint file " + file );
+            }
+            lastWrite = System.nanoTime();
+            dirty = false;
+        }
+
+        synchronized void delete()
+        {
+            if ( file != null && file.exists() && !file.delete() )
+            {
+                throw new IllegalStateException( "Unable to delete checkpoint file " + file );
+            }
+        }
+    }
+}
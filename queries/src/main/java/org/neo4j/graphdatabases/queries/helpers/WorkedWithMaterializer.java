@@ -0,0 +1,476 @@
+package org.neo4j.graphdatabases.queries.helpers;
+
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.graphdatabases.queries.testing.TestOutputWriter;
+import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+/**
+ * Creates a WORKED_WITH relationship between every pair of users who have WORKED_ON the same
+ * project and aren't already connected by WORKED_WITH, in either direction. New relationships run
+ * from the user with the lower node id to the user with the higher.
+ * <p/>
+ * {@link #materializeAll()} reads the members of every project into sorted id arrays, then finds
+ * each user's missing colleagues in partitions that run concurrently. {@link #materializeTouched()}
+ * does the same for only the users that have gained WORKED_ON relationships since
+ * {@link #startTracking()}, reading their projects from the graph. Either way, the relationships
+ * are written by the calling thread, partition by partition, in transactions of batchSize
+ * relationships: concurrent writers would lock the same user nodes in different orders and
+ * deadlock.
+ */
+public class WorkedWithMaterializer
+{
+    private static final long REPORT_INTERVAL_SECONDS = 10;
+
+    private static final Label PROJECT = DynamicLabel.label( "Project" );
+    private static final RelationshipType WORKED_ON = withName( "WORKED_ON" );
+    private static final RelationshipType WORKED_WITH = withName( "WORKED_WITH" );
+
+    private final GraphDatabaseService db;
+    private final int batchSize;
+    private final int numberOfThreads;
+    private final TestOutputWriter writer;
+
+    private final Set<Long> touchedUsers = Collections.newSetFromMap( new ConcurrentHashMap<Long, Boolean>() );
+    private final TransactionEventHandler<Void> tracker = new WorkedOnTracker();
+
+    private final AtomicLong usersProcessed = new AtomicLong();
+    private final AtomicLong relationshipsCreated = new AtomicLong();
+
+    public WorkedWithMaterializer( GraphDatabaseService db, int batchSize, int numberOfThreads,
+                                   TestOutputWriter writer )
+    {
+        this.db = db;
+        this.batchSize = batchSize;
+        this.numberOfThreads = numberOfThreads;
+        this.writer = writer;
+    }
+
+    /**
+     * Returns the number of WORKED_WITH relationships created.
+     */
+    public long materializeAll()
+    {
+        ProjectMembership membership;
+        try ( Transaction tx = db.beginTx() )
+        {
+            membership = new ProjectMembership( db );
+            tx.success();
+        }
+        writer.writeln( String.format( "Read %s projects with %s members", membership.projectMembers.length,
+                membership.userIds.length ) );
+        return materialize( membership );
+    }
+
+    /**
+     * Records the users that gain WORKED_ON relationships, until {@link #stopTracking()}.
+     */
+    public void startTracking()
+    {
+        db.registerTransactionEventHandler( tracker );
+    }
+
+    public void stopTracking()
+    {
+        db.unregisterTransactionEventHandler( tracker );
+    }
+
+    /**
+     * Creates the missing WORKED_WITH relationships of the users that have gained WORKED_ON
+     * relationships since tracking started or the last call, and returns the number created.
+     */
+    public long materializeTouched()
+    {
+        List<Long> touched = new ArrayList<>( touchedUsers );
+        touchedUsers.removeAll( touched );
+        long[] userIds = new long[touched.size()];
+        for ( int i = 0; i < userIds.length; i++ )
+        {
+            userIds[i] = touched.get( i );
+        }
+        Arrays.sort( userIds );
+        return materialize( new TouchedUsers( db, userIds ) );
+    }
+
+    public long usersProcessed()
+    {
+        return usersProcessed.get();
+    }
+
+    public long relationshipsCreated()
+    {
+        return relationshipsCreated.get();
+    }
+
+    private long materialize( final ColleagueFinder finder )
+    {
+        usersProcessed.set( 0 );
+        relationshipsCreated.set( 0 );
+        final long startTime = System.nanoTime();
+
+        int numberOfUsers = finder.numberOfUsers();
+        int numberOfPartitions = Math.max( 1, Math.min( numberOfThreads * 4, numberOfUsers ) );
+        ExecutorService executor = Executors.newFixedThreadPool( numberOfThreads );
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate( new ProgressReport( startTime ), REPORT_INTERVAL_SECONDS,
+                REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS );
+        try
+        {
+            List<Future<LongArray>> futures = new ArrayList<>();
+            for ( int partition = 0; partition < numberOfPartitions; partition++ )
+            {
+                final int from = (int) ((long) numberOfUsers * partition / numberOfPartitions);
+                final int to = (int) ((long) numberOfUsers * (partition + 1) / numberOfPartitions);
+                futures.add( executor.submit( new Callable<LongArray>()
+                {
+                    @Override
+                    public LongArray call() throws Exception
+                    {
+                        try ( Transaction tx = db.beginTx() )
+                        {
+                            LongArray pairs = finder.findMissingPairs( from, to );
+                            tx.success();
+                            usersProcessed.addAndGet( to - from );
+                            return pairs;
+                        }
+                    }
+                } ) );
+            }
+            for ( Future<LongArray> future : futures )
+            {
+                write( future.get() );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted while creating WORKED_WITH relationships", e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new RuntimeException( "Unable to find missing WORKED_WITH relationships", e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+            reporter.shutdownNow();
+        }
+
+        new ProgressReport( startTime ).run();
+        return relationshipsCreated.get();
+    }
+
+    private void write( LongArray pairs )
+    {
+        int position = 0;
+        while ( position < pairs.size() )
+        {
+            int end = Math.min( pairs.size(), position + batchSize * 2 );
+            try ( Transaction tx = db.beginTx() )
+            {
+                for ( int i = position; i < end; i += 2 )
+                {
+                    db.getNodeById( pairs.get( i ) ).createRelationshipTo( db.getNodeById( pairs.get( i + 1 ) ),
+                            WORKED_WITH );
+                }
+                tx.success();
+            }
+            relationshipsCreated.addAndGet( (end - position) / 2 );
+            position = end;
+        }
+    }
+
+    private static long[] sortedIds( Node node, RelationshipType type, Direction direction )
+    {
+        LongArray ids = new LongArray();
+        for ( Relationship relationship : node.getRelationships( type, direction ) )
+        {
+            ids.add( relationship.getOtherNode( node ).getId() );
+        }
+        return ids.sortedDistinct();
+    }
+
+    private interface ColleagueFinder
+    {
+        int numberOfUsers();
+
+        /**
+         * Returns (lower id, higher id) pairs of colleagues without a WORKED_WITH relationship,
+         * for the users in [from, to).
+         */
+        LongArray findMissingPairs( int from, int to );
+    }
+
+    private static class ProjectMembership implements ColleagueFinder
+    {
+        private final long[][] projectMembers;
+        private final long[] userIds;
+        private final int[][] userProjects;
+        private final GraphDatabaseService db;
+
+        ProjectMembership( GraphDatabaseService db )
+        {
+            this.db = db;
+            List<long[]> members = new ArrayList<>();
+            for ( Node project : GlobalGraphOperations.at( db ).getAllNodesWithLabel( PROJECT ) )
+            {
+                members.add( sortedIds( project, WORKED_ON, Direction.INCOMING ) );
+            }
+            projectMembers = members.toArray( new long[members.size()][] );
+
+            LongArray allMembers = new LongArray();
+            for ( long[] projectMemberIds : projectMembers )
+            {
+                allMembers.addAll( projectMemberIds );
+            }
+            userIds = allMembers.sortedDistinct();
+
+            int[] counts = new int[userIds.length];
+            for ( long[] projectMemberIds : projectMembers )
+            {
+                for ( long userId : projectMemberIds )
+                {
+                    counts[Arrays.binarySearch( userIds, userId )]++;
+                }
+            }
+            userProjects = new int[userIds.length][];
+            for ( int user = 0; user < userIds.length; user++ )
+            {
+                userProjects[user] = new int[counts[user]];
+                counts[user] = 0;
+            }
+            for ( int project = 0; project < projectMembers.length; project++ )
+            {
+                for ( long userId : projectMembers[project] )
+                {
+                    int user = Arrays.binarySearch( userIds, userId );
+                    userProjects[user][counts[user]++] = project;
+                }
+            }
+        }
+
+        @Override
+        public int numberOfUsers()
+        {
+            return userIds.length;
+        }
+
+        @Override
+        public LongArray findMissingPairs( int from, int to )
+        {
+            LongArray pairs = new LongArray();
+            LongArray colleagues = new LongArray();
+            for ( int user = from; user < to; user++ )
+            {
+                long userId = userIds[user];
+                colleagues.clear();
+                for ( int project : userProjects[user] )
+                {
+                    long[] members = projectMembers[project];
+                    // Members are sorted, so the higher ids follow the user's own
+                    for ( int i = Arrays.binarySearch( members, userId ) + 1; i < members.length; i++ )
+                    {
+                        colleagues.add( members[i] );
+                    }
+                }
+                if ( colleagues.size() == 0 )
+                {
+                    continue;
+                }
+                long[] existing = sortedIds( db.getNodeById( userId ), WORKED_WITH, Direction.BOTH );
+                for ( long colleagueId : colleagues.sortedDistinct() )
+                {
+                    if ( Arrays.binarySearch( existing, colleagueId ) < 0 )
+                    {
+                        pairs.add( userId );
+                        pairs.add( colleagueId );
+                    }
+                }
+            }
+            return pairs;
+        }
+    }
+
+    private static class TouchedUsers implements ColleagueFinder
+    {
+        private final GraphDatabaseService db;
+        private final long[] userIds;
+        private final Map<Long, long[]> projectMembers = new ConcurrentHashMap<>();
+
+        TouchedUsers( GraphDatabaseService db, long[] userIds )
+        {
+            this.db = db;
+            this.userIds = userIds;
+        }
+
+        @Override
+        public int numberOfUsers()
+        {
+            return userIds.length;
+        }
+
+        @Override
+        public LongArray findMissingPairs( int from, int to )
+        {
+            LongArray pairs = new LongArray();
+            LongArray colleagues = new LongArray();
+            for ( int user = from; user < to; user++ )
+            {
+                long userId = userIds[user];
+                Node node = db.getNodeById( userId );
+                colleagues.clear();
+                for ( Relationship workedOn : node.getRelationships( WORKED_ON, Direction.OUTGOING ) )
+                {
+                    colleagues.addAll( members( workedOn.getEndNode() ) );
+                }
+                long[] existing = sortedIds( node, WORKED_WITH, Direction.BOTH );
+                for ( long colleagueId : colleagues.sortedDistinct() )
+                {
+                    // A pair of touched users is created by the user with the lower id
+                    boolean createdByColleague =
+                            colleagueId < userId && Arrays.binarySearch( userIds, colleagueId ) >= 0;
+                    if ( colleagueId != userId && !createdByColleague &&
+                            Arrays.binarySearch( existing, colleagueId ) < 0 )
+                    {
+                        pairs.add( Math.min( userId, colleagueId ) );
+                        pairs.add( Math.max( userId, colleagueId ) );
+                    }
+                }
+            }
+            return pairs;
+        }
+
+        private long[] members( Node project )
+        {
+            long[] members = projectMembers.get( project.getId() );
+            if ( members == null )
+            {
+                members = sortedIds( project, WORKED_ON, Direction.INCOMING );
+                projectMembers.put( project.getId(), members );
+            }
+            return members;
+        }
+    }
+
+    private static class LongArray
+    {
+        private long[] values = new long[16];
+        private int size;
+
+        void add( long value )
+        {
+            if ( size == values.length )
+            {
+                values = Arrays.copyOf( values, size * 2 );
+            }
+            values[size++] = value;
+        }
+
+        void addAll( long[] more )
+        {
+            if ( size + more.length > values.length )
+            {
+                values = Arrays.copyOf( values, Math.max( size * 2, size + more.length ) );
+            }
+            System.arraycopy( more, 0, values, size, more.length );
+            size += more.length;
+        }
+
+        long get( int index )
+        {
+            return values[index];
+        }
+
+        int size()
+        {
+            return size;
+        }
+
+        void clear()
+        {
+            size = 0;
+        }
+
+        long[] sortedDistinct()
+        {
+            long[] sorted = Arrays.copyOf( values, size );
+            Arrays.sort( sorted );
+            int distinct = 0;
+            for ( int i = 0; i < sorted.length; i++ )
+            {
+                if ( i == 0 || sorted[i] != sorted[i - 1] )
+                {
+                    sorted[distinct++] = sorted[i];
+                }
+            }
+            return distinct == sorted.length ? sorted : Arrays.copyOf( sorted, distinct );
+        }
+    }
+
+    private class ProgressReport implements Runnable
+    {
+        private final long startTime;
+
+        ProgressReport( long startTime )
+        {
+            this.startTime = startTime;
+        }
+
+        @Override
+        public void run()
+        {
+            double seconds = Math.max( 1, System.nanoTime() - startTime ) / 1000000000.0;
+            long users = usersProcessed.get();
+            long relationships = relationshipsCreated.get();
+            writer.writeln( String.format(
+                    "Processed %s users (%.1f users/s), created %s WORKED_WITH relationships (%.1f/s)",
+                    users, users / seconds, relationships, relationships / seconds ) );
+        }
+    }
+
+    private class WorkedOnTracker implements TransactionEventHandler<Void>
+    {
+        @Override
+        public Void beforeCommit( TransactionData data ) throws Exception
+        {
+            return null;
+        }
+
+        @Override
+        public void afterCommit( TransactionData data, Void state )
+        {
+            for ( Relationship relationship : data.createdRelationships() )
+            {
+                if ( relationship.isType( WORKED_ON ) )
+                {
+                    touchedUsers.add( relationship.getStartNode().getId() );
+                }
+            }
+        }
+
+        @Override
+        public void afterRollback( TransactionData data, Void state )
+        {
+            // Do nothing
+        }
+    }
+}
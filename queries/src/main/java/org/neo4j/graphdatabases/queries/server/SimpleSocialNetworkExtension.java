@@ -1,17 +1,27 @@
 package org.neo4j.graphdatabases.queries.server;
 
+import java.util.Iterator;
+
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
 
 import org.neo4j.cypher.javacompat.ExecutionResult;
 import org.neo4j.graphdatabases.queries.SimpleSocialNetworkQueries;
+import org.neo4j.graphdatabases.queries.traversals.BidirectionalFriendSearch;
 import org.neo4j.graphdb.GraphDatabaseService;
 
 @Path("/distance")
 public class SimpleSocialNetworkExtension
 {
+    public static final String CYPHER = "cypher";
+    public static final String BIDIRECTIONAL = "bidirectional";
+
     private final  SimpleSocialNetworkQueries queries;
 
     public SimpleSocialNetworkExtension( @Context GraphDatabaseService db )
@@ -21,10 +31,35 @@ public class SimpleSocialNetworkExtension
 
     @GET
     @Path("/{name1}/{name2}")
-    public String getDistance  ( @PathParam("name1") String name1, @PathParam("name2") String name2 )
+    public String getDistance  ( @PathParam("name1") String name1, @PathParam("name2") String name2,
+                                 @QueryParam("algorithm") @DefaultValue(CYPHER) String algorithm )
     {
+        if ( BIDIRECTIONAL.equals( algorithm ) )
+        {
+            int depth = queries.pathBetweenTwoFriendsCoreApi( name1, name2 );
+            if ( depth == BidirectionalFriendSearch.NO_PATH )
+            {
+                throw new WebApplicationException( Response.Status.NOT_FOUND );
+            }
+            return String.valueOf( depth );
+        }
+        if ( !CYPHER.equals( algorithm ) )
+        {
+            throw new WebApplicationException( Response.status( Response.Status.BAD_REQUEST )
+                    .entity( "Unknown algorithm: " + algorithm ).build() );
+        }
+
         ExecutionResult result = queries.pathBetweenTwoFriends( name1, name2 );
+        Iterator<Object> depths = result.columnAs( "depth" );
+        if ( !depths.hasNext() )
+        {
+            throw new WebApplicationException( Response.Status.NOT_FOUND );
+        }
+        return String.valueOf( depths.next() );
+    }
 
-        return String.valueOf( result.columnAs( "depth" ).next() );
+    public String getDistance( String name1, String name2 )
+    {
+        return getDistance( name1, name2, CYPHER );
     }
 }
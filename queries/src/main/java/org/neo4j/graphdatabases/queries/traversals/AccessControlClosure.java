@@ -0,0 +1,508 @@
+package org.neo4j.graphdatabases.queries.traversals;
+
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.cypher.javacompat.ExecutionResult;
+import org.neo4j.graphdatabases.queries.AccessControlQueries;
+import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.helpers.collection.IteratorUtil;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+/**
+ * In-memory closure of effective administrator to company grants. Grants are
+ * computed once per administrator and invalidated whenever a committed transaction
+ * touches MEMBER_OF, ALLOWED_INHERIT, ALLOWED_DO_NOT_INHERIT, DENIED or CHILD_OF.
+ * <p/>
+ * When constructed with an {@link AccessControlQueries} instance, every answer is
+ * checked against the equivalent Cypher query, and any difference results in an
+ * IllegalStateException.
+ */
+public class AccessControlClosure
+{
+    public static final Label ADMINISTRATOR = DynamicLabel.label( "Administrator" );
+    public static final Label COMPANY = DynamicLabel.label( "Company" );
+    public static final Label RESOURCE = DynamicLabel.label( "Resource" );
+
+    private static final RelationshipType MEMBER_OF = withName( "MEMBER_OF" );
+    private static final RelationshipType ALLOWED_INHERIT = withName( "ALLOWED_INHERIT" );
+    private static final RelationshipType ALLOWED_DO_NOT_INHERIT = withName( "ALLOWED_DO_NOT_INHERIT" );
+    private static final RelationshipType DENIED = withName( "DENIED" );
+    private static final RelationshipType CHILD_OF = withName( "CHILD_OF" );
+    private static final RelationshipType WORKS_FOR = withName( "WORKS_FOR" );
+    private static final RelationshipType HAS_ACCOUNT = withName( "HAS_ACCOUNT" );
+
+    private final GraphDatabaseService db;
+    private final AccessControlQueries consistencyCheck;
+    private final ConcurrentMap<Long, AdminGrants> grants = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private final TransactionEventHandler<Set<Long>> maintainer = new ClosureMaintainer();
+
+    public AccessControlClosure( GraphDatabaseService db )
+    {
+        this( db, null );
+    }
+
+    public AccessControlClosure( GraphDatabaseService db, AccessControlQueries consistencyCheck )
+    {
+        this.db = db;
+        this.consistencyCheck = consistencyCheck;
+        db.registerTransactionEventHandler( maintainer );
+    }
+
+    public AccessControlClosure build()
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            for ( Node admin : GlobalGraphOperations.at( db ).getAllNodesWithLabel( ADMINISTRATOR ) )
+            {
+                grantsFor( admin );
+            }
+            tx.success();
+        }
+        return this;
+    }
+
+    public void stopMaintaining()
+    {
+        db.unregisterTransactionEventHandler( maintainer );
+        grants.clear();
+    }
+
+    public int numberOfCachedAdministrators()
+    {
+        return grants.size();
+    }
+
+    public List<Map<String, Object>> findAccessibleCompanies( String adminName )
+    {
+        List<Map<String, Object>> results = new ArrayList<>();
+        try ( Transaction tx = db.beginTx() )
+        {
+            Node admin = findNode( ADMINISTRATOR, adminName );
+            if ( admin != null )
+            {
+                for ( long companyId : grantsFor( admin ).companies )
+                {
+                    results.add( row( "company", db.getNodeById( companyId ).getProperty( "name" ) ) );
+                }
+            }
+            if ( consistencyCheck != null )
+            {
+                verify( "findAccessibleCompanies(" + adminName + ")", results,
+                        consistencyCheck.findAccessibleCompanies( adminName ) );
+            }
+            tx.success();
+        }
+        return results;
+    }
+
+    public List<Map<String, Object>> findAccessibleResources( String adminName )
+    {
+        Set<Map<String, Object>> results = new LinkedHashSet<>();
+        try ( Transaction tx = db.beginTx() )
+        {
+            Node admin = findNode( ADMINISTRATOR, adminName );
+            if ( admin != null )
+            {
+                for ( long companyId : grantsFor( admin ).companies )
+                {
+                    addAccounts( db.getNodeById( companyId ), results, true );
+                }
+            }
+            if ( consistencyCheck != null )
+            {
+                verify( "findAccessibleResources(" + adminName + ")", results,
+                        consistencyCheck.findAccessibleResources( adminName ) );
+            }
+            tx.success();
+        }
+        return new ArrayList<>( results );
+    }
+
+    public List<Map<String, Object>> findAccessibleAccountsForCompany( String adminName, String companyName )
+    {
+        Set<Map<String, Object>> results = new LinkedHashSet<>();
+        try ( Transaction tx = db.beginTx() )
+        {
+            Node admin = findNode( ADMINISTRATOR, adminName );
+            Node company = findNode( COMPANY, companyName );
+            if ( admin != null && company != null )
+            {
+                AdminGrants adminGrants = grantsFor( admin );
+                if ( contains( adminGrants.inheritRoots, company.getId() ) )
+                {
+                    for ( Node subcompany : CompanyHierarchy.descendants( company ) )
+                    {
+                        if ( !contains( adminGrants.denied, subcompany.getId() ) )
+                        {
+                            addAccounts( subcompany, results, false );
+                        }
+                    }
+                }
+                if ( contains( adminGrants.doNotInherit, company.getId() ) )
+                {
+                    addAccounts( company, results, false );
+                }
+            }
+            if ( consistencyCheck != null )
+            {
+                verify( "findAccessibleAccountsForCompany(" + adminName + ", " + companyName + ")", results,
+                        consistencyCheck.findAccessibleAccountsForCompany( adminName, companyName ) );
+            }
+            tx.success();
+        }
+        return new ArrayList<>( results );
+    }
+
+    public List<Map<String, Object>> findAdminForCompany( String companyName )
+    {
+        List<Map<String, Object>> results = new ArrayList<>();
+        try ( Transaction tx = db.beginTx() )
+        {
+            Node company = findNode( COMPANY, companyName );
+            if ( company != null )
+            {
+                addAdminsWithAccessToAnyOf( Arrays.asList( company.getId() ), results );
+            }
+            if ( consistencyCheck != null )
+            {
+                verify( "findAdminForCompany(" + companyName + ")", results,
+                        consistencyCheck.findAdminForCompany( companyName ) );
+            }
+            tx.success();
+        }
+        return results;
+    }
+
+    public List<Map<String, Object>> findAdminForResource( String resourceName )
+    {
+        List<Map<String, Object>> results = new ArrayList<>();
+        try ( Transaction tx = db.beginTx() )
+        {
+            Node resource = findNode( RESOURCE, resourceName );
+            if ( resource != null )
+            {
+                addAdminsWithAccessToAnyOf( companiesForResource( resource ), results );
+            }
+            if ( consistencyCheck != null )
+            {
+                verify( "findAdminForResource(" + resourceName + ")", results,
+                        consistencyCheck.findAdminForResource( resourceName ) );
+            }
+            tx.success();
+        }
+        return results;
+    }
+
+    public boolean hasAccessToResource( String adminName, String resourceName )
+    {
+        boolean hasAccess = false;
+        try ( Transaction tx = db.beginTx() )
+        {
+            Node admin = findNode( ADMINISTRATOR, adminName );
+            Node resource = findNode( RESOURCE, resourceName );
+            if ( admin != null && resource != null )
+            {
+                AdminGrants adminGrants = grantsFor( admin );
+                for ( Long companyId : companiesForResource( resource ) )
+                {
+                    if ( contains( adminGrants.companies, companyId ) )
+                    {
+                        hasAccess = true;
+                        break;
+                    }
+                }
+            }
+            if ( consistencyCheck != null )
+            {
+                boolean cypherHasAccess = false;
+                Iterator<Long> accessCounts = consistencyCheck.hasAccessToResource( adminName, resourceName )
+                        .columnAs( "accessCount" );
+                while ( accessCounts.hasNext() )
+                {
+                    cypherHasAccess |= accessCounts.next() > 0L;
+                }
+                if ( hasAccess != cypherHasAccess )
+                {
+                    throw new IllegalStateException( String.format(
+                            "hasAccessToResource(%s, %s): closure returned %s, Cypher returned %s",
+                            adminName, resourceName, hasAccess, cypherHasAccess ) );
+                }
+            }
+            tx.success();
+        }
+        return hasAccess;
+    }
+
+    private AdminGrants grantsFor( Node admin )
+    {
+        AdminGrants adminGrants = grants.get( admin.getId() );
+        if ( adminGrants != null )
+        {
+            return adminGrants;
+        }
+
+        long versionAtStart = version.get();
+        adminGrants = computeGrants( admin );
+        if ( version.get() == versionAtStart )
+        {
+            AdminGrants existing = grants.putIfAbsent( admin.getId(), adminGrants );
+            if ( existing != null )
+            {
+                return existing;
+            }
+            // A commit between the version check and the put may already have invalidated the admin,
+            // in which case the grants must not stay cached
+            if ( version.get() != versionAtStart )
+            {
+                grants.remove( admin.getId(), adminGrants );
+            }
+        }
+        return adminGrants;
+    }
+
+    private AdminGrants computeGrants( Node admin )
+    {
+        Set<Long> inheritRoots = new HashSet<>();
+        Set<Long> inherited = new HashSet<>();
+        Set<Long> doNotInherit = new HashSet<>();
+        Set<Long> denied = new HashSet<>();
+
+        for ( Relationship memberOf : admin.getRelationships( MEMBER_OF, Direction.OUTGOING ) )
+        {
+            Node group = memberOf.getEndNode();
+            for ( Relationship allowed : group.getRelationships( ALLOWED_INHERIT, Direction.OUTGOING ) )
+            {
+                Node company = allowed.getEndNode();
+                inheritRoots.add( company.getId() );
+                for ( Node subcompany : CompanyHierarchy.descendants( company ) )
+                {
+                    inherited.add( subcompany.getId() );
+                }
+            }
+            for ( Relationship allowed : group.getRelationships( ALLOWED_DO_NOT_INHERIT, Direction.OUTGOING ) )
+            {
+                doNotInherit.add( allowed.getEndNode().getId() );
+            }
+            for ( Relationship deny : group.getRelationships( DENIED, Direction.OUTGOING ) )
+            {
+                for ( Node subcompany : CompanyHierarchy.descendants( deny.getEndNode() ) )
+                {
+                    denied.add( subcompany.getId() );
+                }
+            }
+        }
+
+        Set<Long> companies = new HashSet<>( inherited );
+        companies.removeAll( denied );
+        companies.addAll( doNotInherit );
+
+        return new AdminGrants( toSortedArray( companies ), toSortedArray( inheritRoots ),
+                toSortedArray( doNotInherit ), toSortedArray( denied ) );
+    }
+
+    private Collection<Long> companiesForResource( Node resource )
+    {
+        Set<Long> results = new LinkedHashSet<>();
+        for ( Relationship worksFor : resource.getRelationships( WORKS_FOR, Direction.OUTGOING ) )
+        {
+            results.add( worksFor.getEndNode().getId() );
+        }
+        for ( Relationship hasAccount : resource.getRelationships( HAS_ACCOUNT, Direction.INCOMING ) )
+        {
+            for ( Relationship worksFor : hasAccount.getStartNode().getRelationships( WORKS_FOR,
+                    Direction.OUTGOING ) )
+            {
+                results.add( worksFor.getEndNode().getId() );
+            }
+        }
+        return results;
+    }
+
+    private void addAccounts( Node company, Collection<Map<String, Object>> results, boolean includeEmployee )
+    {
+        for ( Relationship worksFor : company.getRelationships( WORKS_FOR, Direction.INCOMING ) )
+        {
+            Node employee = worksFor.getStartNode();
+            for ( Relationship hasAccount : employee.getRelationships( HAS_ACCOUNT, Direction.OUTGOING ) )
+            {
+                Object accountName = hasAccount.getEndNode().getProperty( "name" );
+                if ( includeEmployee )
+                {
+                    Map<String, Object> row = row( "employee", employee.getProperty( "name" ) );
+                    row.put( "account", accountName );
+                    results.add( row );
+                }
+                else
+                {
+                    results.add( row( "account", accountName ) );
+                }
+            }
+        }
+    }
+
+    private void addAdminsWithAccessToAnyOf( Collection<Long> companyIds, List<Map<String, Object>> results )
+    {
+        for ( Node admin : GlobalGraphOperations.at( db ).getAllNodesWithLabel( ADMINISTRATOR ) )
+        {
+            AdminGrants adminGrants = grantsFor( admin );
+            for ( Long companyId : companyIds )
+            {
+                if ( contains( adminGrants.companies, companyId ) )
+                {
+                    results.add( row( "admin", admin.getProperty( "name" ) ) );
+                    break;
+                }
+            }
+        }
+    }
+
+    private Node findNode( Label label, String name )
+    {
+        return IteratorUtil.singleOrNull( db.findNodesByLabelAndProperty( label, "name", name ) );
+    }
+
+    private void verify( String description, Collection<Map<String, Object>> closureResults,
+                         ExecutionResult cypherResults )
+    {
+        Set<Map<String, Object>> expected = new HashSet<>();
+        for ( Map<String, Object> row : cypherResults )
+        {
+            expected.add( new LinkedHashMap<>( row ) );
+        }
+        Set<Map<String, Object>> actual = new HashSet<>( closureResults );
+        if ( !expected.equals( actual ) )
+        {
+            throw new IllegalStateException( String.format( "%s: closure returned %s, Cypher returned %s",
+                    description, actual, expected ) );
+        }
+    }
+
+    private static Map<String, Object> row( String column, Object value )
+    {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put( column, value );
+        return row;
+    }
+
+    private static boolean contains( long[] sortedIds, long id )
+    {
+        return Arrays.binarySearch( sortedIds, id ) >= 0;
+    }
+
+    private static long[] toSortedArray( Set<Long> ids )
+    {
+        long[] results = new long[ids.size()];
+        int i = 0;
+        for ( Long id : ids )
+        {
+            results[i++] = id;
+        }
+        Arrays.sort( results );
+        return results;
+    }
+
+    private static class AdminGrants
+    {
+        private final long[] companies;
+        private final long[] inheritRoots;
+        private final long[] doNotInherit;
+        private final long[] denied;
+
+        private AdminGrants( long[] companies, long[] inheritRoots, long[] doNotInherit, long[] denied )
+        {
+            this.companies = companies;
+            this.inheritRoots = inheritRoots;
+            this.doNotInherit = doNotInherit;
+            this.denied = denied;
+        }
+    }
+
+    private class ClosureMaintainer implements TransactionEventHandler<Set<Long>>
+    {
+        private final Set<Long> invalidateAll = new HashSet<>();
+
+        @Override
+        public Set<Long> beforeCommit( TransactionData data ) throws Exception
+        {
+            for ( Relationship relationship : data.deletedRelationships() )
+            {
+                if ( isPermissionRelationship( relationship ) )
+                {
+                    return invalidateAll;
+                }
+            }
+
+            Set<Long> adminIds = new HashSet<>();
+            for ( Relationship relationship : data.createdRelationships() )
+            {
+                if ( relationship.isType( CHILD_OF ) )
+                {
+                    return invalidateAll;
+                }
+                if ( relationship.isType( MEMBER_OF ) )
+                {
+                    adminIds.add( relationship.getStartNode().getId() );
+                }
+                else if ( relationship.isType( ALLOWED_INHERIT ) || relationship.isType( ALLOWED_DO_NOT_INHERIT )
+                        || relationship.isType( DENIED ) )
+                {
+                    for ( Relationship memberOf : relationship.getStartNode().getRelationships( MEMBER_OF,
+                            Direction.INCOMING ) )
+                    {
+                        adminIds.add( memberOf.getStartNode().getId() );
+                    }
+                }
+            }
+            for ( Node node : data.deletedNodes() )
+            {
+                adminIds.add( node.getId() );
+            }
+            return adminIds;
+        }
+
+        private boolean isPermissionRelationship( Relationship relationship )
+        {
+            return relationship.isType( MEMBER_OF ) || relationship.isType( ALLOWED_INHERIT ) ||
+                    relationship.isType( ALLOWED_DO_NOT_INHERIT ) || relationship.isType( DENIED ) ||
+                    relationship.isType( CHILD_OF );
+        }
+
+        @Override
+        public void afterCommit( TransactionData data, Set<Long> adminIds )
+        {
+            if ( adminIds == invalidateAll )
+            {
+                version.incrementAndGet();
+                grants.clear();
+            }
+            else if ( !adminIds.isEmpty() )
+            {
+                version.incrementAndGet();
+                grants.keySet().removeAll( adminIds );
+            }
+        }
+
+        @Override
+        public void afterRollback( TransactionData data, Set<Long> adminIds )
+        {
+            // Do nothing
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package org.neo4j.graphdatabases.queries.traversals;
+
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.neo4j.graphdatabases.queries.helpers.LongIntHashMap;
+import org.neo4j.graphdb.*;
+import org.neo4j.helpers.collection.IteratorUtil;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+/**
+ * Answers "does this administrator have access to this resource?" from a snapshot of the
+ * permissions graph. Companies are assigned dense int ids, and each group holds bitsets of
+ * the companies it is allowed (ALLOWED_INHERIT, pre-expanded down CHILD_OF*0..3), allowed
+ * without inheritance (ALLOWED_DO_NOT_INHERIT) and denied (DENIED, pre-expanded).
+ * <p/>
+ * {@link #hasAccess(long, long)} performs no allocation. Call {@link #build()} again after
+ * the permissions graph changes.
+ */
+public class AccessDecisionEngine
+{
+    private static final Label GROUP = DynamicLabel.label( "Group" );
+
+    private static final RelationshipType MEMBER_OF = withName( "MEMBER_OF" );
+    private static final RelationshipType ALLOWED_INHERIT = withName( "ALLOWED_INHERIT" );
+    private static final RelationshipType ALLOWED_DO_NOT_INHERIT = withName( "ALLOWED_DO_NOT_INHERIT" );
+    private static final RelationshipType DENIED = withName( "DENIED" );
+    private static final RelationshipType WORKS_FOR = withName( "WORKS_FOR" );
+    private static final RelationshipType HAS_ACCOUNT = withName( "HAS_ACCOUNT" );
+
+    private static final int[] NO_GROUPS = new int[0];
+
+    private final GraphDatabaseService db;
+
+    private volatile Snapshot snapshot;
+
+    public AccessDecisionEngine( GraphDatabaseService db )
+    {
+        this.db = db;
+    }
+
+    public AccessDecisionEngine build()
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            snapshot = new Snapshot( db );
+            tx.success();
+        }
+        return this;
+    }
+
+    public int numberOfCompanies()
+    {
+        return snapshot().companyNodeIds.length;
+    }
+
+    public boolean hasAccessToResource( String adminName, String resourceName )
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            Node admin = IteratorUtil.singleOrNull(
+                    db.findNodesByLabelAndProperty( AccessControlClosure.ADMINISTRATOR, "name", adminName ) );
+            Node resource = IteratorUtil.singleOrNull(
+                    db.findNodesByLabelAndProperty( AccessControlClosure.RESOURCE, "name", resourceName ) );
+            tx.success();
+            return admin != null && resource != null && hasAccess( admin.getId(), resource.getId() );
+        }
+    }
+
+    public boolean hasAccess( long adminNodeId, long resourceNodeId )
+    {
+        Snapshot current = snapshot();
+
+        int admin = current.adminIds.get( adminNodeId );
+        int resource = current.resourceIds.get( resourceNodeId );
+        if ( admin == LongIntHashMap.NO_VALUE || resource == LongIntHashMap.NO_VALUE )
+        {
+            return false;
+        }
+
+        int[] groups = current.adminGroups[admin];
+        for ( int i = current.resourceOffsets[resource]; i < current.resourceOffsets[resource + 1]; i++ )
+        {
+            if ( hasAccessToCompany( current, groups, current.resourceCompanies[i] ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean hasAccessToCompany( long adminNodeId, long companyNodeId )
+    {
+        Snapshot current = snapshot();
+
+        int admin = current.adminIds.get( adminNodeId );
+        int company = current.companyIds.get( companyNodeId );
+        return admin != LongIntHashMap.NO_VALUE && company != LongIntHashMap.NO_VALUE &&
+                hasAccessToCompany( current, current.adminGroups[admin], company );
+    }
+
+    private static boolean hasAccessToCompany( Snapshot snapshot, int[] groups, int company )
+    {
+        for ( int group : groups )
+        {
+            if ( isSet( snapshot.allowedDoNotInherit[group], company ) )
+            {
+                return true;
+            }
+        }
+        for ( int group : groups )
+        {
+            if ( isSet( snapshot.denied[group], company ) )
+            {
+                return false;
+            }
+        }
+        for ( int group : groups )
+        {
+            if ( isSet( snapshot.allowedInherit[group], company ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSet( BitSet companies, int company )
+    {
+        return companies != null && companies.get( company );
+    }
+
+    private Snapshot snapshot()
+    {
+        Snapshot current = snapshot;
+        if ( current == null )
+        {
+            throw new IllegalStateException( "Access decision engine has not been built." );
+        }
+        return current;
+    }
+
+    private static class Snapshot
+    {
+        private final LongIntHashMap companyIds = new LongIntHashMap();
+        private final long[] companyNodeIds;
+
+        private final LongIntHashMap groupIds = new LongIntHashMap();
+        private final BitSet[] allowedInherit;
+        private final BitSet[] allowedDoNotInherit;
+        private final BitSet[] denied;
+
+        private final LongIntHashMap adminIds = new LongIntHashMap();
+        private final int[][] adminGroups;
+
+        private final LongIntHashMap resourceIds = new LongIntHashMap();
+        private final int[] resourceOffsets;
+        private final int[] resourceCompanies;
+
+        private Snapshot( GraphDatabaseService db )
+        {
+            GlobalGraphOperations operations = GlobalGraphOperations.at( db );
+
+            List<Long> companies = new ArrayList<>();
+            for ( Node company : operations.getAllNodesWithLabel( AccessControlClosure.COMPANY ) )
+            {
+                companyIds.put( company.getId(), companies.size() );
+                companies.add( company.getId() );
+            }
+            companyNodeIds = new long[companies.size()];
+            for ( int i = 0; i < companyNodeIds.length; i++ )
+            {
+                companyNodeIds[i] = companies.get( i );
+            }
+
+            List<Node> groups = IteratorUtil.asList( operations.getAllNodesWithLabel( GROUP ) );
+            allowedInherit = new BitSet[groups.size()];
+            allowedDoNotInherit = new BitSet[groups.size()];
+            denied = new BitSet[groups.size()];
+            for ( int i = 0; i < groups.size(); i++ )
+            {
+                Node group = groups.get( i );
+                groupIds.put( group.getId(), i );
+                allowedInherit[i] = companies( group, ALLOWED_INHERIT, true );
+                allowedDoNotInherit[i] = companies( group, ALLOWED_DO_NOT_INHERIT, false );
+                denied[i] = companies( group, DENIED, true );
+            }
+
+            List<int[]> groupsForAdmins = new ArrayList<>();
+            for ( Node admin : operations.getAllNodesWithLabel( AccessControlClosure.ADMINISTRATOR ) )
+            {
+                adminIds.put( admin.getId(), groupsForAdmins.size() );
+                groupsForAdmins.add( groupsFor( admin ) );
+            }
+            adminGroups = groupsForAdmins.toArray( new int[groupsForAdmins.size()][] );
+
+            List<Integer> offsets = new ArrayList<>();
+            List<Integer> companiesForResources = new ArrayList<>();
+            for ( Node resource : operations.getAllNodesWithLabel( AccessControlClosure.RESOURCE ) )
+            {
+                resourceIds.put( resource.getId(), offsets.size() );
+                offsets.add( companiesForResources.size() );
+                addCompanies( resource, companiesForResources );
+            }
+            offsets.add( companiesForResources.size() );
+            resourceOffsets = toIntArray( offsets );
+            resourceCompanies = toIntArray( companiesForResources );
+        }
+
+        private BitSet companies( Node group, RelationshipType type, boolean inherit )
+        {
+            BitSet results = null;
+            for ( Relationship relationship : group.getRelationships( type, Direction.OUTGOING ) )
+            {
+                if ( results == null )
+                {
+                    results = new BitSet( companyNodeIds.length );
+                }
+                if ( inherit )
+                {
+                    for ( Node company : CompanyHierarchy.descendants( relationship.getEndNode() ) )
+                    {
+                        set( results, company );
+                    }
+                }
+                else
+                {
+                    set( results, relationship.getEndNode() );
+                }
+            }
+            return results;
+        }
+
+        private void set( BitSet results, Node company )
+        {
+            int id = companyIds.get( company.getId() );
+            if ( id != LongIntHashMap.NO_VALUE )
+            {
+                results.set( id );
+            }
+        }
+
+        private int[] groupsFor( Node admin )
+        {
+            List<Integer> results = new ArrayList<>();
+            for ( Relationship memberOf : admin.getRelationships( MEMBER_OF, Direction.OUTGOING ) )
+            {
+                int group = groupIds.get( memberOf.getEndNode().getId() );
+                if ( group != LongIntHashMap.NO_VALUE )
+                {
+                    results.add( group );
+                }
+            }
+            return results.isEmpty() ? NO_GROUPS : toIntArray( results );
+        }
+
+        private void addCompanies( Node resource, List<Integer> results )
+        {
+            List<Integer> companiesForResource = new ArrayList<>( 1 );
+            for ( Relationship worksFor : resource.getRelationships( WORKS_FOR, Direction.OUTGOING ) )
+            {
+                addCompany( worksFor.getEndNode(), companiesForResource );
+            }
+            for ( Relationship hasAccount : resource.getRelationships( HAS_ACCOUNT, Direction.INCOMING ) )
+            {
+                for ( Relationship worksFor : hasAccount.getStartNode().getRelationships( WORKS_FOR,
+                        Direction.OUTGOING ) )
+                {
+                    addCompany( worksFor.getEndNode(), companiesForResource );
+                }
+            }
+            results.addAll( companiesForResource );
+        }
+
+        private void addCompany( Node company, List<Integer> companiesForResource )
+        {
+            int id = companyIds.get( company.getId() );
+            if ( id != LongIntHashMap.NO_VALUE && !companiesForResource.contains( id ) )
+            {
+                companiesForResource.add( id );
+            }
+        }
+
+        private static int[] toIntArray( List<Integer> values )
+        {
+            int[] results = new int[values.size()];
+            for ( int i = 0; i < results.length; i++ )
+            {
+                results[i] = values.get( i );
+            }
+            return results;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.neo4j.graphdatabases.queries.traversals;
+
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.neo4j.graphdatabases.queries.helpers.LongIntHashMap;
+import org.neo4j.graphdb.*;
+import org.neo4j.helpers.collection.IteratorUtil;
+
+/**
+ * Finds the length of the shortest FRIEND path between two users with a breadth first search
+ * from both ends. Each step expands whichever frontier is smaller, and the search stops at the end
+ * of the level on which the two frontiers meet. Visited nodes are kept in primitive maps of node id
+ * to depth.
+ */
+public class BidirectionalFriendSearch
+{
+    public static final int NO_PATH = -1;
+    public static final int DEFAULT_MAX_DEPTH = 4;
+
+    private static final Label USER = DynamicLabel.label( "User" );
+    private static final RelationshipType FRIEND = withName( "FRIEND" );
+
+    private final GraphDatabaseService db;
+    private final int maxDepth;
+
+    public BidirectionalFriendSearch( GraphDatabaseService db )
+    {
+        this( db, DEFAULT_MAX_DEPTH );
+    }
+
+    public BidirectionalFriendSearch( GraphDatabaseService db, int maxDepth )
+    {
+        this.db = db;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Returns the length of the shortest FRIEND path between the two users, or {@link #NO_PATH} if
+     * they are not connected within the maximum depth.
+     */
+    public int distance( String firstUser, String secondUser )
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            Node first = IteratorUtil.singleOrNull( db.findNodesByLabelAndProperty( USER, "name", firstUser ) );
+            Node second = IteratorUtil.singleOrNull( db.findNodesByLabelAndProperty( USER, "name", secondUser ) );
+            int distance = first == null || second == null ? NO_PATH : distance( first, second );
+            tx.success();
+            return distance;
+        }
+    }
+
+    /**
+     * Returns the length of the shortest FRIEND path between the two nodes, or {@link #NO_PATH}.
+     * Must be called inside a transaction.
+     */
+    public int distance( Node first, Node second )
+    {
+        if ( first.equals( second ) )
+        {
+            return 0;
+        }
+
+        Side forward = new Side( first );
+        Side backward = new Side( second );
+        while ( forward.depth + backward.depth < maxDepth )
+        {
+            Side smaller = forward.frontier.size() <= backward.frontier.size() ? forward : backward;
+            Side other = smaller == forward ? backward : forward;
+            int distance = smaller.expand( other );
+            if ( distance != NO_PATH )
+            {
+                return distance;
+            }
+            if ( smaller.frontier.isEmpty() )
+            {
+                return NO_PATH;
+            }
+        }
+        return NO_PATH;
+    }
+
+    private static class Side
+    {
+        private final LongIntHashMap visited = new LongIntHashMap();
+        private List<Node> frontier = new ArrayList<Node>();
+        private int depth;
+
+        Side( Node start )
+        {
+            visited.put( start.getId(), 0 );
+            frontier.add( start );
+        }
+
+        /**
+         * Expands the whole frontier by one level and returns the shortest path length through a
+         * node already visited by the other side, or {@link #NO_PATH} if the sides haven't met.
+         */
+        int expand( Side otherSide )
+        {
+            depth++;
+            int shortest = NO_PATH;
+            List<Node> next = new ArrayList<Node>();
+            for ( Node node : frontier )
+            {
+                for ( Relationship friend : node.getRelationships( FRIEND ) )
+                {
+                    Node friendNode = friend.getOtherNode( node );
+                    long friendId = friendNode.getId();
+                    if ( visited.containsKey( friendId ) )
+                    {
+                        continue;
+                    }
+                    visited.put( friendId, depth );
+                    int otherDepth = otherSide.visited.get( friendId );
+                    if ( otherDepth != LongIntHashMap.NO_VALUE )
+                    {
+                        int distance = depth + otherDepth;
+                        if ( shortest == NO_PATH || distance < shortest )
+                        {
+                            shortest = distance;
+                        }
+                    }
+                    else if ( shortest == NO_PATH )
+                    {
+                        next.add( friendNode );
+                    }
+                }
+            }
+            frontier = next;
+            return shortest;
+        }
+    }
+}
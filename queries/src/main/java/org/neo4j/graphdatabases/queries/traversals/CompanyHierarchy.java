@@ -0,0 +1,52 @@
+package org.neo4j.graphdatabases.queries.traversals;
+
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+
+class CompanyHierarchy
+{
+    private static final RelationshipType CHILD_OF = withName( "CHILD_OF" );
+    private static final int MAX_CHILD_OF_DEPTH = 3;
+
+    private CompanyHierarchy()
+    {
+    }
+
+    /**
+     * The company itself plus its subcompanies, following CHILD_OF*0..3.
+     */
+    static Collection<Node> descendants( Node company )
+    {
+        Set<Node> results = new LinkedHashSet<>();
+        results.add( company );
+        List<Node> frontier = Arrays.asList( company );
+        for ( int depth = 0; depth < MAX_CHILD_OF_DEPTH && !frontier.isEmpty(); depth++ )
+        {
+            List<Node> nextFrontier = new ArrayList<>();
+            for ( Node parent : frontier )
+            {
+                for ( Relationship childOf : parent.getRelationships( CHILD_OF, Direction.INCOMING ) )
+                {
+                    Node child = childOf.getStartNode();
+                    if ( results.add( child ) )
+                    {
+                        nextFrontier.add( child );
+                    }
+                }
+            }
+            frontier = nextFrontier;
+        }
+        return results;
+    }
+}
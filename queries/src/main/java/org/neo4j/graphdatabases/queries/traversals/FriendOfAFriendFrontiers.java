@@ -0,0 +1,548 @@
+package org.neo4j.graphdatabases.queries.traversals;
+
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.neo4j.graphdatabases.queries.helpers.LongIntHashMap;
+import org.neo4j.graphdb.*;
+import org.neo4j.helpers.collection.IteratorUtil;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+/**
+ * Answers {@link org.neo4j.graphdatabases.queries.SimpleSocialNetworkQueries#friendOfAFriendToDepth4}
+ * from a snapshot of the FRIEND graph held as int adjacency arrays, expanding one frontier per level
+ * instead of enumerating paths. Users get dense ids, and each level is a bitset of the users reached
+ * so far.
+ * <p/>
+ * The Cypher pattern never uses a relationship twice. Without parallel FRIEND relationships or
+ * self-loops, which the dataset builder doesn't create, a walk repeats a relationship only by turning
+ * straight back, or by going round a triangle through the start user and back out along the first
+ * relationship. Each level therefore keeps, for every user it reaches, the single user it was
+ * reached from, or a marker if there is more than one. Expansion skips the way back, and the
+ * last step out of the start user is checked against its triangles.
+ * <p/>
+ * Each calling thread reuses its own level arrays. The last level, which reaches most of the graph,
+ * is expanded in parallel on a fork-join pool once the frontier is large enough. Results stream from
+ * a bitset, either as nodes or, without touching the store, as node ids.
+ * <p/>
+ * The adjacency arrays are a snapshot: call {@link #build()} again after the graph changes.
+ */
+public class FriendOfAFriendFrontiers
+{
+    public static final int DEFAULT_SEQUENTIAL_THRESHOLD = 1024;
+
+    private static final Label USER = DynamicLabel.label( "User" );
+    private static final RelationshipType FRIEND = withName( "FRIEND" );
+    private static final int DEPTH = 4;
+    private static final int MANY = -1;
+
+    private final GraphDatabaseService db;
+    private final ForkJoinPool pool;
+    private final boolean ownsPool;
+    private final int sequentialThreshold;
+    private final ThreadLocal<Workspace> workspaces = new ThreadLocal<>();
+
+    private volatile Snapshot snapshot;
+
+    public FriendOfAFriendFrontiers( GraphDatabaseService db )
+    {
+        this( db, Runtime.getRuntime().availableProcessors() );
+    }
+
+    public FriendOfAFriendFrontiers( GraphDatabaseService db, int parallelism )
+    {
+        this( db, new ForkJoinPool( parallelism ), true, DEFAULT_SEQUENTIAL_THRESHOLD );
+    }
+
+    /**
+     * @param sequentialThreshold frontiers of at most this many users are expanded on the calling
+     *                            thread
+     */
+    public FriendOfAFriendFrontiers( GraphDatabaseService db, ForkJoinPool pool, int sequentialThreshold )
+    {
+        this( db, pool, false, sequentialThreshold );
+    }
+
+    private FriendOfAFriendFrontiers( GraphDatabaseService db, ForkJoinPool pool, boolean ownsPool,
+                                      int sequentialThreshold )
+    {
+        this.db = db;
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+        this.sequentialThreshold = sequentialThreshold;
+    }
+
+    public FriendOfAFriendFrontiers build()
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            snapshot = new Snapshot( db );
+            tx.success();
+        }
+        return this;
+    }
+
+    public void shutdown()
+    {
+        if ( ownsPool )
+        {
+            pool.shutdown();
+        }
+    }
+
+    public int numberOfUsers()
+    {
+        return snapshot().nodeIds.length;
+    }
+
+    /**
+     * Returns the users at the end of a four relationship FRIEND path from the named user, each once.
+     * Must be called, and the results consumed, inside a transaction.
+     */
+    public Iterable<Node> getFriends( String name )
+    {
+        final FriendIds friendIds = getFriendIds( name );
+        return new Iterable<Node>()
+        {
+            @Override
+            public Iterator<Node> iterator()
+            {
+                final FriendIds ids = friendIds.copy();
+                return new Iterator<Node>()
+                {
+                    @Override
+                    public boolean hasNext()
+                    {
+                        return ids.hasNext();
+                    }
+
+                    @Override
+                    public Node next()
+                    {
+                        return db.getNodeById( ids.next() );
+                    }
+
+                    @Override
+                    public void remove()
+                    {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Returns the node ids of {@link #getFriends(String)}. Must be called inside a transaction.
+     */
+    public FriendIds getFriendIds( String name )
+    {
+        Snapshot current = snapshot();
+        Node user = IteratorUtil.single( db.findNodesByLabelAndProperty( USER, "name", name ) );
+        int start = current.denseIds.get( user.getId() );
+        if ( start == LongIntHashMap.NO_VALUE )
+        {
+            return new FriendIds( current.nodeIds, new long[words( current.nodeIds.length )] );
+        }
+        return new FriendIds( current.nodeIds, friendsAtDepth4( current, start ) );
+    }
+
+    private long[] friendsAtDepth4( Snapshot current, int start )
+    {
+        Workspace workspace = workspace( current.nodeIds.length );
+        workspace.startAt( start );
+        for ( int depth = 1; depth < DEPTH; depth++ )
+        {
+            workspace.expand( current );
+        }
+
+        int[] frontier = workspace.frontier;
+        int size = workspace.frontierSize;
+        int[] predecessors = workspace.predecessors;
+        long[] reached;
+        if ( size > sequentialThreshold )
+        {
+            reached = pool.invoke( new LastLevel( current, frontier, predecessors, start, 0, size ) );
+        }
+        else
+        {
+            reached = lastLevel( current, frontier, predecessors, start, 0, size );
+        }
+        if ( workspace.contains( start ) )
+        {
+            workspace.outOfTriangles( current, start, reached );
+        }
+        return reached;
+    }
+
+    /**
+     * Expands part of the third level's frontier, skipping the start user, whose last step is
+     * limited by its triangles.
+     */
+    private static long[] lastLevel( Snapshot current, int[] frontier, int[] predecessors, int start, int from,
+                                     int to )
+    {
+        long[] reached = new long[words( current.nodeIds.length )];
+        int[] offsets = current.offsets;
+        int[] friends = current.friends;
+        for ( int i = from; i < to; i++ )
+        {
+            int user = frontier[i];
+            if ( user == start )
+            {
+                continue;
+            }
+            int predecessor = predecessors[user];
+            for ( int j = offsets[user]; j < offsets[user + 1]; j++ )
+            {
+                int friend = friends[j];
+                if ( friend != predecessor )
+                {
+                    reached[friend >>> 6] |= 1L << friend;
+                }
+            }
+        }
+        return reached;
+    }
+
+    private Workspace workspace( int numberOfUsers )
+    {
+        Workspace workspace = workspaces.get();
+        if ( workspace == null || workspace.capacity() < numberOfUsers )
+        {
+            workspace = new Workspace( numberOfUsers );
+            workspaces.set( workspace );
+        }
+        return workspace;
+    }
+
+    private Snapshot snapshot()
+    {
+        Snapshot current = snapshot;
+        if ( current == null )
+        {
+            throw new IllegalStateException( "Friend of a friend frontiers have not been built" );
+        }
+        return current;
+    }
+
+    private static int words( int numberOfUsers )
+    {
+        return (numberOfUsers + 63) >>> 6;
+    }
+
+    /**
+     * Node ids in a result bitset, in dense id order.
+     */
+    public static class FriendIds
+    {
+        private final long[] nodeIds;
+        private final long[] bits;
+        private int next;
+
+        private FriendIds( long[] nodeIds, long[] bits )
+        {
+            this.nodeIds = nodeIds;
+            this.bits = bits;
+            this.next = nextSetBit( 0 );
+        }
+
+        public boolean hasNext()
+        {
+            return next >= 0;
+        }
+
+        public long next()
+        {
+            if ( next < 0 )
+            {
+                throw new NoSuchElementException();
+            }
+            long nodeId = nodeIds[next];
+            next = nextSetBit( next + 1 );
+            return nodeId;
+        }
+
+        public int size()
+        {
+            int size = 0;
+            for ( long word : bits )
+            {
+                size += Long.bitCount( word );
+            }
+            return size;
+        }
+
+        FriendIds copy()
+        {
+            return new FriendIds( nodeIds, bits );
+        }
+
+        private int nextSetBit( int from )
+        {
+            int word = from >>> 6;
+            if ( word >= bits.length )
+            {
+                return -1;
+            }
+            long remaining = bits[word] & (-1L << from);
+            while ( remaining == 0 )
+            {
+                if ( ++word == bits.length )
+                {
+                    return -1;
+                }
+                remaining = bits[word];
+            }
+            return (word << 6) + Long.numberOfTrailingZeros( remaining );
+        }
+    }
+
+    private class LastLevel extends RecursiveTask<long[]>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Snapshot current;
+        private final int[] frontier;
+        private final int[] predecessors;
+        private final int start;
+        private final int from;
+        private final int to;
+
+        LastLevel( Snapshot current, int[] frontier, int[] predecessors, int start, int from, int to )
+        {
+            this.current = current;
+            this.frontier = frontier;
+            this.predecessors = predecessors;
+            this.start = start;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute()
+        {
+            if ( to - from <= sequentialThreshold )
+            {
+                return lastLevel( current, frontier, predecessors, start, from, to );
+            }
+            int middle = (from + to) >>> 1;
+            LastLevel right = new LastLevel( current, frontier, predecessors, start, middle, to );
+            right.fork();
+            long[] reached = new LastLevel( current, frontier, predecessors, start, from, middle ).compute();
+            long[] rightReached = right.join();
+            for ( int i = 0; i < reached.length; i++ )
+            {
+                reached[i] |= rightReached[i];
+            }
+            return reached;
+        }
+    }
+
+    /**
+     * One thread's level arrays: the frontier, its membership bitset, and each frontier user's
+     * predecessor, plus the same for the level being built. Only the entries of users in a frontier
+     * are cleared between levels.
+     */
+    private static class Workspace
+    {
+        private int[] frontier;
+        private int frontierSize;
+        private long[] inFrontier;
+        private int[] predecessors;
+
+        private int[] next;
+        private int nextSize;
+        private long[] inNext;
+        private int[] nextPredecessors;
+
+        private final int[] triangleCounts;
+
+        Workspace( int numberOfUsers )
+        {
+            frontier = new int[numberOfUsers];
+            next = new int[numberOfUsers];
+            inFrontier = new long[words( numberOfUsers )];
+            inNext = new long[words( numberOfUsers )];
+            predecessors = new int[numberOfUsers];
+            nextPredecessors = new int[numberOfUsers];
+            triangleCounts = new int[numberOfUsers];
+        }
+
+        int capacity()
+        {
+            return frontier.length;
+        }
+
+        void startAt( int start )
+        {
+            clear( frontier, frontierSize, inFrontier );
+            frontier[0] = start;
+            frontierSize = 1;
+            inFrontier[start >>> 6] |= 1L << start;
+            predecessors[start] = MANY;
+        }
+
+        boolean contains( int user )
+        {
+            return (inFrontier[user >>> 6] & (1L << user)) != 0;
+        }
+
+        void expand( Snapshot current )
+        {
+            int[] offsets = current.offsets;
+            int[] friends = current.friends;
+            clear( next, nextSize, inNext );
+            nextSize = 0;
+            for ( int i = 0; i < frontierSize; i++ )
+            {
+                int user = frontier[i];
+                int predecessor = predecessors[user];
+                for ( int j = offsets[user]; j < offsets[user + 1]; j++ )
+                {
+                    int friend = friends[j];
+                    if ( friend == predecessor )
+                    {
+                        continue;
+                    }
+                    long bit = 1L << friend;
+                    if ( (inNext[friend >>> 6] & bit) == 0 )
+                    {
+                        inNext[friend >>> 6] |= bit;
+                        nextPredecessors[friend] = user;
+                        next[nextSize++] = friend;
+                    }
+                    else
+                    {
+                        nextPredecessors[friend] = MANY;
+                    }
+                }
+            }
+            swap();
+        }
+
+        /**
+         * Adds the start user's friends that a path around one of its triangles, s-a-b-s, can end
+         * at: any friend other than a and b.
+         */
+        void outOfTriangles( Snapshot current, int start, long[] reached )
+        {
+            int[] offsets = current.offsets;
+            int[] friends = current.friends;
+            long[] startFriends = inNext;
+            clear( next, nextSize, inNext );
+            nextSize = 0;
+            for ( int i = offsets[start]; i < offsets[start + 1]; i++ )
+            {
+                int friend = friends[i];
+                startFriends[friend >>> 6] |= 1L << friend;
+                next[nextSize++] = friend;
+            }
+
+            int triangles = 0;
+            for ( int i = offsets[start]; i < offsets[start + 1]; i++ )
+            {
+                int a = friends[i];
+                for ( int j = offsets[a]; j < offsets[a + 1]; j++ )
+                {
+                    int b = friends[j];
+                    if ( a < b && (startFriends[b >>> 6] & (1L << b)) != 0 )
+                    {
+                        triangles++;
+                        triangleCounts[a]++;
+                        triangleCounts[b]++;
+                    }
+                }
+            }
+            for ( int i = offsets[start]; i < offsets[start + 1]; i++ )
+            {
+                int friend = friends[i];
+                if ( triangles > triangleCounts[friend] )
+                {
+                    reached[friend >>> 6] |= 1L << friend;
+                }
+            }
+            for ( int i = offsets[start]; i < offsets[start + 1]; i++ )
+            {
+                triangleCounts[friends[i]] = 0;
+            }
+        }
+
+        private void swap()
+        {
+            int[] frontierUsers = frontier;
+            frontier = next;
+            next = frontierUsers;
+            int size = frontierSize;
+            frontierSize = nextSize;
+            nextSize = size;
+            long[] bits = inFrontier;
+            inFrontier = inNext;
+            inNext = bits;
+            int[] users = predecessors;
+            predecessors = nextPredecessors;
+            nextPredecessors = users;
+        }
+
+        private static void clear( int[] users, int size, long[] bits )
+        {
+            for ( int i = 0; i < size; i++ )
+            {
+                bits[users[i] >>> 6] = 0;
+            }
+        }
+    }
+
+    private static class Snapshot
+    {
+        private final LongIntHashMap denseIds = new LongIntHashMap();
+        private final long[] nodeIds;
+        private final int[] offsets;
+        private final int[] friends;
+
+        Snapshot( GraphDatabaseService db )
+        {
+            GlobalGraphOperations operations = GlobalGraphOperations.at( db );
+            long[] ids = new long[1024];
+            int numberOfUsers = 0;
+            for ( Node user : operations.getAllNodesWithLabel( USER ) )
+            {
+                if ( numberOfUsers == ids.length )
+                {
+                    ids = Arrays.copyOf( ids, ids.length * 2 );
+                }
+                denseIds.put( user.getId(), numberOfUsers );
+                ids[numberOfUsers++] = user.getId();
+            }
+            nodeIds = Arrays.copyOf( ids, numberOfUsers );
+
+            offsets = new int[numberOfUsers + 1];
+            int[] adjacency = new int[Math.max( 16, numberOfUsers * 8 )];
+            int size = 0;
+            for ( int user = 0; user < numberOfUsers; user++ )
+            {
+                Node node = db.getNodeById( nodeIds[user] );
+                for ( Relationship friend : node.getRelationships( FRIEND ) )
+                {
+                    int friendId = denseIds.get( friend.getOtherNode( node ).getId() );
+                    if ( friendId == LongIntHashMap.NO_VALUE || friendId == user )
+                    {
+                        continue;
+                    }
+                    if ( size == adjacency.length )
+                    {
+                        adjacency = Arrays.copyOf( adjacency, adjacency.length * 2 );
+                    }
+                    adjacency[size++] = friendId;
+                }
+                offsets[user + 1] = size;
+            }
+            friends = Arrays.copyOf( adjacency, size );
+        }
+    }
+}
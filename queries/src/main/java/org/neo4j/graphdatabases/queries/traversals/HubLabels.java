@@ -0,0 +1,275 @@
+package org.neo4j.graphdatabases.queries.traversals;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Hub labels (pruned landmark labelling) for an undirected, non-negatively weighted graph held
+ * as adjacency arrays. Every vertex stores the distance to a small set of hubs, ordered by hub
+ * rank, such that any shortest path passes through a hub shared by both ends; a distance query
+ * is a merge of two short lists. Each label entry also records the next vertex towards its hub,
+ * so routes can be unfolded without searching.
+ * <p/>
+ * Where several routes share the shortest distance, the one through the highest-ranked hub is
+ * returned. Hubs are ranked by degree.
+ */
+class HubLabels
+{
+    private final int[] labelOffsets;
+    private final int[] labelHubs;
+    private final double[] labelDistances;
+    private final int[] labelParents;
+
+    HubLabels( int[] offsets, int[] targets, double[] costs )
+    {
+        int numberOfVertices = offsets.length - 1;
+        int[] vertexOfRank = rankByDegree( offsets, numberOfVertices );
+
+        int[][] hubs = new int[numberOfVertices][];
+        double[][] distances = new double[numberOfVertices][];
+        int[][] parents = new int[numberOfVertices][];
+        int[] sizes = new int[numberOfVertices];
+        for ( int vertex = 0; vertex < numberOfVertices; vertex++ )
+        {
+            hubs[vertex] = new int[4];
+            distances[vertex] = new double[4];
+            parents[vertex] = new int[4];
+        }
+
+        double[] rootDistances = new double[numberOfVertices];
+        Arrays.fill( rootDistances, Double.POSITIVE_INFINITY );
+        double[] tentative = new double[numberOfVertices];
+        Arrays.fill( tentative, Double.POSITIVE_INFINITY );
+        int[] tentativeParents = new int[numberOfVertices];
+        int[] touched = new int[numberOfVertices];
+        boolean[] settled = new boolean[numberOfVertices];
+        PriorityQueue<QueueEntry> queue = new PriorityQueue<>();
+
+        for ( int rank = 0; rank < numberOfVertices; rank++ )
+        {
+            int root = vertexOfRank[rank];
+            for ( int i = 0; i < sizes[root]; i++ )
+            {
+                rootDistances[hubs[root][i]] = distances[root][i];
+            }
+
+            // Pruned Dijkstra: vertices already covered by higher-ranked hubs are neither
+            // labelled nor expanded
+            int numberTouched = 0;
+            tentative[root] = 0.0;
+            tentativeParents[root] = -1;
+            touched[numberTouched++] = root;
+            queue.add( new QueueEntry( root, 0.0 ) );
+            while ( !queue.isEmpty() )
+            {
+                int vertex = queue.poll().vertex;
+                if ( settled[vertex] )
+                {
+                    continue;
+                }
+                settled[vertex] = true;
+                double distance = tentative[vertex];
+
+                double covered = Double.POSITIVE_INFINITY;
+                for ( int i = 0; i < sizes[vertex]; i++ )
+                {
+                    covered = Math.min( covered, rootDistances[hubs[vertex][i]] + distances[vertex][i] );
+                }
+                if ( covered <= distance )
+                {
+                    continue;
+                }
+
+                int size = sizes[vertex];
+                if ( size == hubs[vertex].length )
+                {
+                    hubs[vertex] = Arrays.copyOf( hubs[vertex], size * 2 );
+                    distances[vertex] = Arrays.copyOf( distances[vertex], size * 2 );
+                    parents[vertex] = Arrays.copyOf( parents[vertex], size * 2 );
+                }
+                hubs[vertex][size] = rank;
+                distances[vertex][size] = distance;
+                parents[vertex][size] = tentativeParents[vertex];
+                sizes[vertex]++;
+
+                for ( int i = offsets[vertex]; i < offsets[vertex + 1]; i++ )
+                {
+                    int next = targets[i];
+                    double nextDistance = distance + costs[i];
+                    if ( !settled[next] && nextDistance < tentative[next] )
+                    {
+                        if ( tentative[next] == Double.POSITIVE_INFINITY )
+                        {
+                            touched[numberTouched++] = next;
+                        }
+                        tentative[next] = nextDistance;
+                        tentativeParents[next] = vertex;
+                        queue.add( new QueueEntry( next, nextDistance ) );
+                    }
+                }
+            }
+
+            for ( int i = 0; i < numberTouched; i++ )
+            {
+                tentative[touched[i]] = Double.POSITIVE_INFINITY;
+                settled[touched[i]] = false;
+            }
+            for ( int i = 0; i < sizes[root]; i++ )
+            {
+                rootDistances[hubs[root][i]] = Double.POSITIVE_INFINITY;
+            }
+        }
+
+        labelOffsets = new int[numberOfVertices + 1];
+        for ( int vertex = 0; vertex < numberOfVertices; vertex++ )
+        {
+            labelOffsets[vertex + 1] = labelOffsets[vertex] + sizes[vertex];
+        }
+        labelHubs = new int[labelOffsets[numberOfVertices]];
+        labelDistances = new double[labelHubs.length];
+        labelParents = new int[labelHubs.length];
+        for ( int vertex = 0; vertex < numberOfVertices; vertex++ )
+        {
+            System.arraycopy( hubs[vertex], 0, labelHubs, labelOffsets[vertex], sizes[vertex] );
+            System.arraycopy( distances[vertex], 0, labelDistances, labelOffsets[vertex], sizes[vertex] );
+            System.arraycopy( parents[vertex], 0, labelParents, labelOffsets[vertex], sizes[vertex] );
+        }
+    }
+
+    double distance( int from, int to )
+    {
+        int[] hub = bestHub( from, to );
+        return hub == null ? Double.POSITIVE_INFINITY : labelDistances[hub[0]] + labelDistances[hub[1]];
+    }
+
+    int[] route( int from, int to )
+    {
+        int[] hub = bestHub( from, to );
+        if ( hub == null )
+        {
+            return null;
+        }
+        int upLength = pathLength( from, hub[0] );
+        int downLength = pathLength( to, hub[1] );
+        int[] route = new int[upLength + downLength - 1];
+        unfold( from, hub[0], route, 0, 1 );
+        unfold( to, hub[1], route, route.length - 1, -1 );
+        return route;
+    }
+
+    int numberOfLabels()
+    {
+        return labelHubs.length;
+    }
+
+    private int[] bestHub( int from, int to )
+    {
+        // Labels are sorted by hub rank, so shared hubs are found by merging
+        int i = labelOffsets[from];
+        int j = labelOffsets[to];
+        int bestFrom = -1;
+        int bestTo = -1;
+        double best = Double.POSITIVE_INFINITY;
+        while ( i < labelOffsets[from + 1] && j < labelOffsets[to + 1] )
+        {
+            if ( labelHubs[i] < labelHubs[j] )
+            {
+                i++;
+            }
+            else if ( labelHubs[i] > labelHubs[j] )
+            {
+                j++;
+            }
+            else
+            {
+                double distance = labelDistances[i] + labelDistances[j];
+                if ( distance < best )
+                {
+                    best = distance;
+                    bestFrom = i;
+                    bestTo = j;
+                }
+                i++;
+                j++;
+            }
+        }
+        return bestFrom < 0 ? null : new int[]{bestFrom, bestTo};
+    }
+
+    private int pathLength( int vertex, int label )
+    {
+        int length = 1;
+        int hub = labelHubs[label];
+        while ( labelParents[label] >= 0 )
+        {
+            vertex = labelParents[label];
+            label = labelOf( vertex, hub );
+            length++;
+        }
+        return length;
+    }
+
+    private void unfold( int vertex, int label, int[] route, int position, int step )
+    {
+        int hub = labelHubs[label];
+        route[position] = vertex;
+        while ( labelParents[label] >= 0 )
+        {
+            vertex = labelParents[label];
+            label = labelOf( vertex, hub );
+            position += step;
+            route[position] = vertex;
+        }
+    }
+
+    private int labelOf( int vertex, int hub )
+    {
+        // Every vertex on a hub's shortest path tree carries a label for that hub
+        return Arrays.binarySearch( labelHubs, labelOffsets[vertex], labelOffsets[vertex + 1], hub );
+    }
+
+    private static int[] rankByDegree( final int[] offsets, int numberOfVertices )
+    {
+        Integer[] vertices = new Integer[numberOfVertices];
+        for ( int vertex = 0; vertex < numberOfVertices; vertex++ )
+        {
+            vertices[vertex] = vertex;
+        }
+        Arrays.sort( vertices, new Comparator<Integer>()
+        {
+            @Override
+            public int compare( Integer first, Integer second )
+            {
+                int firstDegree = offsets[first + 1] - offsets[first];
+                int secondDegree = offsets[second + 1] - offsets[second];
+                return firstDegree != secondDegree ? secondDegree - firstDegree : first - second;
+            }
+        } );
+
+        int[] results = new int[numberOfVertices];
+        for ( int rank = 0; rank < numberOfVertices; rank++ )
+        {
+            results[rank] = vertices[rank];
+        }
+        return results;
+    }
+
+    private static class QueueEntry implements Comparable<QueueEntry>
+    {
+        private final int vertex;
+        private final double distance;
+
+        private QueueEntry( int vertex, double distance )
+        {
+            this.vertex = vertex;
+            this.distance = distance;
+        }
+
+        @Override
+        public int compareTo( QueueEntry other )
+        {
+            return Double.compare( distance, other.distance );
+        }
+    }
+}
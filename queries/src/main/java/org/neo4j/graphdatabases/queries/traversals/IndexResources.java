@@ -2,7 +2,11 @@ package org.neo4j.graphdatabases.queries.traversals;
 
 import static org.neo4j.graphdb.DynamicRelationshipType.withName;
 
+import java.io.File;
+
 import org.neo4j.graphdatabases.queries.helpers.IndexNodeByOtherNodeIndexer;
+import org.neo4j.graphdatabases.queries.helpers.ParallelIndexNodeByOtherNodeIndexer;
+import org.neo4j.graphdatabases.queries.testing.TestOutputWriter;
 import org.neo4j.graphdb.*;
 import org.neo4j.graphdb.traversal.Evaluation;
 import org.neo4j.graphdb.traversal.Evaluator;
@@ -37,7 +41,21 @@ public class IndexResources
 
     public void execute()
     {
-        IndexNodeByOtherNodeIndexer.GraphTraversal traversal1 = new IndexNodeByOtherNodeIndexer.GraphTraversal()
+        IndexNodeByOtherNodeIndexer indexer = new IndexNodeByOtherNodeIndexer( findCompanies(), findResources(),
+                "company", "resourceName", "name" );
+        indexer.execute( db, null, 1000 );
+    }
+
+    public void execute( int numberOfThreads, File checkpointFile, TestOutputWriter writer )
+    {
+        ParallelIndexNodeByOtherNodeIndexer indexer = new ParallelIndexNodeByOtherNodeIndexer( findCompanies(),
+                findResources(), "company", "resourceName", "name" );
+        indexer.execute( db, null, 1000, numberOfThreads, checkpointFile, writer );
+    }
+
+    private IndexNodeByOtherNodeIndexer.GraphTraversal findCompanies()
+    {
+        return new IndexNodeByOtherNodeIndexer.GraphTraversal()
         {
             @Override
             public Iterable<Node> execute( Node startNode )
@@ -45,8 +63,11 @@ public class IndexResources
                 return GlobalGraphOperations.at(db).getAllNodesWithLabel(DynamicLabel.label("company"));
             }
         };
+    }
 
-        IndexNodeByOtherNodeIndexer.GraphTraversal traversal2 = new IndexNodeByOtherNodeIndexer.GraphTraversal()
+    private IndexNodeByOtherNodeIndexer.GraphTraversal findResources()
+    {
+        return new IndexNodeByOtherNodeIndexer.GraphTraversal()
         {
             @Override
             public Iterable<Node> execute( Node startNode )
@@ -54,8 +75,5 @@ public class IndexResources
                 return traversalDescription.traverse( startNode ).nodes();
             }
         };
-
-        IndexNodeByOtherNodeIndexer indexer = new IndexNodeByOtherNodeIndexer( traversal1, traversal2, "company", "resourceName", "name" );
-        indexer.execute( db, null, 1000 );
     }
 }
@@ -0,0 +1,178 @@
+package org.neo4j.graphdatabases.queries.traversals;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.joda.time.Interval;
+import org.neo4j.graphdatabases.queries.helpers.LongIntHashMap;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.traversal.BranchState;
+
+/**
+ * Expands relationships whose start_date and end_date properties cover the whole of an interval.
+ * Validity is tested on raw millis, so expansion neither boxes dates nor creates intervals, and
+ * when a {@link ValidityWindows} snapshot is supplied the dates aren't read from the store at all.
+ * <p/>
+ * As a {@link PathExpander} it filters lazily, because traversals keep several expansions open at
+ * once. {@link #expand(Node)} instead fills a buffer that is reused by the next call, for searches
+ * that consume each expansion straight away. An expander also counts what it expands, so create
+ * one per search rather than sharing it between threads.
+ */
+public class IntervalExpander implements PathExpander<Object>
+{
+    private final long from;
+    private final long to;
+    private final Direction direction;
+    private final RelationshipType[] types;
+    private final ValidityWindows.Snapshot windows;
+
+    private Relationship[] buffer = new Relationship[16];
+    private long nodesExpanded;
+    private long relationshipsExamined;
+
+    public IntervalExpander( Interval interval, Direction direction, RelationshipType... types )
+    {
+        this( interval, direction, null, types );
+    }
+
+    public IntervalExpander( Interval interval, Direction direction, ValidityWindows.Snapshot windows,
+                             RelationshipType... types )
+    {
+        this( interval.getStartMillis(), interval.getEndMillis(), direction, windows, types );
+    }
+
+    private IntervalExpander( long from, long to, Direction direction, ValidityWindows.Snapshot windows,
+                              RelationshipType[] types )
+    {
+        this.from = from;
+        this.to = to;
+        this.direction = direction;
+        this.windows = windows;
+        this.types = types;
+    }
+
+    /**
+     * Same test as {@link Interval#contains(org.joda.time.ReadableInterval)}.
+     */
+    public static boolean contains( long startDate, long endDate, long from, long to )
+    {
+        return startDate <= from && from < endDate && to <= endDate;
+    }
+
+    public boolean isValid( Relationship relationship )
+    {
+        relationshipsExamined++;
+        int window = windows == null ? LongIntHashMap.NO_VALUE : windows.indexOf( relationship.getId() );
+        if ( window != LongIntHashMap.NO_VALUE )
+        {
+            return contains( windows.startDate( window ), windows.endDate( window ), from, to );
+        }
+        return contains( ((Number) relationship.getProperty( "start_date" )).longValue(),
+                ((Number) relationship.getProperty( "end_date" )).longValue(), from, to );
+    }
+
+    @Override
+    public Iterable<Relationship> expand( Path path, BranchState<Object> state )
+    {
+        nodesExpanded++;
+        return new ValidRelationships( path.endNode().getRelationships( direction, types ).iterator() );
+    }
+
+    /**
+     * Returns the number of valid relationships, which can be read with {@link #relationship(int)}
+     * until the next call.
+     */
+    public int expand( Node node )
+    {
+        nodesExpanded++;
+        int size = 0;
+        for ( Relationship relationship : node.getRelationships( direction, types ) )
+        {
+            if ( isValid( relationship ) )
+            {
+                if ( size == buffer.length )
+                {
+                    buffer = Arrays.copyOf( buffer, size * 2 );
+                }
+                buffer[size++] = relationship;
+            }
+        }
+        return size;
+    }
+
+    public Relationship relationship( int index )
+    {
+        return buffer[index];
+    }
+
+    public long nodesExpanded()
+    {
+        return nodesExpanded;
+    }
+
+    public long relationshipsExamined()
+    {
+        return relationshipsExamined;
+    }
+
+    @Override
+    public IntervalExpander reverse()
+    {
+        return new IntervalExpander( from, to, direction.reverse(), windows, types );
+    }
+
+    private class ValidRelationships implements Iterable<Relationship>, Iterator<Relationship>
+    {
+        private final Iterator<Relationship> relationships;
+        private Relationship next;
+
+        ValidRelationships( Iterator<Relationship> relationships )
+        {
+            this.relationships = relationships;
+        }
+
+        @Override
+        public Iterator<Relationship> iterator()
+        {
+            return this;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            while ( next == null && relationships.hasNext() )
+            {
+                Relationship relationship = relationships.next();
+                if ( isValid( relationship ) )
+                {
+                    next = relationship;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Relationship next()
+        {
+            if ( !hasNext() )
+            {
+                throw new NoSuchElementException();
+            }
+            Relationship result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
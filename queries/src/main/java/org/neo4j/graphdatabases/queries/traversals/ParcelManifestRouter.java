@@ -0,0 +1,395 @@
+package org.neo4j.graphdatabases.queries.traversals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import org.joda.time.Interval;
+import org.neo4j.graphdatabases.queries.helpers.LongIntHashMap;
+
+/**
+ * Routes whole parcel manifests against a {@link TimeSlicedRoutingIndex}. Delivery base legs are
+ * looked up once per distinct location and interval. Requests are then grouped by starting
+ * delivery base and interval, so that each group's routes between delivery bases come from one
+ * one-to-many lookup, and the groups are routed in parallel on a fork-join pool.
+ * <p/>
+ * Results are returned in request order, each as soon as the group holding it has been routed. A
+ * request that can't be routed carries the reason instead of failing the whole manifest.
+ */
+public class ParcelManifestRouter
+{
+    private static final int LEG_LOOKUPS_PER_TASK = 64;
+
+    private final TimeSlicedRoutingIndex routingIndex;
+    private final ForkJoinPool pool;
+    private final boolean ownsPool;
+
+    public ParcelManifestRouter( TimeSlicedRoutingIndex routingIndex, int parallelism )
+    {
+        this( routingIndex, new ForkJoinPool( parallelism ), true );
+    }
+
+    public ParcelManifestRouter( TimeSlicedRoutingIndex routingIndex, ForkJoinPool pool )
+    {
+        this( routingIndex, pool, false );
+    }
+
+    private ParcelManifestRouter( TimeSlicedRoutingIndex routingIndex, ForkJoinPool pool, boolean ownsPool )
+    {
+        this.routingIndex = routingIndex;
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+    }
+
+    public void shutdown()
+    {
+        if ( ownsPool )
+        {
+            pool.shutdown();
+        }
+    }
+
+    public Iterator<Result> route( List<Request> requests )
+    {
+        Map<List<Object>, Leg> legs = new HashMap<>();
+        for ( Request request : requests )
+        {
+            addLeg( legs, request.start, request.interval );
+            addLeg( legs, request.end, request.interval );
+        }
+        pool.invoke( new LegLookups( new ArrayList<>( legs.values() ) ) );
+
+        final Result[] results = new Result[requests.size()];
+        final ForkJoinTask<?>[] routedBy = new ForkJoinTask<?>[requests.size()];
+        Map<List<Object>, Group> groups = new LinkedHashMap<>();
+        for ( int i = 0; i < results.length; i++ )
+        {
+            Request request = requests.get( i );
+            Leg upLeg = legs.get( legKey( request.start, request.interval ) );
+            Leg downLeg = legs.get( legKey( request.end, request.interval ) );
+            if ( upLeg.failure != null || downLeg.failure != null )
+            {
+                results[i] = new Result( request, null, upLeg.failure != null ? upLeg.failure : downLeg.failure );
+                continue;
+            }
+
+            List<Object> groupKey = Arrays.<Object>asList( upLeg.deliveryBase(), request.interval );
+            Group group = groups.get( groupKey );
+            if ( group == null )
+            {
+                group = new Group( upLeg.deliveryBase(), request.interval, results );
+                groups.put( groupKey, group );
+            }
+            group.add( i, request, upLeg, downLeg );
+            routedBy[i] = group;
+        }
+        for ( Group group : groups.values() )
+        {
+            pool.execute( group );
+        }
+
+        return new Iterator<Result>()
+        {
+            private int next;
+
+            @Override
+            public boolean hasNext()
+            {
+                return next < results.length;
+            }
+
+            @Override
+            public Result next()
+            {
+                if ( !hasNext() )
+                {
+                    throw new NoSuchElementException();
+                }
+                if ( routedBy[next] != null )
+                {
+                    routedBy[next].join();
+                }
+                return results[next++];
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private static void addLeg( Map<List<Object>, Leg> legs, String location, Interval interval )
+    {
+        List<Object> key = legKey( location, interval );
+        if ( !legs.containsKey( key ) )
+        {
+            legs.put( key, new Leg( location, interval ) );
+        }
+    }
+
+    private static List<Object> legKey( String location, Interval interval )
+    {
+        return Arrays.<Object>asList( location, interval );
+    }
+
+    private static long[] combineRoutes( long[] upLeg, long[] topRoute, long[] downLeg )
+    {
+        // Same node order as ParcelRouteCalculator, which collects the legs in a LinkedHashSet
+        long[] route = new long[upLeg.length + topRoute.length + downLeg.length];
+        int size = 0;
+        for ( long nodeId : upLeg )
+        {
+            size = addIfAbsent( route, size, nodeId );
+        }
+        for ( long nodeId : topRoute )
+        {
+            size = addIfAbsent( route, size, nodeId );
+        }
+        for ( int i = downLeg.length - 1; i >= 0; i-- )
+        {
+            size = addIfAbsent( route, size, downLeg[i] );
+        }
+        return Arrays.copyOf( route, size );
+    }
+
+    private static int addIfAbsent( long[] route, int size, long nodeId )
+    {
+        for ( int i = 0; i < size; i++ )
+        {
+            if ( route[i] == nodeId )
+            {
+                return size;
+            }
+        }
+        route[size] = nodeId;
+        return size + 1;
+    }
+
+    public static class Request
+    {
+        private final String start;
+        private final String end;
+        private final Interval interval;
+
+        public Request( String start, String end, Interval interval )
+        {
+            this.start = start;
+            this.end = end;
+            this.interval = interval;
+        }
+
+        public String start()
+        {
+            return start;
+        }
+
+        public String end()
+        {
+            return end;
+        }
+
+        public Interval interval()
+        {
+            return interval;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format( "%s to %s during %s", start, end, interval );
+        }
+    }
+
+    public static class Result
+    {
+        private final Request request;
+        private final long[] route;
+        private final String failure;
+
+        private Result( Request request, long[] route, String failure )
+        {
+            this.request = request;
+            this.route = route;
+            this.failure = failure;
+        }
+
+        public Request request()
+        {
+            return request;
+        }
+
+        public boolean isRouted()
+        {
+            return route != null;
+        }
+
+        /**
+         * Node ids along the route, in the same order as {@link ParcelRouteCalculator#calculateRoute}.
+         */
+        public long[] route()
+        {
+            return route;
+        }
+
+        public String failure()
+        {
+            return failure;
+        }
+
+        @Override
+        public String toString()
+        {
+            return isRouted() ? request + ": " + Arrays.toString( route ) : request + ": " + failure;
+        }
+    }
+
+    private static class Leg
+    {
+        private final String location;
+        private final Interval interval;
+        private long[] route;
+        private String failure;
+
+        private Leg( String location, Interval interval )
+        {
+            this.location = location;
+            this.interval = interval;
+        }
+
+        long deliveryBase()
+        {
+            return route[route.length - 1];
+        }
+    }
+
+    private class LegLookups extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Leg> legs;
+
+        LegLookups( List<Leg> legs )
+        {
+            this.legs = legs;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ( legs.size() > LEG_LOOKUPS_PER_TASK )
+            {
+                int middle = legs.size() / 2;
+                invokeAll( new LegLookups( legs.subList( 0, middle ) ),
+                        new LegLookups( legs.subList( middle, legs.size() ) ) );
+                return;
+            }
+            for ( Leg leg : legs )
+            {
+                try
+                {
+                    leg.route = routingIndex.findRouteToDeliveryBase( leg.location, leg.interval );
+                }
+                catch ( IllegalArgumentException e )
+                {
+                    leg.failure = e.getMessage();
+                }
+                catch ( IllegalStateException e )
+                {
+                    leg.failure = String.format( "No delivery base reachable from %s during %s", leg.location,
+                            leg.interval );
+                }
+            }
+        }
+    }
+
+    private class Group extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final long deliveryBase;
+        private final Interval interval;
+        private final Result[] results;
+        private final List<Integer> indexes = new ArrayList<>();
+        private final List<Request> requests = new ArrayList<>();
+        private final List<Leg> upLegs = new ArrayList<>();
+        private final List<Leg> downLegs = new ArrayList<>();
+
+        Group( long deliveryBase, Interval interval, Result[] results )
+        {
+            this.deliveryBase = deliveryBase;
+            this.interval = interval;
+            this.results = results;
+        }
+
+        void add( int index, Request request, Leg upLeg, Leg downLeg )
+        {
+            indexes.add( index );
+            requests.add( request );
+            upLegs.add( upLeg );
+            downLegs.add( downLeg );
+        }
+
+        @Override
+        protected void compute()
+        {
+            // Requests ending at the same delivery base share its route
+            LongIntHashMap positions = new LongIntHashMap( downLegs.size() );
+            int[] topRouteOf = new int[downLegs.size()];
+            long[] deliveryBases = new long[downLegs.size()];
+            int numberOfDeliveryBases = 0;
+            for ( int i = 0; i < downLegs.size(); i++ )
+            {
+                long target = downLegs.get( i ).deliveryBase();
+                int position = positions.get( target );
+                if ( position == LongIntHashMap.NO_VALUE )
+                {
+                    position = numberOfDeliveryBases++;
+                    positions.put( target, position );
+                    deliveryBases[position] = target;
+                }
+                topRouteOf[i] = position;
+            }
+
+            long[][] topRoutes;
+            try
+            {
+                topRoutes = routingIndex.findRoutesBetweenDeliveryBases( deliveryBase,
+                        Arrays.copyOf( deliveryBases, numberOfDeliveryBases ), interval );
+            }
+            catch ( RuntimeException e )
+            {
+                for ( int i = 0; i < indexes.size(); i++ )
+                {
+                    results[indexes.get( i )] = new Result( requests.get( i ), null, e.toString() );
+                }
+                return;
+            }
+
+            for ( int i = 0; i < indexes.size(); i++ )
+            {
+                Request request = requests.get( i );
+                long[] topRoute = topRoutes[topRouteOf[i]];
+                if ( topRoute == null )
+                {
+                    results[indexes.get( i )] = new Result( request, null,
+                            String.format( "No route between delivery bases during %s", interval ) );
+                }
+                else
+                {
+                    results[indexes.get( i )] = new Result( request,
+                            combineRoutes( upLegs.get( i ).route, topRoute, downLegs.get( i ).route ), null );
+                }
+            }
+        }
+    }
+}
@@ -14,26 +14,16 @@ import org.neo4j.graphalgo.GraphAlgoFactory;
 import org.neo4j.graphalgo.PathFinder;
 import org.neo4j.graphalgo.WeightedPath;
 import org.neo4j.graphdb.*;
-import org.neo4j.graphdb.index.Index;
-import org.neo4j.graphdb.traversal.BranchState;
 import org.neo4j.graphdb.traversal.Evaluation;
 import org.neo4j.graphdb.traversal.Evaluator;
-import org.neo4j.graphdb.traversal.InitialBranchState;
 import org.neo4j.graphdb.traversal.TraversalDescription;
 import org.neo4j.helpers.collection.IteratorUtil;
 import org.neo4j.kernel.Traversal;
 
 public class ParcelRouteCalculator
 {
-    private static final PathExpander<Interval> DELIVERY_ROUTE_EXPANDER = new IntervalPathExpander(
-            withName( "DELIVERY_ROUTE" ),
-            Direction.INCOMING
-    );
-
-    private static final PathExpander<Interval> CONNECTED_TO_EXPANDER = new IntervalPathExpander(
-            withName( "CONNECTED_TO" ),
-            Direction.BOTH
-    );
+    private static final RelationshipType DELIVERY_ROUTE = withName( "DELIVERY_ROUTE" );
+    private static final RelationshipType CONNECTED_TO = withName( "CONNECTED_TO" );
 
     private static final TraversalDescription DELIVERY_BASE_FINDER = Traversal.description()
             .depthFirst()
@@ -61,25 +51,49 @@ public class ParcelRouteCalculator
     private static final CostEvaluator<Double> COST_EVALUATOR = CommonEvaluators.doubleCostEvaluator( "cost" );
     public static final Label LOCATION = DynamicLabel.label("Location");
     private GraphDatabaseService db;
+    private final TimeSlicedRoutingIndex routingIndex;
+    private final ValidityWindows validityWindows;
 
     public ParcelRouteCalculator( GraphDatabaseService db )
+    {
+        this( db, null );
+    }
+
+    /**
+     * Routes between delivery bases are looked up in the routing index's hub labels when an
+     * index is supplied, and found with Dijkstra otherwise.
+     */
+    public ParcelRouteCalculator( GraphDatabaseService db, TimeSlicedRoutingIndex routingIndex )
+    {
+        this( db, routingIndex, null );
+    }
+
+    /**
+     * Relationship validity is read from the supplied windows, if any, rather than from the store.
+     */
+    public ParcelRouteCalculator( GraphDatabaseService db, TimeSlicedRoutingIndex routingIndex,
+                                  ValidityWindows validityWindows )
     {
         this.db = db;
+        this.routingIndex = routingIndex;
+        this.validityWindows = validityWindows;
     }
 
     public Iterable<Node> calculateRoute( String start, String end, Interval interval )
     {
         try ( Transaction tx = db.beginTx() )
         {
-            TraversalDescription deliveryBaseFinder = createDeliveryBaseFinder( interval );
+            ValidityWindows.Snapshot windows = validityWindows == null ? null : validityWindows.snapshot();
+            TraversalDescription deliveryBaseFinder = createDeliveryBaseFinder( interval, windows );
 
             Path upLeg = findRouteToDeliveryBase( start, deliveryBaseFinder );
             Path downLeg = findRouteToDeliveryBase( end, deliveryBaseFinder );
 
-            Path topRoute = findRouteBetweenDeliveryBases(
+            Iterable<Node> topRoute = findRouteBetweenDeliveryBases(
                     upLeg.endNode(),
                     downLeg.endNode(),
-                    interval );
+                    interval,
+                    windows );
 
             Set<Node> routes = combineRoutes(upLeg, downLeg, topRoute);
             tx.success();
@@ -87,28 +101,49 @@ public class ParcelRouteCalculator
         }
     }
 
-    private TraversalDescription createDeliveryBaseFinder( Interval interval )
+    private TraversalDescription createDeliveryBaseFinder( Interval interval, ValidityWindows.Snapshot windows )
     {
-        return DELIVERY_BASE_FINDER.expand( DELIVERY_ROUTE_EXPANDER,
-                new InitialBranchState.State<Interval>( interval, interval ) );
+        return DELIVERY_BASE_FINDER.expand( new IntervalExpander( interval, Direction.INCOMING, windows,
+                DELIVERY_ROUTE ) );
     }
 
-    private Set<Node> combineRoutes( Path upLeg, Path downLeg, Path topRoute )
+    private Set<Node> combineRoutes( Path upLeg, Path downLeg, Iterable<Node> topRoute )
     {
         LinkedHashSet<Node> results = new LinkedHashSet<Node>();
         results.addAll( IteratorUtil.asCollection( upLeg.nodes() ));
-        results.addAll( IteratorUtil.asCollection( topRoute.nodes() ));
+        results.addAll( IteratorUtil.asCollection( topRoute ));
         results.addAll( IteratorUtil.asCollection( downLeg.reverseNodes() ));
         return results;
     }
 
-    private Path findRouteBetweenDeliveryBases( Node deliveryBase1, Node deliveryBase2, Interval interval )
+    private Iterable<Node> findRouteBetweenDeliveryBases( Node deliveryBase1, Node deliveryBase2, Interval interval,
+                                                         ValidityWindows.Snapshot windows )
     {
+        if ( routingIndex != null )
+        {
+            long[] nodeIds = routingIndex.findRouteBetweenDeliveryBases(
+                    deliveryBase1.getId(), deliveryBase2.getId(), interval );
+            if ( nodeIds == null )
+            {
+                throw new IllegalStateException( "No route between delivery bases during " + interval );
+            }
+            List<Node> nodes = new ArrayList<Node>( nodeIds.length );
+            for ( long nodeId : nodeIds )
+            {
+                nodes.add( db.getNodeById( nodeId ) );
+            }
+            return nodes;
+        }
+
         PathFinder<WeightedPath> routeBetweenDeliveryBasesFinder = GraphAlgoFactory.dijkstra(
-                CONNECTED_TO_EXPANDER,
-                new InitialBranchState.State<Interval>( interval, interval ),
+                new IntervalExpander( interval, Direction.BOTH, windows, CONNECTED_TO ),
                 COST_EVALUATOR );
-        return routeBetweenDeliveryBasesFinder.findSinglePath( deliveryBase1, deliveryBase2 );
+        Path path = routeBetweenDeliveryBasesFinder.findSinglePath( deliveryBase1, deliveryBase2 );
+        if ( path == null )
+        {
+            throw new IllegalStateException( "No route between delivery bases during " + interval );
+        }
+        return path.nodes();
     }
 
     private Path findRouteToDeliveryBase( String startPosition, TraversalDescription deliveryBaseFinder )
@@ -116,41 +151,4 @@ public class ParcelRouteCalculator
         Node startNode = IteratorUtil.single(db.findNodesByLabelAndProperty(LOCATION, "name", startPosition));
         return deliveryBaseFinder.traverse( startNode ).iterator().next();
     }
-
-    private static class IntervalPathExpander implements PathExpander<Interval>
-    {
-
-        private final RelationshipType relationshipType;
-        private final Direction direction;
-
-        private IntervalPathExpander( RelationshipType relationshipType, Direction direction )
-        {
-            this.relationshipType = relationshipType;
-            this.direction = direction;
-        }
-
-        @Override
-        public Iterable<Relationship> expand( Path path, BranchState<Interval> deliveryInterval )
-        {
-            List<Relationship> results = new ArrayList<Relationship>();
-            for ( Relationship r : path.endNode().getRelationships( relationshipType, direction ) )
-            {
-                Interval relationshipInterval = new Interval(
-                        (Long) r.getProperty( "start_date" ),
-                        (Long) r.getProperty( "end_date" ) );
-                if ( relationshipInterval.contains( deliveryInterval.getState() ) )
-                {
-                    results.add( r );
-                }
-            }
-
-            return results;
-        }
-
-        @Override
-        public PathExpander<Interval> reverse()
-        {
-            return null;
-        }
-    }
 }
@@ -0,0 +1,195 @@
+package org.neo4j.graphdatabases.queries.traversals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.EstimateEvaluator;
+import org.neo4j.graphdatabases.queries.helpers.LongIntHashMap;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+/**
+ * Lower bounds on route costs for A* (the ALT heuristic). Shortest distances from a few landmarks,
+ * picked to be far apart, are computed over every route in the graph whatever its validity. Routes
+ * valid during an interval are a subset of these, so by the triangle inequality
+ * |d(landmark, node) - d(landmark, goal)| never overestimates the remaining cost.
+ */
+class RouteLandmarks implements EstimateEvaluator<Double>
+{
+    private final LongIntHashMap nodeIndex;
+    private final double[][] distances;
+
+    private RouteLandmarks( LongIntHashMap nodeIndex, double[][] distances )
+    {
+        this.nodeIndex = nodeIndex;
+        this.distances = distances;
+    }
+
+    static RouteLandmarks compute( GraphDatabaseService db, int numberOfLandmarks,
+                                   CostEvaluator<Double> costEvaluator, RelationshipType... types )
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            List<Node> nodes = new ArrayList<>();
+            LongIntHashMap nodeIndex = new LongIntHashMap();
+            for ( Relationship relationship : GlobalGraphOperations.at( db ).getAllRelationships() )
+            {
+                if ( isOneOf( relationship, types ) )
+                {
+                    index( relationship.getStartNode(), nodes, nodeIndex );
+                    index( relationship.getEndNode(), nodes, nodeIndex );
+                }
+            }
+
+            List<double[]> distances = new ArrayList<>();
+            if ( !nodes.isEmpty() )
+            {
+                // Farthest-point selection: start from the node farthest from an arbitrary node,
+                // then repeatedly add the node farthest from all landmarks chosen so far
+                double[] closest = distancesFrom( nodes.get( 0 ), nodes, nodeIndex, costEvaluator, types );
+                while ( distances.size() < Math.min( numberOfLandmarks, nodes.size() ) )
+                {
+                    double[] landmarkDistances = distancesFrom( nodes.get( farthest( closest ) ), nodes, nodeIndex,
+                            costEvaluator, types );
+                    if ( distances.isEmpty() )
+                    {
+                        Arrays.fill( closest, Double.POSITIVE_INFINITY );
+                    }
+                    for ( int i = 0; i < closest.length; i++ )
+                    {
+                        closest[i] = Math.min( closest[i], landmarkDistances[i] );
+                    }
+                    distances.add( landmarkDistances );
+                }
+            }
+
+            tx.success();
+            return new RouteLandmarks( nodeIndex, distances.toArray( new double[distances.size()][] ) );
+        }
+    }
+
+    int numberOfLandmarks()
+    {
+        return distances.length;
+    }
+
+    @Override
+    public Double getCost( Node node, Node goal )
+    {
+        int from = nodeIndex.get( node.getId() );
+        int to = nodeIndex.get( goal.getId() );
+        if ( from == LongIntHashMap.NO_VALUE || to == LongIntHashMap.NO_VALUE )
+        {
+            return 0.0;
+        }
+
+        double estimate = 0.0;
+        for ( double[] landmarkDistances : distances )
+        {
+            // Nodes in a different component from the landmark say nothing about each other
+            if ( landmarkDistances[from] != Double.POSITIVE_INFINITY &&
+                    landmarkDistances[to] != Double.POSITIVE_INFINITY )
+            {
+                estimate = Math.max( estimate, Math.abs( landmarkDistances[from] - landmarkDistances[to] ) );
+            }
+        }
+        return estimate;
+    }
+
+    private static double[] distancesFrom( Node landmark, List<Node> nodes, LongIntHashMap nodeIndex,
+                                           CostEvaluator<Double> costEvaluator, RelationshipType[] types )
+    {
+        double[] tentative = new double[nodes.size()];
+        Arrays.fill( tentative, Double.POSITIVE_INFINITY );
+        boolean[] settled = new boolean[nodes.size()];
+        PriorityQueue<QueueEntry> queue = new PriorityQueue<>();
+
+        int start = nodeIndex.get( landmark.getId() );
+        tentative[start] = 0.0;
+        queue.add( new QueueEntry( start, 0.0 ) );
+        while ( !queue.isEmpty() )
+        {
+            int vertex = queue.poll().vertex;
+            if ( settled[vertex] )
+            {
+                continue;
+            }
+            settled[vertex] = true;
+
+            Node node = nodes.get( vertex );
+            for ( Relationship relationship : node.getRelationships( Direction.BOTH, types ) )
+            {
+                int next = nodeIndex.get( relationship.getOtherNode( node ).getId() );
+                double distance = tentative[vertex] + costEvaluator.getCost( relationship, Direction.BOTH );
+                if ( !settled[next] && distance < tentative[next] )
+                {
+                    tentative[next] = distance;
+                    queue.add( new QueueEntry( next, distance ) );
+                }
+            }
+        }
+
+        return tentative;
+    }
+
+    private static int farthest( double[] distances )
+    {
+        int farthest = 0;
+        for ( int i = 1; i < distances.length; i++ )
+        {
+            if ( distances[i] != Double.POSITIVE_INFINITY &&
+                    (distances[farthest] == Double.POSITIVE_INFINITY || distances[i] > distances[farthest]) )
+            {
+                farthest = i;
+            }
+        }
+        return farthest;
+    }
+
+    private static void index( Node node, List<Node> nodes, LongIntHashMap nodeIndex )
+    {
+        if ( !nodeIndex.containsKey( node.getId() ) )
+        {
+            nodeIndex.put( node.getId(), nodes.size() );
+            nodes.add( node );
+        }
+    }
+
+    private static boolean isOneOf( Relationship relationship, RelationshipType[] types )
+    {
+        for ( RelationshipType type : types )
+        {
+            if ( relationship.isType( type ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class QueueEntry implements Comparable<QueueEntry>
+    {
+        private final int vertex;
+        private final double distance;
+
+        private QueueEntry( int vertex, double distance )
+        {
+            this.vertex = vertex;
+            this.distance = distance;
+        }
+
+        @Override
+        public int compareTo( QueueEntry other )
+        {
+            return Double.compare( distance, other.distance );
+        }
+    }
+}
@@ -3,43 +3,130 @@ package org.neo4j.graphdatabases.queries.traversals;
 import static org.neo4j.graphdb.DynamicRelationshipType.withName;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.joda.time.Interval;
 import org.neo4j.graphalgo.CommonEvaluators;
 import org.neo4j.graphalgo.CostEvaluator;
+import org.neo4j.graphalgo.EstimateEvaluator;
 import org.neo4j.graphalgo.GraphAlgoFactory;
-import org.neo4j.graphalgo.PathFinder;
 import org.neo4j.graphalgo.WeightedPath;
 import org.neo4j.graphdb.*;
-import org.neo4j.graphdb.index.Index;
-import org.neo4j.graphdb.traversal.BranchState;
-import org.neo4j.graphdb.traversal.InitialBranchState;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
 import org.neo4j.helpers.collection.IteratorUtil;
 
 public class SimpleParcelRouteCalculator
 {
+    public enum SearchMode
+    {
+        DIJKSTRA,
+        BIDIRECTIONAL_DIJKSTRA,
+        A_STAR
+    }
+
     private static final CostEvaluator<Double> COST_EVALUATOR = CommonEvaluators.doubleCostEvaluator( "cost" );
-    private static final PathExpander<Interval> PATH_EXPANDER = new ValidPathExpander();
+    private static final RelationshipType CONNECTED_TO = withName( "CONNECTED_TO" );
+    private static final RelationshipType DELIVERY_ROUTE = withName( "DELIVERY_ROUTE" );
+    private static final int NUMBER_OF_LANDMARKS = 4;
+    private static final EstimateEvaluator<Double> NO_ESTIMATE = new EstimateEvaluator<Double>()
+    {
+        @Override
+        public Double getCost( Node node, Node goal )
+        {
+            return 0.0;
+        }
+    };
     public static final Label LOCATION = DynamicLabel.label("Location");
     private GraphDatabaseService db;
 
+    private final TransactionEventHandler<Boolean> landmarkMaintainer = new LandmarkMaintainer();
+    private boolean maintainingLandmarks;
+    private final AtomicLong landmarkInvalidations = new AtomicLong();
+    private volatile RouteLandmarks landmarks;
+
+    private final ValidityWindows validityWindows;
+
     public SimpleParcelRouteCalculator( GraphDatabaseService db )
+    {
+        this( db, null );
+    }
+
+    /**
+     * Relationship validity is read from the supplied windows, if any, rather than from the store.
+     */
+    public SimpleParcelRouteCalculator( GraphDatabaseService db, ValidityWindows validityWindows )
     {
         this.db = db;
+        this.validityWindows = validityWindows;
     }
 
     public Iterable<Node> calculateRoute( String start, String end, Interval interval )
+    {
+        return calculateRoute( start, end, interval, SearchMode.DIJKSTRA, null );
+    }
+
+    /**
+     * Finds the cheapest route using the given search mode, adding the number of nodes expanded and
+     * relationships examined to the supplied counters (which may be null). A_STAR estimates the
+     * remaining cost from landmark distances, computed on first use over every route regardless of
+     * validity, so that they are lower bounds for any interval.
+     */
+    public Iterable<Node> calculateRoute( String start, String end, Interval interval, SearchMode mode,
+                                          SearchCounters counters )
     {
         Node startNode = findByLocation ( start );
         Node endNode = findByLocation( end );
+        if ( startNode.equals( endNode ) )
+        {
+            return Collections.singletonList( startNode );
+        }
+        IntervalExpander expander = new IntervalExpander( interval, Direction.BOTH,
+                validityWindows == null ? null : validityWindows.snapshot(), CONNECTED_TO, DELIVERY_ROUTE );
 
-        PathFinder<WeightedPath> routeBetweenDeliveryBasesFinder = GraphAlgoFactory.dijkstra(
-                PATH_EXPANDER,
-                new InitialBranchState.State<Interval>( interval, interval ),
-                COST_EVALUATOR );
-        return IteratorUtil.asCollection(
-                routeBetweenDeliveryBasesFinder.findSinglePath( startNode, endNode ).nodes() );
+        List<Node> route;
+        switch ( mode )
+        {
+            case BIDIRECTIONAL_DIJKSTRA:
+                route = findRouteBidirectionally( startNode, endNode, expander, counters );
+                break;
+            case A_STAR:
+                route = nodes( GraphAlgoFactory.aStar( expander, COST_EVALUATOR, landmarks() )
+                        .findSinglePath( startNode, endNode ) );
+                break;
+            default:
+                route = nodes( GraphAlgoFactory.dijkstra( expander, COST_EVALUATOR )
+                        .findSinglePath( startNode, endNode ) );
+        }
+        count( expander, counters );
+
+        if ( route == null )
+        {
+            throw new IllegalStateException( String.format( "No route between %s and %s during %s",
+                    start, end, interval ) );
+        }
+        return route;
+    }
+
+    public void stopMaintaining()
+    {
+        synchronized ( landmarkMaintainer )
+        {
+            if ( maintainingLandmarks )
+            {
+                db.unregisterTransactionEventHandler( landmarkMaintainer );
+                maintainingLandmarks = false;
+            }
+            landmarks = null;
+        }
     }
 
     private Node findByLocation(String location)
@@ -47,31 +134,250 @@ public class SimpleParcelRouteCalculator
         return IteratorUtil.single( db.findNodesByLabelAndProperty( LOCATION, "name", location ) );
     }
 
-    private static class ValidPathExpander implements PathExpander<Interval>
+    private static List<Node> nodes( WeightedPath path )
+    {
+        return path == null ? null : new ArrayList<>( IteratorUtil.asCollection( path.nodes() ) );
+    }
+
+    private EstimateEvaluator<Double> landmarks()
+    {
+        RouteLandmarks current = landmarks;
+        if ( current != null )
+        {
+            return current;
+        }
+        synchronized ( landmarkMaintainer )
+        {
+            if ( !maintainingLandmarks )
+            {
+                db.registerTransactionEventHandler( landmarkMaintainer );
+                maintainingLandmarks = true;
+            }
+            current = landmarks;
+            if ( current != null )
+            {
+                return current;
+            }
+            // Only publish the landmarks if no route changed while they were computed. If one did, they
+            // may overestimate, so this search falls back to no estimate at all
+            long invalidationsBeforeCompute = landmarkInvalidations.get();
+            RouteLandmarks computed = RouteLandmarks.compute( db, NUMBER_OF_LANDMARKS, COST_EVALUATOR,
+                    CONNECTED_TO, DELIVERY_ROUTE );
+            if ( landmarkInvalidations.get() != invalidationsBeforeCompute )
+            {
+                return NO_ESTIMATE;
+            }
+            landmarks = computed;
+            return computed;
+        }
+    }
+
+    private static void count( IntervalExpander expander, SearchCounters counters )
+    {
+        if ( counters != null )
+        {
+            counters.nodesExplored += expander.nodesExpanded();
+            counters.relationshipsExplored += expander.relationshipsExamined();
+        }
+    }
+
+    private List<Node> findRouteBidirectionally( Node startNode, Node endNode, IntervalExpander expander,
+                                                 SearchCounters counters )
     {
+        Frontier forward = new Frontier( startNode, expander );
+        Frontier backward = new Frontier( endNode, expander.reverse() );
+        double best = Double.POSITIVE_INFINITY;
+        Node meetingNode = null;
+
+        // Expand whichever side has the closer frontier until the two frontiers together can't
+        // beat the best route found so far
+        while ( !forward.isEmpty() && !backward.isEmpty() &&
+                forward.nextDistance() + backward.nextDistance() < best )
+        {
+            Frontier current = forward.nextDistance() <= backward.nextDistance() ? forward : backward;
+            Frontier other = current == forward ? backward : forward;
+
+            Node node = current.settleNext();
+            if ( node == null )
+            {
+                continue;
+            }
+            double distance = current.distance( node );
+            int numberOfRelationships = current.expander.expand( node );
+            for ( int i = 0; i < numberOfRelationships; i++ )
+            {
+                Relationship relationship = current.expander.relationship( i );
+                Node next = relationship.getOtherNode( node );
+                double nextDistance = distance + COST_EVALUATOR.getCost( relationship, Direction.BOTH );
+                current.reach( next, node, nextDistance );
+
+                Double otherDistance = other.distances.get( next.getId() );
+                if ( otherDistance != null && nextDistance + otherDistance < best )
+                {
+                    best = nextDistance + otherDistance;
+                    meetingNode = next;
+                }
+            }
+        }
+
+        // The forward expander is counted by the caller
+        count( backward.expander, counters );
+
+        if ( meetingNode == null )
+        {
+            return null;
+        }
+        List<Node> route = forward.pathTo( meetingNode );
+        List<Node> downRoute = backward.pathTo( meetingNode );
+        for ( int i = downRoute.size() - 2; i >= 0; i-- )
+        {
+            route.add( downRoute.get( i ) );
+        }
+        return route;
+    }
+
+    public static class SearchCounters
+    {
+        private long nodesExplored;
+        private long relationshipsExplored;
+
+        public long nodesExplored()
+        {
+            return nodesExplored;
+        }
+
+        public long relationshipsExplored()
+        {
+            return relationshipsExplored;
+        }
+
         @Override
-        public Iterable<Relationship> expand( Path path, BranchState<Interval> deliveryInterval )
+        public String toString()
+        {
+            return String.format( "%s nodes, %s relationships explored", nodesExplored, relationshipsExplored );
+        }
+    }
+
+    private static class Frontier
+    {
+        private final IntervalExpander expander;
+        private final Map<Long, Double> distances = new HashMap<>();
+        private final Map<Long, Node> parents = new HashMap<>();
+        private final Set<Long> settled = new HashSet<>();
+        private final PriorityQueue<QueuedNode> queue = new PriorityQueue<>();
+
+        Frontier( Node start, IntervalExpander expander )
+        {
+            this.expander = expander;
+            distances.put( start.getId(), 0.0 );
+            queue.add( new QueuedNode( start, 0.0 ) );
+        }
+
+        boolean isEmpty()
+        {
+            return queue.isEmpty();
+        }
+
+        double nextDistance()
         {
-            List<Relationship> results = new ArrayList<Relationship>();
-            for ( Relationship r : path.endNode().getRelationships( Direction.BOTH, withName( "CONNECTED_TO" ),
-                    withName( "DELIVERY_ROUTE" ) ) )
+            return queue.peek().distance;
+        }
+
+        Node settleNext()
+        {
+            Node node = queue.poll().node;
+            return settled.add( node.getId() ) ? node : null;
+        }
+
+        double distance( Node node )
+        {
+            return distances.get( node.getId() );
+        }
+
+        void reach( Node node, Node parent, double distance )
+        {
+            Double current = distances.get( node.getId() );
+            if ( current == null || distance < current )
             {
-                Interval relationshipInterval = new Interval(
-                        (Long) r.getProperty( "start_date" ),
-                        (Long) r.getProperty( "end_date" ) );
-                if ( relationshipInterval.contains( deliveryInterval.getState() ) )
+                distances.put( node.getId(), distance );
+                parents.put( node.getId(), parent );
+                queue.add( new QueuedNode( node, distance ) );
+            }
+        }
+
+        List<Node> pathTo( Node node )
+        {
+            List<Node> path = new ArrayList<>();
+            for ( Node current = node; current != null; current = parents.get( current.getId() ) )
+            {
+                path.add( current );
+            }
+            Collections.reverse( path );
+            return path;
+        }
+    }
+
+    private static class QueuedNode implements Comparable<QueuedNode>
+    {
+        private final Node node;
+        private final double distance;
+
+        QueuedNode( Node node, double distance )
+        {
+            this.node = node;
+            this.distance = distance;
+        }
+
+        @Override
+        public int compareTo( QueuedNode other )
+        {
+            return Double.compare( distance, other.distance );
+        }
+    }
+
+    private class LandmarkMaintainer implements TransactionEventHandler<Boolean>
+    {
+        @Override
+        public Boolean beforeCommit( TransactionData data ) throws Exception
+        {
+            // Landmark distances stay lower bounds when routes get dearer or disappear, but not
+            // when routes are added or get cheaper
+            for ( Relationship relationship : data.createdRelationships() )
+            {
+                if ( isRoute( relationship ) )
+                {
+                    return true;
+                }
+            }
+            for ( PropertyEntry<Relationship> change : data.assignedRelationshipProperties() )
+            {
+                if ( change.key().equals( "cost" ) && isRoute( change.entity() ) )
                 {
-                    results.add( r );
+                    return true;
                 }
             }
+            return !IteratorUtil.asCollection( data.deletedNodes() ).isEmpty();
+        }
 
-            return results;
+        private boolean isRoute( Relationship relationship )
+        {
+            return relationship.isType( CONNECTED_TO ) || relationship.isType( DELIVERY_ROUTE );
         }
 
         @Override
-        public PathExpander<Interval> reverse()
+        public void afterCommit( TransactionData data, Boolean invalidate )
         {
-            return null;
+            if ( invalidate )
+            {
+                landmarkInvalidations.incrementAndGet();
+                landmarks = null;
+            }
+        }
+
+        @Override
+        public void afterRollback( TransactionData data, Boolean invalidate )
+        {
+            // Do nothing
         }
     }
 }
@@ -0,0 +1,645 @@
+package org.neo4j.graphdatabases.queries.traversals;
+
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.neo4j.graphdb.*;
+import org.neo4j.helpers.collection.IteratorUtil;
+
+/**
+ * Core API implementations of the SocialNetworkQueries recommendations. Each returns rows with the
+ * same columns as its Cypher twin, but keeps only the top k rows in a bounded heap instead of
+ * sorting every candidate. Rows with equal scores are ordered by name (and company), so, unlike
+ * the Cypher queries, the choice between tied candidates at the limit is deterministic.
+ * <p/>
+ * Given a {@link UserInterestIndex}, the shared interests recommendations score candidates by
+ * intersecting interest bitsets rather than expanding INTERESTED_IN relationships. Given a
+ * {@link SupernodeStrategy}, recommendations that meet at Topic or Company hubs intersect the hubs'
+ * membership lists from the smaller side instead.
+ */
+public class SocialNetworkRecommendations
+{
+    private static final Label USER = DynamicLabel.label( "User" );
+    private static final Label TOPIC = DynamicLabel.label( "Topic" );
+
+    private static final RelationshipType WORKS_FOR = withName( "WORKS_FOR" );
+    private static final RelationshipType INTERESTED_IN = withName( "INTERESTED_IN" );
+    private static final RelationshipType WORKED_ON = withName( "WORKED_ON" );
+    private static final RelationshipType WORKED_WITH = withName( "WORKED_WITH" );
+
+    private static final Comparator<Candidate> BY_SCORE = new Comparator<Candidate>()
+    {
+        @Override
+        public int compare( Candidate first, Candidate second )
+        {
+            if ( first.score != second.score )
+            {
+                return first.score > second.score ? -1 : 1;
+            }
+            int byName = first.name.compareTo( second.name );
+            if ( byName != 0 )
+            {
+                return byName;
+            }
+            return String.valueOf( first.company ).compareTo( String.valueOf( second.company ) );
+        }
+    };
+
+    private final GraphDatabaseService db;
+    private final UserInterestIndex interestIndex;
+    private final SupernodeStrategy supernodes;
+
+    public SocialNetworkRecommendations( GraphDatabaseService db )
+    {
+        this( db, null, null );
+    }
+
+    public SocialNetworkRecommendations( GraphDatabaseService db, UserInterestIndex interestIndex )
+    {
+        this( db, interestIndex, null );
+    }
+
+    public SocialNetworkRecommendations( GraphDatabaseService db, SupernodeStrategy supernodes )
+    {
+        this( db, null, supernodes );
+    }
+
+    public SocialNetworkRecommendations( GraphDatabaseService db, UserInterestIndex interestIndex,
+                                         SupernodeStrategy supernodes )
+    {
+        this.db = db;
+        this.interestIndex = interestIndex;
+        this.supernodes = supernodes;
+    }
+
+    /**
+     * Colleagues at the user's company, scored by the interests they share with the user.
+     * Columns: name, score, interests.
+     */
+    public List<Map<String, Object>> sharedInterestsSameCompany( String userName, int limit )
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            Node subject = user( userName );
+            Map<Node, Candidate> candidates;
+            if ( interestIndex != null )
+            {
+                candidates = sameCompanyCandidatesByBitset( subject );
+            }
+            else if ( supernodes != null )
+            {
+                candidates = sameCompanyCandidatesByMembership( subject );
+            }
+            else
+            {
+                candidates = sameCompanyCandidatesByExpansion( subject );
+            }
+
+            TopK<Candidate> topK = new TopK<Candidate>( limit, BY_SCORE );
+            for ( Candidate candidate : candidates.values() )
+            {
+                topK.offer( candidate );
+            }
+            List<Map<String, Object>> rows = rows( topK, false, false );
+            tx.success();
+            return rows;
+        }
+    }
+
+    /**
+     * Users at any company, scored by the interests they share with the user, one row per user and
+     * company. Columns: name, company, score, interests.
+     */
+    public List<Map<String, Object>> sharedInterestsAllCompanies( String userName, int limit )
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            final Node subject = user( userName );
+            final TopK<Candidate> topK = new TopK<Candidate>( limit, BY_SCORE );
+            if ( interestIndex == null )
+            {
+                for ( Candidate candidate : allCompaniesCandidatesByExpansion( subject ).values() )
+                {
+                    // Only look up the companies of candidates that can still make the top k
+                    if ( canMakeTopK( candidate.score, topK ) )
+                    {
+                        offerAtCompanies( candidate, topK );
+                    }
+                }
+            }
+            else
+            {
+                final long[] interests = interestIndex.interests( subject.getId() );
+                if ( interests != null )
+                {
+                    interestIndex.visitUsersSharingInterests( interests, new UserInterestIndex.UserVisitor()
+                    {
+                        @Override
+                        public void visit( long userNodeId, int sharedInterests )
+                        {
+                            if ( userNodeId != subject.getId() && canMakeTopK( sharedInterests, topK ) )
+                            {
+                                Candidate candidate = new Candidate( db.getNodeById( userNodeId ) );
+                                candidate.score = sharedInterests;
+                                candidate.interests = interests;
+                                offerAtCompanies( candidate, topK );
+                            }
+                        }
+                    } );
+                }
+            }
+            List<Map<String, Object>> rows = rows( topK, true, false );
+            tx.success();
+            return rows;
+        }
+    }
+
+    /**
+     * Users who share an interest with the user and are also interested in the topic, scored by
+     * the number of interests they share with the user. Columns: name, topics (all of the
+     * colleague's interests).
+     */
+    public List<Map<String, Object>> sharedInterestsAlsoInterestedInTopic( String userName, String topicLabel,
+                                                                         int limit )
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            Node subject = user( userName );
+            Node topic = IteratorUtil.single( db.findNodesByLabelAndProperty( TOPIC, "name", topicLabel ) );
+
+            Map<Node, Candidate> candidates = supernodes == null
+                    ? alsoInterestedInTopicCandidatesByExpansion( subject, topic )
+                    : alsoInterestedInTopicCandidatesByMembership( subject, topic );
+
+            TopK<Candidate> topK = new TopK<Candidate>( limit, BY_SCORE );
+            for ( Candidate candidate : candidates.values() )
+            {
+                // The shared interest and the topic must be reached by different relationships
+                if ( candidate.score > 1 || !candidate.interestNodes.contains( topic ) )
+                {
+                    topK.offer( candidate );
+                }
+            }
+
+            List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+            for ( Candidate candidate : topK.toList() )
+            {
+                List<String> topics = new ArrayList<String>();
+                for ( Node interest : endNodes( candidate.person, INTERESTED_IN ) )
+                {
+                    topics.add( (String) interest.getProperty( "name" ) );
+                }
+                Collections.sort( topics );
+
+                Map<String, Object> row = new LinkedHashMap<String, Object>();
+                row.put( "name", candidate.name );
+                row.put( "topics", topics );
+                rows.add( row );
+            }
+            tx.success();
+            return rows;
+        }
+    }
+
+    /**
+     * Users who worked on the same project as the user (distance 1), or on a project with someone
+     * who did (distance 2), scored by how many of the interests they have. Columns: name, score,
+     * interests, distance.
+     */
+    public List<Map<String, Object>> friendOfAFriendWithMultipleInterest( String userName, int limit,
+                                                                        String... interestLabels )
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            Node subject = user( userName );
+            Set<Node> interests = topics( interestLabels );
+
+            Map<Node, Integer> distances = new HashMap<Node, Integer>();
+            Set<Node> projects = endNodes( subject, WORKED_ON );
+            List<Node> colleagues = new ArrayList<Node>();
+            for ( Node project : projects )
+            {
+                for ( Relationship workedOn : project.getRelationships( WORKED_ON, Direction.INCOMING ) )
+                {
+                    Node colleague = workedOn.getStartNode();
+                    if ( !colleague.equals( subject ) && !distances.containsKey( colleague ) )
+                    {
+                        distances.put( colleague, 1 );
+                        colleagues.add( colleague );
+                    }
+                }
+            }
+            for ( Node colleague : colleagues )
+            {
+                for ( Relationship workedOn : colleague.getRelationships( WORKED_ON, Direction.OUTGOING ) )
+                {
+                    Node project = workedOn.getEndNode();
+                    if ( projects.contains( project ) )
+                    {
+                        continue;
+                    }
+                    for ( Relationship otherWorkedOn : project.getRelationships( WORKED_ON, Direction.INCOMING ) )
+                    {
+                        Node person = otherWorkedOn.getStartNode();
+                        if ( !person.equals( subject ) && !distances.containsKey( person ) )
+                        {
+                            distances.put( person, 2 );
+                        }
+                    }
+                }
+            }
+
+            List<Map<String, Object>> rows = rows( scoreByInterests( distances, interests, limit ), false, true );
+            tx.success();
+            return rows;
+        }
+    }
+
+    /**
+     * Users the user has worked with (distance 1), or who have worked with someone the user has
+     * worked with (distance 2), scored by how many of the interests they have. Columns: name,
+     * score, interests, distance. Reads WORKED_WITH relationships, so these must have been
+     * created first.
+     */
+    public List<Map<String, Object>> friendWorkedWithFriendWithInterests( String userName, int limit,
+                                                                        String... interestLabels )
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            Node subject = user( userName );
+            Set<Node> interests = topics( interestLabels );
+
+            Map<Node, Integer> distances = new HashMap<Node, Integer>();
+            List<Node> friends = new ArrayList<Node>();
+            for ( Relationship workedWith : subject.getRelationships( WORKED_WITH ) )
+            {
+                Node friend = workedWith.getOtherNode( subject );
+                if ( !friend.equals( subject ) && !distances.containsKey( friend ) )
+                {
+                    distances.put( friend, 1 );
+                    friends.add( friend );
+                }
+            }
+            for ( Node friend : friends )
+            {
+                for ( Relationship workedWith : friend.getRelationships( WORKED_WITH ) )
+                {
+                    Node person = workedWith.getOtherNode( friend );
+                    if ( !person.equals( subject ) && !distances.containsKey( person ) )
+                    {
+                        distances.put( person, 2 );
+                    }
+                }
+            }
+
+            List<Map<String, Object>> rows = rows( scoreByInterests( distances, interests, limit ), false, true );
+            tx.success();
+            return rows;
+        }
+    }
+
+    private Map<Node, Candidate> sameCompanyCandidatesByExpansion( Node subject )
+    {
+        Set<Node> interests = endNodes( subject, INTERESTED_IN );
+        Map<Node, Candidate> candidates = new HashMap<Node, Candidate>();
+        for ( Node colleague : colleagues( subject ) )
+        {
+            for ( Relationship interestedIn : colleague.getRelationships( INTERESTED_IN, Direction.OUTGOING ) )
+            {
+                Node interest = interestedIn.getEndNode();
+                if ( interests.contains( interest ) )
+                {
+                    candidate( candidates, colleague ).addInterest( interest );
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private Map<Node, Candidate> sameCompanyCandidatesByBitset( Node subject )
+    {
+        Map<Node, Candidate> candidates = new HashMap<Node, Candidate>();
+        long[] interests = interestIndex.interests( subject.getId() );
+        if ( interests == null )
+        {
+            return candidates;
+        }
+        for ( Node colleague : colleagues( subject ) )
+        {
+            int shared = interestIndex.sharedInterests( interests, colleague.getId() );
+            if ( shared > 0 )
+            {
+                Candidate candidate = candidate( candidates, colleague );
+                candidate.score += shared;
+                candidate.interests = interests;
+            }
+        }
+        return candidates;
+    }
+
+    private Map<Node, Candidate> sameCompanyCandidatesByMembership( Node subject )
+    {
+        List<Node> interests = new ArrayList<Node>( endNodes( subject, INTERESTED_IN ) );
+        long[][] interestMembers = new long[interests.size()][];
+        long interestMembersTotal = 0;
+        for ( int i = 0; i < interestMembers.length; i++ )
+        {
+            interestMembers[i] = supernodes.members( interests.get( i ), INTERESTED_IN );
+            interestMembersTotal += interestMembers[i].length;
+        }
+
+        Map<Node, Candidate> candidates = new HashMap<Node, Candidate>();
+        for ( Node company : endNodes( subject, WORKS_FOR ) )
+        {
+            intersect( subject, supernodes.members( company, WORKS_FOR ), interests, interestMembers,
+                    interestMembersTotal, candidates );
+        }
+        return candidates;
+    }
+
+    private Map<Node, Candidate> alsoInterestedInTopicCandidatesByExpansion( Node subject, Node topic )
+    {
+        Map<Node, Candidate> candidates = new HashMap<Node, Candidate>();
+        for ( Relationship interestedIn : subject.getRelationships( INTERESTED_IN, Direction.OUTGOING ) )
+        {
+            Node interest = interestedIn.getEndNode();
+            for ( Relationship otherInterestedIn : interest.getRelationships( INTERESTED_IN, Direction.INCOMING ) )
+            {
+                Node person = otherInterestedIn.getStartNode();
+                if ( !person.equals( subject ) )
+                {
+                    candidate( candidates, person ).addInterest( interest );
+                }
+            }
+        }
+
+        Map<Node, Candidate> interestedInTopic = new HashMap<Node, Candidate>();
+        for ( Candidate candidate : candidates.values() )
+        {
+            if ( endNodes( candidate.person, INTERESTED_IN ).contains( topic ) )
+            {
+                interestedInTopic.put( candidate.person, candidate );
+            }
+        }
+        return interestedInTopic;
+    }
+
+    private Map<Node, Candidate> alsoInterestedInTopicCandidatesByMembership( Node subject, Node topic )
+    {
+        List<Node> interests = new ArrayList<Node>( endNodes( subject, INTERESTED_IN ) );
+        long[][] interestMembers = new long[interests.size()][];
+        long interestMembersTotal = 0;
+        for ( int i = 0; i < interestMembers.length; i++ )
+        {
+            interestMembers[i] = supernodes.members( interests.get( i ), INTERESTED_IN );
+            interestMembersTotal += interestMembers[i].length;
+        }
+
+        Map<Node, Candidate> candidates = new HashMap<Node, Candidate>();
+        intersect( subject, supernodes.members( topic, INTERESTED_IN ), interests, interestMembers,
+                interestMembersTotal, candidates );
+        return candidates;
+    }
+
+    /**
+     * Adds each interest to the candidates that are both members of it and of the group, walking
+     * whichever of the group and the interests' members is smaller, and looking the other up.
+     */
+    private void intersect( Node subject, long[] groupMembers, List<Node> interests, long[][] interestMembers,
+                            long interestMembersTotal, Map<Node, Candidate> candidates )
+    {
+        long subjectId = subject.getId();
+        if ( groupMembers.length <= interestMembersTotal )
+        {
+            for ( long member : groupMembers )
+            {
+                for ( int i = 0; member != subjectId && i < interestMembers.length; i++ )
+                {
+                    if ( SupernodeStrategy.contains( interestMembers[i], member ) )
+                    {
+                        candidate( candidates, db.getNodeById( member ) ).addInterest( interests.get( i ) );
+                    }
+                }
+            }
+        }
+        else
+        {
+            for ( int i = 0; i < interestMembers.length; i++ )
+            {
+                for ( long member : interestMembers[i] )
+                {
+                    if ( member != subjectId && SupernodeStrategy.contains( groupMembers, member ) )
+                    {
+                        candidate( candidates, db.getNodeById( member ) ).addInterest( interests.get( i ) );
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<Node> colleagues( Node subject )
+    {
+        // One entry per company the colleague shares with the subject, as in the Cypher query
+        List<Node> colleagues = new ArrayList<Node>();
+        for ( Relationship worksFor : subject.getRelationships( WORKS_FOR, Direction.OUTGOING ) )
+        {
+            for ( Relationship colleagueWorksFor : worksFor.getEndNode().getRelationships(
+                    WORKS_FOR, Direction.INCOMING ) )
+            {
+                Node colleague = colleagueWorksFor.getStartNode();
+                if ( !colleague.equals( subject ) )
+                {
+                    colleagues.add( colleague );
+                }
+            }
+        }
+        return colleagues;
+    }
+
+    private Map<Node, Candidate> allCompaniesCandidatesByExpansion( Node subject )
+    {
+        Map<Node, Candidate> candidates = new HashMap<Node, Candidate>();
+        for ( Relationship interestedIn : subject.getRelationships( INTERESTED_IN, Direction.OUTGOING ) )
+        {
+            Node interest = interestedIn.getEndNode();
+            for ( Relationship otherInterestedIn : interest.getRelationships( INTERESTED_IN, Direction.INCOMING ) )
+            {
+                Node person = otherInterestedIn.getStartNode();
+                if ( !person.equals( subject ) )
+                {
+                    candidate( candidates, person ).addInterest( interest );
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private void offerAtCompanies( Candidate candidate, TopK<Candidate> topK )
+    {
+        for ( Relationship worksFor : candidate.person.getRelationships( WORKS_FOR, Direction.OUTGOING ) )
+        {
+            topK.offer( candidate.atCompany( (String) worksFor.getEndNode().getProperty( "name" ) ) );
+        }
+    }
+
+    private static boolean canMakeTopK( long score, TopK<Candidate> topK )
+    {
+        Candidate threshold = topK.threshold();
+        return threshold == null || score >= threshold.score;
+    }
+
+    private TopK<Candidate> scoreByInterests( Map<Node, Integer> distances, Set<Node> interests, int limit )
+    {
+        TopK<Candidate> topK = new TopK<Candidate>( limit, BY_SCORE );
+        for ( Map.Entry<Node, Integer> entry : distances.entrySet() )
+        {
+            Candidate candidate = null;
+            for ( Relationship interestedIn : entry.getKey().getRelationships( INTERESTED_IN, Direction.OUTGOING ) )
+            {
+                Node interest = interestedIn.getEndNode();
+                if ( interests.contains( interest ) )
+                {
+                    if ( candidate == null )
+                    {
+                        candidate = new Candidate( entry.getKey() );
+                        candidate.distance = entry.getValue();
+                    }
+                    candidate.addInterest( interest );
+                }
+            }
+            if ( candidate != null )
+            {
+                topK.offer( candidate );
+            }
+        }
+        return topK;
+    }
+
+    private Node user( String userName )
+    {
+        return IteratorUtil.single( db.findNodesByLabelAndProperty( USER, "name", userName ) );
+    }
+
+    private Set<Node> topics( String... topicLabels )
+    {
+        Set<Node> topics = new HashSet<Node>();
+        for ( String topicLabel : new HashSet<String>( Arrays.asList( topicLabels ) ) )
+        {
+            Node topic = IteratorUtil.singleOrNull( db.findNodesByLabelAndProperty( TOPIC, "name", topicLabel ) );
+            if ( topic != null )
+            {
+                topics.add( topic );
+            }
+        }
+        return topics;
+    }
+
+    private static Set<Node> endNodes( Node node, RelationshipType type )
+    {
+        Set<Node> endNodes = new HashSet<Node>();
+        for ( Relationship relationship : node.getRelationships( type, Direction.OUTGOING ) )
+        {
+            endNodes.add( relationship.getEndNode() );
+        }
+        return endNodes;
+    }
+
+    private static Candidate candidate( Map<Node, Candidate> candidates, Node person )
+    {
+        Candidate candidate = candidates.get( person );
+        if ( candidate == null )
+        {
+            candidate = new Candidate( person );
+            candidates.put( person, candidate );
+        }
+        return candidate;
+    }
+
+    private List<Map<String, Object>> rows( TopK<Candidate> topK, boolean withCompany, boolean withDistance )
+    {
+        List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+        for ( Candidate candidate : topK.toList() )
+        {
+            List<String> interests = candidate.interests == null
+                    ? names( candidate.interestNodes )
+                    : interestIndex.topicNames( interestIndex.sharedInterestsBitset( candidate.interests,
+                            candidate.person.getId() ) );
+
+            Map<String, Object> row = new LinkedHashMap<String, Object>();
+            row.put( "name", candidate.name );
+            if ( withCompany )
+            {
+                row.put( "company", candidate.company );
+            }
+            row.put( "score", candidate.score );
+            row.put( "interests", interests );
+            if ( withDistance )
+            {
+                row.put( "distance", (long) candidate.distance );
+            }
+            rows.add( row );
+        }
+        return rows;
+    }
+
+    private static List<String> names( List<Node> nodes )
+    {
+        List<String> names = new ArrayList<String>();
+        for ( Node node : nodes )
+        {
+            names.add( (String) node.getProperty( "name" ) );
+        }
+        Collections.sort( names );
+        return names;
+    }
+
+    private static class Candidate
+    {
+        private final Node person;
+        private final String name;
+        private final List<Node> interestNodes;
+        private String company;
+        // The subject's interests bitset, when scored with the interest index
+        private long[] interests;
+        private long score;
+        private int distance;
+
+        Candidate( Node person )
+        {
+            this( person, (String) person.getProperty( "name" ), new ArrayList<Node>() );
+        }
+
+        private Candidate( Node person, String name, List<Node> interestNodes )
+        {
+            this.person = person;
+            this.name = name;
+            this.interestNodes = interestNodes;
+        }
+
+        void addInterest( Node interest )
+        {
+            interestNodes.add( interest );
+            score++;
+        }
+
+        Candidate atCompany( String company )
+        {
+            Candidate candidate = new Candidate( person, name, interestNodes );
+            candidate.company = company;
+            candidate.score = score;
+            candidate.interests = interests;
+            candidate.distance = distance;
+            return candidate;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package org.neo4j.graphdatabases.queries.traversals;
+
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.neo4j.graphdatabases.queries.helpers.LongIntHashMap;
+import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.traversal.BranchState;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+/**
+ * Finds the hubs of the social network, the Topic, Company and Project nodes whose INTERESTED_IN,
+ * WORKS_FOR or WORKED_ON degree is at least a threshold, and keeps the ids of their members (the
+ * users at the other end of those relationships) as sorted arrays. Patterns that meet at a hub can then be
+ * answered by intersecting membership lists from the smaller side, instead of expanding the hub.
+ * <p/>
+ * Traversals that pass through hubs can use {@link #expander(RelationshipType, Direction)}, which
+ * follows only an evenly spaced sample of a hub's relationships when a sample size is configured.
+ * <p/>
+ * Membership is a snapshot: call {@link #build()} again after the graph changes.
+ */
+public class SupernodeStrategy
+{
+    public static final int DEFAULT_DEGREE_THRESHOLD = 1000;
+    public static final int NO_SAMPLING = 0;
+
+    private static final long[] NO_MEMBERS = new long[0];
+
+    private final GraphDatabaseService db;
+    private final int degreeThreshold;
+    private final int sampleSize;
+    private final List<Hub> hubTypes = new ArrayList<Hub>();
+
+    private volatile Snapshot snapshot;
+
+    public SupernodeStrategy( GraphDatabaseService db )
+    {
+        this( db, DEFAULT_DEGREE_THRESHOLD, NO_SAMPLING );
+    }
+
+    /**
+     * @param degreeThreshold nodes with at least this many member relationships are hubs
+     * @param sampleSize      the number of a hub's relationships traversals follow, or
+     *                        {@link #NO_SAMPLING} to follow them all
+     */
+    public SupernodeStrategy( GraphDatabaseService db, int degreeThreshold, int sampleSize )
+    {
+        this.db = db;
+        this.degreeThreshold = degreeThreshold;
+        this.sampleSize = sampleSize;
+        hubTypes.add( new Hub( DynamicLabel.label( "Topic" ), withName( "INTERESTED_IN" ) ) );
+        hubTypes.add( new Hub( DynamicLabel.label( "Company" ), withName( "WORKS_FOR" ) ) );
+        hubTypes.add( new Hub( DynamicLabel.label( "Project" ), withName( "WORKED_ON" ) ) );
+    }
+
+    public SupernodeStrategy build()
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            snapshot = new Snapshot( db, hubTypes, degreeThreshold );
+            tx.success();
+        }
+        return this;
+    }
+
+    public int degreeThreshold()
+    {
+        return degreeThreshold;
+    }
+
+    public int numberOfSupernodes()
+    {
+        return snapshot().hubIds.size();
+    }
+
+    public boolean isSupernode( Node node )
+    {
+        return snapshot().hubIds.containsKey( node.getId() );
+    }
+
+    /**
+     * Returns the sorted ids of the nodes with a relationship of the given type to the node, from
+     * the membership list if the node is a hub, otherwise by expanding the node.
+     */
+    public long[] members( Node node, RelationshipType type )
+    {
+        Snapshot current = snapshot();
+        int hub = current.hubIds.get( node.getId() );
+        if ( hub != LongIntHashMap.NO_VALUE && current.hubTypes[hub].name().equals( type.name() ) )
+        {
+            return current.members[hub];
+        }
+        return expand( node, type );
+    }
+
+    /**
+     * Returns true if the id is in the sorted array of ids.
+     */
+    public static boolean contains( long[] sortedIds, long id )
+    {
+        return Arrays.binarySearch( sortedIds, id ) >= 0;
+    }
+
+    /**
+     * Expands relationships of the given type in the given direction, following an evenly spaced
+     * sample of at most the configured sample size of a hub's relationships.
+     */
+    public PathExpander<Object> expander( final RelationshipType type, final Direction direction )
+    {
+        return new PathExpander<Object>()
+        {
+            @Override
+            public Iterable<Relationship> expand( Path path, BranchState<Object> state )
+            {
+                Node node = path.endNode();
+                Iterable<Relationship> relationships = node.getRelationships( type, direction );
+                if ( sampleSize == NO_SAMPLING || !isSupernode( node ) )
+                {
+                    return relationships;
+                }
+                return sample( relationships, node.getId() );
+            }
+
+            @Override
+            public PathExpander<Object> reverse()
+            {
+                return expander( type, direction.reverse() );
+            }
+        };
+    }
+
+    private Iterable<Relationship> sample( Iterable<Relationship> relationships, long hubId )
+    {
+        Snapshot current = snapshot();
+        int degree = current.members[current.hubIds.get( hubId )].length;
+        int stride = Math.max( 1, degree / sampleSize );
+        List<Relationship> sample = new ArrayList<Relationship>( sampleSize );
+        int i = 0;
+        for ( Relationship relationship : relationships )
+        {
+            if ( i++ % stride == 0 )
+            {
+                sample.add( relationship );
+                if ( sample.size() == sampleSize )
+                {
+                    break;
+                }
+            }
+        }
+        return sample;
+    }
+
+    private static long[] expand( Node node, RelationshipType type )
+    {
+        List<Long> ids = new ArrayList<Long>();
+        for ( Relationship relationship : node.getRelationships( type ) )
+        {
+            ids.add( relationship.getOtherNode( node ).getId() );
+        }
+        if ( ids.isEmpty() )
+        {
+            return NO_MEMBERS;
+        }
+        Collections.sort( ids );
+        long[] members = new long[ids.size()];
+        for ( int i = 0; i < members.length; i++ )
+        {
+            members[i] = ids.get( i );
+        }
+        return members;
+    }
+
+    private Snapshot snapshot()
+    {
+        Snapshot current = snapshot;
+        if ( current == null )
+        {
+            throw new IllegalStateException( "Supernode strategy has not been built" );
+        }
+        return current;
+    }
+
+    private static class Hub
+    {
+        private final Label label;
+        private final RelationshipType type;
+
+        Hub( Label label, RelationshipType type )
+        {
+            this.label = label;
+            this.type = type;
+        }
+    }
+
+    private static class Snapshot
+    {
+        private final LongIntHashMap hubIds = new LongIntHashMap();
+        private final RelationshipType[] hubTypes;
+        private final long[][] members;
+
+        Snapshot( GraphDatabaseService db, List<Hub> hubs, int degreeThreshold )
+        {
+            List<RelationshipType> types = new ArrayList<RelationshipType>();
+            List<long[]> memberLists = new ArrayList<long[]>();
+            GlobalGraphOperations operations = GlobalGraphOperations.at( db );
+            for ( Hub hub : hubs )
+            {
+                for ( Node node : operations.getAllNodesWithLabel( hub.label ) )
+                {
+                    long[] nodeMembers = expand( node, hub.type );
+                    if ( nodeMembers.length >= degreeThreshold )
+                    {
+                        hubIds.put( node.getId(), types.size() );
+                        types.add( hub.type );
+                        memberLists.add( nodeMembers );
+                    }
+                }
+            }
+            hubTypes = types.toArray( new RelationshipType[types.size()] );
+            members = memberLists.toArray( new long[memberLists.size()][] );
+        }
+    }
+}
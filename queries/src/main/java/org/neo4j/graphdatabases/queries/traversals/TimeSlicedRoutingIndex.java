@@ -0,0 +1,889 @@
+package org.neo4j.graphdatabases.queries.traversals;
+
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.joda.time.Interval;
+import org.neo4j.graphalgo.impl.util.PriorityMap;
+import org.neo4j.graphdatabases.queries.helpers.LongIntHashMap;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+/**
+ * In-memory routing index for {@link ParcelRouteCalculator}. Locations get dense int ids, and
+ * DELIVERY_ROUTE and CONNECTED_TO relationships are held as primitive arrays (validity start and
+ * end, cost) in store order, so route queries run without touching the store. Delivery base legs
+ * are found in the same order as {@link ParcelRouteCalculator}'s traversal.
+ * <p/>
+ * The CONNECTED_TO network is additionally split into time slices: the distinct validity
+ * boundaries divide time into elementary windows, and each window has its own adjacency holding
+ * only the connections valid for the whole window, plus {@link HubLabels} answering routes between
+ * delivery bases without a search. Intervals that run past the end of their window are routed
+ * with Dijkstra over the window's adjacency, skipping connections that end too early. DELIVERY_ROUTE
+ * legs are checked against the primitive validity arrays while they are walked.
+ * <p/>
+ * Changes to the validity or cost of existing relationships are applied in place (rebuilding the
+ * slices and their hub labels if a CONNECTED_TO relationship changed). Created or deleted relationships and renamed or deleted
+ * locations cause the index to be rebuilt on next use. Label changes aren't visible to transaction
+ * event handlers; call {@link #build()} after adding or removing Location labels.
+ */
+public class TimeSlicedRoutingIndex
+{
+    private static final RelationshipType DELIVERY_ROUTE = withName( "DELIVERY_ROUTE" );
+    private static final RelationshipType CONNECTED_TO = withName( "CONNECTED_TO" );
+    private static final String START_DATE = "start_date";
+    private static final String END_DATE = "end_date";
+    private static final String COST = "cost";
+    private static final String NAME = "name";
+
+    private static final List<PropertyEntry<Relationship>> REBUILD = Collections.emptyList();
+
+    private static final PriorityMap.Converter<Integer, Branch> BRANCH_TO_HUB =
+            new PriorityMap.Converter<Integer, Branch>()
+            {
+                @Override
+                public Integer convert( Branch branch )
+                {
+                    return branch.hub;
+                }
+            };
+
+    private final GraphDatabaseService db;
+    private final TransactionEventHandler<List<PropertyEntry<Relationship>>> maintainer = new RoutingIndexMaintainer();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile boolean stale = true;
+    private boolean slicesOutdated;
+
+    private Map<String, Integer> locations;
+    private LongIntHashMap nodeIndex;
+    private long[] nodeIds;
+
+    private Edges routes;
+    private int[] incomingRouteOffsets;
+    private int[] incomingRoutes;
+
+    private Edges connections;
+    private int[] hubs;
+    private int[] hubNodes;
+    private int[] connectionOffsets;
+    private int[] connectionEdges;
+    private int[] connectionTargets;
+
+    private long[] boundaries;
+    private int[][] sliceOffsets;
+    private int[][] slicePositions;
+    private HubLabels[] sliceLabels;
+
+    public TimeSlicedRoutingIndex( GraphDatabaseService db )
+    {
+        this.db = db;
+        db.registerTransactionEventHandler( maintainer );
+    }
+
+    public TimeSlicedRoutingIndex build()
+    {
+        lock.writeLock().lock();
+        try
+        {
+            rebuild();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+        return this;
+    }
+
+    public void stopMaintaining()
+    {
+        db.unregisterTransactionEventHandler( maintainer );
+    }
+
+    public int numberOfHubLabels()
+    {
+        lock.readLock().lock();
+        try
+        {
+            ensureCurrent();
+            int labels = 0;
+            for ( HubLabels hubLabels : sliceLabels )
+            {
+                labels += hubLabels.numberOfLabels();
+            }
+            return labels;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int numberOfSlices()
+    {
+        lock.readLock().lock();
+        try
+        {
+            ensureCurrent();
+            return sliceOffsets.length;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Iterable<Node> calculateRoute( String start, String end, Interval interval )
+    {
+        long[] route = calculateRouteNodeIds( start, end, interval );
+        Set<Node> results = new LinkedHashSet<>();
+        try ( Transaction tx = db.beginTx() )
+        {
+            for ( long nodeId : route )
+            {
+                results.add( db.getNodeById( nodeId ) );
+            }
+            tx.success();
+        }
+        return results;
+    }
+
+    public long[] findRouteToDeliveryBase( String location, Interval interval )
+    {
+        lock.readLock().lock();
+        try
+        {
+            ensureCurrent();
+            return toNodeIds( findRouteToDeliveryBase( location( location ), interval.getStartMillis(),
+                    interval.getEndMillis() ) );
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long[] findRouteBetweenDeliveryBases( long deliveryBase1, long deliveryBase2, Interval interval )
+    {
+        return findRoutesBetweenDeliveryBases( deliveryBase1, new long[]{deliveryBase2}, interval )[0];
+    }
+
+    /**
+     * Routes from one delivery base to many, sharing a single search where one is needed. Entries
+     * are null where there is no route during the interval.
+     */
+    public long[][] findRoutesBetweenDeliveryBases( long deliveryBase, long[] deliveryBases, Interval interval )
+    {
+        lock.readLock().lock();
+        try
+        {
+            ensureCurrent();
+            long[][] results = new long[deliveryBases.length][];
+            int from = nodeIndex.get( deliveryBase );
+            if ( from == LongIntHashMap.NO_VALUE )
+            {
+                return results;
+            }
+
+            int[] targets = new int[deliveryBases.length];
+            for ( int i = 0; i < deliveryBases.length; i++ )
+            {
+                targets[i] = nodeIndex.get( deliveryBases[i] );
+            }
+
+            IntBuffer[] routes = findRoutesBetweenDeliveryBases( from, targets, interval.getStartMillis(),
+                    interval.getEndMillis() );
+            for ( int i = 0; i < routes.length; i++ )
+            {
+                results[i] = routes[i] == null ? null : toNodeIds( routes[i] );
+            }
+            return results;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long[] calculateRouteNodeIds( String start, String end, Interval interval )
+    {
+        long from = interval.getStartMillis();
+        long to = interval.getEndMillis();
+
+        lock.readLock().lock();
+        try
+        {
+            ensureCurrent();
+
+            IntBuffer upLeg = findRouteToDeliveryBase( location( start ), from, to );
+            IntBuffer downLeg = findRouteToDeliveryBase( location( end ), from, to );
+            IntBuffer topRoute = findRouteBetweenDeliveryBases( upLeg.last(), downLeg.last(), from, to );
+            if ( topRoute == null )
+            {
+                throw new IllegalStateException( String.format( "No route between %s and %s during %s",
+                        start, end, interval ) );
+            }
+
+            IntBuffer route = new IntBuffer( upLeg.size + topRoute.size + downLeg.size );
+            for ( int i = 0; i < upLeg.size; i++ )
+            {
+                route.addIfAbsent( upLeg.values[i] );
+            }
+            for ( int i = 0; i < topRoute.size; i++ )
+            {
+                route.addIfAbsent( topRoute.values[i] );
+            }
+            for ( int i = downLeg.size - 1; i >= 0; i-- )
+            {
+                route.addIfAbsent( downLeg.values[i] );
+            }
+
+            return toNodeIds( route );
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void ensureCurrent()
+    {
+        // Called holding the read lock, which is handed back once the index is current
+        if ( !stale && !slicesOutdated )
+        {
+            return;
+        }
+        lock.readLock().unlock();
+        lock.writeLock().lock();
+        try
+        {
+            if ( stale )
+            {
+                rebuild();
+            }
+            else if ( slicesOutdated )
+            {
+                buildSlices();
+            }
+        }
+        finally
+        {
+            lock.readLock().lock();
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int location( String name )
+    {
+        Integer id = locations.get( name );
+        if ( id == null )
+        {
+            throw new IllegalArgumentException( "Unknown location: " + name );
+        }
+        return id;
+    }
+
+    private IntBuffer findRouteToDeliveryBase( int start, long from, long to )
+    {
+        // Same order as the depth-first, node-global traversal in ParcelRouteCalculator: a node
+        // is marked visited when it is reached, and the first node without incoming routes wins
+        IntBuffer path = new IntBuffer( 8 );
+        path.add( start );
+        if ( !hasIncomingRoutes( start ) )
+        {
+            return path;
+        }
+
+        IntBuffer cursors = new IntBuffer( 8 );
+        cursors.add( incomingRouteOffsets[start] );
+        LongIntHashMap visited = new LongIntHashMap( 16 );
+        visited.put( start, 0 );
+
+        while ( path.size > 0 )
+        {
+            int node = path.last();
+            int cursor = cursors.last();
+            if ( cursor == incomingRouteOffsets[node + 1] )
+            {
+                path.size--;
+                cursors.size--;
+                continue;
+            }
+            cursors.values[cursors.size - 1] = cursor + 1;
+
+            int route = incomingRoutes[cursor];
+            if ( !routes.isValid( route, from, to ) )
+            {
+                continue;
+            }
+            int next = routes.from[route];
+            if ( visited.containsKey( next ) )
+            {
+                continue;
+            }
+            visited.put( next, 0 );
+            path.add( next );
+            if ( !hasIncomingRoutes( next ) )
+            {
+                return path;
+            }
+            cursors.add( incomingRouteOffsets[next] );
+        }
+        throw new IllegalStateException( "No delivery base reachable from " + nodeIds[start] );
+    }
+
+    private boolean hasIncomingRoutes( int node )
+    {
+        return incomingRouteOffsets[node + 1] > incomingRouteOffsets[node];
+    }
+
+    private IntBuffer findRouteBetweenDeliveryBases( int deliveryBase1, int deliveryBase2, long from, long to )
+    {
+        return findRoutesBetweenDeliveryBases( deliveryBase1, new int[]{deliveryBase2}, from, to )[0];
+    }
+
+    private IntBuffer[] findRoutesBetweenDeliveryBases( int deliveryBase, int[] deliveryBases, long from, long to )
+    {
+        IntBuffer[] results = new IntBuffer[deliveryBases.length];
+        int startHub = hubs[deliveryBase];
+        int slice = sliceContaining( from );
+        boolean searchNeeded = false;
+        for ( int i = 0; i < deliveryBases.length; i++ )
+        {
+            if ( deliveryBases[i] == deliveryBase )
+            {
+                results[i] = new IntBuffer( 1 );
+                results[i].add( deliveryBase );
+            }
+            else if ( isHub( deliveryBases[i] ) && startHub >= 0 && slice >= 0 )
+            {
+                if ( to <= boundaries[slice + 1] )
+                {
+                    results[i] = toNodes( sliceLabels[slice].route( startHub, hubs[deliveryBases[i]] ) );
+                }
+                else
+                {
+                    searchNeeded = true;
+                }
+            }
+        }
+        if ( searchNeeded )
+        {
+            search( startHub, deliveryBases, slice, to, results );
+        }
+        return results;
+    }
+
+    private boolean isHub( int node )
+    {
+        return node >= 0 && hubs[node] >= 0;
+    }
+
+    private long[] toNodeIds( IntBuffer route )
+    {
+        long[] results = new long[route.size];
+        for ( int i = 0; i < route.size; i++ )
+        {
+            results[i] = nodeIds[route.values[i]];
+        }
+        return results;
+    }
+
+    private IntBuffer toNodes( int[] hubRoute )
+    {
+        if ( hubRoute == null )
+        {
+            return null;
+        }
+        IntBuffer route = new IntBuffer( hubRoute.length );
+        for ( int hub : hubRoute )
+        {
+            route.add( hubNodes[hub] );
+        }
+        return route;
+    }
+
+    private void search( int startHub, int[] deliveryBases, int slice, long to, IntBuffer[] results )
+    {
+        // One best-first search serves every target: each route is fixed when its target is
+        // reached, so carrying on for further targets doesn't change it
+        int[] offsets = sliceOffsets[slice];
+        int[] positions = slicePositions[slice];
+        LongIntHashMap pending = new LongIntHashMap( deliveryBases.length );
+        for ( int i = 0; i < deliveryBases.length; i++ )
+        {
+            if ( results[i] == null && isHub( deliveryBases[i] ) )
+            {
+                pending.put( hubs[deliveryBases[i]], 0 );
+            }
+        }
+        int remaining = pending.size();
+
+        // Same best-first selection as GraphAlgoFactory.dijkstra, including the order in which
+        // branches are queued
+        double[] costs = new double[hubNodes.length];
+        Arrays.fill( costs, Double.NaN );
+        boolean[] visited = new boolean[hubNodes.length];
+        PriorityMap<Branch, Integer, Double> queue = PriorityMap.withNaturalOrder( BRANCH_TO_HUB );
+
+        costs[startHub] = 0.0;
+        queue.put( new Branch( startHub, null, 0 ), 0.0 );
+
+        PriorityMap.Entry<Branch, Double> entry;
+        while ( remaining > 0 && (entry = queue.pop()) != null )
+        {
+            Branch current = entry.getEntity();
+            double currentCost = entry.getPriority();
+            boolean firstVisit = !visited[current.hub];
+            visited[current.hub] = true;
+            if ( firstVisit && pending.containsKey( current.hub ) )
+            {
+                IntBuffer route = new IntBuffer( current.length + 1 );
+                route.size = current.length + 1;
+                for ( Branch branch = current; branch != null; branch = branch.parent )
+                {
+                    route.values[branch.length] = hubNodes[branch.hub];
+                }
+                for ( int i = 0; i < deliveryBases.length; i++ )
+                {
+                    if ( results[i] == null && isHub( deliveryBases[i] ) && hubs[deliveryBases[i]] == current.hub )
+                    {
+                        results[i] = route;
+                    }
+                }
+                remaining--;
+            }
+
+            for ( int i = offsets[current.hub]; i < offsets[current.hub + 1]; i++ )
+            {
+                int position = positions[i];
+                int connection = connectionEdges[position];
+                int next = connectionTargets[position];
+                if ( visited[next] || connections.end[connection] < to )
+                {
+                    continue;
+                }
+                double cost = currentCost + connections.cost[connection];
+                if ( Double.isNaN( costs[next] ) || costs[next] > cost )
+                {
+                    queue.put( new Branch( next, current, current.length + 1 ), cost );
+                    costs[next] = cost;
+                }
+            }
+        }
+    }
+
+    private int sliceContaining( long time )
+    {
+        int index = Arrays.binarySearch( boundaries, time );
+        int slice = index >= 0 ? index : -index - 2;
+        return slice >= 0 && slice < sliceOffsets.length ? slice : -1;
+    }
+
+    private void rebuild()
+    {
+        locations = new HashMap<>();
+        nodeIndex = new LongIntHashMap();
+        routes = new Edges();
+        connections = new Edges();
+
+        IntBuffer routeOffsets = new IntBuffer( 1024 );
+        IntBuffer routeEdges = new IntBuffer( 1024 );
+        IntBuffer hubIds = new IntBuffer( 1024 );
+        IntBuffer hubNodeIds = new IntBuffer( 64 );
+        IntBuffer hubOffsets = new IntBuffer( 64 );
+        IntBuffer hubEdges = new IntBuffer( 256 );
+        IntBuffer hubTargets = new IntBuffer( 256 );
+        List<Node> nodes = new ArrayList<>();
+
+        try ( Transaction tx = db.beginTx() )
+        {
+            for ( Node node : GlobalGraphOperations.at( db ).getAllNodesWithLabel( ParcelRouteCalculator.LOCATION ) )
+            {
+                int id = denseId( node, nodes );
+                if ( node.hasProperty( NAME ) )
+                {
+                    locations.put( (String) node.getProperty( NAME ), id );
+                }
+            }
+
+            // Ids are handed out in discovery order, so each node's adjacency is appended in id order
+            for ( int id = 0; id < nodes.size(); id++ )
+            {
+                Node node = nodes.get( id );
+                routeOffsets.add( routeEdges.size );
+                for ( Relationship route : node.getRelationships( DELIVERY_ROUTE, Direction.INCOMING ) )
+                {
+                    routeEdges.add( routes.add( route, denseId( route.getStartNode(), nodes ) ) );
+                }
+
+                int hub = -1;
+                for ( Relationship connection : node.getRelationships( CONNECTED_TO, Direction.BOTH ) )
+                {
+                    if ( hub < 0 )
+                    {
+                        hub = hubNodeIds.size;
+                        hubNodeIds.add( id );
+                        hubOffsets.add( hubEdges.size );
+                    }
+                    int edge = connections.indexOf( connection );
+                    if ( edge == LongIntHashMap.NO_VALUE )
+                    {
+                        edge = connections.add( connection, id );
+                    }
+                    hubEdges.add( edge );
+                    hubTargets.add( denseId( connection.getOtherNode( node ), nodes ) );
+                }
+                hubIds.add( hub );
+            }
+            tx.success();
+        }
+        routeOffsets.add( routeEdges.size );
+        hubOffsets.add( hubEdges.size );
+
+        nodeIds = new long[nodes.size()];
+        for ( int i = 0; i < nodeIds.length; i++ )
+        {
+            nodeIds[i] = nodes.get( i ).getId();
+        }
+        incomingRouteOffsets = routeOffsets.toArray();
+        incomingRoutes = routeEdges.toArray();
+        hubs = hubIds.toArray();
+        hubNodes = hubNodeIds.toArray();
+        connectionOffsets = hubOffsets.toArray();
+        connectionEdges = hubEdges.toArray();
+        connectionTargets = hubTargets.toArray();
+        for ( int i = 0; i < connectionTargets.length; i++ )
+        {
+            connectionTargets[i] = hubs[connectionTargets[i]];
+        }
+
+        buildSlices();
+        stale = false;
+    }
+
+    private int denseId( Node node, List<Node> nodes )
+    {
+        int id = nodeIndex.get( node.getId() );
+        if ( id == LongIntHashMap.NO_VALUE )
+        {
+            id = nodes.size();
+            nodeIndex.put( node.getId(), id );
+            nodes.add( node );
+        }
+        return id;
+    }
+
+    private void buildSlices()
+    {
+        TreeSet<Long> times = new TreeSet<>();
+        for ( int i = 0; i < connections.size; i++ )
+        {
+            times.add( connections.start[i] );
+            times.add( connections.end[i] );
+        }
+        boundaries = new long[times.size()];
+        int index = 0;
+        for ( Long time : times )
+        {
+            boundaries[index++] = time;
+        }
+
+        int numberOfSlices = Math.max( 0, boundaries.length - 1 );
+        sliceOffsets = new int[numberOfSlices][];
+        slicePositions = new int[numberOfSlices][];
+        sliceLabels = new HubLabels[numberOfSlices];
+        for ( int slice = 0; slice < numberOfSlices; slice++ )
+        {
+            long sliceStart = boundaries[slice];
+            long sliceEnd = boundaries[slice + 1];
+            int[] offsets = new int[hubNodes.length + 1];
+            IntBuffer positions = new IntBuffer( connectionEdges.length );
+            for ( int hub = 0; hub < hubNodes.length; hub++ )
+            {
+                offsets[hub] = positions.size;
+                for ( int position = connectionOffsets[hub]; position < connectionOffsets[hub + 1]; position++ )
+                {
+                    int connection = connectionEdges[position];
+                    if ( connections.start[connection] <= sliceStart && connections.end[connection] >= sliceEnd )
+                    {
+                        positions.add( position );
+                    }
+                }
+            }
+            offsets[hubNodes.length] = positions.size;
+            sliceOffsets[slice] = offsets;
+            slicePositions[slice] = positions.toArray();
+
+            int[] targets = new int[positions.size];
+            double[] costs = new double[positions.size];
+            for ( int i = 0; i < positions.size; i++ )
+            {
+                targets[i] = connectionTargets[positions.values[i]];
+                costs[i] = connections.cost[connectionEdges[positions.values[i]]];
+            }
+            sliceLabels[slice] = new HubLabels( offsets, targets, costs );
+        }
+        slicesOutdated = false;
+    }
+
+    private void apply( List<PropertyEntry<Relationship>> changes )
+    {
+        lock.writeLock().lock();
+        try
+        {
+            if ( stale )
+            {
+                return;
+            }
+            for ( PropertyEntry<Relationship> change : changes )
+            {
+                Relationship relationship = change.entity();
+                Edges edges = relationship.isType( DELIVERY_ROUTE ) ? routes : connections;
+                int edge = edges.indexOf( relationship );
+                if ( edge == LongIntHashMap.NO_VALUE )
+                {
+                    stale = true;
+                    return;
+                }
+                Number value = (Number) change.value();
+                switch ( change.key() )
+                {
+                    case START_DATE:
+                        edges.start[edge] = value.longValue();
+                        break;
+                    case END_DATE:
+                        edges.end[edge] = value.longValue();
+                        break;
+                    default:
+                        edges.cost[edge] = value.doubleValue();
+                }
+                if ( edges == connections )
+                {
+                    slicesOutdated = true;
+                }
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static boolean isRoutingRelationship( Relationship relationship )
+    {
+        return relationship.isType( DELIVERY_ROUTE ) || relationship.isType( CONNECTED_TO );
+    }
+
+    private static boolean isRoutingProperty( String key )
+    {
+        return key.equals( START_DATE ) || key.equals( END_DATE ) || key.equals( COST );
+    }
+
+    private static class Branch
+    {
+        private final int hub;
+        private final Branch parent;
+        private final int length;
+
+        private Branch( int hub, Branch parent, int length )
+        {
+            this.hub = hub;
+            this.parent = parent;
+            this.length = length;
+        }
+    }
+
+    private static class Edges
+    {
+        private final LongIntHashMap index = new LongIntHashMap();
+        private int[] from = new int[1024];
+        private long[] start = new long[1024];
+        private long[] end = new long[1024];
+        private double[] cost = new double[1024];
+        private int size;
+
+        int indexOf( Relationship relationship )
+        {
+            return index.get( relationship.getId() );
+        }
+
+        int add( Relationship relationship, int fromNode )
+        {
+            if ( size == from.length )
+            {
+                from = Arrays.copyOf( from, size * 2 );
+                start = Arrays.copyOf( start, size * 2 );
+                end = Arrays.copyOf( end, size * 2 );
+                cost = Arrays.copyOf( cost, size * 2 );
+            }
+            from[size] = fromNode;
+            start[size] = ((Number) relationship.getProperty( START_DATE )).longValue();
+            end[size] = ((Number) relationship.getProperty( END_DATE )).longValue();
+            Object value = relationship.getProperty( COST, null );
+            cost[size] = value == null ? 0.0 : ((Number) value).doubleValue();
+            index.put( relationship.getId(), size );
+            return size++;
+        }
+
+        boolean isValid( int edge, long from, long to )
+        {
+            // Same test as Interval.contains( interval )
+            return start[edge] <= from && from < end[edge] && to <= end[edge];
+        }
+    }
+
+    private static class IntBuffer
+    {
+        private int[] values;
+        private int size;
+
+        IntBuffer( int capacity )
+        {
+            values = new int[Math.max( 1, capacity )];
+        }
+
+        void add( int value )
+        {
+            if ( size == values.length )
+            {
+                values = Arrays.copyOf( values, size * 2 );
+            }
+            values[size++] = value;
+        }
+
+        void addIfAbsent( int value )
+        {
+            for ( int i = 0; i < size; i++ )
+            {
+                if ( values[i] == value )
+                {
+                    return;
+                }
+            }
+            add( value );
+        }
+
+        int last()
+        {
+            return values[size - 1];
+        }
+
+        int[] toArray()
+        {
+            return Arrays.copyOf( values, size );
+        }
+    }
+
+    private class RoutingIndexMaintainer implements TransactionEventHandler<List<PropertyEntry<Relationship>>>
+    {
+        @Override
+        public List<PropertyEntry<Relationship>> beforeCommit( TransactionData data ) throws Exception
+        {
+            for ( Relationship relationship : data.createdRelationships() )
+            {
+                if ( isRoutingRelationship( relationship ) )
+                {
+                    return REBUILD;
+                }
+            }
+            for ( Relationship relationship : data.deletedRelationships() )
+            {
+                if ( isRoutingRelationship( relationship ) )
+                {
+                    return REBUILD;
+                }
+            }
+            for ( PropertyEntry<Relationship> change : data.removedRelationshipProperties() )
+            {
+                if ( isRoutingProperty( change.key() ) && isRoutingRelationship( change.entity() ) )
+                {
+                    return REBUILD;
+                }
+            }
+            for ( Node node : data.deletedNodes() )
+            {
+                if ( isIndexed( node ) )
+                {
+                    return REBUILD;
+                }
+            }
+            for ( PropertyEntry<Node> change : data.assignedNodeProperties() )
+            {
+                if ( change.key().equals( NAME ) &&
+                        (isIndexed( change.entity() ) || change.entity().hasLabel( ParcelRouteCalculator.LOCATION )) )
+                {
+                    return REBUILD;
+                }
+            }
+            for ( PropertyEntry<Node> change : data.removedNodeProperties() )
+            {
+                if ( change.key().equals( NAME ) && isIndexed( change.entity() ) )
+                {
+                    return REBUILD;
+                }
+            }
+
+            List<PropertyEntry<Relationship>> changes = new ArrayList<>();
+            for ( PropertyEntry<Relationship> change : data.assignedRelationshipProperties() )
+            {
+                if ( isRoutingProperty( change.key() ) && isRoutingRelationship( change.entity() ) )
+                {
+                    changes.add( change );
+                }
+            }
+            return changes;
+        }
+
+        private boolean isIndexed( Node node )
+        {
+            lock.readLock().lock();
+            try
+            {
+                return nodeIndex != null && nodeIndex.containsKey( node.getId() );
+            }
+            finally
+            {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public void afterCommit( TransactionData data, List<PropertyEntry<Relationship>> changes )
+        {
+            if ( changes == REBUILD )
+            {
+                stale = true;
+            }
+            else if ( !changes.isEmpty() )
+            {
+                apply( changes );
+            }
+        }
+
+        @Override
+        public void afterRollback( TransactionData data, List<PropertyEntry<Relationship>> changes )
+        {
+            // Do nothing
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.neo4j.graphdatabases.queries.traversals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the k best of the elements offered to it in a bounded min-heap, so choosing the top k of
+ * n candidates costs O(n log k) rather than the O(n log n) of sorting them all. An element is
+ * better than another if the comparator orders it first.
+ */
+class TopK<T>
+{
+    private final int k;
+    private final Comparator<T> ranking;
+    private final PriorityQueue<T> heap;
+
+    TopK( int k, final Comparator<T> ranking )
+    {
+        if ( k < 1 )
+        {
+            throw new IllegalArgumentException( String.format( "k must be at least 1, was %s", k ) );
+        }
+        this.k = k;
+        this.ranking = ranking;
+        // Worst retained element at the head
+        this.heap = new PriorityQueue<T>( Math.min( k, 1024 ), Collections.reverseOrder( ranking ) );
+    }
+
+    boolean isFull()
+    {
+        return heap.size() == k;
+    }
+
+    /**
+     * Returns the worst of the retained elements, or null if fewer than k are retained.
+     */
+    T threshold()
+    {
+        return isFull() ? heap.peek() : null;
+    }
+
+    void offer( T element )
+    {
+        if ( heap.size() < k )
+        {
+            heap.add( element );
+        }
+        else if ( ranking.compare( element, heap.peek() ) < 0 )
+        {
+            heap.poll();
+            heap.add( element );
+        }
+    }
+
+    /**
+     * Returns the retained elements, best first.
+     */
+    List<T> toList()
+    {
+        List<T> results = new ArrayList<T>( heap );
+        Collections.sort( results, ranking );
+        return results;
+    }
+}
@@ -0,0 +1,439 @@
+package org.neo4j.graphdatabases.queries.traversals;
+
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.neo4j.graphdatabases.queries.helpers.LongIntHashMap;
+import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+/**
+ * Each user's INTERESTED_IN topics as a bitset, held off-heap in direct buffers: topics get dense
+ * bit positions, so a user takes one long per 64 topics. The interests two users share are then the
+ * AND of their bitsets, and the number of shared interests its popcount, without expanding the
+ * topics' INTERESTED_IN relationships, which fan in from a large part of the graph.
+ * <p/>
+ * The bitsets are split into chunks of a fixed number of users, so that offsets stay within a
+ * buffer's int range however many users there are, and new users add a chunk rather than copy the
+ * existing ones. Only a topic count crossing a multiple of 64 reallocates the chunks.
+ * <p/>
+ * Created and deleted INTERESTED_IN relationships are applied as their transactions commit; users
+ * and topics seen for the first time get new slots and bits.
+ */
+public class UserInterestIndex
+{
+    private static final Label USER = DynamicLabel.label( "User" );
+    private static final Label TOPIC = DynamicLabel.label( "Topic" );
+    private static final RelationshipType INTERESTED_IN = withName( "INTERESTED_IN" );
+    private static final int CHUNK_SHIFT = 16;
+    private static final int USERS_PER_CHUNK = 1 << CHUNK_SHIFT;
+    private static final int MAX_WORDS = Integer.MAX_VALUE / 8 / USERS_PER_CHUNK;
+
+    private final GraphDatabaseService db;
+    private final TransactionEventHandler<List<long[]>> maintainer = new UserInterestIndexMaintainer();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private LongIntHashMap userSlots;
+    private long[] userNodeIds;
+    private int numberOfUsers;
+
+    private LongIntHashMap topicBits;
+    private String[] topicNames;
+    private int numberOfTopics;
+
+    private int words;
+    private LongBuffer[] chunks;
+
+    public UserInterestIndex( GraphDatabaseService db )
+    {
+        this.db = db;
+        db.registerTransactionEventHandler( maintainer );
+    }
+
+    public UserInterestIndex build()
+    {
+        lock.writeLock().lock();
+        try ( Transaction tx = db.beginTx() )
+        {
+            GlobalGraphOperations operations = GlobalGraphOperations.at( db );
+
+            chunks = null;
+            topicBits = new LongIntHashMap();
+            topicNames = new String[64];
+            numberOfTopics = 0;
+            for ( Node topic : operations.getAllNodesWithLabel( TOPIC ) )
+            {
+                addTopic( topic.getId(), (String) topic.getProperty( "name" ) );
+            }
+
+            userSlots = new LongIntHashMap();
+            userNodeIds = new long[1024];
+            numberOfUsers = 0;
+            words = Math.max( 1, (numberOfTopics + 63) / 64 );
+            chunks = new LongBuffer[0];
+            for ( Node user : operations.getAllNodesWithLabel( USER ) )
+            {
+                int slot = slot( user.getId() );
+                for ( Relationship interestedIn : user.getRelationships( INTERESTED_IN, Direction.OUTGOING ) )
+                {
+                    Node topic = interestedIn.getEndNode();
+                    int bit = topicBits.get( topic.getId() );
+                    if ( bit == LongIntHashMap.NO_VALUE )
+                    {
+                        bit = addTopic( topic.getId(), (String) topic.getProperty( "name" ) );
+                    }
+                    set( slot, bit );
+                }
+            }
+            tx.success();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+        return this;
+    }
+
+    public void stopMaintaining()
+    {
+        db.unregisterTransactionEventHandler( maintainer );
+    }
+
+    public int numberOfUsers()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return numberOfUsers;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a copy of the user's interests bitset, or null if the user has no interests.
+     */
+    public long[] interests( long userNodeId )
+    {
+        lock.readLock().lock();
+        try
+        {
+            int slot = userSlots.get( userNodeId );
+            if ( slot == LongIntHashMap.NO_VALUE )
+            {
+                return null;
+            }
+            long[] interests = new long[words];
+            boolean any = false;
+            for ( int i = 0; i < words; i++ )
+            {
+                interests[i] = chunk( slot ).get( offset( slot ) + i );
+                any |= interests[i] != 0;
+            }
+            return any ? interests : null;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of the given interests that the user shares.
+     */
+    public int sharedInterests( long[] interests, long userNodeId )
+    {
+        lock.readLock().lock();
+        try
+        {
+            int slot = userSlots.get( userNodeId );
+            return slot == LongIntHashMap.NO_VALUE ? 0 : sharedInterests( interests, slot );
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the given interests that the user shares, as a bitset.
+     */
+    public long[] sharedInterestsBitset( long[] interests, long userNodeId )
+    {
+        lock.readLock().lock();
+        try
+        {
+            long[] shared = new long[interests.length];
+            int slot = userSlots.get( userNodeId );
+            if ( slot != LongIntHashMap.NO_VALUE )
+            {
+                LongBuffer chunk = chunk( slot );
+                int offset = offset( slot );
+                for ( int i = 0; i < Math.min( words, interests.length ); i++ )
+                {
+                    shared[i] = interests[i] & chunk.get( offset + i );
+                }
+            }
+            return shared;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Visits every user that shares at least one of the given interests, by scanning the bitsets.
+     */
+    public void visitUsersSharingInterests( long[] interests, UserVisitor visitor )
+    {
+        lock.readLock().lock();
+        try
+        {
+            for ( int slot = 0; slot < numberOfUsers; slot++ )
+            {
+                int shared = sharedInterests( interests, slot );
+                if ( shared > 0 )
+                {
+                    visitor.visit( userNodeIds[slot], shared );
+                }
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the names of the topics in the bitset, in name order.
+     */
+    public List<String> topicNames( long[] interests )
+    {
+        lock.readLock().lock();
+        try
+        {
+            List<String> names = new ArrayList<String>();
+            for ( int i = 0; i < interests.length; i++ )
+            {
+                long word = interests[i];
+                while ( word != 0 )
+                {
+                    names.add( topicNames[i * 64 + Long.numberOfTrailingZeros( word )] );
+                    word &= word - 1;
+                }
+            }
+            Collections.sort( names );
+            return names;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    public interface UserVisitor
+    {
+        void visit( long userNodeId, int sharedInterests );
+    }
+
+    private int sharedInterests( long[] interests, int slot )
+    {
+        LongBuffer chunk = chunk( slot );
+        int offset = offset( slot );
+        int shared = 0;
+        for ( int i = 0; i < Math.min( words, interests.length ); i++ )
+        {
+            shared += Long.bitCount( interests[i] & chunk.get( offset + i ) );
+        }
+        return shared;
+    }
+
+    private int addTopic( long topicNodeId, String name )
+    {
+        int bit = numberOfTopics++;
+        if ( bit == topicNames.length )
+        {
+            topicNames = Arrays.copyOf( topicNames, topicNames.length * 2 );
+        }
+        topicNames[bit] = name;
+        topicBits.put( topicNodeId, bit );
+        if ( chunks != null && bit / 64 >= words )
+        {
+            if ( words == MAX_WORDS )
+            {
+                throw new IllegalStateException( "Too many topics to index: " + numberOfTopics );
+            }
+            for ( int i = 0; i < chunks.length; i++ )
+            {
+                chunks[i] = copy( chunks[i], words, words + 1 );
+            }
+            words++;
+        }
+        return bit;
+    }
+
+    private int slot( long userNodeId )
+    {
+        int slot = userSlots.get( userNodeId );
+        if ( slot != LongIntHashMap.NO_VALUE )
+        {
+            return slot;
+        }
+        slot = numberOfUsers++;
+        if ( slot == userNodeIds.length )
+        {
+            userNodeIds = Arrays.copyOf( userNodeIds, slot * 2 );
+        }
+        if ( slot >>> CHUNK_SHIFT == chunks.length )
+        {
+            chunks = Arrays.copyOf( chunks, chunks.length + 1 );
+            chunks[chunks.length - 1] = allocate( words );
+        }
+        userNodeIds[slot] = userNodeId;
+        userSlots.put( userNodeId, slot );
+        return slot;
+    }
+
+    private LongBuffer chunk( int slot )
+    {
+        return chunks[slot >>> CHUNK_SHIFT];
+    }
+
+    private int offset( int slot )
+    {
+        return (slot & (USERS_PER_CHUNK - 1)) * words;
+    }
+
+    private void set( int slot, int bit )
+    {
+        LongBuffer chunk = chunk( slot );
+        int index = offset( slot ) + bit / 64;
+        chunk.put( index, chunk.get( index ) | (1L << (bit % 64)) );
+    }
+
+    private void clear( int slot, int bit )
+    {
+        LongBuffer chunk = chunk( slot );
+        int index = offset( slot ) + bit / 64;
+        chunk.put( index, chunk.get( index ) & ~(1L << (bit % 64)) );
+    }
+
+    private static LongBuffer allocate( int words )
+    {
+        return ByteBuffer.allocateDirect( USERS_PER_CHUNK * words * 8 ).asLongBuffer();
+    }
+
+    private static LongBuffer copy( LongBuffer from, int fromWords, int toWords )
+    {
+        LongBuffer to = allocate( toWords );
+        for ( int slot = 0; slot < USERS_PER_CHUNK; slot++ )
+        {
+            for ( int i = 0; i < fromWords; i++ )
+            {
+                to.put( slot * toWords + i, from.get( slot * fromWords + i ) );
+            }
+        }
+        return to;
+    }
+
+    private void apply( List<long[]> changes )
+    {
+        lock.writeLock().lock();
+        try
+        {
+            if ( chunks == null )
+            {
+                return;
+            }
+            for ( long[] change : changes )
+            {
+                // {user node id, topic node id, 1 if created}
+                int bit = topicBits.get( change[1] );
+                if ( change[2] == 1 )
+                {
+                    set( slot( change[0] ), bit );
+                }
+                else if ( bit != LongIntHashMap.NO_VALUE && userSlots.containsKey( change[0] ) )
+                {
+                    clear( userSlots.get( change[0] ), bit );
+                }
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private class UserInterestIndexMaintainer implements TransactionEventHandler<List<long[]>>
+    {
+        @Override
+        public List<long[]> beforeCommit( TransactionData data ) throws Exception
+        {
+            List<long[]> changes = new ArrayList<long[]>();
+            for ( Relationship relationship : data.createdRelationships() )
+            {
+                if ( relationship.isType( INTERESTED_IN ) )
+                {
+                    Node topic = relationship.getEndNode();
+                    ensureTopic( topic.getId(), (String) topic.getProperty( "name", null ) );
+                    changes.add( new long[]{relationship.getStartNode().getId(), topic.getId(), 1} );
+                }
+            }
+            // Deleted relationships can only be read before the transaction commits
+            for ( Relationship relationship : data.deletedRelationships() )
+            {
+                if ( relationship.isType( INTERESTED_IN ) )
+                {
+                    changes.add( new long[]{relationship.getStartNode().getId(),
+                            relationship.getEndNode().getId(), 0} );
+                }
+            }
+            return changes;
+        }
+
+        private void ensureTopic( long topicNodeId, String name )
+        {
+            lock.writeLock().lock();
+            try
+            {
+                if ( topicBits != null && !topicBits.containsKey( topicNodeId ) )
+                {
+                    addTopic( topicNodeId, name );
+                }
+            }
+            finally
+            {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public void afterCommit( TransactionData data, List<long[]> changes )
+        {
+            if ( !changes.isEmpty() )
+            {
+                apply( changes );
+            }
+        }
+
+        @Override
+        public void afterRollback( TransactionData data, List<long[]> changes )
+        {
+            // Do nothing
+        }
+    }
+}
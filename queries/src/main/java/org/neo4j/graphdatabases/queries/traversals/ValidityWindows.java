@@ -0,0 +1,193 @@
+package org.neo4j.graphdatabases.queries.traversals;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.graphdatabases.queries.helpers.LongIntHashMap;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+/**
+ * Caches the start_date and end_date of every relationship of the given types in primitive arrays
+ * keyed by relationship id, so that {@link IntervalExpander} can test validity without reading
+ * properties. Searches work against an immutable {@link Snapshot}; committed changes to those
+ * relationships discard it, and the next call to {@link #snapshot()} loads a new one. Changes
+ * that have not been committed yet are not visible through a snapshot.
+ */
+public class ValidityWindows
+{
+    private final GraphDatabaseService db;
+    private final RelationshipType[] types;
+    private final TransactionEventHandler<Boolean> maintainer = new ValidityWindowsMaintainer();
+    private final AtomicLong commits = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    public ValidityWindows( GraphDatabaseService db, RelationshipType... types )
+    {
+        this.db = db;
+        this.types = types;
+        db.registerTransactionEventHandler( maintainer );
+    }
+
+    public void stopMaintaining()
+    {
+        db.unregisterTransactionEventHandler( maintainer );
+    }
+
+    public Snapshot snapshot()
+    {
+        Snapshot current = snapshot;
+        if ( current != null )
+        {
+            return current;
+        }
+        synchronized ( maintainer )
+        {
+            if ( snapshot != null )
+            {
+                return snapshot;
+            }
+            // Only publish the snapshot if nothing was committed while it was loading
+            long commitsBeforeLoad = commits.get();
+            Snapshot loaded = load();
+            if ( commits.get() == commitsBeforeLoad )
+            {
+                snapshot = loaded;
+            }
+            return loaded;
+        }
+    }
+
+    private Snapshot load()
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            LongIntHashMap index = new LongIntHashMap();
+            long[] startDates = new long[1024];
+            long[] endDates = new long[1024];
+            int size = 0;
+            for ( Relationship relationship : GlobalGraphOperations.at( db ).getAllRelationships() )
+            {
+                if ( !isOneOfTypes( relationship ) )
+                {
+                    continue;
+                }
+                if ( size == startDates.length )
+                {
+                    startDates = Arrays.copyOf( startDates, size * 2 );
+                    endDates = Arrays.copyOf( endDates, size * 2 );
+                }
+                startDates[size] = ((Number) relationship.getProperty( "start_date" )).longValue();
+                endDates[size] = ((Number) relationship.getProperty( "end_date" )).longValue();
+                index.put( relationship.getId(), size++ );
+            }
+            tx.success();
+            return new Snapshot( index, Arrays.copyOf( startDates, size ), Arrays.copyOf( endDates, size ) );
+        }
+    }
+
+    private boolean isOneOfTypes( Relationship relationship )
+    {
+        for ( RelationshipType type : types )
+        {
+            if ( relationship.isType( type ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static class Snapshot
+    {
+        private final LongIntHashMap index;
+        private final long[] startDates;
+        private final long[] endDates;
+
+        private Snapshot( LongIntHashMap index, long[] startDates, long[] endDates )
+        {
+            this.index = index;
+            this.startDates = startDates;
+            this.endDates = endDates;
+        }
+
+        public int size()
+        {
+            return startDates.length;
+        }
+
+        int indexOf( long relationshipId )
+        {
+            return index.get( relationshipId );
+        }
+
+        long startDate( int window )
+        {
+            return startDates[window];
+        }
+
+        long endDate( int window )
+        {
+            return endDates[window];
+        }
+    }
+
+    private class ValidityWindowsMaintainer implements TransactionEventHandler<Boolean>
+    {
+        @Override
+        public Boolean beforeCommit( TransactionData data ) throws Exception
+        {
+            // Relationship ids are reused, so deletions matter as well as creations
+            for ( Relationship relationship : data.createdRelationships() )
+            {
+                if ( isOneOfTypes( relationship ) )
+                {
+                    return true;
+                }
+            }
+            for ( Relationship relationship : data.deletedRelationships() )
+            {
+                if ( snapshot != null && snapshot.indexOf( relationship.getId() ) != LongIntHashMap.NO_VALUE )
+                {
+                    return true;
+                }
+            }
+            return changesDates( data.assignedRelationshipProperties() ) ||
+                    changesDates( data.removedRelationshipProperties() );
+        }
+
+        private boolean changesDates( Iterable<PropertyEntry<Relationship>> changes )
+        {
+            for ( PropertyEntry<Relationship> change : changes )
+            {
+                if ( change.key().equals( "start_date" ) || change.key().equals( "end_date" ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void afterCommit( TransactionData data, Boolean discard )
+        {
+            if ( discard )
+            {
+                commits.incrementAndGet();
+                snapshot = null;
+            }
+        }
+
+        @Override
+        public void afterRollback( TransactionData data, Boolean discard )
+        {
+            // Do nothing
+        }
+    }
+}
@@ -11,8 +11,11 @@ import java.util.*;
 
 import org.junit.*;
 import org.junit.rules.TestName;
+import org.neo4j.cypher.javacompat.ExecutionEngine;
 import org.neo4j.cypher.javacompat.ExecutionResult;
 import org.neo4j.graphdatabases.queries.helpers.PrintingExecutionEngineWrapper;
+import org.neo4j.graphdatabases.queries.traversals.AccessControlClosure;
+import org.neo4j.graphdatabases.queries.traversals.AccessDecisionEngine;
 import org.neo4j.graphdatabases.queries.traversals.IndexResources;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.helpers.collection.IteratorUtil;
@@ -459,6 +462,150 @@ public class AccessControlQueriesTest
 
     }
 
+    @Test
+    public void closureShouldAgreeWithCypherQueries() throws Exception
+    {
+        // given
+        AccessControlClosure closure = new AccessControlClosure( db, queries ).build();
+        List<String> admins = asList( "Ben", "Sarah", "Liz", "Phil" );
+        List<String> companies = asList( "Acme", "Spinoff", "Startup", "Skunkworkz", "BigCompany", "AcquiredLtd",
+                "Subsidiary", "DevShop", "One-ManShop" );
+        List<String> resources = asList( "Arnold", "Kate", "Alistair", "Eve", "Bill", "Gary", "Mary",
+                "Account-1", "Account-7", "Account-8", "Account-9", "Account-10", "Account-11", "Account-12" );
+
+        // then (closure throws IllegalStateException if it disagrees with Cypher)
+        for ( String admin : admins )
+        {
+            closure.findAccessibleCompanies( admin );
+            closure.findAccessibleResources( admin );
+            for ( String company : companies )
+            {
+                closure.findAccessibleAccountsForCompany( admin, company );
+            }
+            for ( String resource : resources )
+            {
+                closure.hasAccessToResource( admin, resource );
+            }
+        }
+        for ( String company : companies )
+        {
+            closure.findAdminForCompany( company );
+        }
+        for ( String resource : resources )
+        {
+            closure.findAdminForResource( resource );
+        }
+
+        assertEquals( 4, closure.numberOfCachedAdministrators() );
+    }
+
+    @Test
+    public void closureShouldGetAccessibleCompaniesForAdmin() throws Exception
+    {
+        // given
+        AccessControlClosure closure = new AccessControlClosure( db );
+
+        // when
+        List<Map<String, Object>> results = closure.findAccessibleCompanies( "Liz" );
+
+        // then
+        assertEquals( asSet( "BigCompany", "One-ManShop" ), columnAsSet( results, "company" ) );
+        assertTrue( closure.hasAccessToResource( "Liz", "Account-10" ) );
+        assertFalse( closure.hasAccessToResource( "Liz", "Account-11" ) );
+    }
+
+    @Test
+    public void closureShouldBeUpdatedWhenPermissionsChange() throws Exception
+    {
+        // given
+        AccessControlClosure closure = new AccessControlClosure( db, queries ).build();
+        assertEquals( asSet( "Subsidiary", "DevShop", "One-ManShop" ),
+                columnAsSet( closure.findAccessibleCompanies( "Phil" ), "company" ) );
+
+        // when
+        new ExecutionEngine( db ).execute(
+                "MATCH (phil:Administrator {name:'Phil'}), (group5:Group {name:'Group-5'})\n" +
+                        "CREATE phil-[:MEMBER_OF]->group5" );
+
+        // then
+        assertEquals( Collections.<String>emptySet(),
+                columnAsSet( closure.findAccessibleCompanies( "Phil" ), "company" ) );
+
+        // when
+        new ExecutionEngine( db ).execute(
+                "MATCH (:Group {name:'Group-5'})-[r:DENIED]->()\n" +
+                        "DELETE r" );
+
+        // then
+        assertEquals( asSet( "Subsidiary", "DevShop", "One-ManShop" ),
+                columnAsSet( closure.findAccessibleCompanies( "Phil" ), "company" ) );
+        assertEquals( asSet( "BigCompany", "AcquiredLtd", "Subsidiary", "DevShop", "One-ManShop" ),
+                columnAsSet( closure.findAccessibleCompanies( "Liz" ), "company" ) );
+    }
+
+    @Test
+    public void decisionEngineShouldDetermineWhetherAdminHasAccessToResource() throws Exception
+    {
+        // given
+        AccessDecisionEngine engine = new AccessDecisionEngine( db ).build();
+
+        Map<String, Boolean> testData = new LinkedHashMap<>();
+        testData.put( "Alistair", true );
+        testData.put( "Account-8", true );
+        testData.put( "Eve", false );
+        testData.put( "Account-9", false );
+        testData.put( "Mary", false );
+        testData.put( "Account-12", false );
+        testData.put( "Gary", false );
+        testData.put( "Account-11", false );
+        testData.put( "Bill", true );
+        testData.put( "Account-10", true );
+
+        for ( Map.Entry<String, Boolean> entry : testData.entrySet() )
+        {
+            // then
+            assertEquals( entry.getKey(), entry.getValue(), engine.hasAccessToResource( "Liz", entry.getKey() ) );
+        }
+    }
+
+    @Test
+    public void decisionEngineShouldAgreeWithCypherQueries() throws Exception
+    {
+        // given
+        AccessDecisionEngine engine = new AccessDecisionEngine( db ).build();
+        List<String> resources = asList( "Arnold", "Charlie", "Gordon", "Lucy", "Emily", "Kate", "Alistair", "Eve",
+                "Bill", "Gary", "Mary", "Account-1", "Account-2", "Account-3", "Account-4", "Account-5", "Account-6",
+                "Account-7", "Account-8", "Account-9", "Account-10", "Account-11", "Account-12" );
+
+        assertEquals( 9, engine.numberOfCompanies() );
+
+        for ( String admin : asList( "Ben", "Sarah", "Liz", "Phil" ) )
+        {
+            for ( String resource : resources )
+            {
+                // then
+                assertEquals( admin + " -> " + resource,
+                        isAuthorized( queries.hasAccessToResource( admin, resource ) ),
+                        engine.hasAccessToResource( admin, resource ) );
+            }
+        }
+    }
+
+    private Set<Object> columnAsSet( List<Map<String, Object>> results, String column )
+    {
+        Set<Object> values = new HashSet<>();
+        for ( Map<String, Object> row : results )
+        {
+            values.add( row.get( column ) );
+        }
+        return values;
+    }
+
+    private Set<Object> asSet( Object... values )
+    {
+        return new HashSet<>( asList( values ) );
+    }
+
     private boolean isAuthorized( ExecutionResult result )
     {
         Iterator<Long> accessCountIterator = result.columnAs( "accessCount" );
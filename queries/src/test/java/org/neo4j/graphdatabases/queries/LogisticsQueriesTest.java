@@ -2,10 +2,17 @@ package org.neo4j.graphdatabases.queries;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static java.util.Arrays.asList;
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
 import static org.neo4j.graphdatabases.queries.helpers.Db.createFromCypher;
 import static org.neo4j.graphdatabases.queries.testing.IndexParam.indexParam;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 
 import org.joda.time.DateTime;
 import org.joda.time.Interval;
@@ -13,9 +20,19 @@ import org.junit.*;
 import org.junit.rules.TestName;
 import org.neo4j.cypher.javacompat.ExecutionResult;
 import org.neo4j.graphdatabases.queries.helpers.PrintingExecutionEngineWrapper;
+import org.neo4j.graphdatabases.queries.traversals.ParcelManifestRouter;
+import org.neo4j.graphdatabases.queries.traversals.ParcelRouteCalculator;
+import org.neo4j.graphdatabases.queries.traversals.SimpleParcelRouteCalculator.SearchCounters;
+import org.neo4j.graphdatabases.queries.traversals.SimpleParcelRouteCalculator.SearchMode;
+import org.neo4j.graphdatabases.queries.traversals.TimeSlicedRoutingIndex;
+import org.neo4j.graphdatabases.queries.traversals.ValidityWindows;
+import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.helpers.collection.IteratorUtil;
+import org.neo4j.tooling.GlobalGraphOperations;
 
 public class LogisticsQueriesTest
 {
@@ -56,6 +73,10 @@ public class LogisticsQueriesTest
             tx.success();
             tx.close();
         }
+        if ( queries != null )
+        {
+            queries.shutdown();
+        }
         db.shutdown();
     }
 
@@ -304,6 +325,425 @@ public class LogisticsQueriesTest
         assertFalse( nodes.hasNext() );
     }
 
+    @Test
+    public void routingIndexAndHubLabelsReturnSameRoutesAsDijkstra() throws Exception
+    {
+        // given
+        commitTestTransaction();
+        String[] locations = locationNames();
+        int routes = 0;
+
+        // when
+        for ( Interval interval : new Interval[]{interval1, interval2, interval3} )
+        {
+            for ( int day : new int[]{0, 3, 6} )
+            {
+                DateTime startDtm = interval.getStart().plusDays( day );
+                Interval queryInterval = new Interval( startDtm, startDtm.plusDays( 1 ) );
+                for ( String start : locations )
+                {
+                    for ( String end : locations )
+                    {
+                        String description = start + " to " + end + " during " + queryInterval;
+                        List<Object> expected = dijkstraRoute( start, end, queryInterval );
+
+                        // then
+                        assertEquals( description, expected, hubLabelRoute( start, end, queryInterval ) );
+                        assertEquals( description, expected, routingIndexRoute( start, end, queryInterval ) );
+                        if ( expected != null )
+                        {
+                            routes++;
+                        }
+                    }
+                }
+            }
+        }
+        assertEquals( 3 * 3 * locations.length * locations.length, routes );
+    }
+
+    @Test
+    public void routingIndexRejectsIntervalsThatSpanConnectionWindows() throws Exception
+    {
+        // given
+        commitTestTransaction();
+        DateTime startDtm = interval1.getEnd().minusDays( 1 );
+        Interval queryInterval = new Interval( startDtm, startDtm.plusDays( 2 ) );
+
+        // then
+        assertNull( routingIndexRoute( "DeliveryArea-1", "DeliverySegment-3", queryInterval ) );
+        assertNull( routingIndexRoute( "DeliveryArea-1", "DeliverySegment-3",
+                new Interval( interval1.getStart().minusDays( 2 ), interval1.getStart().minusDays( 1 ) ) ) );
+    }
+
+    @Test
+    public void routingIndexAppliesCostChanges() throws Exception
+    {
+        // given
+        commitTestTransaction();
+        DateTime startDtm = interval2.getStart().plusDays( 2 );
+        Interval queryInterval = new Interval( startDtm, startDtm.plusDays( 1 ) );
+        assertEquals( Arrays.<Object>asList( "DeliveryArea-1", "DeliveryBase-1", "ParcelCentre-2", "DeliveryBase-3",
+                "DeliveryArea-2", "DeliverySegment-3" ),
+                routingIndexRoute( "DeliveryArea-1", "DeliverySegment-3", queryInterval ) );
+
+        // when
+        setConnectionProperty( "ParcelCentre-2", "DeliveryBase-1", interval2, "cost", 10 );
+
+        // then
+        List<Object> expected = Arrays.<Object>asList( "DeliveryArea-1", "DeliveryBase-1", "ParcelCentre-1", "DeliveryBase-2",
+                "ParcelCentre-2", "DeliveryBase-3", "DeliveryArea-2", "DeliverySegment-3" );
+        assertEquals( expected, hubLabelRoute( "DeliveryArea-1", "DeliverySegment-3", queryInterval ) );
+        assertEquals( expected, routingIndexRoute( "DeliveryArea-1", "DeliverySegment-3", queryInterval ) );
+    }
+
+    @Test
+    public void routingIndexAppliesValidityChanges() throws Exception
+    {
+        // given
+        commitTestTransaction();
+        DateTime startDtm = interval2.getStart().plusDays( 2 );
+        Interval queryInterval = new Interval( startDtm, startDtm.plusDays( 1 ) );
+        TimeSlicedRoutingIndex routingIndex = new TimeSlicedRoutingIndex( db ).build();
+        assertEquals( 3, routingIndex.numberOfSlices() );
+
+        // when
+        setConnectionProperty( "ParcelCentre-2", "DeliveryBase-1", interval2, "end_date",
+                interval2.getStart().plusDays( 1 ).getMillis() );
+
+        // then
+        List<Object> expected = Arrays.<Object>asList( "DeliveryArea-1", "DeliveryBase-1", "ParcelCentre-1", "DeliveryBase-2",
+                "ParcelCentre-2", "DeliveryBase-3", "DeliveryArea-2", "DeliverySegment-3" );
+        assertEquals( expected, hubLabelRoute( "DeliveryArea-1", "DeliverySegment-3", queryInterval ) );
+        assertEquals( expected, names( routingIndex.calculateRoute( "DeliveryArea-1", "DeliverySegment-3",
+                queryInterval ) ) );
+        assertEquals( 4, routingIndex.numberOfSlices() );
+
+        routingIndex.stopMaintaining();
+    }
+
+    @Test
+    public void manifestRoutesMatchSingleRoutesInRequestOrder() throws Exception
+    {
+        // given
+        commitTestTransaction();
+        String[] locations = locationNames();
+        List<ParcelManifestRouter.Request> manifest = new ArrayList<>();
+        for ( Interval interval : new Interval[]{interval1, interval2, interval3} )
+        {
+            DateTime startDtm = interval.getStart().plusDays( 2 );
+            for ( String start : locations )
+            {
+                for ( String end : locations )
+                {
+                    manifest.add( new ParcelManifestRouter.Request( start, end,
+                            new Interval( startDtm, startDtm.plusDays( 1 ) ) ) );
+                }
+            }
+        }
+
+        // when
+        Iterator<ParcelManifestRouter.Result> results = queries.findShortestPathsForManifest( manifest );
+
+        // then
+        for ( ParcelManifestRouter.Request request : manifest )
+        {
+            ParcelManifestRouter.Result result = results.next();
+            assertEquals( request, result.request() );
+            assertEquals( request.toString(),
+                    hubLabelRoute( request.start(), request.end(), request.interval() ),
+                    names( result.route() ) );
+        }
+        assertFalse( results.hasNext() );
+    }
+
+    @Test
+    public void manifestReportsFailuresPerRequest() throws Exception
+    {
+        // given
+        commitTestTransaction();
+        DateTime startDtm = interval2.getStart().plusDays( 2 );
+        Interval queryInterval = new Interval( startDtm, startDtm.plusDays( 1 ) );
+        Interval beforeAnyRoutes = new Interval( interval1.getStart().minusDays( 2 ), interval1.getStart().minusDays( 1 ) );
+
+        // when
+        Iterator<ParcelManifestRouter.Result> results = queries.findShortestPathsForManifest( asList(
+                new ParcelManifestRouter.Request( "DeliveryArea-1", "DeliverySegment-3", queryInterval ),
+                new ParcelManifestRouter.Request( "Nowhere", "DeliverySegment-3", queryInterval ),
+                new ParcelManifestRouter.Request( "DeliveryArea-1", "DeliverySegment-3", beforeAnyRoutes ),
+                new ParcelManifestRouter.Request( "DeliveryArea-1", "DeliverySegment-3", queryInterval ) ) );
+
+        // then
+        List<Object> expected = Arrays.<Object>asList( "DeliveryArea-1", "DeliveryBase-1", "ParcelCentre-2",
+                "DeliveryBase-3", "DeliveryArea-2", "DeliverySegment-3" );
+        assertEquals( expected, names( results.next().route() ) );
+
+        ParcelManifestRouter.Result unknownLocation = results.next();
+        assertFalse( unknownLocation.isRouted() );
+        assertEquals( "Unknown location: Nowhere", unknownLocation.failure() );
+
+        ParcelManifestRouter.Result noRoute = results.next();
+        assertFalse( noRoute.isRouted() );
+        assertTrue( noRoute.failure().startsWith( "No delivery base reachable from DeliveryArea-1" ) );
+
+        assertEquals( expected, names( results.next().route() ) );
+        assertFalse( results.hasNext() );
+    }
+
+    @Test
+    public void simpleParcelRouteCalculatorSearchModesFindRoutesOfSameCost() throws Exception
+    {
+        // given
+        commitTestTransaction();
+        String[] locations = locationNames();
+        SearchCounters dijkstraCounters = new SearchCounters();
+        SearchCounters bidirectionalCounters = new SearchCounters();
+        SearchCounters aStarCounters = new SearchCounters();
+
+        // when
+        for ( Interval interval : new Interval[]{interval1, interval2, interval3} )
+        {
+            for ( int day : new int[]{0, 3, 6} )
+            {
+                DateTime startDtm = interval.getStart().plusDays( day );
+                Interval queryInterval = new Interval( startDtm, startDtm.plusDays( 1 ) );
+                for ( String start : locations )
+                {
+                    for ( String end : locations )
+                    {
+                        String description = start + " to " + end + " during " + queryInterval;
+                        double expected = simpleRouteCost( start, end, queryInterval, SearchMode.DIJKSTRA,
+                                dijkstraCounters );
+
+                        // then
+                        assertEquals( description, expected, simpleRouteCost( start, end, queryInterval,
+                                SearchMode.BIDIRECTIONAL_DIJKSTRA, bidirectionalCounters ), 0.0 );
+                        assertEquals( description, expected, simpleRouteCost( start, end, queryInterval,
+                                SearchMode.A_STAR, aStarCounters ), 0.0 );
+                    }
+                }
+            }
+        }
+        assertTrue( dijkstraCounters.relationshipsExplored() >= dijkstraCounters.nodesExplored() );
+        assertTrue( bidirectionalCounters.nodesExplored() > 0 );
+        assertTrue( bidirectionalCounters.nodesExplored() < dijkstraCounters.nodesExplored() );
+        assertTrue( aStarCounters.nodesExplored() > 0 );
+        assertTrue( aStarCounters.nodesExplored() < dijkstraCounters.nodesExplored() );
+    }
+
+    @Test
+    public void simpleParcelRouteCalculatorRecomputesLandmarksWhenRoutesGetCheaper() throws Exception
+    {
+        // given
+        commitTestTransaction();
+        DateTime startDtm = interval2.getStart().plusDays( 2 );
+        Interval queryInterval = new Interval( startDtm, startDtm.plusDays( 1 ) );
+        assertEquals( 7.0, simpleRouteCost( "DeliveryArea-1", "ParcelCentre-2", queryInterval, SearchMode.A_STAR,
+                new SearchCounters() ), 0.0 );
+
+        // when
+        setConnectionProperty( "ParcelCentre-2", "DeliveryBase-1", interval2, "cost", 1 );
+
+        // then
+        String[] locations = locationNames();
+        for ( String start : locations )
+        {
+            for ( String end : locations )
+            {
+                assertEquals( start + " to " + end,
+                        simpleRouteCost( start, end, queryInterval, SearchMode.DIJKSTRA, new SearchCounters() ),
+                        simpleRouteCost( start, end, queryInterval, SearchMode.A_STAR, new SearchCounters() ), 0.0 );
+            }
+        }
+    }
+
+    @Test
+    public void validityWindowsGiveSameRoutesAndFollowValidityChanges() throws Exception
+    {
+        // given
+        commitTestTransaction();
+        ValidityWindows validityWindows = new ValidityWindows( db, withName( "CONNECTED_TO" ),
+                withName( "DELIVERY_ROUTE" ) );
+        ParcelRouteCalculator calculator = new ParcelRouteCalculator( db, null, validityWindows );
+        String[] locations = locationNames();
+        for ( Interval interval : new Interval[]{interval1, interval2, interval3} )
+        {
+            DateTime startDtm = interval.getStart().plusDays( 2 );
+            Interval queryInterval = new Interval( startDtm, startDtm.plusDays( 1 ) );
+            for ( String start : locations )
+            {
+                for ( String end : locations )
+                {
+                    assertEquals( start + " to " + end + " during " + queryInterval,
+                            dijkstraRoute( start, end, queryInterval ),
+                            names( calculator.calculateRoute( start, end, queryInterval ) ) );
+                }
+            }
+        }
+        assertEquals( 49, validityWindows.snapshot().size() );
+
+        // when
+        DateTime startDtm = interval2.getStart().plusDays( 2 );
+        Interval queryInterval = new Interval( startDtm, startDtm.plusDays( 1 ) );
+        setConnectionProperty( "ParcelCentre-2", "DeliveryBase-1", interval2, "end_date",
+                interval2.getStart().plusDays( 1 ).getMillis() );
+
+        // then
+        assertEquals( dijkstraRoute( "DeliveryArea-1", "DeliverySegment-3", queryInterval ),
+                names( calculator.calculateRoute( "DeliveryArea-1", "DeliverySegment-3", queryInterval ) ) );
+        assertEquals( Arrays.<Object>asList( "DeliveryArea-1", "DeliveryBase-1", "ParcelCentre-1", "DeliveryBase-2",
+                "ParcelCentre-2", "DeliveryBase-3", "DeliveryArea-2", "DeliverySegment-3" ),
+                names( calculator.calculateRoute( "DeliveryArea-1", "DeliverySegment-3", queryInterval ) ) );
+
+        validityWindows.stopMaintaining();
+    }
+
+    private void commitTestTransaction()
+    {
+        tx.success();
+        tx.close();
+        tx = null;
+    }
+
+    private String[] locationNames()
+    {
+        List<String> names = new ArrayList<>();
+        try ( Transaction tx = db.beginTx() )
+        {
+            for ( Node node : GlobalGraphOperations.at( db ).getAllNodesWithLabel( ParcelRouteCalculator.LOCATION ) )
+            {
+                names.add( (String) node.getProperty( "name" ) );
+            }
+            tx.success();
+        }
+        return names.toArray( new String[names.size()] );
+    }
+
+    private List<Object> hubLabelRoute( String start, String end, Interval interval )
+    {
+        try
+        {
+            return names( queries.findShortestPathWithHubLabelParcelRouteCalculator( start, end, interval ) );
+        }
+        catch ( RuntimeException e )
+        {
+            return null;
+        }
+    }
+
+    private List<Object> dijkstraRoute( String start, String end, Interval interval )
+    {
+        try
+        {
+            return names( queries.findShortestPathWithParcelRouteCalculator( start, end, interval ) );
+        }
+        catch ( RuntimeException e )
+        {
+            return null;
+        }
+    }
+
+    private List<Object> routingIndexRoute( String start, String end, Interval interval )
+    {
+        try
+        {
+            return names( queries.findShortestPathWithRoutingIndex( start, end, interval ) );
+        }
+        catch ( RuntimeException e )
+        {
+            return null;
+        }
+    }
+
+    private double simpleRouteCost( String start, String end, Interval interval, SearchMode mode,
+                                    SearchCounters counters )
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            List<Node> route;
+            try
+            {
+                route = IteratorUtil.asList( queries.findShortestPathWithSimpleParcelRouteCalculator( start, end,
+                        interval, mode, counters ) );
+            }
+            catch ( IllegalStateException e )
+            {
+                return Double.POSITIVE_INFINITY;
+            }
+            assertEquals( start, route.get( 0 ).getProperty( "name" ) );
+            assertEquals( end, route.get( route.size() - 1 ).getProperty( "name" ) );
+
+            double cost = 0.0;
+            for ( int i = 1; i < route.size(); i++ )
+            {
+                double cheapest = Double.POSITIVE_INFINITY;
+                for ( Relationship relationship : route.get( i - 1 ).getRelationships() )
+                {
+                    Interval validity = new Interval( (Long) relationship.getProperty( "start_date" ),
+                            (Long) relationship.getProperty( "end_date" ) );
+                    if ( relationship.getOtherNode( route.get( i - 1 ) ).equals( route.get( i ) ) &&
+                            validity.contains( interval ) )
+                    {
+                        cheapest = Math.min( cheapest, ((Number) relationship.getProperty( "cost" )).doubleValue() );
+                    }
+                }
+                cost += cheapest;
+            }
+            tx.success();
+            return cost;
+        }
+    }
+
+    private List<Object> names( long[] nodeIds )
+    {
+        if ( nodeIds == null )
+        {
+            return null;
+        }
+        List<Object> names = new ArrayList<>();
+        try ( Transaction tx = db.beginTx() )
+        {
+            for ( long nodeId : nodeIds )
+            {
+                names.add( db.getNodeById( nodeId ).getProperty( "name" ) );
+            }
+            tx.success();
+        }
+        return names;
+    }
+
+    private List<Object> names( Iterable<Node> nodes )
+    {
+        List<Object> names = new ArrayList<>();
+        try ( Transaction tx = db.beginTx() )
+        {
+            for ( Node node : nodes )
+            {
+                names.add( node.getProperty( "name" ) );
+            }
+            tx.success();
+        }
+        return names;
+    }
+
+    private void setConnectionProperty( String startName, String endName, Interval interval, String key,
+                                        Object value )
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            Node start = IteratorUtil.single(
+                    db.findNodesByLabelAndProperty( ParcelRouteCalculator.LOCATION, "name", startName ) );
+            for ( Relationship connection : start.getRelationships( withName( "CONNECTED_TO" ), Direction.OUTGOING ) )
+            {
+                if ( connection.getEndNode().getProperty( "name" ).equals( endName ) &&
+                        connection.getProperty( "start_date" ).equals( interval.getStartMillis() ) )
+                {
+                    connection.setProperty( key, value );
+                }
+            }
+            tx.success();
+        }
+    }
+
     private static GraphDatabaseService createDatabase()
     {
         String cypher = "CREATE\n" +
@@ -10,6 +10,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.neo4j.cypher.javacompat.ExecutionResult;
 import org.neo4j.graphdatabases.queries.testing.IndexParam;
+import org.neo4j.graphdatabases.queries.traversals.BidirectionalFriendSearch;
 import org.neo4j.graphdb.GraphDatabaseService;
 
 public class SimpleSocialNetworkQueriesTest
@@ -63,6 +64,27 @@ public class SimpleSocialNetworkQueriesTest
         assertFalse( results.iterator().hasNext() );
     }
 
+    @Test
+    public void shouldReturnShortestPathBetweenTwoFriendsUsingCoreApi() throws Exception
+    {
+        // when
+        int depth = queries.pathBetweenTwoFriendsCoreApi( "Ben", "Mike" );
+
+        // then
+        assertEquals( 4, depth );
+        assertEquals( 1, queries.pathBetweenTwoFriendsCoreApi( "Charlie", "Ben" ) );
+    }
+
+    @Test
+    public void shouldReturnNoPathUsingCoreApiWhenThereIsNotAPathBetweenTwoFriends() throws Exception
+    {
+        // when
+        int depth = queries.pathBetweenTwoFriendsCoreApi( "Ben", "Arnold" );
+
+        // then
+        assertEquals( BidirectionalFriendSearch.NO_PATH, depth );
+    }
+
     private static GraphDatabaseService createDatabase()
     {
         String cypher = "CREATE\n" +
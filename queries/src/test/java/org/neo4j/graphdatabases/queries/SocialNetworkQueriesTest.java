@@ -7,8 +7,11 @@ import static org.junit.Assert.assertTrue;
 import static org.neo4j.graphdatabases.queries.helpers.Db.createFromCypher;
 
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.junit.After;
 import org.junit.Before;
@@ -18,6 +21,7 @@ import org.junit.rules.TestName;
 import org.neo4j.cypher.javacompat.ExecutionResult;
 import org.neo4j.graphdatabases.queries.helpers.PrintingExecutionEngineWrapper;
 import org.neo4j.graphdatabases.queries.testing.IndexParam;
+import org.neo4j.graphdatabases.queries.traversals.SupernodeStrategy;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Transaction;
@@ -65,6 +69,28 @@ public class SocialNetworkQueriesTest
         assertFalse( iterator.hasNext() );
     }
 
+    @Test
+    public void sharedInterestsSameCompanyCoreApi() throws Exception
+    {
+        // when
+        List<Map<String, Object>> results = queries.sharedInterestsSameCompanyCoreApi( "Sarah", 10 );
+
+        // then
+        Iterator<Map<String, Object>> iterator = results.iterator();
+
+        Map<String, Object> result = iterator.next();
+        assertEquals( "Ben", result.get( "name" ) );
+        assertEquals( 2l, result.get( "score" ) );
+        assertEquals( asList( "Graphs", "REST" ), result.get( "interests" ) );
+
+        result = iterator.next();
+        assertEquals( "Charlie", result.get( "name" ) );
+        assertEquals( 1l, result.get( "score" ) );
+        assertEquals( asList( "Graphs" ), result.get( "interests" ) );
+
+        assertFalse( iterator.hasNext() );
+    }
+
     @Test
     public void sharedInterestsAllCompanies() throws Exception
     {
@@ -103,6 +129,38 @@ public class SocialNetworkQueriesTest
         assertFalse( iterator.hasNext() );
     }
 
+    @Test
+    public void sharedInterestsAllCompaniesCoreApiShouldKeepTopKOrderingTiesByName() throws Exception
+    {
+        // when
+        List<Map<String, Object>> results = queries.sharedInterestsAllCompaniesCoreApi( "Sarah", 3 );
+
+        // then
+        Iterator<Map<String, Object>> iterator = results.iterator();
+
+        Map<String, Object> result;
+
+        result = iterator.next();
+        assertEquals( "Arnold", result.get( "name" ) );
+        assertEquals( "Startup, Ltd", result.get( "company" ) );
+        assertEquals( 3l, result.get( "score" ) );
+        assertEquals( asList( "Graphs", "Java", "REST" ), result.get( "interests" ) );
+
+        result = iterator.next();
+        assertEquals( "Ben", result.get( "name" ) );
+        assertEquals( "Acme, Inc", result.get( "company" ) );
+        assertEquals( 2l, result.get( "score" ) );
+        assertEquals( asList( "Graphs", "REST" ), result.get( "interests" ) );
+
+        result = iterator.next();
+        assertEquals( "Charlie", result.get( "name" ) );
+        assertEquals( "Acme, Inc", result.get( "company" ) );
+        assertEquals( 1l, result.get( "score" ) );
+        assertEquals( asList( "Graphs" ), result.get( "interests" ) );
+
+        assertFalse( iterator.hasNext() );
+    }
+
     @Test
     public void sharedInterestsAlsoInterestedInTopic() throws Exception
     {
@@ -119,6 +177,22 @@ public class SocialNetworkQueriesTest
         assertFalse( iterator.hasNext() );
     }
 
+    @Test
+    public void sharedInterestsAlsoInterestedInTopicCoreApi() throws Exception
+    {
+        // when
+        List<Map<String, Object>> results = queries.sharedInterestsAlsoInterestedInTopicCoreApi( "Ben", "Travel", 5 );
+
+        // then
+        Iterator<Map<String, Object>> iterator = results.iterator();
+
+        Map<String, Object> result = iterator.next();
+        assertEquals( "Arnold", result.get( "name" ) );
+        assertEquals( asList( "Graphs", "Java", "REST", "Travel" ), result.get( "topics" ) );
+
+        assertFalse( iterator.hasNext() );
+    }
+
     @Test
     public void friendOfAFriendWithInterest() throws Exception
     {
@@ -166,6 +240,51 @@ public class SocialNetworkQueriesTest
         assertFalse( iterator.hasNext() );
     }
 
+    @Test
+    public void friendWorkedWithFriendWithInterestsCoreApi() throws Exception
+    {
+        // when
+        createAllWorkedWithRelationships();
+
+        List<Map<String, Object>> results = queries.friendWorkedWithFriendWithInterestsCoreApi( "Arnold", 5, "Art",
+                "Design" );
+
+        // then
+        Iterator<Map<String, Object>> iterator = results.iterator();
+
+        Map<String, Object> result = iterator.next();
+        assertEquals( "Emily", result.get( "name" ) );
+        assertEquals( 2L, result.get( "score" ) );
+        assertEquals( 2L, result.get( "distance" ) );
+        assertEquals( asList( "Art", "Design" ), result.get( "interests" ) );
+
+        assertFalse( iterator.hasNext() );
+    }
+
+    @Test
+    public void friendWorkedWithFriendWithInterestsCoreApiShouldMatchCypher() throws Exception
+    {
+        // given
+        createAllWorkedWithRelationships();
+
+        ExecutionResult allUsers = queries.getAllUsers();
+        Iterator<Map<String, Object>> users = allUsers.iterator();
+        while ( users.hasNext() )
+        {
+            String name = users.next().get( "name" ).toString();
+
+            // when
+            ExecutionResult cypherResults = queries.friendWorkedWithFriendWithInterests( name, 100, "Art", "Design",
+                    "Music", "Graphs", "Java", "Travel", "Medicine" );
+            List<Map<String, Object>> coreApiResults = queries.friendWorkedWithFriendWithInterestsCoreApi( name, 100,
+                    "Art", "Design", "Music", "Graphs", "Java", "Travel", "Medicine" );
+
+            // then
+            assertEquals( name, scoresAndDistances( cypherResults.iterator() ),
+                    scoresAndDistances( coreApiResults.iterator() ) );
+        }
+    }
+
     @Test
     public void friendOfAFriendWithMultipleInterest() throws Exception
     {
@@ -210,6 +329,58 @@ public class SocialNetworkQueriesTest
         assertFalse( iterator.hasNext() );
     }
 
+    @Test
+    public void friendOfAFriendWithMultipleInterestCoreApiShouldOrderByScore() throws Exception
+    {
+        // when
+        List<Map<String, Object>> results = queries.friendOfAFriendWithMultipleInterestCoreApi( "Sarah", 5, "Java",
+                "Travel", "Medicine" );
+
+        // then
+        Iterator<Map<String, Object>> iterator = results.iterator();
+
+        Map<String, Object> result = iterator.next();
+        assertEquals( "Arnold", result.get( "name" ) );
+        assertEquals( 2L, result.get( "score" ) );
+        assertEquals( 2L, result.get( "distance" ) );
+        assertEquals( asList( "Java", "Travel" ), result.get( "interests" ) );
+
+        result = iterator.next();
+        assertEquals( "Charlie", result.get( "name" ) );
+        assertEquals( 1L, result.get( "score" ) );
+        assertEquals( 1L, result.get( "distance" ) );
+        assertEquals( asList( "Medicine" ), result.get( "interests" ) );
+
+        assertFalse( iterator.hasNext() );
+    }
+
+    @Test
+    public void friendOfAFriendWithMultipleInterestCoreApiShouldMatchCypher() throws Exception
+    {
+        // when
+        ExecutionResult cypherResults = queries.friendOfAFriendWithMultipleInterest( "Arnold", 5, "Art", "Design",
+                "Music", "Graphs" );
+        List<Map<String, Object>> coreApiResults = queries.friendOfAFriendWithMultipleInterestCoreApi( "Arnold", 5,
+                "Art", "Design", "Music", "Graphs" );
+
+        // then
+        Set<String> expected = new HashSet<String>();
+        Iterator<Map<String, Object>> iterator = cypherResults.iterator();
+        while ( iterator.hasNext() )
+        {
+            Map<String, Object> result = iterator.next();
+            expected.add( String.format( "%s %s %s", result.get( "name" ), result.get( "score" ),
+                    result.get( "distance" ) ) );
+        }
+        Set<String> actual = new HashSet<String>();
+        for ( Map<String, Object> result : coreApiResults )
+        {
+            actual.add( String.format( "%s %s %s", result.get( "name" ), result.get( "score" ),
+                    result.get( "distance" ) ) );
+        }
+        assertEquals( expected, actual );
+    }
+
     @Test
     public void shouldCreateNewWorkedWithRelationships() throws Exception
     {
@@ -240,6 +411,44 @@ public class SocialNetworkQueriesTest
         assertFalse( iterator.hasNext() );
     }
 
+    @Test
+    public void supernodeAwareQueriesShouldMatchExpandingQueries() throws Exception
+    {
+        // given
+        SupernodeStrategy supernodes = new SupernodeStrategy( db, 2, SupernodeStrategy.NO_SAMPLING ).build();
+        SocialNetworkQueries supernodeQueries = new SocialNetworkQueries( db,
+                new PrintingExecutionEngineWrapper( db, "social-network", name ), supernodes );
+
+        // then
+        for ( String user : asList( "Sarah", "Ben", "Arnold", "Charlie", "Emily", "Kate" ) )
+        {
+            assertEquals( queries.sharedInterestsSameCompanyCoreApi( user, 10 ),
+                    supernodeQueries.sharedInterestsSameCompanyCoreApi( user, 10 ) );
+            assertEquals( queries.sharedInterestsAlsoInterestedInTopicCoreApi( user, "Graphs", 10 ),
+                    supernodeQueries.sharedInterestsAlsoInterestedInTopicCoreApi( user, "Graphs", 10 ) );
+        }
+        try ( Transaction tx = db.beginTx() )
+        {
+            Iterator<Node> iterator = supernodeQueries.friendOfAFriendWithInterestTraversalFramework( "Arnold", "Art",
+                    5 ).iterator();
+            assertEquals( "Emily", iterator.next().getProperty( "name" ) );
+            assertFalse( iterator.hasNext() );
+            tx.success();
+        }
+    }
+
+    private static Set<String> scoresAndDistances( Iterator<Map<String, Object>> iterator )
+    {
+        Set<String> results = new HashSet<String>();
+        while ( iterator.hasNext() )
+        {
+            Map<String, Object> result = iterator.next();
+            results.add( String.format( "%s %s %s", result.get( "name" ), result.get( "score" ),
+                    result.get( "distance" ) ) );
+        }
+        return results;
+    }
+
     private void createAllWorkedWithRelationships()
     {
         ExecutionResult allUsers = queries.getAllUsers();
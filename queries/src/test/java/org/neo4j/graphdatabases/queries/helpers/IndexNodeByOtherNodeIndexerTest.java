@@ -1,20 +1,29 @@
 package org.neo4j.graphdatabases.queries.helpers;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.neo4j.graphdatabases.queries.helpers.Db.createFromCypher;
 import static org.neo4j.graphdb.DynamicRelationshipType.withName;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Properties;
 
 import org.junit.Ignore;
 import org.junit.Test;
 import org.neo4j.cypher.javacompat.ExecutionEngine;
 import org.neo4j.cypher.javacompat.ExecutionResult;
 import org.neo4j.graphdatabases.queries.testing.IndexParam;
+import org.neo4j.graphdatabases.queries.testing.TestOutputWriter;
 import org.neo4j.graphdb.*;
 import org.neo4j.graphdb.traversal.Evaluation;
 import org.neo4j.graphdb.traversal.Evaluator;
+import org.neo4j.graphdb.traversal.Evaluators;
 import org.neo4j.graphdb.traversal.TraversalDescription;
 import org.neo4j.kernel.Traversal;
 import org.neo4j.tooling.GlobalGraphOperations;
@@ -98,4 +107,232 @@ public class IndexNodeByOtherNodeIndexerTest
             assertEquals(indexValueToResult.get( indexValue ), result.iterator().next().get( "parent" ));
         }
     }
+
+    @Test
+    public void parallelIndexerShouldIndexNodesByMultipleOtherNodes() throws Exception
+    {
+        // given
+        GraphDatabaseService db = createParentsAndChildren( "Parallel indexer example" );
+        ParallelIndexNodeByOtherNodeIndexer indexer = createParallelIndexer( db );
+
+        // when
+        indexer.execute( db, null, 2, 2, null, NULL_WRITER );
+
+        // then
+        Map<String, String> indexValueToResult = new HashMap<>();
+        indexValueToResult.put( "b", "a" );
+        indexValueToResult.put( "c", "a" );
+        indexValueToResult.put( "g", "a" );
+        indexValueToResult.put( "e", "d" );
+        indexValueToResult.put( "f", "d" );
+        indexValueToResult.put( "h", "d" );
+
+        ExecutionEngine executionEngine = new ExecutionEngine( db );
+        for ( String indexValue : indexValueToResult.keySet() )
+        {
+            String query = "START n=node:Parent(child='" + indexValue + "') RETURN n.name AS parent";
+
+            ExecutionResult result = executionEngine.execute( query );
+            assertEquals( indexValueToResult.get( indexValue ), result.iterator().next().get( "parent" ) );
+        }
+
+        assertEquals( 2, indexer.nodesIndexed() );
+        assertEquals( 6, indexer.writes() );
+
+        db.shutdown();
+    }
+
+    @Test
+    public void parallelIndexerShouldResumeFromCheckpoint() throws Exception
+    {
+        // given
+        GraphDatabaseService db = createParentsAndChildren( "Parallel indexer checkpoint example" );
+        ParallelIndexNodeByOtherNodeIndexer indexer = createParallelIndexer( db );
+
+        // two parents, two partitions, first partition already completed
+        File checkpointFile = writeCheckpoint( ParallelIndexNodeByOtherNodeIndexer.fingerprint( parentIds( db ) ) );
+
+        // when
+        indexer.execute( db, null, 2, 1, checkpointFile, NULL_WRITER );
+
+        // then
+        assertEquals( 1, indexer.nodesIndexed() );
+        assertEquals( 3, indexer.writes() );
+        assertFalse( checkpointFile.exists() );
+
+        try ( Transaction tx = db.beginTx() )
+        {
+            assertNull( db.index().forNodes( "Parent" ).get( "child", "b" ).getSingle() );
+            assertEquals( "d", db.index().forNodes( "Parent" ).get( "child", "e" ).getSingle().getProperty( "name" ) );
+            tx.success();
+        }
+
+        db.shutdown();
+    }
+
+    @Test
+    public void parallelIndexerShouldNotDuplicateEntriesCommittedAfterCheckpoint() throws Exception
+    {
+        // given
+        GraphDatabaseService db = createParentsAndChildren( "Parallel indexer duplicate entries example" );
+        ParallelIndexNodeByOtherNodeIndexer indexer = createParallelIndexer( db );
+
+        // second partition's batch committed, but the checkpoint was not written before the failure, and a
+        // child has since been renamed from 'x' to 'h'
+        File checkpointFile = writeCheckpoint( ParallelIndexNodeByOtherNodeIndexer.fingerprint( parentIds( db ) ) );
+        try ( Transaction tx = db.beginTx() )
+        {
+            Node d = db.getNodeById( parentIds( db )[1] );
+            for ( String child : new String[]{"e", "f", "x"} )
+            {
+                db.index().forNodes( "Parent" ).add( d, "child", child );
+            }
+            tx.success();
+        }
+
+        // when
+        indexer.execute( db, null, 2, 1, checkpointFile, NULL_WRITER );
+
+        // then
+        try ( Transaction tx = db.beginTx() )
+        {
+            for ( String child : new String[]{"e", "f", "h"} )
+            {
+                assertEquals( 1, db.index().forNodes( "Parent" ).get( "child", child ).size() );
+            }
+            assertNull( db.index().forNodes( "Parent" ).get( "child", "x" ).getSingle() );
+            tx.success();
+        }
+
+        db.shutdown();
+    }
+
+    @Test
+    public void parallelIndexerShouldIgnoreCheckpointForDifferentNodes() throws Exception
+    {
+        // given
+        GraphDatabaseService db = createParentsAndChildren( "Parallel indexer stale checkpoint example" );
+        ParallelIndexNodeByOtherNodeIndexer indexer = createParallelIndexer( db );
+
+        // same number of parents, but different node ids
+        long[] otherIds = parentIds( db );
+        otherIds[1]++;
+        File checkpointFile = writeCheckpoint( ParallelIndexNodeByOtherNodeIndexer.fingerprint( otherIds ) );
+
+        // when
+        indexer.execute( db, null, 2, 1, checkpointFile, NULL_WRITER );
+
+        // then
+        assertEquals( 2, indexer.nodesIndexed() );
+        assertEquals( 6, indexer.writes() );
+        assertFalse( checkpointFile.exists() );
+
+        db.shutdown();
+    }
+
+    private File writeCheckpoint( String fingerprint ) throws Exception
+    {
+        File checkpointFile = File.createTempFile( "indexer", ".checkpoint" );
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty( "nodes", "2" );
+        checkpoint.setProperty( "fingerprint", fingerprint );
+        checkpoint.setProperty( "partitions", "2" );
+        checkpoint.setProperty( "partition.0", "1" );
+        try ( OutputStream out = new FileOutputStream( checkpointFile ) )
+        {
+            checkpoint.store( out, null );
+        }
+        return checkpointFile;
+    }
+
+    private long[] parentIds( GraphDatabaseService db )
+    {
+        long[] ids = new long[2];
+        int i = 0;
+        try ( Transaction tx = db.beginTx() )
+        {
+            for ( Node parent : GlobalGraphOperations.at( db ).getAllNodesWithLabel( DynamicLabel.label( "Parent" ) ) )
+            {
+                ids[i++] = parent.getId();
+            }
+            tx.success();
+        }
+        Arrays.sort( ids );
+        return ids;
+    }
+
+    private GraphDatabaseService createParentsAndChildren( String name )
+    {
+        String cypher = "CREATE (a:Parent {name:'a'}), \n" +
+                "(b:Child {name:'b'}), \n" +
+                "(c:Child {name:'c'}), \n" +
+                "(d:Parent {name:'d'}), \n" +
+                "(e:Child {name:'e'}), \n" +
+                "(f:Child {name:'f'}),\n" +
+                "(g:Child {name:'g'}),\n" +
+                "(h:Child {name:'h'}),\n" +
+                "a-[:CONNECTED_TO]->b,\n" +
+                "a-[:CONNECTED_TO]->c,\n" +
+                "a-[:CONNECTED_TO]->g,\n" +
+                "d-[:CONNECTED_TO]->e,\n" +
+                "d-[:CONNECTED_TO]->f,\n" +
+                "d-[:CONNECTED_TO]->h";
+
+        return createFromCypher( name, cypher, IndexParam.indexParam( "Parent", "name" ) );
+    }
+
+    private ParallelIndexNodeByOtherNodeIndexer createParallelIndexer( final GraphDatabaseService db )
+    {
+        IndexNodeByOtherNodeIndexer.GraphTraversal findParents = new IndexNodeByOtherNodeIndexer.GraphTraversal()
+        {
+            @Override
+            public Iterable<Node> execute( Node startNode )
+            {
+                return GlobalGraphOperations.at( db ).getAllNodesWithLabel( DynamicLabel.label( "Parent" ) );
+            }
+        };
+
+        IndexNodeByOtherNodeIndexer.GraphTraversal findChildren = new IndexNodeByOtherNodeIndexer.GraphTraversal()
+        {
+            @Override
+            public Iterable<Node> execute( Node startNode )
+            {
+                return db.traversalDescription()
+                        .breadthFirst()
+                        .relationships( withName( "CONNECTED_TO" ), Direction.OUTGOING )
+                        .evaluator( Evaluators.excludeStartPosition() )
+                        .traverse( startNode ).nodes();
+            }
+        };
+
+        return new ParallelIndexNodeByOtherNodeIndexer( findParents, findChildren, "Parent", "child", "name" );
+    }
+
+    private static final TestOutputWriter NULL_WRITER = new TestOutputWriter()
+    {
+        @Override
+        public void begin()
+        {
+        }
+
+        @Override
+        public void write( String value )
+        {
+        }
+
+        @Override
+        public void writeln( String value )
+        {
+        }
+
+        @Override
+        public void flush()
+        {
+        }
+
+        @Override
+        public void end()
+        {
+        }
+    };
 }
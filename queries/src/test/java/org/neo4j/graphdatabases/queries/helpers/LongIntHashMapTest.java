@@ -0,0 +1,67 @@
+package org.neo4j.graphdatabases.queries.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class LongIntHashMapTest
+{
+    @Test
+    public void shouldReturnNoValueForMissingKeys() throws Exception
+    {
+        // given
+        LongIntHashMap map = new LongIntHashMap();
+        map.put( 1L, 10 );
+
+        // then
+        assertEquals( LongIntHashMap.NO_VALUE, map.get( 2L ) );
+        assertFalse( map.containsKey( 2L ) );
+        assertTrue( map.containsKey( 1L ) );
+    }
+
+    @Test
+    public void shouldNotMatchEmptySlotsForMinValueKey() throws Exception
+    {
+        // given
+        LongIntHashMap map = new LongIntHashMap();
+        map.put( 1L, 10 );
+
+        // then
+        assertEquals( LongIntHashMap.NO_VALUE, map.get( Long.MIN_VALUE ) );
+        assertFalse( map.containsKey( Long.MIN_VALUE ) );
+        try
+        {
+            map.put( Long.MIN_VALUE, 1 );
+            fail( "Expected IllegalArgumentException" );
+        }
+        catch ( IllegalArgumentException ex )
+        {
+            assertEquals( "Key not supported: " + Long.MIN_VALUE, ex.getMessage() );
+        }
+    }
+
+    @Test
+    public void shouldGrowAndRetainAllEntries() throws Exception
+    {
+        // given
+        LongIntHashMap map = new LongIntHashMap( 2 );
+
+        // when
+        for ( int i = 0; i < 10000; i++ )
+        {
+            map.put( i * 31L, i );
+        }
+        map.put( 31L, 42 );
+
+        // then
+        assertEquals( 10000, map.size() );
+        assertEquals( 42, map.get( 31L ) );
+        for ( int i = 2; i < 10000; i++ )
+        {
+            assertEquals( i, map.get( i * 31L ) );
+        }
+    }
+}
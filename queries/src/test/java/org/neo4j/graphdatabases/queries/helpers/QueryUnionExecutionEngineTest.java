@@ -1,8 +1,10 @@
 package org.neo4j.graphdatabases.queries.helpers;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -14,6 +16,8 @@ import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Transaction;
 
+import static java.util.Arrays.asList;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -300,6 +304,155 @@ public class QueryUnionExecutionEngineTest
                         "2 rows\n" ) );
     }
 
+    @Test
+    public void concurrentEngineShouldReturnRowsFromAllQueries() throws Exception
+    {
+        // given
+        String query1 =
+                "MATCH (a:User {name:'a'})-[:FRIEND]->(person)\n" +
+                "RETURN person";
+        String query2 =
+                "MATCH (a:User {name:'a'})-[:ENEMY]->(person)\n" +
+                "RETURN person";
+        ConcurrentQueryUnionExecutionEngine queryUnionExecutionEngine =
+                new ConcurrentQueryUnionExecutionEngine( executionEngine, 2, 1, 0 );
+
+        // when
+        ConcurrentQueryUnionExecutionResult results = queryUnionExecutionEngine.execute(
+                new HashMap<String, Object>(), query1, query2 );
+
+        // then
+        assertEquals( new HashSet<>( asList( "b", "c", "d", "e" ) ), personNames( results ) );
+        for ( ConcurrentQueryUnionExecutionResult.SubQueryMetrics metrics : results.metrics() )
+        {
+            assertEquals( 2, metrics.rows() );
+            assertTrue( metrics.firstRowNanos() >= 0 );
+            assertTrue( metrics.totalNanos() >= metrics.firstRowNanos() );
+        }
+
+        queryUnionExecutionEngine.shutdown();
+    }
+
+    @Test
+    public void concurrentEngineShouldRemoveDuplicateRows() throws Exception
+    {
+        // given
+        String query =
+                "MATCH (a:User {name:'a'})-[:FRIEND]->(person)\n" +
+                "RETURN person";
+        ConcurrentQueryUnionExecutionEngine queryUnionExecutionEngine =
+                new ConcurrentQueryUnionExecutionEngine( executionEngine, 2, 10, 100 );
+
+        // when
+        Iterator<Map<String, Object>> results = queryUnionExecutionEngine.execute( query, query ).iterator();
+
+        // then
+        Set<Object> names = new HashSet<>();
+        int count = 0;
+        while ( results.hasNext() )
+        {
+            names.add( ((Node) results.next().get( "person" )).getProperty( "name" ) );
+            count++;
+        }
+        assertEquals( 2, count );
+        assertEquals( new HashSet<>( asList( "b", "c" ) ), names );
+
+        queryUnionExecutionEngine.shutdown();
+    }
+
+    @Test
+    public void concurrentEngineResultsShouldOnlyBeIterableOnce() throws Exception
+    {
+        // given
+        String query =
+                "MATCH (a:User {name:'a'})-[:FRIEND]->(person)\n" +
+                "RETURN person";
+        ConcurrentQueryUnionExecutionEngine queryUnionExecutionEngine =
+                new ConcurrentQueryUnionExecutionEngine( executionEngine, 1, 10, 0 );
+        ConcurrentQueryUnionExecutionResult results = queryUnionExecutionEngine.execute(
+                new HashMap<String, Object>(), query );
+        personNames( results );
+
+        // then
+        try
+        {
+            results.iterator();
+            fail( "Expected IllegalStateException" );
+        }
+        catch ( IllegalStateException ex )
+        {
+            assertEquals( "Concurrent union results can only be iterated once.", ex.getMessage() );
+        }
+        assertTrue( results.toString().startsWith( "Query 1: 2 rows" ) );
+
+        queryUnionExecutionEngine.shutdown();
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentEngineShouldReleaseThreadsWhenResultsAreClosedEarly() throws Exception
+    {
+        // given
+        String query =
+                "MATCH (a:User {name:'a'})-[:FRIEND|ENEMY]->(person)\n" +
+                "RETURN person.name AS name";
+        ConcurrentQueryUnionExecutionEngine queryUnionExecutionEngine =
+                new ConcurrentQueryUnionExecutionEngine( executionEngine, 1, 1, 0 );
+
+        // when
+        for ( int i = 0; i < 3; i++ )
+        {
+            ConcurrentQueryUnionExecutionResult results = queryUnionExecutionEngine.execute(
+                    new HashMap<String, Object>(), query, query );
+            results.iterator().next();
+            results.close();
+        }
+
+        // then
+        Set<Object> names = new HashSet<>();
+        for ( Map<String, Object> row : queryUnionExecutionEngine.execute( new HashMap<String, Object>(), query ) )
+        {
+            names.add( row.get( "name" ) );
+        }
+        assertEquals( new HashSet<>( asList( "b", "c", "d", "e" ) ), names );
+
+        queryUnionExecutionEngine.shutdown();
+    }
+
+    @Test
+    public void concurrentEngineShouldPropagateQueryFailures() throws Exception
+    {
+        // given
+        String query1 =
+                "MATCH (a:User {name:'a'})-[:FRIEND]->(person)\n" +
+                "RETURN person";
+        String query2 = "MATCH (a:User {name:{name}}) RETURN a";
+        ConcurrentQueryUnionExecutionEngine queryUnionExecutionEngine =
+                new ConcurrentQueryUnionExecutionEngine( executionEngine, 2, 10, 0 );
+
+        // then
+        try
+        {
+            personNames( queryUnionExecutionEngine.execute( new HashMap<String, Object>(), query1, query2 ) );
+            fail( "Expected exception for missing parameter" );
+        }
+        catch ( RuntimeException ex )
+        {
+            // expected
+        }
+
+        queryUnionExecutionEngine.shutdown();
+    }
+
+    private Set<Object> personNames( Iterable<Map<String, Object>> results )
+    {
+        Set<Object> names = new HashSet<>();
+        for ( Map<String, Object> row : results )
+        {
+            names.add( ((Node) row.get( "person" )).getProperty( "name" ) );
+        }
+        return names;
+    }
+
     private static GraphDatabaseService createDatabase()
     {
         String cypher = "CREATE\n" +
@@ -0,0 +1,180 @@
+package org.neo4j.graphdatabases.queries.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.neo4j.graphdatabases.queries.helpers.Db.createFromCypher;
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import org.neo4j.graphdatabases.queries.SocialNetworkQueries;
+import org.neo4j.graphdatabases.queries.testing.IndexParam;
+import org.neo4j.graphdatabases.queries.testing.TestOutputWriter;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+public class WorkedWithMaterializerTest
+{
+    private static final String PROJECTS = "CREATE\n" +
+            "(ben:User {name:'Ben'}),\n" +
+            "(arnold:User {name:'Arnold'}),\n" +
+            "(charlie:User {name:'Charlie'}),\n" +
+            "(emily:User {name:'Emily'}),\n" +
+            "(sarah:User {name:'Sarah'}),\n" +
+            "(kate:User {name:'Kate'}),\n" +
+            "(lucy:User {name:'Lucy'}),\n" +
+            "(phoenix:Project {name:'Phoenix'}),\n" +
+            "(quantumLeap:Project {name:'Quantum Leap'}),\n" +
+            "(nextGenPlatform:Project {name:'Next Gen Platform'}),\n" +
+            "arnold-[:WORKED_ON]->phoenix,\n" +
+            "kate-[:WORKED_ON]->phoenix,\n" +
+            "kate-[:WORKED_ON]->quantumLeap,\n" +
+            "emily-[:WORKED_ON]->quantumLeap,\n" +
+            "ben-[:WORKED_ON]->nextGenPlatform,\n" +
+            "emily-[:WORKED_ON]->nextGenPlatform,\n" +
+            "charlie-[:WORKED_ON]->nextGenPlatform,\n" +
+            "sarah-[:WORKED_ON]->nextGenPlatform,\n" +
+            "sarah-[:WORKED_ON]->quantumLeap,\n" +
+            "sarah-[:WORKED_WITH]->ben";
+
+    @Rule
+    public TestName name = new TestName();
+
+    private GraphDatabaseService db;
+
+    @Before
+    public void init()
+    {
+        db = createFromCypher( "Projects", PROJECTS, IndexParam.indexParam( "User", "name" ) );
+    }
+
+    @After
+    public void shutdown()
+    {
+        db.shutdown();
+    }
+
+    @Test
+    public void shouldCreateSameWorkedWithRelationshipsAsCypherForWholeGraph() throws Exception
+    {
+        // given
+        GraphDatabaseService cypherDb = createFromCypher( "Projects (Cypher)", PROJECTS,
+                IndexParam.indexParam( "User", "name" ) );
+        SocialNetworkQueries queries = new SocialNetworkQueries( cypherDb, new PrintingExecutionEngineWrapper(
+                cypherDb, "social-network", name ) );
+        Iterator<Map<String, Object>> users = queries.getAllUsers().iterator();
+        while ( users.hasNext() )
+        {
+            queries.createWorkedWithRelationships( users.next().get( "name" ).toString() ).iterator().hasNext();
+        }
+
+        // when
+        long created = new WorkedWithMaterializer( db, 2, 2, NULL_WRITER ).materializeAll();
+
+        // then
+        Set<String> expected = workedWithPairs( cypherDb );
+        cypherDb.shutdown();
+        assertEquals( expected, workedWithPairs( db ) );
+        assertEquals( expected.size() - 1, created );
+    }
+
+    @Test
+    public void shouldCreateNothingWhenAlreadyMaterialized() throws Exception
+    {
+        // given
+        WorkedWithMaterializer materializer = new WorkedWithMaterializer( db, 100, 1, NULL_WRITER );
+        materializer.materializeAll();
+
+        // when
+        long created = materializer.materializeAll();
+
+        // then
+        assertEquals( 0, created );
+    }
+
+    @Test
+    public void shouldOnlyMaterializeUsersTouchedByNewWorkedOnRelationships() throws Exception
+    {
+        // given
+        WorkedWithMaterializer materializer = new WorkedWithMaterializer( db, 100, 2, NULL_WRITER );
+        materializer.materializeAll();
+        materializer.startTracking();
+        createFromCypher( db, "New project members",
+                "MATCH (lucy:User {name:'Lucy'}), (arnold:User {name:'Arnold'}),\n" +
+                "      (phoenix:Project {name:'Phoenix'}), (quantumLeap:Project {name:'Quantum Leap'})\n" +
+                "CREATE lucy-[:WORKED_ON]->phoenix, arnold-[:WORKED_ON]->quantumLeap" );
+
+        // when
+        long created = materializer.materializeTouched();
+
+        // then
+        // Lucy: Arnold, Kate; Arnold (besides Lucy and Kate): Emily, Sarah
+        assertEquals( 4, created );
+        assertEquals( 2, materializer.usersProcessed() );
+        Set<String> pairs = workedWithPairs( db );
+        assertEquals( true, pairs.contains( "Arnold-Lucy" ) );
+        assertEquals( true, pairs.contains( "Kate-Lucy" ) );
+        assertEquals( true, pairs.contains( "Arnold-Emily" ) );
+        assertEquals( true, pairs.contains( "Arnold-Sarah" ) );
+
+        assertEquals( 0, materializer.materializeTouched() );
+        materializer.stopTracking();
+        assertEquals( 0, materializer.materializeAll() );
+    }
+
+    private static Set<String> workedWithPairs( GraphDatabaseService db )
+    {
+        Set<String> pairs = new HashSet<>();
+        try ( Transaction tx = db.beginTx() )
+        {
+            for ( Relationship relationship : GlobalGraphOperations.at( db ).getAllRelationships() )
+            {
+                if ( relationship.isType( withName( "WORKED_WITH" ) ) )
+                {
+                    String start = (String) relationship.getStartNode().getProperty( "name" );
+                    String end = (String) relationship.getEndNode().getProperty( "name" );
+                    pairs.add( start.compareTo( end ) < 0 ? start + "-" + end : end + "-" + start );
+                }
+            }
+            tx.success();
+        }
+        return pairs;
+    }
+
+    private static final TestOutputWriter NULL_WRITER = new TestOutputWriter()
+    {
+        @Override
+        public void begin()
+        {
+        }
+
+        @Override
+        public void write( String value )
+        {
+        }
+
+        @Override
+        public void writeln( String value )
+        {
+        }
+
+        @Override
+        public void flush()
+        {
+        }
+
+        @Override
+        public void end()
+        {
+        }
+    };
+}
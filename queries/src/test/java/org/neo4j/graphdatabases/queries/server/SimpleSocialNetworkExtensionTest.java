@@ -76,6 +76,36 @@ public class SimpleSocialNetworkExtensionTest
         assertEquals( "4", distance );
     }
 
+    @Test
+    public void serverShouldReturnDistanceUsingBidirectionalSearch() throws Exception
+    {
+        ClientConfig config = new DefaultClientConfig();
+        Client client = Client.create( config );
+
+        WebResource resource = client
+                .resource( "http://localhost:7474/socnet/distance/Ben/Mike" )
+                .queryParam( "algorithm", "bidirectional" );
+        ClientResponse response = resource
+                .accept( MediaType.TEXT_PLAIN )
+                .get( ClientResponse.class );
+
+        assertEquals( 200, response.getStatus() );
+        assertEquals( "4", response.getEntity( String.class ) );
+    }
+
+    @Test
+    public void extensionShouldReturnDistanceUsingBidirectionalSearch() throws Exception
+    {
+        // given
+        SimpleSocialNetworkExtension extension = new SimpleSocialNetworkExtension( db );
+
+        // when
+        String distance = extension.getDistance( "Ben", "Mike", SimpleSocialNetworkExtension.BIDIRECTIONAL );
+
+        // then
+        assertEquals( "4", distance );
+    }
+
     private static GraphDatabaseService populateDatabase( GraphDatabaseService db )
     {
         String cypher = "CREATE\n" +
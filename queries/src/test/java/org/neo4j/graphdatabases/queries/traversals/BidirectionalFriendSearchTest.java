@@ -0,0 +1,105 @@
+package org.neo4j.graphdatabases.queries.traversals;
+
+import static org.junit.Assert.assertEquals;
+import static org.neo4j.graphdatabases.queries.helpers.Db.createFromCypher;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdatabases.queries.SimpleSocialNetworkQueries;
+import org.neo4j.graphdatabases.queries.testing.IndexParam;
+import org.neo4j.graphdb.GraphDatabaseService;
+
+public class BidirectionalFriendSearchTest
+{
+    private static final int NUMBER_OF_USERS = 60;
+
+    private GraphDatabaseService db;
+
+    @Before
+    public void init()
+    {
+        db = createDatabase();
+    }
+
+    @After
+    public void shutdown()
+    {
+        db.shutdown();
+    }
+
+    @Test
+    public void shouldMatchCypherShortestPathForEveryPairOfUsers() throws Exception
+    {
+        // given
+        SimpleSocialNetworkQueries queries = new SimpleSocialNetworkQueries( db );
+
+        // then
+        for ( int first = 0; first < NUMBER_OF_USERS; first++ )
+        {
+            for ( int second = first + 1; second < NUMBER_OF_USERS; second++ )
+            {
+                String firstUser = "User-" + first;
+                String secondUser = "User-" + second;
+                Iterator<Object> depths = queries.pathBetweenTwoFriends( firstUser, secondUser ).columnAs( "depth" );
+                int expected = depths.hasNext() ? ((Number) depths.next()).intValue()
+                        : BidirectionalFriendSearch.NO_PATH;
+
+                assertEquals( firstUser + " to " + secondUser, expected,
+                        queries.pathBetweenTwoFriendsCoreApi( firstUser, secondUser ) );
+            }
+        }
+    }
+
+    @Test
+    public void shouldNotSearchBeyondMaximumDepth() throws Exception
+    {
+        // given
+        BidirectionalFriendSearch depth2 = new BidirectionalFriendSearch( db, 2 );
+        BidirectionalFriendSearch depth4 = new BidirectionalFriendSearch( db );
+
+        // then
+        assertEquals( 3, depth4.distance( "Chain-0", "Chain-3" ) );
+        assertEquals( BidirectionalFriendSearch.NO_PATH, depth2.distance( "Chain-0", "Chain-3" ) );
+        assertEquals( 2, depth2.distance( "Chain-0", "Chain-2" ) );
+        assertEquals( BidirectionalFriendSearch.NO_PATH, depth4.distance( "Chain-0", "Chain-5" ) );
+        assertEquals( 0, depth4.distance( "Chain-0", "Chain-0" ) );
+        assertEquals( BidirectionalFriendSearch.NO_PATH, depth4.distance( "Chain-0", "Nobody" ) );
+    }
+
+    private static GraphDatabaseService createDatabase()
+    {
+        Random random = new Random( 42 );
+        StringBuilder cypher = new StringBuilder( "CREATE\n" );
+        for ( int i = 0; i < NUMBER_OF_USERS; i++ )
+        {
+            cypher.append( String.format( "(user%s:User {name:'User-%s'}),\n", i, i ) );
+        }
+        for ( int i = 0; i < 6; i++ )
+        {
+            cypher.append( String.format( "(chain%s:User {name:'Chain-%s'}),\n", i, i ) );
+        }
+        for ( int i = 0; i < 5; i++ )
+        {
+            cypher.append( String.format( "chain%s-[:FRIEND]->chain%s,\n", i, i + 1 ) );
+        }
+        for ( int i = 0; i < NUMBER_OF_USERS; i++ )
+        {
+            int first = random.nextInt( NUMBER_OF_USERS );
+            int second = random.nextInt( NUMBER_OF_USERS );
+            if ( first != second )
+            {
+                cypher.append( String.format( "user%s-[:FRIEND]->user%s,\n", first, second ) );
+            }
+        }
+        cypher.append( "user0-[:FRIEND]->user1" );
+
+        return createFromCypher(
+                "Random Friends",
+                cypher.toString(),
+                IndexParam.indexParam( "User", "name" ) );
+    }
+}
@@ -0,0 +1,154 @@
+package org.neo4j.graphdatabases.queries.traversals;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.neo4j.graphdatabases.queries.helpers.Db.createFromCypher;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdatabases.queries.SimpleSocialNetworkQueries;
+import org.neo4j.graphdatabases.queries.testing.IndexParam;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+
+public class FriendOfAFriendFrontiersTest
+{
+    private static final int NUMBER_OF_USERS = 40;
+
+    private GraphDatabaseService db;
+    private ForkJoinPool pool;
+
+    @Before
+    public void init()
+    {
+        db = createDatabase();
+        pool = new ForkJoinPool( 4 );
+    }
+
+    @After
+    public void shutdown()
+    {
+        pool.shutdown();
+        db.shutdown();
+    }
+
+    @Test
+    public void shouldFindSameUsersAsCypherForEveryUser() throws Exception
+    {
+        // given
+        SimpleSocialNetworkQueries queries = new SimpleSocialNetworkQueries( db );
+        FriendOfAFriendFrontiers sequential =
+                new FriendOfAFriendFrontiers( db, pool, Integer.MAX_VALUE ).build();
+        FriendOfAFriendFrontiers parallel = new FriendOfAFriendFrontiers( db, pool, 2 ).build();
+
+        // then
+        for ( int i = 0; i < NUMBER_OF_USERS; i++ )
+        {
+            String name = "User-" + i;
+            Set<String> expected = new HashSet<>();
+            Iterator<Object> names = queries.friendOfAFriendToDepth4( name ).columnAs( "name" );
+            while ( names.hasNext() )
+            {
+                expected.add( (String) names.next() );
+            }
+
+            assertEquals( name, expected, names( sequential, name ) );
+            assertEquals( name, expected, names( parallel, name ) );
+        }
+    }
+
+    @Test
+    public void shouldReturnEachFriendIdOnce() throws Exception
+    {
+        // given
+        FriendOfAFriendFrontiers frontiers = new FriendOfAFriendFrontiers( db, pool, 2 ).build();
+
+        try ( Transaction tx = db.beginTx() )
+        {
+            // when
+            FriendOfAFriendFrontiers.FriendIds ids = frontiers.getFriendIds( "User-0" );
+
+            // then
+            int size = ids.size();
+            Set<Long> seen = new HashSet<>();
+            while ( ids.hasNext() )
+            {
+                assertEquals( true, seen.add( ids.next() ) );
+            }
+            assertEquals( size, seen.size() );
+            assertFalse( ids.hasNext() );
+            tx.success();
+        }
+    }
+
+    @Test
+    public void shouldMatchCypherAroundTrianglesThroughTheStartUser() throws Exception
+    {
+        // given
+        createFromCypher( db, "Triangles",
+                "CREATE (s:User {name:'S'}), (a:User {name:'A'}), (b:User {name:'B'}), (c:User {name:'C'}),\n" +
+                "       (d:User {name:'D'}),\n" +
+                "       s-[:FRIEND]->a, a-[:FRIEND]->b, b-[:FRIEND]->s, s-[:FRIEND]->c, c-[:FRIEND]->d" );
+        FriendOfAFriendFrontiers frontiers = new FriendOfAFriendFrontiers( db, pool, 2 ).build();
+
+        // then
+        Set<String> expected = new HashSet<>();
+        Iterator<Object> names =
+                new SimpleSocialNetworkQueries( db ).friendOfAFriendToDepth4( "S" ).columnAs( "name" );
+        while ( names.hasNext() )
+        {
+            expected.add( (String) names.next() );
+        }
+        assertEquals( new HashSet<>( Arrays.asList( "C" ) ), expected );
+        assertEquals( expected, names( frontiers, "S" ) );
+    }
+
+    private Set<String> names( FriendOfAFriendFrontiers frontiers, String name )
+    {
+        Set<String> names = new HashSet<>();
+        try ( Transaction tx = db.beginTx() )
+        {
+            for ( Node friend : frontiers.getFriends( name ) )
+            {
+                names.add( (String) friend.getProperty( "name" ) );
+            }
+            tx.success();
+        }
+        return names;
+    }
+
+    private static GraphDatabaseService createDatabase()
+    {
+        Random random = new Random( 7 );
+        StringBuilder cypher = new StringBuilder( "CREATE\n" );
+        for ( int i = 0; i < NUMBER_OF_USERS; i++ )
+        {
+            cypher.append( String.format( "(user%s:User {name:'User-%s'}),\n", i, i ) );
+        }
+        Set<String> friendships = new HashSet<>( Arrays.asList( "0-1", "1-2", "0-2" ) );
+        for ( int i = 0; i < NUMBER_OF_USERS * 2; i++ )
+        {
+            int first = random.nextInt( NUMBER_OF_USERS );
+            int second = random.nextInt( NUMBER_OF_USERS );
+            if ( first != second && friendships.add( Math.min( first, second ) + "-" + Math.max( first, second ) ) )
+            {
+                cypher.append( String.format( "user%s-[:FRIEND]->user%s,\n", first, second ) );
+            }
+        }
+        cypher.append( "user0-[:FRIEND]->user1,\nuser1-[:FRIEND]->user2,\nuser2-[:FRIEND]->user0" );
+
+        return createFromCypher(
+                "Random Friends",
+                cypher.toString(),
+                IndexParam.indexParam( "User", "name" ) );
+    }
+}
@@ -0,0 +1,145 @@
+package org.neo4j.graphdatabases.queries.traversals;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class HubLabelsTest
+{
+    @Test
+    public void shouldReturnShortestDistancesAndRoutes() throws Exception
+    {
+        // given
+        Random random = new Random( 42 );
+        int numberOfVertices = 120;
+        int[][] edges = new int[400][];
+        for ( int i = 0; i < edges.length; i++ )
+        {
+            edges[i] = new int[]{random.nextInt( numberOfVertices ), random.nextInt( numberOfVertices ),
+                    1 + random.nextInt( 10 )};
+        }
+        Graph graph = new Graph( numberOfVertices, edges );
+
+        // when
+        HubLabels hubLabels = new HubLabels( graph.offsets, graph.targets, graph.costs );
+
+        // then
+        for ( int from = 0; from < numberOfVertices; from++ )
+        {
+            double[] expected = graph.dijkstra( from );
+            for ( int to = 0; to < numberOfVertices; to++ )
+            {
+                assertEquals( expected[to], hubLabels.distance( from, to ), 0.0 );
+                int[] route = hubLabels.route( from, to );
+                if ( expected[to] == Double.POSITIVE_INFINITY )
+                {
+                    assertNull( route );
+                }
+                else
+                {
+                    assertEquals( from, route[0] );
+                    assertEquals( to, route[route.length - 1] );
+                    assertEquals( expected[to], graph.cost( route ), 0.0 );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldPreferHighestRankedHubForEqualCostRoutes() throws Exception
+    {
+        // given
+        // 1 is connected to 0, 2 and 3; 0 reaches 2 through 1 or through 4 at the same cost
+        int[][] edges = {{0, 1, 1}, {1, 2, 1}, {1, 3, 1}, {0, 4, 1}, {4, 2, 1}};
+        Graph graph = new Graph( 5, edges );
+
+        // when
+        HubLabels hubLabels = new HubLabels( graph.offsets, graph.targets, graph.costs );
+
+        // then
+        assertEquals( Arrays.toString( new int[]{0, 1, 2} ), Arrays.toString( hubLabels.route( 0, 2 ) ) );
+        assertEquals( Arrays.toString( new int[]{3} ), Arrays.toString( hubLabels.route( 3, 3 ) ) );
+    }
+
+    private static class Graph
+    {
+        private final int[] offsets;
+        private final int[] targets;
+        private final double[] costs;
+
+        Graph( int numberOfVertices, int[][] edges )
+        {
+            offsets = new int[numberOfVertices + 1];
+            for ( int[] edge : edges )
+            {
+                offsets[edge[0] + 1]++;
+                offsets[edge[1] + 1]++;
+            }
+            for ( int vertex = 0; vertex < numberOfVertices; vertex++ )
+            {
+                offsets[vertex + 1] += offsets[vertex];
+            }
+            targets = new int[offsets[numberOfVertices]];
+            costs = new double[targets.length];
+            int[] positions = Arrays.copyOf( offsets, numberOfVertices );
+            for ( int[] edge : edges )
+            {
+                targets[positions[edge[0]]] = edge[1];
+                costs[positions[edge[0]]++] = edge[2];
+                targets[positions[edge[1]]] = edge[0];
+                costs[positions[edge[1]]++] = edge[2];
+            }
+        }
+
+        double[] dijkstra( int from )
+        {
+            double[] distances = new double[offsets.length - 1];
+            boolean[] settled = new boolean[distances.length];
+            Arrays.fill( distances, Double.POSITIVE_INFINITY );
+            distances[from] = 0.0;
+            while ( true )
+            {
+                int vertex = -1;
+                for ( int candidate = 0; candidate < distances.length; candidate++ )
+                {
+                    if ( !settled[candidate] && distances[candidate] < Double.POSITIVE_INFINITY &&
+                            (vertex < 0 || distances[candidate] < distances[vertex]) )
+                    {
+                        vertex = candidate;
+                    }
+                }
+                if ( vertex < 0 )
+                {
+                    return distances;
+                }
+                settled[vertex] = true;
+                for ( int i = offsets[vertex]; i < offsets[vertex + 1]; i++ )
+                {
+                    distances[targets[i]] = Math.min( distances[targets[i]], distances[vertex] + costs[i] );
+                }
+            }
+        }
+
+        double cost( int[] route )
+        {
+            double total = 0.0;
+            for ( int i = 1; i < route.length; i++ )
+            {
+                double cheapest = Double.POSITIVE_INFINITY;
+                for ( int j = offsets[route[i - 1]]; j < offsets[route[i - 1] + 1]; j++ )
+                {
+                    if ( targets[j] == route[i] )
+                    {
+                        cheapest = Math.min( cheapest, costs[j] );
+                    }
+                }
+                total += cheapest;
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.neo4j.graphdatabases.queries.traversals;
+
+import static org.junit.Assert.assertEquals;
+
+import org.joda.time.Interval;
+import org.junit.Test;
+
+public class IntervalExpanderTest
+{
+    @Test
+    public void shouldTestValidityLikeJodaIntervals() throws Exception
+    {
+        // given
+        long[] instants = {0, 1, 2, 3, 4, 5};
+
+        for ( long startDate : instants )
+        {
+            for ( long endDate = startDate; endDate <= 5; endDate++ )
+            {
+                for ( long from : instants )
+                {
+                    for ( long to = from; to <= 5; to++ )
+                    {
+                        // when
+                        boolean contains = IntervalExpander.contains( startDate, endDate, from, to );
+
+                        // then
+                        assertEquals( String.format( "[%s, %s) contains [%s, %s)", startDate, endDate, from, to ),
+                                new Interval( startDate, endDate ).contains( new Interval( from, to ) ), contains );
+                    }
+                }
+            }
+        }
+    }
+}
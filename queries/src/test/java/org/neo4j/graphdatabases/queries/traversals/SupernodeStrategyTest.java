@@ -0,0 +1,100 @@
+package org.neo4j.graphdatabases.queries.traversals;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdatabases.queries.helpers.Db;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.helpers.collection.IteratorUtil;
+
+public class SupernodeStrategyTest
+{
+    private GraphDatabaseService db;
+    private Node bigCompany;
+    private Node smallCompany;
+    private long[] bigCompanyEmployees;
+
+    @Before
+    public void init()
+    {
+        db = Db.impermanentDb();
+        try ( Transaction tx = db.beginTx() )
+        {
+            bigCompany = db.createNode( DynamicLabel.label( "Company" ) );
+            smallCompany = db.createNode( DynamicLabel.label( "Company" ) );
+            bigCompanyEmployees = new long[100];
+            for ( int i = 0; i < bigCompanyEmployees.length; i++ )
+            {
+                Node user = db.createNode( DynamicLabel.label( "User" ) );
+                user.createRelationshipTo( bigCompany, withName( "WORKS_FOR" ) );
+                bigCompanyEmployees[i] = user.getId();
+            }
+            db.createNode( DynamicLabel.label( "User" ) ).createRelationshipTo( smallCompany, withName( "WORKS_FOR" ) );
+            tx.success();
+        }
+    }
+
+    @After
+    public void shutdown()
+    {
+        db.shutdown();
+    }
+
+    @Test
+    public void shouldKeepSortedMembersOfNodesAtOrAboveDegreeThreshold() throws Exception
+    {
+        // when
+        SupernodeStrategy supernodes = new SupernodeStrategy( db, 50, SupernodeStrategy.NO_SAMPLING ).build();
+
+        // then
+        try ( Transaction tx = db.beginTx() )
+        {
+            assertEquals( 1, supernodes.numberOfSupernodes() );
+            assertTrue( supernodes.isSupernode( bigCompany ) );
+            assertFalse( supernodes.isSupernode( smallCompany ) );
+
+            long[] expected = bigCompanyEmployees.clone();
+            Arrays.sort( expected );
+            long[] members = supernodes.members( bigCompany, withName( "WORKS_FOR" ) );
+            assertArrayEquals( expected, members );
+            assertTrue( SupernodeStrategy.contains( members, bigCompanyEmployees[42] ) );
+            assertEquals( 1, supernodes.members( smallCompany, withName( "WORKS_FOR" ) ).length );
+            tx.success();
+        }
+    }
+
+    @Test
+    public void expanderShouldSampleOnlySupernodeRelationships() throws Exception
+    {
+        // given
+        SupernodeStrategy supernodes = new SupernodeStrategy( db, 50, 10 ).build();
+
+        // when
+        try ( Transaction tx = db.beginTx() )
+        {
+            int fromBigCompany = IteratorUtil.count( db.traversalDescription()
+                    .expand( supernodes.expander( withName( "WORKS_FOR" ), Direction.INCOMING ) )
+                    .traverse( bigCompany ).nodes() );
+            int fromSmallCompany = IteratorUtil.count( db.traversalDescription()
+                    .expand( supernodes.expander( withName( "WORKS_FOR" ), Direction.INCOMING ) )
+                    .traverse( smallCompany ).nodes() );
+
+            // then
+            assertEquals( 1 + 10, fromBigCompany );
+            assertEquals( 1 + 1, fromSmallCompany );
+            tx.success();
+        }
+    }
+}
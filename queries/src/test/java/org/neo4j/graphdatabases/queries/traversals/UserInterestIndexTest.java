@@ -0,0 +1,208 @@
+package org.neo4j.graphdatabases.queries.traversals;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.neo4j.graphdatabases.queries.helpers.Db.createFromCypher;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdatabases.queries.testing.IndexParam;
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.helpers.collection.IteratorUtil;
+
+public class UserInterestIndexTest
+{
+    private GraphDatabaseService db;
+    private UserInterestIndex index;
+
+    @Before
+    public void init()
+    {
+        db = createDatabase();
+        index = new UserInterestIndex( db ).build();
+    }
+
+    @After
+    public void shutdown()
+    {
+        index.stopMaintaining();
+        db.shutdown();
+    }
+
+    @Test
+    public void shouldScoreSharedInterestsWithBitsets() throws Exception
+    {
+        // when
+        long[] sarah = index.interests( nodeId( "User", "Sarah" ) );
+
+        // then
+        assertEquals( 2, index.sharedInterests( sarah, nodeId( "User", "Ben" ) ) );
+        assertEquals( 3, index.sharedInterests( sarah, nodeId( "User", "Arnold" ) ) );
+        assertEquals( 0, index.sharedInterests( sarah, nodeId( "User", "Emily" ) ) );
+        assertEquals( asList( "Graphs", "REST" ),
+                index.topicNames( index.sharedInterestsBitset( sarah, nodeId( "User", "Ben" ) ) ) );
+        assertNull( index.interests( nodeId( "User", "Lucy" ) ) );
+    }
+
+    @Test
+    public void bitsetRecommendationsShouldMatchExpansionRecommendations() throws Exception
+    {
+        // given
+        SocialNetworkRecommendations byExpansion = new SocialNetworkRecommendations( db );
+        SocialNetworkRecommendations byBitset = new SocialNetworkRecommendations( db, index );
+
+        // then
+        for ( String user : asList( "Sarah", "Ben", "Arnold", "Emily", "Lucy" ) )
+        {
+            assertEquals( byExpansion.sharedInterestsSameCompany( user, 10 ),
+                    byBitset.sharedInterestsSameCompany( user, 10 ) );
+            assertEquals( byExpansion.sharedInterestsAllCompanies( user, 2 ),
+                    byBitset.sharedInterestsAllCompanies( user, 2 ) );
+        }
+    }
+
+    @Test
+    public void shouldApplyCreatedAndDeletedInterests() throws Exception
+    {
+        // given
+        createFromCypher( db, "New interests",
+                "MATCH (emily:User {name:'Emily'}), (java:Topic {name:'Java'})\n" +
+                "CREATE (emily)-[:INTERESTED_IN]->(java)," +
+                "       (emily)-[:INTERESTED_IN]->(:Topic {name:'Scala'}),\n" +
+                "       (:User {name:'Zoe'})-[:INTERESTED_IN]->(java)" );
+        createFromCypher( db, "Lost interest",
+                "MATCH (ben:User {name:'Ben'})-[r:INTERESTED_IN]->(:Topic {name:'REST'})\n" +
+                "DELETE r" );
+
+        // when
+        long[] sarah = index.interests( nodeId( "User", "Sarah" ) );
+
+        // then
+        assertEquals( asList( "Java" ),
+                index.topicNames( index.sharedInterestsBitset( sarah, nodeId( "User", "Emily" ) ) ) );
+        assertEquals( asList( "Java" ),
+                index.topicNames( index.sharedInterestsBitset( sarah, nodeId( "User", "Zoe" ) ) ) );
+        assertEquals( asList( "Graphs" ),
+                index.topicNames( index.sharedInterestsBitset( sarah, nodeId( "User", "Ben" ) ) ) );
+        assertEquals( asList( "Art", "Design", "Java", "Scala" ),
+                index.topicNames( index.interests( nodeId( "User", "Emily" ) ) ) );
+    }
+
+    @Test
+    public void shouldGrowBitsetsPastSixtyFourTopics() throws Exception
+    {
+        // given
+        StringBuilder cypher = new StringBuilder( "MATCH (lucy:User {name:'Lucy'})\nCREATE " );
+        for ( int i = 0; i < 70; i++ )
+        {
+            cypher.append( i == 0 ? "" : ",\n" ).append(
+                    String.format( "(lucy)-[:INTERESTED_IN]->(:Topic {name:'Topic-%s'})", i ) );
+        }
+        createFromCypher( db, "Many topics", cypher.toString() );
+
+        // when
+        long[] lucy = index.interests( nodeId( "User", "Lucy" ) );
+
+        // then
+        assertEquals( 70, index.sharedInterests( lucy, nodeId( "User", "Lucy" ) ) );
+        assertEquals( 2, lucy.length );
+        assertEquals( 3, index.sharedInterests( index.interests( nodeId( "User", "Sarah" ) ),
+                nodeId( "User", "Arnold" ) ) );
+    }
+
+    @Test
+    public void shouldIndexUsersPastTheFirstChunk() throws Exception
+    {
+        // given
+        int numberOfUsers = 70000;
+        try ( Transaction tx = db.beginTx() )
+        {
+            Node java = db.getNodeById( nodeId( "Topic", "Java" ) );
+            for ( int i = 0; i < numberOfUsers; i++ )
+            {
+                db.createNode( DynamicLabel.label( "User" ) )
+                        .createRelationshipTo( java, DynamicRelationshipType.withName( "INTERESTED_IN" ) );
+            }
+            tx.success();
+        }
+
+        // when
+        final int[] sharingJava = new int[1];
+        index.visitUsersSharingInterests( index.interests( nodeId( "User", "Sarah" ) ),
+                new UserInterestIndex.UserVisitor()
+                {
+                    @Override
+                    public void visit( long userNodeId, int sharedInterests )
+                    {
+                        sharingJava[0]++;
+                    }
+                } );
+
+        // then
+        assertEquals( 6 + numberOfUsers, index.numberOfUsers() );
+        assertEquals( 4 + numberOfUsers, sharingJava[0] );
+        assertEquals( 3, index.sharedInterests( index.interests( nodeId( "User", "Sarah" ) ),
+                nodeId( "User", "Arnold" ) ) );
+    }
+
+    private long nodeId( String label, String name )
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            Node node = IteratorUtil.single(
+                    db.findNodesByLabelAndProperty( DynamicLabel.label( label ), "name", name ) );
+            tx.success();
+            return node.getId();
+        }
+    }
+
+    private static GraphDatabaseService createDatabase()
+    {
+        String cypher = "CREATE\n" +
+                "(ben:User {name:'Ben'}),\n" +
+                "(arnold:User {name:'Arnold'}),\n" +
+                "(charlie:User {name:'Charlie'}),\n" +
+                "(emily:User {name:'Emily'}),\n" +
+                "(lucy:User {name:'Lucy'}),\n" +
+                "(sarah:User {name:'Sarah'}),\n" +
+                "(acme:Company {name:'Acme, Inc'}),\n" +
+                "(startup:Company {name:'Startup, Ltd'}),\n" +
+                "(graphs:Topic {name:'Graphs'}),\n" +
+                "(rest:Topic {name:'REST'}),\n" +
+                "(art:Topic {name:'Art'}),\n" +
+                "(design:Topic {name:'Design'}),\n" +
+                "(java:Topic {name:'Java'}),\n" +
+                "ben-[:WORKS_FOR]->acme,\n" +
+                "charlie-[:WORKS_FOR]->acme,\n" +
+                "lucy-[:WORKS_FOR]->acme,\n" +
+                "sarah-[:WORKS_FOR]->acme,\n" +
+                "arnold-[:WORKS_FOR]->startup,\n" +
+                "emily-[:WORKS_FOR]->startup,\n" +
+                "ben-[:INTERESTED_IN]->graphs,\n" +
+                "ben-[:INTERESTED_IN]->rest,\n" +
+                "arnold-[:INTERESTED_IN]->graphs,\n" +
+                "arnold-[:INTERESTED_IN]->java,\n" +
+                "arnold-[:INTERESTED_IN]->rest,\n" +
+                "charlie-[:INTERESTED_IN]->graphs,\n" +
+                "emily-[:INTERESTED_IN]->art,\n" +
+                "emily-[:INTERESTED_IN]->design,\n" +
+                "sarah-[:INTERESTED_IN]->java,\n" +
+                "sarah-[:INTERESTED_IN]->graphs,\n" +
+                "sarah-[:INTERESTED_IN]->rest";
+
+        return createFromCypher(
+                "Social Network",
+                cypher,
+                IndexParam.indexParam( "User", "name" ),
+                IndexParam.indexParam( "Topic", "name" ) );
+    }
+}